@@ -0,0 +1,15 @@
+package pl.edu.agh.dp.core.api;
+
+/**
+ * Extra-lazy access to a collection relationship that is not loaded, one query each and
+ * nothing put into the collection: the number of its entities, whether it has any, whether
+ * it holds the element and the entity at the index (null past the end). Used by LazyList and
+ * LazySet of extra lazy relationships, implemented by SessionImpl.
+ */
+interface CollectionQueries {
+
+    <T> int sizeOf(T entity, String relationshipName);
+    <T> boolean isEmpty(T entity, String relationshipName);
+    <T> boolean contains(T entity, String relationshipName, Object element);
+    <T> Object elementAt(T entity, String relationshipName, int index);
+}
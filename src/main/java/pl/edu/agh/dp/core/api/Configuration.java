@@ -1,8 +1,11 @@
 package pl.edu.agh.dp.core.api;
 
+import pl.edu.agh.dp.core.jdbc.StatementListener;
+
 public interface Configuration {
     Configuration setProperty(String s, String s1);
     Configuration register(Class<?>... entityClass);
     Configuration scanPackages(String... packages);
+    Configuration addStatementListener(StatementListener listener);
     SessionFactory buildSessionFactory();
 }
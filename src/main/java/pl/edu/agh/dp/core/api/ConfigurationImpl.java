@@ -1,7 +1,13 @@
 package pl.edu.agh.dp.core.api;
 
 import pl.edu.agh.dp.core.jdbc.ConnectionProvider;
+import pl.edu.agh.dp.core.jdbc.Dialect;
+import pl.edu.agh.dp.core.jdbc.DialectResolver;
 import pl.edu.agh.dp.core.jdbc.JdbcConnectionProvider;
+import pl.edu.agh.dp.core.jdbc.PooledConnectionProvider;
+import pl.edu.agh.dp.core.jdbc.RoutingConnectionProvider;
+import pl.edu.agh.dp.core.jdbc.StatementListener;
+import pl.edu.agh.dp.core.logging.OrmLogger;
 import pl.edu.agh.dp.core.mapping.MetadataRegistry;
 import pl.edu.agh.dp.core.mapping.ClassPathScanner;
 import pl.edu.agh.dp.core.persister.EntityPersister;
@@ -9,6 +15,7 @@ import pl.edu.agh.dp.core.persister.EntityPersisterImpl;
 import pl.edu.agh.dp.core.schema.SchemaDropper;
 import pl.edu.agh.dp.core.schema.SchemaGenerator;
 import pl.edu.agh.dp.core.schema.SchemaValidator;
+import pl.edu.agh.dp.core.stats.Statistics;
 
 import java.util.*;
 
@@ -18,6 +25,7 @@ public class ConfigurationImpl implements Configuration {
     private final List<Class<?>> entityClasses = new ArrayList<>();
     private final List<String> packagesToScan = new ArrayList<>();
     private final Map< Class<?>, EntityPersister> entityPersisters = new HashMap<>();
+    private final List<StatementListener> statementListeners = new ArrayList<>();
 
     public Configuration setProperty(String key, String value) {
         properties.setProperty(key, value);
@@ -36,7 +44,15 @@ public class ConfigurationImpl implements Configuration {
         return this;
     }
 
+    @Override
+    public Configuration addStatementListener(StatementListener listener) {
+        statementListeners.add(listener);
+        return this;
+    }
+
     public SessionFactory buildSessionFactory() {
+        OrmLogger.configure(properties);
+
         // 1. Scanning for entities
         ClassLoader cl = Thread.currentThread().getContextClassLoader();
         Set<Class<?>> foundEntities;
@@ -57,10 +73,27 @@ public class ConfigurationImpl implements Configuration {
                 properties.getProperty("db.user"),
                 properties.getProperty("db.password")
         );
+        boolean pooled = Boolean.parseBoolean(properties.getProperty("orm.pool.enabled", "true"));
+        if (pooled) {
+            cp = PooledConnectionProvider.fromProperties(cp, properties);
+        }
+        // read replicas - read-only sessions and Finder.readOnly() queries go there
+        if (!properties.getProperty("db.replicas", "").isBlank()) {
+            cp = RoutingConnectionProvider.fromProperties(cp, properties,
+                    replica -> pooled ? PooledConnectionProvider.fromProperties(replica, properties) : replica);
+        }
+
+        // 3.25. dialect - resolved once, strategies and executors only consult it
+        Dialect dialect = DialectResolver.resolve(properties.getProperty("orm.dialect"), cp);
 
-        // 3.5. creating persisters
+        // 3.5. creating persisters, optionally with generated bind / hydrate code
+        boolean generatePersisters = Boolean.parseBoolean(properties.getProperty("orm.persister.generate", "false"));
         registry.getEntities().forEach((meta, val) -> {
-            entityPersisters.put(meta, new EntityPersisterImpl(val));
+            EntityPersisterImpl persister = new EntityPersisterImpl(val, dialect);
+            if (generatePersisters) {
+                persister.getInheritanceStrategy().generatePersister();
+            }
+            entityPersisters.put(meta, persister);
         });
 
 
@@ -68,17 +101,44 @@ public class ConfigurationImpl implements Configuration {
         String schemaAuto = properties.getProperty("orm.schema.auto", "none");
         if ("drop-create".equalsIgnoreCase(schemaAuto)) {
             new SchemaDropper(cp).drop();   // DROP TABLE / DROP SCHEMA
-            new SchemaGenerator(registry, cp, entityPersisters).generate();
+            new SchemaGenerator(registry, cp, entityPersisters, dialect).generate();
         } else if ("create".equalsIgnoreCase(schemaAuto)) {
-            new SchemaGenerator(registry, cp, entityPersisters).generate();
+            new SchemaGenerator(registry, cp, entityPersisters, dialect).generate();
         } else if ("validate".equalsIgnoreCase(schemaAuto)) {
             new SchemaValidator(registry, cp).validate();
         }else{
-            new SchemaGenerator(registry, cp, entityPersisters).generate();
+            new SchemaGenerator(registry, cp, entityPersisters, dialect).generate();
         }
 
         // 5. SessionFactory -> creation of EntityPersisters inside
-        return new SessionFactoryImpl(registry, entityPersisters, cp, properties);
+        List<StatementListener> listeners = new ArrayList<>(statementListeners);
+        listeners.addAll(instantiateListeners(properties.getProperty("orm.jdbc.statementListeners", "")));
+        Statistics statistics = Statistics.DISABLED;
+        if (Boolean.parseBoolean(properties.getProperty("orm.statistics.enabled", "false"))) {
+            statistics = new Statistics(true);
+            listeners.add(statistics);
+            if (Boolean.parseBoolean(properties.getProperty("orm.statistics.jmx", "true"))) {
+                statistics.registerMBean(properties.getProperty("orm.statistics.name", "default"));
+            }
+        }
+        return new SessionFactoryImpl(registry, entityPersisters, cp, dialect,
+                StatementListener.of(listeners), statistics, properties);
+    }
+
+    private static List<StatementListener> instantiateListeners(String classNames) {
+        List<StatementListener> listeners = new ArrayList<>();
+        for (String className : classNames.split(",")) {
+            if (className.isBlank()) {
+                continue;
+            }
+            try {
+                Class<?> type = Class.forName(className.trim(), true, Thread.currentThread().getContextClassLoader());
+                listeners.add((StatementListener) type.getDeclaredConstructor().newInstance());
+            } catch (ReflectiveOperationException | ClassCastException e) {
+                throw new IllegalArgumentException("Cannot create statement listener: " + className, e);
+            }
+        }
+        return listeners;
     }
 
 }
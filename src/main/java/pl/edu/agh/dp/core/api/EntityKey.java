@@ -0,0 +1,96 @@
+package pl.edu.agh.dp.core.api;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Identity of an entity in the session: the root class of its hierarchy and the id. Subclasses
+ * share the key space of the root, so a find through any class of the hierarchy hits the same entry.
+ * Integral ids are kept as a primitive long; other ids as the value itself and composite ids as
+ * a tuple in the order of the id columns. The hash is computed once.
+ */
+public final class EntityKey {
+
+    private final Class<?> rootClass;
+    private final long longId;
+    // null for integral ids
+    private final Object id;
+    private final int hash;
+
+    private EntityKey(Class<?> rootClass, long longId, Object id, int idHash) {
+        this.rootClass = rootClass;
+        this.longId = longId;
+        this.id = id;
+        this.hash = 31 * rootClass.hashCode() + idHash;
+    }
+
+    public static EntityKey of(Class<?> rootClass, long id) {
+        return new EntityKey(rootClass, id, null, Long.hashCode(id));
+    }
+
+    /**
+     * Key of a single column id; Long, Integer and Short ids share the primitive form.
+     */
+    public static EntityKey of(Class<?> rootClass, Object id) {
+        Objects.requireNonNull(id, "id");
+        if (id instanceof Long || id instanceof Integer || id instanceof Short) {
+            return of(rootClass, ((Number) id).longValue());
+        }
+        return new EntityKey(rootClass, 0, id, id.hashCode());
+    }
+
+    /**
+     * Key of a composite id, values in the order of the id columns.
+     */
+    public static EntityKey ofTuple(Class<?> rootClass, Object... values) {
+        for (Object value : values) {
+            Objects.requireNonNull(value, "id");
+        }
+        return new EntityKey(rootClass, 0, new Tuple(values), Arrays.hashCode(values));
+    }
+
+    public Class<?> getRootClass() {
+        return rootClass;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof EntityKey other)) {
+            return false;
+        }
+        return hash == other.hash
+                && rootClass == other.rootClass
+                && longId == other.longId
+                && Objects.equals(id, other.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return rootClass.getSimpleName() + "#" + (id != null ? id : longId);
+    }
+
+    private record Tuple(Object[] values) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Tuple other && Arrays.equals(values, other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(values);
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(values);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package pl.edu.agh.dp.core.api;
+
+import pl.edu.agh.dp.core.exceptions.IntegrityException;
+import pl.edu.agh.dp.core.mapping.AssociationMetadata;
+import pl.edu.agh.dp.core.mapping.EntityMetadata;
+import pl.edu.agh.dp.core.persister.EntityPersister;
+
+import java.util.*;
+
+/**
+ * Order in which new entities are inserted: every class comes after the classes (and their
+ * subclasses) it holds a foreign key to. Computed once per session factory (Kahn's algorithm),
+ * sessions only look classes up by index.
+ */
+public final class EntityOrder {
+
+    private final Class<?>[] classes;
+    private final Map<Class<?>, Integer> indexes;
+
+    private EntityOrder(Class<?>[] classes) {
+        this.classes = classes;
+        Map<Class<?>, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < classes.length; i++) {
+            indexes.put(classes[i], i);
+        }
+        this.indexes = Collections.unmodifiableMap(indexes);
+    }
+
+    public static EntityOrder of(Map<Class<?>, EntityPersister> entityPersisters) {
+        List<Class<?>> all = new ArrayList<>(entityPersisters.keySet());
+        Map<Class<?>, Integer> inDegree = new HashMap<>();
+        Map<Class<?>, Set<Class<?>>> dependents = new HashMap<>();
+        for (Class<?> clazz : all) {
+            inDegree.put(clazz, 0);
+            dependents.put(clazz, new LinkedHashSet<>());
+        }
+        for (Class<?> clazz : all) {
+            EntityMetadata entityMetadata = entityPersisters.get(clazz).getEntityMetadata();
+            for (AssociationMetadata am : entityMetadata.getAssociationMetadata().values()) {
+                if (!am.getHasForeignKey()) {
+                    continue;
+                }
+                // the referenced row may be any class of the target hierarchy
+                for (Class<?> target : targetClasses(am.getTargetEntity(), entityPersisters)) {
+                    // self references are written in the same run
+                    if (target != clazz && dependents.get(target).add(clazz)) {
+                        inDegree.merge(clazz, 1, Integer::sum);
+                    }
+                }
+            }
+        }
+
+        Deque<Class<?>> ready = new ArrayDeque<>();
+        for (Class<?> clazz : all) {
+            if (inDegree.get(clazz) == 0) {
+                ready.add(clazz);
+            }
+        }
+        Class<?>[] order = new Class<?>[all.size()];
+        int count = 0;
+        while (!ready.isEmpty()) {
+            Class<?> clazz = ready.poll();
+            order[count++] = clazz;
+            for (Class<?> dependent : dependents.get(clazz)) {
+                if (inDegree.merge(dependent, -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        if (count < order.length) {
+            List<String> cycle = all.stream()
+                    .filter(clazz -> inDegree.get(clazz) > 0)
+                    .map(Class::getSimpleName)
+                    .toList();
+            throw new IntegrityException("Cyclic foreign key dependency between entities: " + cycle);
+        }
+        return new EntityOrder(order);
+    }
+
+    private static List<Class<?>> targetClasses(Class<?> target, Map<Class<?>, EntityPersister> entityPersisters) {
+        EntityPersister targetPersister = entityPersisters.get(target);
+        if (targetPersister == null) {
+            throw new IntegrityException("Could not found mapper for class: " + target.getName());
+        }
+        List<Class<?>> classes = new ArrayList<>();
+        classes.add(target);
+        for (EntityMetadata child : targetPersister.getEntityMetadata().getInheritanceMetadata().getAllChildren()) {
+            if (entityPersisters.containsKey(child.getEntityClass())) {
+                classes.add(child.getEntityClass());
+            }
+        }
+        return classes;
+    }
+
+    public int size() {
+        return classes.length;
+    }
+
+    public Class<?> get(int index) {
+        return classes[index];
+    }
+
+    /**
+     * Position of the class in the order, -1 for classes that are not mapped.
+     */
+    public int indexOf(Class<?> clazz) {
+        Integer index = indexes.get(clazz);
+        return index != null ? index : -1;
+    }
+}
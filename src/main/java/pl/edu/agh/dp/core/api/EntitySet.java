@@ -1,9 +1,16 @@
 package pl.edu.agh.dp.core.api;
 
+import pl.edu.agh.dp.core.enhance.DirtyListener;
+import pl.edu.agh.dp.core.enhance.DirtyTrackable;
+import pl.edu.agh.dp.core.enhance.DirtyTracking;
 import pl.edu.agh.dp.core.exceptions.IntegrityException;
+import pl.edu.agh.dp.core.logging.OrmLogger;
 import pl.edu.agh.dp.core.mapping.EntityMetadata;
+import pl.edu.agh.dp.core.mapping.InheritanceMetadata;
 import pl.edu.agh.dp.core.mapping.PropertyMetadata;
 import pl.edu.agh.dp.core.persister.EntityPersister;
+import pl.edu.agh.dp.core.persister.EntitySqlPlan;
+import pl.edu.agh.dp.core.stats.Statistics;
 import pl.edu.agh.dp.core.util.ReflectionUtils;
 
 import java.util.*;
@@ -12,79 +19,190 @@ import java.util.function.IntFunction;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
+/**
+ * Identity map of the session keyed by {@link EntityKey}: the hierarchy root and the id, so an entity
+ * is found through its own class and any superclass, and composite ids do not collide.
+ * Keeps the snapshot of the hydrated state of every entity it holds for the dirty check at flush.
+ * Enhanced entities report their first write to the owner; the others are listed by
+ * {@link #plainEntities()} and compared in full.
+ */
 public class EntitySet<T> implements Set<T> {
-    private final Map<String, T> map = new HashMap<>();
+    private static final OrmLogger log = OrmLogger.getLogger(EntitySet.class);
+    private final Map<EntityKey, T> map = new HashMap<>();
     private final Map<Class<?>, EntityPersister> entityPersisters;
+    private final Statistics statistics;
+    // root class and id columns resolved once per entity class
+    private final Map<Class<?>, KeyShape> shapes = new HashMap<>();
+    // state taken when the entity became managed, null when changes are not tracked
+    private final Map<Object, Object[]> snapshots;
+    // tracked entities that are not enhanced
+    private final Set<Object> plain = Collections.newSetFromMap(new IdentityHashMap<>());
+    // told about writes to the tracked enhanced entities
+    private final DirtyListener owner;
+
+    private record KeyShape(Class<?> rootClass, PropertyMetadata[] idColumns) {
+    }
 
     public EntitySet(Map<Class<?>, EntityPersister> entityPersisters) {
+        this(entityPersisters, Statistics.DISABLED);
+    }
+
+    public EntitySet(Map<Class<?>, EntityPersister> entityPersisters, Statistics statistics) {
+        this(entityPersisters, statistics, true);
+    }
+
+    public EntitySet(Map<Class<?>, EntityPersister> entityPersisters, Statistics statistics, boolean trackChanges) {
+        this(entityPersisters, statistics, trackChanges, null);
+    }
+
+    public EntitySet(Map<Class<?>, EntityPersister> entityPersisters, Statistics statistics, boolean trackChanges,
+                     DirtyListener owner) {
         this.entityPersisters = entityPersisters;
+        this.statistics = statistics;
+        this.snapshots = trackChanges ? new IdentityHashMap<>() : null;
+        this.owner = owner;
+    }
+
+    /**
+     * Snapshot of the entity, null when it is not managed or changes are not tracked.
+     */
+    public Object[] getSnapshot(Object entity) {
+        return snapshots != null ? snapshots.get(entity) : null;
+    }
+
+    /**
+     * Takes a loaded association into the snapshot, so loading it does not count as a change.
+     */
+    public void snapshotAssociation(Object entity, String field) {
+        Object[] snapshot = getSnapshot(entity);
+        if (snapshot != null) {
+            entityPersisters.get(entity.getClass()).getSqlPlan().snapshotAssociation(entity, field, snapshot);
+        }
+    }
+
+    /**
+     * Tracked entities that are not enhanced: flush has to compare all of them with their snapshots.
+     */
+    public Set<Object> plainEntities() {
+        return Collections.unmodifiableSet(plain);
+    }
+
+    private void track(Object entity) {
+        // writes before the entity became managed are in the snapshot
+        DirtyTracking.clear(entity);
+        if (snapshots != null) {
+            EntitySqlPlan plan = entityPersisters.get(entity.getClass()).getSqlPlan();
+            snapshots.put(entity, plan.snapshot(entity));
+            if (plan.getStateBits() != null && entity instanceof DirtyTrackable) {
+                DirtyTracking.attach(entity, owner);
+            } else {
+                plain.add(entity);
+            }
+        }
+    }
+
+    private void untrack(Object entity) {
+        if (snapshots != null && entity != null) {
+            snapshots.remove(entity);
+            plain.remove(entity);
+            DirtyTracking.detach(entity, owner);
+        }
     }
 
+    /**
+     * Returns the cached entity with the id, or null. An entity of the hierarchy that is not an
+     * instance of the requested class is not returned.
+     */
     public Object findById(Class<?> entityClass, Object id) {
-        String hash;
+        EntityKey key;
         try {
-            hash = getHash(entityClass, id);
+            key = getKey(entityClass, id);
         } catch (RuntimeException e) {
+            statistics.identityMapLookup(false);
             return null;
         }
-        return map.get(hash);
+        T entity = map.get(key);
+        if (entity != null && !entityClass.isInstance(entity)) {
+            entity = null;
+        }
+        statistics.identityMapLookup(entity != null);
+        return entity;
+    }
+
+    /**
+     * Returns the cached instance with the same id, or null. Does not add the entity.
+     */
+    public Object findExisting(Object entity) {
+        EntityKey key;
+        try {
+            key = getKey(entity);
+        } catch (RuntimeException e) {
+            return null;
+        }
+        return map.get(key);
     }
 
     public Object replaceIfExistsAndAdd(Object entity) {
-        String hash;
+        EntityKey key;
         try {
-            hash = getHash(entity);
+            key = getKey(entity);
         } catch (RuntimeException e) {
             throw new IntegrityException("Unable to get hash: " + e);
         }
-        if (map.containsKey(hash)) {
-            return map.get(hash);
-        } else {
-            map.put(hash, (T) entity);
-            return entity;
+        T existing = map.putIfAbsent(key, (T) entity);
+        if (existing != null) {
+            return existing;
         }
+        track(entity);
+        return entity;
     }
 
-    private String getHash(Class<?> entityClass, Object id) {
-        EntityPersister persister = entityPersisters.get(entityClass);
-        if (persister == null) {
-            throw new IntegrityException("No persister found for " + entityClass);
-        }
-
-        StringBuilder hash = new StringBuilder();
-        EntityMetadata metadata = persister.getEntityMetadata();
-        hash.append(metadata.getEntityClass().getName());
-        if (metadata.getIdColumns().values().size() == 1) {
-            hash.append(id.toString());
-        } else {
-            for (PropertyMetadata pm : metadata.getIdColumns().values()) {
-                if (ReflectionUtils.doesObjectContainField(id, pm.getName())) {
-                    hash.append(ReflectionUtils.getFieldValue(id, pm.getName()).toString());
-                } else {
-                    throw new RuntimeException("Unable to find field " + pm.getName());
-                }
+    private KeyShape shape(Class<?> entityClass) {
+        KeyShape shape = shapes.get(entityClass);
+        if (shape == null) {
+            EntityPersister persister = entityPersisters.get(entityClass);
+            if (persister == null) {
+                throw new IntegrityException("No persister found for " + entityClass);
             }
+            EntityMetadata metadata = persister.getEntityMetadata();
+            InheritanceMetadata inheritance = metadata.getInheritanceMetadata();
+            Class<?> rootClass = inheritance != null && inheritance.getRootClass() != null
+                    ? inheritance.getRootClass().getEntityClass()
+                    : metadata.getEntityClass();
+            shape = new KeyShape(rootClass, metadata.getIdColumns().values().toArray(new PropertyMetadata[0]));
+            shapes.put(entityClass, shape);
         }
-        return hash.toString();
+        return shape;
     }
 
-    private String getHash(Object obj) throws RuntimeException {
-        EntityPersister persister = entityPersisters.get(obj.getClass());
-        if (persister == null) {
-            throw new RuntimeException("No persister found for " + obj.getClass());
+    private EntityKey getKey(Class<?> entityClass, Object id) {
+        KeyShape shape = shape(entityClass);
+        if (shape.idColumns().length == 1) {
+            return EntityKey.of(shape.rootClass(), id);
         }
-
-        StringBuilder hash = new StringBuilder();
-        EntityMetadata metadata = persister.getEntityMetadata();
-        hash.append(metadata.getEntityClass().getName());
-        for (PropertyMetadata pm : metadata.getIdColumns().values()) {
-            try {
-                hash.append(ReflectionUtils.getFieldValue(obj, pm.getName()).toString());
-            } catch (RuntimeException e) {
+        // composite id passed as an instance carrying the id fields
+        Object[] values = new Object[shape.idColumns().length];
+        for (int i = 0; i < values.length; i++) {
+            PropertyMetadata pm = shape.idColumns()[i];
+            if (!ReflectionUtils.doesClassContainField(id.getClass(), pm.getName())) {
                 throw new RuntimeException("Unable to find field " + pm.getName());
             }
+            values[i] = pm.getValue(id);
         }
-        return hash.toString();
+        return EntityKey.ofTuple(shape.rootClass(), values);
+    }
+
+    private EntityKey getKey(Object obj) throws RuntimeException {
+        KeyShape shape = shape(obj.getClass());
+        PropertyMetadata[] idColumns = shape.idColumns();
+        if (idColumns.length == 1) {
+            return EntityKey.of(shape.rootClass(), idColumns[0].getValue(obj));
+        }
+        Object[] values = new Object[idColumns.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = idColumns[i].getValue(obj);
+        }
+        return EntityKey.ofTuple(shape.rootClass(), values);
     }
 
     @Override
@@ -99,15 +217,19 @@ public class EntitySet<T> implements Set<T> {
 
     @Override
     public boolean contains(Object o) {
-        System.out.println("Checking: " + o.getClass().getSimpleName());
-        String hash;
+        if (log.isTraceEnabled()) {
+            log.trace("Checking: {}", o.getClass().getSimpleName());
+        }
+        EntityKey key;
         try {
-            hash = getHash(o);
+            key = getKey(o);
         } catch (RuntimeException e) {
-            System.out.println(o.getClass().getSimpleName() + " is not cached.");
+            if (log.isTraceEnabled()) {
+                log.trace("{} is not cached.", o.getClass().getSimpleName());
+            }
             return false;
         }
-        return map.containsKey(hash);
+        return map.containsKey(key);
     }
 
     @Override
@@ -137,25 +259,32 @@ public class EntitySet<T> implements Set<T> {
 
     @Override
     public boolean add(T t) {
-        String hash;
+        EntityKey key;
         try {
-            hash = getHash(t);
+            key = getKey(t);
         } catch (RuntimeException e) {
-            System.out.println("Tried to add, but failed. " + e.getMessage());
+            log.debug("Tried to add, but failed. {}", e.getMessage());
             return false;
         }
-        return map.put(hash, t) != null;
+        T previous = map.put(key, t);
+        if (previous != t) {
+            untrack(previous);
+        }
+        track(t);
+        return previous != null;
     }
 
     @Override
     public boolean remove(Object o) {
-        String hash;
+        EntityKey key;
         try {
-            hash = getHash(o);
+            key = getKey(o);
         } catch (RuntimeException e) {
             return false;
         }
-        return map.remove(hash) != null;
+        T removed = map.remove(key);
+        untrack(removed);
+        return removed != null;
     }
 
     @Override
@@ -196,11 +325,25 @@ public class EntitySet<T> implements Set<T> {
 
     @Override
     public boolean removeIf(Predicate<? super T> filter) {
-        return map.values().removeIf(filter);
+        boolean removed = false;
+        for (Iterator<T> it = map.values().iterator(); it.hasNext(); ) {
+            T t = it.next();
+            if (filter.test(t)) {
+                it.remove();
+                untrack(t);
+                removed = true;
+            }
+        }
+        return removed;
     }
 
     @Override
     public void clear() {
+        if (snapshots != null) {
+            snapshots.keySet().forEach(entity -> DirtyTracking.detach(entity, owner));
+            snapshots.clear();
+            plain.clear();
+        }
         map.clear();
     }
 
@@ -14,11 +14,17 @@ public class LazyList<T> implements List<T>, Lazy {
     private Session session;
     private Object owner;
     private String relationshipName;
+    private boolean extraLazy;
 
     public LazyList(Session session, Object owner, String relationshipName) {
+        this(session, owner, relationshipName, false);
+    }
+
+    public LazyList(Session session, Object owner, String relationshipName, boolean extraLazy) {
         this.session = session;
         this.owner = owner;
         this.relationshipName = relationshipName;
+        this.extraLazy = extraLazy;
     }
 
     @Override
@@ -33,10 +39,26 @@ public class LazyList<T> implements List<T>, Lazy {
                 throw new IllegalStateException("Session is not open");
             }
             session.load(owner, relationshipName);
+            session.getStatistics().collectionInitialized();
             delegate = (List<T>) ReflectionUtils.getFieldValue(owner, relationshipName);
         }
     }
 
+    private CollectionQueries queries() {
+        return (CollectionQueries) session;
+    }
+
+    // extra lazy, not loaded: the session answers with a query
+    private boolean queried() {
+        if (!extraLazy || isInitialized() || !(session instanceof CollectionQueries)) {
+            return false;
+        }
+        if (!session.isOpen()) {
+            throw new IllegalStateException("Session is not open");
+        }
+        return true;
+    }
+
     @Override
     public void forEach(Consumer<? super T> action) {
         initialize();
@@ -69,18 +91,27 @@ public class LazyList<T> implements List<T>, Lazy {
 
     @Override
     public int size() {
+        if (queried()) {
+            return queries().sizeOf(owner, relationshipName);
+        }
         initialize();
         return delegate.size();
     }
 
     @Override
     public boolean isEmpty() {
+        if (queried()) {
+            return queries().isEmpty(owner, relationshipName);
+        }
         initialize();
         return delegate.isEmpty();
     }
 
     @Override
     public boolean contains(Object o) {
+        if (queried()) {
+            return queries().contains(owner, relationshipName, o);
+        }
         initialize();
         return delegate.contains(o);
     }
@@ -165,6 +196,13 @@ public class LazyList<T> implements List<T>, Lazy {
 
     @Override
     public T get(int index) {
+        if (queried()) {
+            Object element = queries().elementAt(owner, relationshipName, index);
+            if (element == null) {
+                throw new IndexOutOfBoundsException("Index: " + index);
+            }
+            return (T) element;
+        }
         initialize();
         return delegate.get(index);
     }
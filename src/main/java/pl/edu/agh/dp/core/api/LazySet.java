@@ -13,11 +13,17 @@ public class LazySet<T> implements Set<T>, Lazy {
     private Session session;
     private Object owner;
     private String relationshipName;
+    private boolean extraLazy;
 
     public LazySet(Session session, Object owner, String relationshipName) {
+        this(session, owner, relationshipName, false);
+    }
+
+    public LazySet(Session session, Object owner, String relationshipName, boolean extraLazy) {
         this.session = session;
         this.owner = owner;
         this.relationshipName = relationshipName;
+        this.extraLazy = extraLazy;
     }
 
     @Override
@@ -32,24 +38,49 @@ public class LazySet<T> implements Set<T>, Lazy {
                 throw new IllegalStateException("Session is not open");
             }
             session.load(owner, relationshipName);
+            session.getStatistics().collectionInitialized();
             delegate = (Set<T>) ReflectionUtils.getFieldValue(owner, relationshipName);
         }
     }
 
+    private CollectionQueries queries() {
+        return (CollectionQueries) session;
+    }
+
+    // extra lazy, not loaded: the session answers with a query
+    private boolean queried() {
+        if (!extraLazy || isInitialized() || !(session instanceof CollectionQueries)) {
+            return false;
+        }
+        if (!session.isOpen()) {
+            throw new IllegalStateException("Session is not open");
+        }
+        return true;
+    }
+
     @Override
     public int size() {
+        if (queried()) {
+            return queries().sizeOf(owner, relationshipName);
+        }
         initialize();
         return delegate.size();
     }
 
     @Override
     public boolean isEmpty() {
+        if (queried()) {
+            return queries().isEmpty(owner, relationshipName);
+        }
         initialize();
         return delegate.isEmpty();
     }
 
     @Override
     public boolean contains(Object o) {
+        if (queried()) {
+            return queries().contains(owner, relationshipName, o);
+        }
         initialize();
         return delegate.contains(o);
     }
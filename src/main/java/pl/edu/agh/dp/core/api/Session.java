@@ -4,9 +4,11 @@ import pl.edu.agh.dp.core.finder.Finder;
 import pl.edu.agh.dp.core.finder.QuerySpec;
 import pl.edu.agh.dp.core.jdbc.JdbcExecutor;
 import pl.edu.agh.dp.core.persister.EntityPersister;
+import pl.edu.agh.dp.core.stats.Statistics;
 
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * AutoCloseable to be able to use in try ( ... )
@@ -18,16 +20,41 @@ public interface Session extends AutoCloseable {
     <T> List<T> findAll(Class<T> entityClass);
     <T> List<T> findBy(QuerySpec<T> querySpec);
     <T> Finder<T> finder(Class<T> entityClass);
+
+    /**
+     * Streams entities straight from an open result set instead of building a list.
+     * The stream holds a cursor on the session's connection and must be closed, e.g. with try ( ... ).
+     */
+    <T> Stream<T> stream(Class<T> entityClass);
+
+    /**
+     * @param detached when true streamed entities are not put into the session cache and their
+     *                 associations are left unattached (no lazy collections, to-one proxies not
+     *                 bound to the session), so memory stays flat no matter how many rows pass through
+     */
+    <T> Stream<T> stream(QuerySpec<T> querySpec, boolean detached);
     <T> void delete(T entity);
     <T>  void update(T entity);
     <T> void load(T entity, String relationshipName);
+
+    /**
+     * Set-based UPDATE / DELETE of the entities matching the conditions of the spec, without
+     * loading them. Pending changes are flushed first; cached instances of the matched entities
+     * are evicted from the session, the others stay managed. Returns the number of entities affected.
+     *
+     * @param assignments new values by field name, only plain fields (no ids or relationships)
+     */
+    <T> int updateWhere(QuerySpec<T> querySpec, Map<String, Object> assignments);
+    <T> int deleteWhere(QuerySpec<T> querySpec);
     void commit();
     void rollback();
     void flush();
     void begin();
     void close();
     boolean isOpen();
+    boolean isReadOnly();
 
     JdbcExecutor getJdbcExecutor();
     Map<Class<?>, EntityPersister> getEntityPersisters();
+    Statistics getStatistics();
 }
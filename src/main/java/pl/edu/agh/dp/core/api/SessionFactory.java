@@ -1,5 +1,25 @@
 package pl.edu.agh.dp.core.api;
 
+import pl.edu.agh.dp.core.stats.Statistics;
+
 public interface SessionFactory {
     Session openSession();
+
+    /**
+     * Opens a session on a read replica (the primary when none is configured).
+     * Flushing changes from it fails.
+     */
+    Session openReadOnlySession();
+
+    /**
+     * Opens a session without a persistence context for bulk jobs, see {@link StatelessSession}.
+     */
+    StatelessSession openStatelessSession();
+
+    /**
+     * Counters of this factory; all zero unless {@code orm.statistics.enabled=true}.
+     */
+    Statistics getStatistics();
+
+    void close();
 }
@@ -1,11 +1,15 @@
 package pl.edu.agh.dp.core.api;
 
 import pl.edu.agh.dp.core.jdbc.ConnectionProvider;
-import pl.edu.agh.dp.core.jdbc.JdbcExecutor;
+import pl.edu.agh.dp.core.jdbc.Dialect;
 import pl.edu.agh.dp.core.jdbc.JdbcExecutorImpl;
+import pl.edu.agh.dp.core.jdbc.StatementListener;
 import pl.edu.agh.dp.core.mapping.MetadataRegistry;
 import pl.edu.agh.dp.core.persister.EntityPersister;
+import pl.edu.agh.dp.core.stats.Statistics;
 
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.Map;
 import java.util.Properties;
 
@@ -13,26 +17,89 @@ public class SessionFactoryImpl  implements SessionFactory {
 
     MetadataRegistry metadataRegistry;
     ConnectionProvider connectionProvider;
+    Dialect dialect;
+    StatementListener statementListener;
+    Statistics statistics;
     Properties properties;
+    int statementCacheSize;
+    int batchSize;
+    int fetchSize;
 
     Map< Class<?>, EntityPersister> entityPersisters;
+    // insert order of the entity classes, shared by all sessions
+    EntityOrder entityOrder;
 
     public SessionFactoryImpl(
             MetadataRegistry registry,
             Map<Class<?>, EntityPersister> entityPersisters,
             ConnectionProvider connectionProvider,
+            Dialect dialect,
+            StatementListener statementListener,
+            Statistics statistics,
             Properties properties
     ) {
         this.metadataRegistry = registry;
         this.entityPersisters = entityPersisters;
+        this.entityOrder = EntityOrder.of(entityPersisters);
         this.connectionProvider = connectionProvider;
+        this.dialect = dialect;
+        this.statementListener = statementListener;
+        this.statistics = statistics;
         this.properties = properties;
+        this.statementCacheSize = Integer.parseInt(properties.getProperty(
+                "orm.jdbc.statementCacheSize", String.valueOf(JdbcExecutorImpl.DEFAULT_STATEMENT_CACHE_SIZE)));
+        this.batchSize = Integer.parseInt(properties.getProperty(
+                "orm.jdbc.batchSize", String.valueOf(JdbcExecutorImpl.DEFAULT_BATCH_SIZE)));
+        this.fetchSize = Integer.parseInt(properties.getProperty(
+                "orm.jdbc.fetchSize", String.valueOf(JdbcExecutorImpl.DEFAULT_FETCH_SIZE)));
     }
 
     public Session openSession() {
-        JdbcExecutor jdbcExecutor = new JdbcExecutorImpl(connectionProvider.getConnection());
-        Session session = new SessionImpl(jdbcExecutor, entityPersisters);
+        Session session = new SessionImpl(newExecutor(connectionProvider.getConnection()), entityPersisters, entityOrder, statistics,
+                false, () -> newExecutor(connectionProvider.getReadConnection()));
+        statistics.sessionOpened();
         session.begin();
         return session;
     }
+
+    @Override
+    public Session openReadOnlySession() {
+        Connection connection = connectionProvider.getReadConnection();
+        try {
+            connection.setReadOnly(true);
+        } catch (SQLException e) {
+            // only a hint for the driver
+        }
+        Session session = new SessionImpl(newExecutor(connection), entityPersisters, entityOrder, statistics, true, null);
+        statistics.sessionOpened();
+        session.begin();
+        return session;
+    }
+
+    @Override
+    public StatelessSession openStatelessSession() {
+        StatelessSessionImpl session = new StatelessSessionImpl(newExecutor(connectionProvider.getConnection()),
+                entityPersisters, statistics, batchSize);
+        statistics.sessionOpened();
+        session.begin();
+        return session;
+    }
+
+    private JdbcExecutorImpl newExecutor(Connection connection) {
+        JdbcExecutorImpl jdbcExecutor = new JdbcExecutorImpl(connection, statementCacheSize, batchSize, dialect);
+        jdbcExecutor.setFetchSize(fetchSize);
+        jdbcExecutor.setStatementListener(statementListener);
+        return jdbcExecutor;
+    }
+
+    @Override
+    public Statistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public void close() {
+        statistics.unregisterMBean();
+        connectionProvider.close();
+    }
 }
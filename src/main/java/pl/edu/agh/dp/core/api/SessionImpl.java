@@ -1,18 +1,35 @@
 package pl.edu.agh.dp.core.api;
 
 import lombok.Getter;
+import pl.edu.agh.dp.core.enhance.DirtyTrackable;
+import pl.edu.agh.dp.core.enhance.DirtyTracking;
 import pl.edu.agh.dp.core.exceptions.IntegrityException;
 import pl.edu.agh.dp.core.finder.Finder;
 import pl.edu.agh.dp.core.finder.QuerySpec;
 import pl.edu.agh.dp.core.jdbc.JdbcExecutor;
+import pl.edu.agh.dp.core.logging.OrmLogger;
 import pl.edu.agh.dp.core.mapping.*;
 import pl.edu.agh.dp.core.persister.EntityPersister;
+import pl.edu.agh.dp.core.persister.InheritanceStrategy;
+import pl.edu.agh.dp.core.persister.PersisterSession;
+import pl.edu.agh.dp.core.proxy.EntityProxy;
+import pl.edu.agh.dp.core.proxy.LazyInitializer;
+import pl.edu.agh.dp.core.stats.Statistics;
 import pl.edu.agh.dp.core.util.ReflectionUtils;
 
 import java.sql.SQLException;
 import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
-public class SessionImpl implements Session {
+public class SessionImpl implements Session, PersisterSession, CollectionQueries {
+
+    private static final OrmLogger log = OrmLogger.getLogger(SessionImpl.class);
+
+    // owners whose fetched relationship is loaded with one query
+    private static final int FETCH_BATCH_SIZE = 100;
+    // smaller batches padded to the next of these sizes, so a few SQL shapes serve any owner count
+    private static final int[] FETCH_BATCH_SIZES = {1, 4, 16, FETCH_BATCH_SIZE};
 
     @Getter
     private final Map<Class<?>, EntityPersister> entityPersisters;
@@ -21,19 +38,53 @@ public class SessionImpl implements Session {
     private final Set<Object> newEntities;
     private final Set<Object> dirtyEntities = new HashSet<>();
     private final Set<Object> removedEntities = new HashSet<>();
+    // to-one proxies handed out, one per referenced entity
+    private final Map<EntityKey, Object> proxies = new HashMap<>();
+    // foreign key order of the factory: inserts follow it, deletes go against it
+    private final EntityOrder entityOrder;
+    // managed enhanced entities written to since the last flush, reported by their first write
+    private final List<Object> writtenEntities = new ArrayList<>();
 
     private final JdbcExecutor jdbcExecutor;
+    @Getter
+    private final Statistics statistics;
+    @Getter
+    private final boolean readOnly;
+    // opens a replica connection for Finder.readOnly() queries, null when not routed
+    private final Supplier<JdbcExecutor> readExecutorFactory;
+    private JdbcExecutor readExecutor;
+    private JdbcExecutor routedExecutor;
     private boolean isOpen = false;
 
     public SessionImpl(JdbcExecutor jdbcExecutor,  Map<Class<?>, EntityPersister> entityPersisters) {
+        this(jdbcExecutor, entityPersisters, Statistics.DISABLED);
+    }
+
+    public SessionImpl(JdbcExecutor jdbcExecutor,  Map<Class<?>, EntityPersister> entityPersisters, Statistics statistics) {
+        this(jdbcExecutor, entityPersisters, statistics, false, null);
+    }
+
+    public SessionImpl(JdbcExecutor jdbcExecutor,  Map<Class<?>, EntityPersister> entityPersisters, Statistics statistics,
+                       boolean readOnly, Supplier<JdbcExecutor> readExecutorFactory) {
+        this(jdbcExecutor, entityPersisters, EntityOrder.of(entityPersisters), statistics, readOnly, readExecutorFactory);
+    }
+
+    public SessionImpl(JdbcExecutor jdbcExecutor, Map<Class<?>, EntityPersister> entityPersisters, EntityOrder entityOrder,
+                       Statistics statistics, boolean readOnly, Supplier<JdbcExecutor> readExecutorFactory) {
         this.entityPersisters = entityPersisters;
         this.jdbcExecutor = jdbcExecutor;
-        this.cachedEntities = new EntitySet<>(entityPersisters);
-        this.newEntities = new SortedEntitySet<>(entityPersisters);
+        this.statistics = statistics;
+        this.readOnly = readOnly;
+        this.readExecutorFactory = readExecutorFactory;
+        // read-only sessions never flush changes, so they keep no snapshots
+        this.cachedEntities = new EntitySet<>(entityPersisters, statistics, !readOnly, writtenEntities::add);
+        this.entityOrder = entityOrder;
+        this.newEntities = new SortedEntitySet<>(entityOrder);
     }
 
     @Override
     public <T> void save(T entity) {
+        entity = (T) EntityProxy.unwrap(entity);
         // for relationships, we need to separate each entity
         EntityPersister entityPersister = entityPersisters.get(entity.getClass());
         if (entityPersister == null) {
@@ -58,41 +109,45 @@ public class SessionImpl implements Session {
         }
         // there are relationships
         for (AssociationMetadata am : associationMetadata) {
-            Object value = ReflectionUtils.getFieldValue(entity, am.getField());
+            Object value = am.getValue(entity);
+            if (value instanceof EntityProxy proxy) {
+                // references a persisted entity, there is nothing to cascade to unless it was loaded
+                value = proxy.isInitialized() ? proxy.getLazyInitializer().getImplementation() : null;
+            }
             if (value != null) {
                 if (am.getType() == AssociationMetadata.Type.ONE_TO_ONE) {
-                    System.out.println("Inserting 1 to 1");
+                    log.trace("Inserting 1 to 1");
                     // determine where is the fk key
                     // first insert the dominating entity, later the fk one
                     if (am.getHasForeignKey()) {
                         // set opposing relationship
-                        System.out.println("Setting: " + am.getMappedBy()+ " in " + value + " to " + entity);
-                        ReflectionUtils.setFieldValue(value, am.getMappedBy(), entity);
+                        log.trace("Setting: {} in {} to {}", am.getMappedBy(), value, entity);
+                        am.setMappedByValue(value, entity);
                         this.save(value);
                         newEntities.add(entity);
                     } else {
                         // set opposing relationship
-                        System.out.println("Setting: " + am.getMappedBy()+ " in " + value + " to " + entity);
-                        ReflectionUtils.setFieldValue(value, am.getMappedBy(), entity);
+                        log.trace("Setting: {} in {} to {}", am.getMappedBy(), value, entity);
+                        am.setMappedByValue(value, entity);
                         newEntities.add(entity);
                         this.save(value);
                     }
                 } else if (am.getType() == AssociationMetadata.Type.ONE_TO_MANY) {
-                    System.out.println("Inserting 1 to *");
+                    log.trace("Inserting 1 to *");
                     newEntities.add(entity);
                     assert value instanceof Collection;
                     for (Object relationshipEntity : (Collection<?>)value) { // relationship must be some Collection
-                        System.out.println("Setting: " + am.getMappedBy()+ " in " + relationshipEntity + " to " + entity);
-                        ReflectionUtils.setFieldValue(relationshipEntity, am.getMappedBy(), entity);
+                        log.trace("Setting: {} in {} to {}", am.getMappedBy(), relationshipEntity, entity);
+                        am.setMappedByValue(relationshipEntity, entity);
                         this.save(relationshipEntity);
                     }
                 } else if (am.getType() == AssociationMetadata.Type.MANY_TO_ONE) {
-                    System.out.println("Inserting * to 1");
-                    Object field = ReflectionUtils.getFieldValue(value, am.getMappedBy());
+                    log.trace("Inserting * to 1");
+                    Object field = am.getMappedByValue(value);
                     if (field == null) {
                         AssociationMetadata opposingAm = entityPersisters.get(am.getTargetEntity()).getEntityMetadata().getAssociationMetadata().get(am.getMappedBy());
-                        ReflectionUtils.setFieldValue(value, am.getMappedBy(), opposingAm.createCollection());
-                        field = ReflectionUtils.getFieldValue(value, am.getMappedBy());
+                        am.setMappedByValue(value, opposingAm.createCollection());
+                        field = am.getMappedByValue(value);
                     }
                     assert field instanceof Collection;
                     boolean isBackrefered = false;
@@ -103,21 +158,21 @@ public class SessionImpl implements Session {
                         }
                     }
                     if (!isBackrefered) {
-                        System.out.println("Adding: " + value + " to field " + am.getMappedBy() + " to " + entity);
+                        log.trace("Adding: {} to field {} to {}", value, am.getMappedBy(), entity);
                         ((Collection<T>) field).add(entity);
                     }
                     this.save(value);
                     newEntities.add(entity);
                 } else if (am.getType() == AssociationMetadata.Type.MANY_TO_MANY) {
-                    System.out.println("Inserting * to *");
+                    log.trace("Inserting * to *");
                     // fill all the data
                     assert value instanceof Collection;
                     for (Object relationshipEntity : (Collection<?>)value) {
-                        Object field = ReflectionUtils.getFieldValue(relationshipEntity, am.getMappedBy());
+                        Object field = am.getMappedByValue(relationshipEntity);
                         if (field == null) {
                             AssociationMetadata opposingAm = entityPersisters.get(am.getTargetEntity()).getEntityMetadata().getAssociationMetadata().get(am.getMappedBy());
-                            ReflectionUtils.setFieldValue(relationshipEntity, am.getMappedBy(), opposingAm.createCollection());
-                            field = ReflectionUtils.getFieldValue(relationshipEntity, am.getMappedBy());
+                            am.setMappedByValue(relationshipEntity, opposingAm.createCollection());
+                            field = am.getMappedByValue(relationshipEntity);
                         }
                         assert field instanceof Collection;
                         boolean isBackrefered = false;
@@ -128,7 +183,7 @@ public class SessionImpl implements Session {
                             }
                         }
                         if (!isBackrefered) {
-                            System.out.println("Adding: " + relationshipEntity + " to field " + am.getMappedBy() + " to " + entity);
+                            log.trace("Adding: {} to field {} to {}", relationshipEntity, am.getMappedBy(), entity);
                             ((Collection<T>) field).add(entity);
                         }
                     }
@@ -163,13 +218,19 @@ public class SessionImpl implements Session {
                 throw new IntegrityException("Unable to map: " + entityClass);
             }
             entity = persister.findById(id, this);
+            if (entity != null) {
+                statistics.entitiesLoaded(entity.getClass(), 1);
+            }
             // fill the relationship data
             EntityMetadata metadata = persister.getEntityMetadata();
             for (AssociationMetadata associationMetadata : metadata.getAssociationMetadata().values()) {
                 if (associationMetadata.getCollectionType() == AssociationMetadata.CollectionType.NONE) {
                     continue;
                 }
-                ReflectionUtils.setFieldValue(entity, associationMetadata.getField(), associationMetadata.createLazyCollection(this, entity));
+                associationMetadata.setValue(entity, associationMetadata.createLazyCollection(this, entity));
+            }
+            if (entity != null) {
+                attachReferences(entity);
             }
             cachedEntities.add(entity);
         }
@@ -180,6 +241,7 @@ public class SessionImpl implements Session {
     public <T> List<T> findAll(Class<T> entityClass) {
         EntityPersister persister = entityPersisters.get(entityClass);
         List<T> entities = persister.findAll(entityClass, this);
+        countLoaded(entities);
         for (T entity : entities) {
             // fill the relationship data
             EntityMetadata metadata = entityPersisters.get(entity.getClass()).getEntityMetadata();
@@ -187,8 +249,9 @@ public class SessionImpl implements Session {
                 if (associationMetadata.getCollectionType() == AssociationMetadata.CollectionType.NONE) {
                     continue;
                 }
-                ReflectionUtils.setFieldValue(entity, associationMetadata.getField(), associationMetadata.createLazyCollection(this, entity));
+                associationMetadata.setValue(entity, associationMetadata.createLazyCollection(this, entity));
             }
+            attachReferences(entity);
         }
         entities.replaceAll(t -> (T) cachedEntities.replaceIfExistsAndAdd(t));
         return entities;
@@ -203,7 +266,8 @@ public class SessionImpl implements Session {
                     "Could not find mapper for class: " + entityClass.getName()
             );
         }
-        List<T> entities = persister.findBy(entityClass, this, querySpec);
+        List<T> entities = routed(querySpec, () -> persister.findBy(entityClass, this, querySpec));
+        countLoaded(entities);
         for (T entity : entities) {
             // fill the relationship data
             EntityMetadata metadata = persister.getEntityMetadata();
@@ -211,10 +275,17 @@ public class SessionImpl implements Session {
                 if (associationMetadata.getCollectionType() == AssociationMetadata.CollectionType.NONE) {
                     continue;
                 }
-                ReflectionUtils.setFieldValue(entity, associationMetadata.getField(), associationMetadata.createLazyCollection(this, entity));
+                associationMetadata.setValue(entity, associationMetadata.createLazyCollection(this, entity));
             }
+            attachReferences(entity);
         }
         entities.replaceAll(t -> (T) cachedEntities.replaceIfExistsAndAdd(t));
+        if (querySpec.hasFetch() && !entities.isEmpty()) {
+            routed(querySpec, () -> {
+                fetch(entities, querySpec.getFetchPaths());
+                return null;
+            });
+        }
         return entities;
     }
 
@@ -223,8 +294,66 @@ public class SessionImpl implements Session {
         return new Finder<>(this, entityClass);
     }
 
+    @Override
+    public <T> Stream<T> stream(Class<T> entityClass) {
+        return stream(QuerySpec.of(entityClass), false);
+    }
+
+    @Override
+    public <T> Stream<T> stream(QuerySpec<T> querySpec, boolean detached) {
+        Class<T> entityClass = querySpec.getEntityType();
+        EntityPersister persister = entityPersisters.get(entityClass);
+        if (persister == null) {
+            throw new IntegrityException(
+                    "Could not find mapper for class: " + entityClass.getName()
+            );
+        }
+        return routed(querySpec, () -> persister.streamBy(entityClass, this, querySpec)).map(entity -> {
+            statistics.entitiesLoaded(entity.getClass(), 1);
+            Object cached = cachedEntities.findExisting(entity);
+            if (cached != null) {
+                return entityClass.cast(cached);
+            }
+            if (detached) {
+                // like a stateless session: associations stay unattached, the session keeps nothing of the row
+                return entity;
+            }
+            // fill the relationship data
+            EntityMetadata metadata = entityPersisters.get(entity.getClass()).getEntityMetadata();
+            for (AssociationMetadata associationMetadata : metadata.getAssociationMetadata().values()) {
+                if (associationMetadata.getCollectionType() == AssociationMetadata.CollectionType.NONE) {
+                    continue;
+                }
+                associationMetadata.setValue(entity, associationMetadata.createLazyCollection(this, entity));
+            }
+            attachReferences(entity);
+            cachedEntities.add(entity);
+            return entity;
+        });
+    }
+
+    /**
+     * Runs a read-only query on the replica executor; everything else stays on the session's connection.
+     */
+    private <R> R routed(QuerySpec<?> querySpec, Supplier<R> query) {
+        if (!querySpec.isReadOnly() || readOnly || readExecutorFactory == null) {
+            return query.get();
+        }
+        if (readExecutor == null) {
+            readExecutor = readExecutorFactory.get();
+        }
+        JdbcExecutor previous = routedExecutor;
+        routedExecutor = readExecutor;
+        try {
+            return query.get();
+        } finally {
+            routedExecutor = previous;
+        }
+    }
+
     @Override
     public <T> void delete(T entity) {
+        entity = (T) EntityProxy.unwrap(entity);
         if (newEntities.contains(entity)) {
             throw new IntegrityException(
                     "Attempted to remove entity scheduled for saving.\n" +
@@ -239,6 +368,7 @@ public class SessionImpl implements Session {
 
     @Override
     public <T> void update(T entity) {
+        entity = (T) EntityProxy.unwrap(entity);
         if (newEntities.contains(entity)) {
             throw new IntegrityException(
                     "Attempted to remove entity scheduled for saving.\n" +
@@ -269,25 +399,29 @@ public class SessionImpl implements Session {
         }
         // there are relationships
         for (AssociationMetadata am : associationMetadata) {
-            Object value = ReflectionUtils.getFieldValue(entity, am.getField());
+            Object value = am.getValue(entity);
+            if (value instanceof EntityProxy proxy) {
+                // references a persisted entity, there is nothing to cascade to unless it was loaded
+                value = proxy.isInitialized() ? proxy.getLazyInitializer().getImplementation() : null;
+            }
             if (value != null) {
                 if (am.getType() == AssociationMetadata.Type.ONE_TO_ONE) {
-                    System.out.println("updating 1 to 1");
+                    log.trace("updating 1 to 1");
                     // set opposing relationship
-                    ReflectionUtils.setFieldValue(value, am.getMappedBy(), entity);
+                    am.setMappedByValue(value, entity);
                     dirtyEntities.add(entity);
                     this.update(value);
                 } else if (am.getType() == AssociationMetadata.Type.ONE_TO_MANY) {
-                    System.out.println("updating 1 to *");
+                    log.trace("updating 1 to *");
                     dirtyEntities.add(entity);
                     assert value instanceof Collection;
                     for (Object relationshipEntity : (Collection<?>)value) { // relationship must be some Collection
-                        ReflectionUtils.setFieldValue(relationshipEntity, am.getMappedBy(), entity);
+                        am.setMappedByValue(relationshipEntity, entity);
                         this.update(relationshipEntity);
                     }
                 } else if (am.getType() == AssociationMetadata.Type.MANY_TO_ONE) {
-                    System.out.println("updating * to 1");
-                    Object field = ReflectionUtils.getFieldValue(value, am.getMappedBy());
+                    log.trace("updating * to 1");
+                    Object field = am.getMappedByValue(value);
                     if (field == null) {
                         throw new IntegrityException(
                                 "Field cannot be null.\n" +
@@ -310,11 +444,11 @@ public class SessionImpl implements Session {
                     this.update(value);
                     dirtyEntities.add(entity);
                 } else if (am.getType() == AssociationMetadata.Type.MANY_TO_MANY) {
-                    System.out.println("updating * to *");
+                    log.trace("updating * to *");
                     // fill all the data
                     assert value instanceof Collection;
                     for (Object relationshipEntity : (Collection<?>)value) {
-                        Object field = ReflectionUtils.getFieldValue(relationshipEntity, am.getMappedBy());
+                        Object field = am.getMappedByValue(relationshipEntity);
                         if (field == null) {
                             throw new IntegrityException(
                                     "Field cannot be null.\n" +
@@ -352,45 +486,62 @@ public class SessionImpl implements Session {
 
     @Override
     public <T> void load(T entity, String relationshipName) {
+        entity = (T) EntityProxy.unwrap(entity);
         if (!ReflectionUtils.doesClassContainField(entity.getClass(), relationshipName)) {
             throw new IntegrityException("Failed to load relationship: '" + relationshipName + "' in class: " + entity.getClass().getName());
         }
-        System.out.println("Trying to load: " + entity.getClass().getName() + "." + relationshipName);
+        log.debug("Trying to load: {}.{}", entity.getClass().getName(), relationshipName);
         Object field = ReflectionUtils.getFieldValue(entity, relationshipName);
         if (field != null) {
             if (!(field instanceof Lazy) || ((Lazy) field).isInitialized()) {
-                System.out.println(relationshipName + " already loaded.");
+                log.debug("{} already loaded.", relationshipName);
                 return;
             }
         }
         EntityMetadata metadata = entityPersisters.get(entity.getClass()).getEntityMetadata();
         AssociationMetadata associationMetadata = metadata.getAssociationMetadata().get(relationshipName);
-        System.out.println(metadata.getAssociationMetadata());
         assert associationMetadata != null;
         Class<?> relationshipClass = associationMetadata.getTargetEntity();
         EntityMetadata relationshipMetadata = entityPersisters.get(relationshipClass).getEntityMetadata();
 
+        if (field instanceof EntityProxy proxy) {
+            // the row brought the foreign key: the identity map first, a primary key select on a miss
+            LazyInitializer initializer = proxy.getLazyInitializer();
+            Object value = find(initializer.getEntityClass(), initializer.getId());
+            if (value != null) {
+                setReference(entity, relationshipName, associationMetadata, value);
+            }
+            return;
+        }
+
+        if (associationMetadata.getCollectionType() != AssociationMetadata.CollectionType.NONE
+                && associationMetadata.getBatchSize() > 1) {
+            loadBatch(entity, relationshipName, associationMetadata);
+            return;
+        }
+
         PairTargetStatements pairStatements = entityPersisters.get(entity.getClass()).getInheritanceStrategy().getPairStatement(entity, relationshipName);
 
         List<Object> entities = (List<Object>) entityPersisters.get(relationshipClass).findAll(relationshipClass, this, pairStatements);
+        countLoaded(entities);
         // singular entity loaded
         if (associationMetadata.getCollectionType() == AssociationMetadata.CollectionType.NONE) {
             if (entities.isEmpty()) {
                 return;
             } else if (entities.size() == 1) {
-                Object value = entities.get(0);
-                ReflectionUtils.setFieldValue(entity, relationshipName, value);
-                if (associationMetadata.getType() == AssociationMetadata.Type.ONE_TO_ONE) {
-                    // backref only possible for one to one
-                    System.out.println("setting field: " + associationMetadata.getMappedBy() + " in " + value);
-                    ReflectionUtils.setFieldValue(value, associationMetadata.getMappedBy(), entity);
-                }
+                setReference(entity, relationshipName, associationMetadata, entities.get(0));
                 return;
             } else {
                 throw new IntegrityException("Something unexpected happened");
             }
         }
         // plural entities loaded
+        setLoadedCollection(entity, relationshipName, metadata, associationMetadata, relationshipMetadata, entities);
+    }
+
+    private Collection<Object> setLoadedCollection(Object entity, String relationshipName, EntityMetadata metadata,
+                                     AssociationMetadata associationMetadata, EntityMetadata relationshipMetadata,
+                                     List<Object> entities) {
         Collection<Object> loaded = (Collection<Object>) associationMetadata.createCollection();
         for (Object value : entities) {
             // fill the relationship data
@@ -401,24 +552,438 @@ public class SessionImpl implements Session {
                         // this relationship called the load, so we backreference it
                         // this only is true if Collection type is NONE, cause it's not a collection and we are sure
                         // all the objects are already loaded (cause it's been called by it)
-                        System.out.println("setting field: " + relAssMetadata.getField() + " in " + value);
-                        ReflectionUtils.setFieldValue(value, relAssMetadata.getField(), entity);
+                        log.trace("setting field: {} in {}", relAssMetadata.getField(), value);
+                        relAssMetadata.setValue(value, entity);
                     }
                     continue;
                 }
-                ReflectionUtils.setFieldValue(value, relAssMetadata.getField(), relAssMetadata.createLazyCollection(this, value));
+                relAssMetadata.setValue(value, relAssMetadata.createLazyCollection(this, value));
             }
+            attachReferences(value);
             value = cachedEntities.replaceIfExistsAndAdd(value);
             loaded.add(value);
         }
-        ReflectionUtils.setFieldValue(entity, relationshipName, loaded);
+        associationMetadata.setValue(entity, loaded);
+        return loaded;
+    }
+
+    @Override
+    public <T> int sizeOf(T entity, String relationshipName) {
+        Object owner = EntityProxy.unwrap(entity);
+        AssociationMetadata associationMetadata = collectionMetadata(owner, relationshipName);
+        long count = targetStrategy(associationMetadata)
+                .count(this, ownerStatements(owner, relationshipName), new Object[0]);
+        return (int) Math.min(count, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public <T> boolean isEmpty(T entity, String relationshipName) {
+        Object owner = EntityProxy.unwrap(entity);
+        AssociationMetadata associationMetadata = collectionMetadata(owner, relationshipName);
+        return !targetStrategy(associationMetadata)
+                .exists(this, ownerStatements(owner, relationshipName), new Object[0]);
+    }
+
+    @Override
+    public <T> boolean contains(T entity, String relationshipName, Object element) {
+        Object owner = EntityProxy.unwrap(entity);
+        AssociationMetadata associationMetadata = collectionMetadata(owner, relationshipName);
+        if (!associationMetadata.getTargetEntity().isInstance(element)) {
+            return false;
+        }
+        // the id of a proxy is read without loading it
+        EntityMetadata targetMetadata = entityPersisters.get(associationMetadata.getTargetEntity()).getEntityMetadata();
+        StringBuilder condition = new StringBuilder();
+        List<Object> params = new ArrayList<>();
+        for (PropertyMetadata pm : targetMetadata.getIdColumns().values()) {
+            Object id = pm.getValue(element);
+            if (id == null) {
+                // not saved, cannot be in the database
+                return false;
+            }
+            condition.append(" AND ").append(TargetStatement.getTargetName()).append(".")
+                    .append(pm.getColumnName()).append(" = ?");
+            params.add(id);
+        }
+        // the element restricts the join, inner joins put it in every branch of the query
+        PairTargetStatements pairStatements = ownerStatements(owner, relationshipName);
+        TargetStatement join = pairStatements.getJoinStatements().get(0);
+        pairStatements.getJoinStatements().set(0, new TargetStatement(join.getStmt() + condition,
+                join.getTargetTableName(), join.getRootTableName()));
+        return targetStrategy(associationMetadata).exists(this, pairStatements, params.toArray());
+    }
+
+    @Override
+    public <T> Object elementAt(T entity, String relationshipName, int index) {
+        Object owner = EntityProxy.unwrap(entity);
+        AssociationMetadata associationMetadata = collectionMetadata(owner, relationshipName);
+        if (index < 0) {
+            return null;
+        }
+        Object value = targetStrategy(associationMetadata).findAt(associationMetadata.getTargetEntity(), this,
+                ownerStatements(owner, relationshipName), index);
+        if (value == null) {
+            return null;
+        }
+        countLoaded(List.of(value));
+        return manage(value, entityPersisters.get(value.getClass()).getEntityMetadata());
+    }
+
+    private AssociationMetadata collectionMetadata(Object entity, String relationshipName) {
+        EntityPersister persister = entityPersisters.get(entity.getClass());
+        AssociationMetadata associationMetadata = persister == null ? null
+                : persister.getEntityMetadata().getAssociationMetadata().get(relationshipName);
+        if (associationMetadata == null
+                || associationMetadata.getCollectionType() == AssociationMetadata.CollectionType.NONE) {
+            throw new IntegrityException("No collection relationship: '" + relationshipName + "' in class: "
+                    + entity.getClass().getName());
+        }
+        return associationMetadata;
+    }
+
+    private PairTargetStatements ownerStatements(Object entity, String relationshipName) {
+        return entityPersisters.get(entity.getClass()).getInheritanceStrategy().getPairStatement(entity, relationshipName);
+    }
+
+    private InheritanceStrategy targetStrategy(AssociationMetadata associationMetadata) {
+        return entityPersisters.get(associationMetadata.getTargetEntity()).getInheritanceStrategy();
+    }
+
+    private void setReference(Object entity, String relationshipName, AssociationMetadata associationMetadata,
+                              Object value) {
+        associationMetadata.setValue(entity, value);
+        cachedEntities.snapshotAssociation(entity, relationshipName);
+        if (associationMetadata.getType() == AssociationMetadata.Type.ONE_TO_ONE) {
+            // backref only possible for one to one
+            log.trace("setting field: {} in {}", associationMetadata.getMappedBy(), value);
+            associationMetadata.setMappedByValue(value, entity);
+        }
+    }
+
+    /**
+     * The entity an uninitialized proxy in the to-one field stands for, when the session already
+     * has it; null otherwise.
+     */
+    private Object cachedReference(Object entity, AssociationMetadata associationMetadata) {
+        if (!(associationMetadata.getValue(entity) instanceof EntityProxy proxy) || proxy.isInitialized()) {
+            return null;
+        }
+        LazyInitializer initializer = proxy.getLazyInitializer();
+        return cachedEntities.findById(initializer.getEntityClass(), initializer.getId());
+    }
+
+    /**
+     * Loads the collection together with the same uninitialized collection of up to batchSize - 1
+     * other owners of the class in the session, with one query.
+     */
+    private void loadBatch(Object entity, String relationshipName, AssociationMetadata associationMetadata) {
+        int batchSize = associationMetadata.getBatchSize();
+        List<Object> owners = new ArrayList<>();
+        owners.add(entity);
+        for (Object cached : cachedEntities) {
+            if (owners.size() >= batchSize) {
+                break;
+            }
+            if (cached != entity && cached.getClass() == entity.getClass()
+                    && associationMetadata.getValue(cached) instanceof Lazy lazy && !lazy.isInitialized()) {
+                owners.add(cached);
+            }
+        }
+        loadForOwners(owners, relationshipName, batchSize);
+        // the collection of the entity is counted by its wrapper
+        for (int i = 1; i < owners.size(); i++) {
+            statistics.collectionInitialized();
+        }
+    }
+
+    /**
+     * Loads the relationship of the owners (all of one class) with one query per {@code size}
+     * owners and sets it on each of them; returns the loaded entities. The owner ids are bound as
+     * parameters, a short batch repeats the last id so every batch has the same SQL.
+     */
+    private List<Object> loadForOwners(List<Object> owners, String relationshipName, int size) {
+        Class<?> ownerClass = owners.get(0).getClass();
+        EntityPersister ownerPersister = entityPersisters.get(ownerClass);
+        EntityMetadata metadata = ownerPersister.getEntityMetadata();
+        AssociationMetadata associationMetadata = metadata.getAssociationMetadata().get(relationshipName);
+        List<Object> result = new ArrayList<>();
+        if (associationMetadata.getCollectionType() == AssociationMetadata.CollectionType.NONE) {
+            // targets already in the session need no query
+            List<Object> missing = new ArrayList<>();
+            for (Object owner : owners) {
+                Object value = cachedReference(owner, associationMetadata);
+                if (value != null) {
+                    setReference(owner, relationshipName, associationMetadata, value);
+                    result.add(value);
+                } else {
+                    missing.add(owner);
+                }
+            }
+            if (missing.isEmpty()) {
+                return result;
+            }
+            owners = missing;
+        }
+        Class<?> relationshipClass = associationMetadata.getTargetEntity();
+        EntityPersister relationshipPersister = entityPersisters.get(relationshipClass);
+        EntityMetadata relationshipMetadata = relationshipPersister.getEntityMetadata();
+
+        Collection<PropertyMetadata> idColumns = metadata.getIdColumns().values();
+        List<String> ownerColumns = new ArrayList<>();
+        for (PropertyMetadata pm : idColumns) {
+            ownerColumns.add(AssociationMetadata.alias + "." + pm.getColumnName());
+        }
+        PairTargetStatements pairStatements = ownerPersister.getInheritanceStrategy()
+                .getBatchPairStatement(relationshipName, size);
+
+        for (int from = 0; from < owners.size(); from += size) {
+            List<Object> batch = owners.subList(from, Math.min(from + size, owners.size()));
+            List<Object> params = new ArrayList<>();
+            Map<List<Object>, Object> ownersById = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                Object owner = batch.get(Math.min(i, batch.size() - 1));
+                List<Object> id = new ArrayList<>();
+                for (PropertyMetadata pm : idColumns) {
+                    id.add(pm.getValue(owner));
+                }
+                params.addAll(id);
+                ownersById.put(ownerKey(id), owner);
+            }
+
+            List<Object[]> rows = relationshipPersister.getInheritanceStrategy()
+                    .findAllByOwners(relationshipClass, this, pairStatements, ownerColumns, params.toArray());
+
+            Map<Object, List<Object>> byOwner = new IdentityHashMap<>();
+            for (Object owner : batch) {
+                byOwner.put(owner, new ArrayList<>());
+            }
+            for (Object[] row : rows) {
+                Object owner = ownersById.get(ownerKey(Arrays.asList(row).subList(1, row.length)));
+                if (owner != null) {
+                    byOwner.get(owner).add(row[0]);
+                }
+            }
+            for (Object owner : batch) {
+                List<Object> entities = byOwner.get(owner);
+                countLoaded(entities);
+                if (associationMetadata.getCollectionType() != AssociationMetadata.CollectionType.NONE) {
+                    result.addAll(setLoadedCollection(owner, relationshipName, metadata, associationMetadata,
+                            relationshipMetadata, entities));
+                } else if (entities.size() > 1) {
+                    throw new IntegrityException("Something unexpected happened");
+                } else if (!entities.isEmpty()) {
+                    Object value = manage(entities.get(0), relationshipMetadata);
+                    setReference(owner, relationshipName, associationMetadata, value);
+                    result.add(value);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Puts a loaded entity into the session with lazy collections, or returns the instance
+     * the session already has.
+     */
+    private Object manage(Object value, EntityMetadata metadata) {
+        for (AssociationMetadata am : metadata.getAssociationMetadata().values()) {
+            if (am.getCollectionType() != AssociationMetadata.CollectionType.NONE) {
+                am.setValue(value, am.createLazyCollection(this, value));
+            }
+        }
+        attachReferences(value);
+        return cachedEntities.replaceIfExistsAndAdd(value);
+    }
+
+    /**
+     * Attaches the proxies the row left in the to-one fields of a loaded entity to the session.
+     * A proxy of an entity the session already has is replaced by the entity, entities
+     * referencing the same entity otherwise share one proxy.
+     */
+    private void attachReferences(Object entity) {
+        EntityMetadata metadata = entityPersisters.get(entity.getClass()).getEntityMetadata();
+        for (AssociationMetadata am : metadata.getAssociationMetadata().values()) {
+            if (am.getCollectionType() != AssociationMetadata.CollectionType.NONE
+                    || !(am.getValue(entity) instanceof EntityProxy proxy)
+                    || proxy.getLazyInitializer().getSession() != null) {
+                continue;
+            }
+            LazyInitializer initializer = proxy.getLazyInitializer();
+            Object cached = cachedEntities.findById(initializer.getEntityClass(), initializer.getId());
+            if (cached != null) {
+                am.setValue(entity, cached);
+                continue;
+            }
+            Object shared = proxies.putIfAbsent(EntityKey.of(initializer.getEntityClass(), initializer.getId()), proxy);
+            if (shared != null) {
+                am.setValue(entity, shared);
+            } else {
+                initializer.setSession(this);
+            }
+        }
+    }
+
+    /**
+     * Loads the fetch paths of the query for all the entities it returned, one level of a path
+     * after the other: {@code "department.manager"} loads the departments of every entity and
+     * then the managers of every department. Each relationship is loaded with one query per
+     * FETCH_BATCH_SIZE owners of a class, restricted to the ids of the owners; fewer owners use the
+     * smallest of FETCH_BATCH_SIZES that holds them.
+     */
+    private void fetch(List<?> entities, List<String> paths) {
+        for (String path : paths) {
+            List<Object> owners = new ArrayList<>(entities);
+            for (String relationshipName : path.split("\\.")) {
+                List<Object> next = new ArrayList<>();
+                Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+                for (List<Object> group : groupByClass(owners).values()) {
+                    EntityMetadata metadata = entityPersisters.get(group.get(0).getClass()).getEntityMetadata();
+                    AssociationMetadata am = metadata.getAssociationMetadata().get(relationshipName);
+                    if (am == null) {
+                        throw new IntegrityException("Failed to fetch relationship: '" + relationshipName
+                                + "' of path: '" + path + "' in class: " + group.get(0).getClass().getName());
+                    }
+                    List<Object> toLoad = new ArrayList<>();
+                    for (Object owner : group) {
+                        Object value = am.getValue(owner);
+                        if (value == null || value instanceof Lazy lazy && !lazy.isInitialized()) {
+                            toLoad.add(owner);
+                        } else if (value instanceof Collection<?> collection) {
+                            next.addAll(collection);
+                        } else {
+                            next.add(EntityProxy.unwrap(value));
+                        }
+                    }
+                    if (!toLoad.isEmpty()) {
+                        next.addAll(loadForOwners(toLoad, relationshipName, fetchBatchSize(toLoad.size())));
+                    }
+                }
+                owners = new ArrayList<>();
+                for (Object value : next) {
+                    if (seen.add(value)) {
+                        owners.add(value);
+                    }
+                }
+                if (owners.isEmpty()) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private static int fetchBatchSize(int owners) {
+        for (int size : FETCH_BATCH_SIZES) {
+            if (owners <= size) {
+                return size;
+            }
+        }
+        return FETCH_BATCH_SIZE;
+    }
+
+    /**
+     * Id values as read from the database and from the entity compare equal: integral ids as long.
+     */
+    private static List<Object> ownerKey(List<Object> id) {
+        List<Object> key = new ArrayList<>(id.size());
+        for (Object value : id) {
+            key.add(value instanceof Long || value instanceof Integer || value instanceof Short
+                    ? ((Number) value).longValue()
+                    : value);
+        }
+        return key;
+    }
+
+    @Override
+    public <T> int updateWhere(QuerySpec<T> querySpec, Map<String, Object> assignments) {
+        Class<T> entityClass = querySpec.getEntityType();
+        EntityPersister persister = bulkPersister(entityClass);
+        List<Object[]> matched = cachedIds(entityClass);
+        int updated = persister.updateWhere(querySpec, assignments, this, matched);
+        statistics.entitiesUpdated(entityClass, updated);
+        evict(entityClass, matched);
+        return updated;
+    }
+
+    @Override
+    public <T> int deleteWhere(QuerySpec<T> querySpec) {
+        Class<T> entityClass = querySpec.getEntityType();
+        EntityPersister persister = bulkPersister(entityClass);
+        List<Object[]> matched = cachedIds(entityClass);
+        int deleted = persister.deleteWhere(querySpec, this, matched);
+        statistics.entitiesDeleted(entityClass, deleted);
+        evict(entityClass, matched);
+        return deleted;
+    }
+
+    /**
+     * Bulk statements see the pending changes: they are flushed first and become part of the
+     * transaction like on commit.
+     */
+    private EntityPersister bulkPersister(Class<?> entityClass) {
+        if (readOnly) {
+            throw new IntegrityException("Cannot execute a bulk update in a read-only session");
+        }
+        EntityPersister persister = entityPersisters.get(entityClass);
+        if (persister == null) {
+            throw new IntegrityException(
+                    "Could not find mapper for class: " + entityClass.getName()
+            );
+        }
+        flush();
+        cachedEntities.addAll(newEntities);
+        newEntities.clear();
+        dirtyEntities.clear();
+        cachedEntities.removeAll(removedEntities);
+        removedEntities.clear();
+        return persister;
+    }
+
+    /**
+     * List for the ids of the rows a bulk statement matches, or null when the session holds no
+     * instance of the class and there is nothing to evict.
+     */
+    private List<Object[]> cachedIds(Class<?> entityClass) {
+        for (Object entity : cachedEntities) {
+            if (entityClass.isInstance(entity)) {
+                return new ArrayList<>();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The database no longer matches the cached instances of the matched rows; they are detached
+     * and the next find loads them again. Other instances of the class stay managed.
+     */
+    private void evict(Class<?> entityClass, List<Object[]> matched) {
+        if (matched == null || matched.isEmpty()) {
+            return;
+        }
+        Collection<PropertyMetadata> idColumns = entityPersisters.get(entityClass).getEntityMetadata()
+                .getIdColumns().values();
+        Set<List<Object>> keys = new HashSet<>();
+        for (Object[] id : matched) {
+            keys.add(ownerKey(Arrays.asList(id)));
+        }
+        cachedEntities.removeIf(entity -> {
+            if (!entityClass.isInstance(entity)) {
+                return false;
+            }
+            List<Object> id = new ArrayList<>(idColumns.size());
+            for (PropertyMetadata pm : idColumns) {
+                id.add(pm.getValue(entity));
+            }
+            return keys.contains(ownerKey(id));
+        });
     }
 
     @Override
     public void commit() {
         flush();
         try {
+            long start = System.nanoTime();
             jdbcExecutor.commit();  // commit
+            statistics.committed(System.nanoTime() - start);
             cachedEntities.addAll(newEntities);
             newEntities.clear(); // clear after successful rollback
             dirtyEntities.clear();
@@ -434,7 +999,9 @@ public class SessionImpl implements Session {
     @Override
     public void rollback() {
         try {
+            long start = System.nanoTime();
             jdbcExecutor.rollback(); // rollback
+            statistics.rolledBack(System.nanoTime() - start);
             newEntities.clear(); // clear after successful rollback
             dirtyEntities.clear();
             removedEntities.clear();
@@ -448,17 +1015,109 @@ public class SessionImpl implements Session {
     @Override
     public void flush() {
         // just add to database without commiting it
-        System.out.println("Object to add: " + newEntities.size());
+        if (readOnly && !(newEntities.isEmpty() && dirtyEntities.isEmpty() && removedEntities.isEmpty())) {
+            throw new IntegrityException("Cannot flush changes in a read-only session");
+        }
+        long start = System.nanoTime();
+        if (log.isDebugEnabled()) {
+            log.debug("Object to add: {}", newEntities.size());
+        }
+        // newEntities iterates class by class in dependency order, so each run is one class
+        List<Object> run = new ArrayList<>();
         for (Object entity : newEntities) {
-            System.out.println("NOW INSERTING: " + entity);
-            entityPersisters.get(entity.getClass()).insert(entity, this);
+            if (!run.isEmpty() && run.get(0).getClass() != entity.getClass()) {
+                insertRun(run);
+                run = new ArrayList<>();
+            }
+            run.add(entity);
+        }
+        if (!run.isEmpty()) {
+            insertRun(run);
         }
-        for (Object entity : removedEntities) {
-            entityPersisters.get(entity.getClass()).delete(entity, this);
+        // referencing classes first, so no row is deleted while another still points to it
+        List<List<Object>> deletes = new ArrayList<>(groupByClass(removedEntities).values());
+        deletes.sort(Comparator.comparingInt((List<Object> entities) -> entityOrder.indexOf(entities.get(0).getClass()))
+                .reversed());
+        for (List<Object> entities : deletes) {
+            entityPersisters.get(entities.get(0).getClass()).deleteAll(entities, this);
+            statistics.entitiesDeleted(entities.get(0).getClass(), entities.size());
         }
-        for (Object entity : dirtyEntities){
-            entityPersisters.get(entity.getClass()).update(entity, this);
+        if (!readOnly) {
+            flushUpdates();
         }
+        statistics.flushed(System.nanoTime() - start);
+    }
+
+    /**
+     * Managed entities are compared with their snapshots and only the changed columns are written
+     * (of the enhanced entities only the ones that reported a write are visited);
+     * update() of an entity the session does not manage still writes all of its columns. The many
+     * to many tables are rewritten for the entities passed to update().
+     */
+    private void flushUpdates() {
+        List<Object> detached = new ArrayList<>();
+        List<Object> withAssociations = new ArrayList<>();
+        for (Object entity : dirtyEntities) {
+            if (cachedEntities.getSnapshot(entity) == null) {
+                detached.add(entity);
+            } else {
+                // update() may have set associations past the enhanced setters
+                DirtyTracking.markAll(entity);
+                withAssociations.add(entity);
+            }
+        }
+        for (List<Object> entities : groupByClass(detached).values()) {
+            entityPersisters.get(entities.get(0).getClass()).updateAll(entities, this);
+            statistics.entitiesUpdated(entities.get(0).getClass(), entities.size());
+        }
+
+        Map<Class<?>, List<Object>> managed = new LinkedHashMap<>();
+        Map<Class<?>, List<Object[]>> snapshots = new HashMap<>();
+        List<Object> candidates = new ArrayList<>(cachedEntities.plainEntities());
+        candidates.addAll(writtenEntities);
+        writtenEntities.clear();
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Object entity : candidates) {
+            Object[] snapshot = cachedEntities.getSnapshot(entity);
+            if (snapshot == null || !visited.add(entity) || removedEntities.contains(entity)
+                    || entity instanceof DirtyTrackable trackable && trackable.$$orm_getDirty() == null) {
+                continue;
+            }
+            managed.computeIfAbsent(entity.getClass(), k -> new ArrayList<>()).add(entity);
+            snapshots.computeIfAbsent(entity.getClass(), k -> new ArrayList<>()).add(snapshot);
+        }
+        for (Map.Entry<Class<?>, List<Object>> entry : managed.entrySet()) {
+            int updated = entityPersisters.get(entry.getKey()).updateDirty(entry.getValue(), snapshots.get(entry.getKey()), this);
+            if (updated > 0) {
+                statistics.entitiesUpdated(entry.getKey(), updated);
+            }
+        }
+
+        for (List<Object> entities : groupByClass(withAssociations).values()) {
+            entityPersisters.get(entities.get(0).getClass()).updateAssociations(entities, this);
+        }
+    }
+
+    private void insertRun(List<Object> run) {
+        entityPersisters.get(run.get(0).getClass()).insertAll(run, this);
+        statistics.entitiesInserted(run.get(0).getClass(), run.size());
+    }
+
+    private void countLoaded(List<?> entities) {
+        if (!statistics.isEnabled()) {
+            return;
+        }
+        for (Object entity : entities) {
+            statistics.entitiesLoaded(entity.getClass(), 1);
+        }
+    }
+
+    private Map<Class<?>, List<Object>> groupByClass(Collection<Object> entities) {
+        Map<Class<?>, List<Object>> grouped = new LinkedHashMap<>();
+        for (Object entity : entities) {
+            grouped.computeIfAbsent(entity.getClass(), k -> new ArrayList<>()).add(entity);
+        }
+        return grouped;
     }
 
     @Override
@@ -473,17 +1132,37 @@ public class SessionImpl implements Session {
 
     @Override
     public void close() {
-        System.out.println("Closing session");
+        log.debug("Closing session");
+        if (isOpen) {
+            statistics.sessionClosed();
+        }
         try{
             jdbcExecutor.rollback(); // default rollback on closing
             newEntities.clear(); // clear after successful rollback
             dirtyEntities.clear();
             removedEntities.clear();
             jdbcExecutor.setAutoCommit(true); // end transactions
-            jdbcExecutor.close();
-            isOpen = false;
         }catch(Exception e){
-            System.err.println("Error closing connection");
+            log.error("Error closing connection", e);
+        } finally {
+            // managed entities outlive the session, they must stop reporting writes to it
+            cachedEntities.clear();
+            writtenEntities.clear();
+            // always hand the connection back, even if the rollback failed
+            try {
+                jdbcExecutor.close();
+            } catch (SQLException e) {
+                log.error("Error closing connection", e);
+            }
+            if (readExecutor != null) {
+                try {
+                    readExecutor.close();
+                } catch (SQLException e) {
+                    log.error("Error closing replica connection", e);
+                }
+                readExecutor = null;
+            }
+            isOpen = false;
         }
 
     }
@@ -495,6 +1174,6 @@ public class SessionImpl implements Session {
 
     @Override
     public JdbcExecutor getJdbcExecutor() {
-        return jdbcExecutor;
+        return routedExecutor != null ? routedExecutor : jdbcExecutor;
     }
 }
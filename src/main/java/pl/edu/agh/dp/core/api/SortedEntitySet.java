@@ -1,73 +1,51 @@
 package pl.edu.agh.dp.core.api;
 
-import pl.edu.agh.dp.core.mapping.AssociationMetadata;
-import pl.edu.agh.dp.core.mapping.EntityMetadata;
+import pl.edu.agh.dp.core.exceptions.IntegrityException;
 import pl.edu.agh.dp.core.persister.EntityPersister;
 
 import java.util.*;
 
+/**
+ * New entities waiting for insert, iterated class by class in the {@link EntityOrder} of the factory.
+ */
 public class SortedEntitySet<T> implements Set<T> {
-    private final Map<Class<?>, Set<T>> entitySets;
-    private final List<Class<?>> entityOrder;
+    private final EntityOrder entityOrder;
+    // indexed like entityOrder
+    private final Set<T>[] entitySets;
+    private int size;
 
     public SortedEntitySet(Map<Class<?>, EntityPersister> entityPersisters) {
-        entityOrder = new ArrayList<>();
-        entitySets = new HashMap<>();
-        createEntityOrder(entityPersisters);
+        this(EntityOrder.of(entityPersisters));
     }
 
-    private void createEntityOrder(Map<Class<?>, EntityPersister> entityPersisters) {
-        Deque<EntityMetadata> stack = new ArrayDeque<>();
-        for (EntityPersister entityPersister : entityPersisters.values()) {
-            stack.addLast(entityPersister.getEntityMetadata());
-        }
-        while (!stack.isEmpty()) {
-            EntityMetadata entityMetadata = stack.poll();
-            List<AssociationMetadata> associationMetadata = entityMetadata.getAssociationMetadata()
-                    .values()
-                    .stream()
-                    .filter((am) -> {
-                        boolean isItself = am.getTargetEntity() == entityMetadata.getEntityClass();
-                        boolean isBefore = true;
-                        if (am.getHasForeignKey()) {
-                            Class<?> clazz = am.getTargetEntity();
-                            EntityMetadata targetMeta = entityPersisters.get(clazz).getEntityMetadata();
-                            List<EntityMetadata> c = targetMeta.getInheritanceMetadata().getAllChildren();
-                            Set<Class<?>> classSet = new HashSet<>(){{add(clazz);}};
-                            for (var e : c) {
-                                classSet.add(e.getEntityClass());
-                            }
-                            if (!new HashSet<>(entityOrder).containsAll(classSet)) {
-                                isBefore = false;
-                            }
-                        }
-                        return !(isItself || isBefore);
-                    }) // filter itself and added relationships
-                    .toList();
-            // no Associations
-            if (associationMetadata.isEmpty()) {
-                entityOrder.add(entityMetadata.getEntityClass());
-                entitySets.put(entityMetadata.getEntityClass(), new LinkedHashSet<>());
-            } else {
-                // add back
-                stack.add(entityMetadata);
-            }
+    @SuppressWarnings("unchecked")
+    public SortedEntitySet(EntityOrder entityOrder) {
+        this.entityOrder = entityOrder;
+        this.entitySets = new Set[entityOrder.size()];
+        for (int i = 0; i < entitySets.length; i++) {
+            entitySets[i] = new LinkedHashSet<>();
         }
     }
 
+    private Set<T> setOf(Object o) {
+        int index = entityOrder.indexOf(o.getClass());
+        return index >= 0 ? entitySets[index] : null;
+    }
+
     @Override
     public int size() {
-        return entitySets.values().stream().mapToInt(Set::size).sum();
+        return size;
     }
 
     @Override
     public boolean isEmpty() {
-        return entitySets.values().stream().mapToInt(Set::size).sum() == 0;
+        return size == 0;
     }
 
     @Override
     public boolean contains(Object o) {
-        return entitySets.containsKey(o.getClass()) && entitySets.get(o.getClass()).contains(o);
+        Set<T> set = setOf(o);
+        return set != null && set.contains(o);
     }
 
     @Override
@@ -78,10 +56,9 @@ public class SortedEntitySet<T> implements Set<T> {
             private Iterator<T> currentIterator = getNextIterator();
 
             private Iterator<T> getNextIterator() {
-                while (classIndex < entityOrder.size()) {
-                    Class<?> clazz = entityOrder.get(classIndex++);
-                    Set<T> set = entitySets.get(clazz);
-                    if (set != null && !set.isEmpty()) {
+                while (classIndex < entitySets.length) {
+                    Set<T> set = entitySets[classIndex++];
+                    if (!set.isEmpty()) {
                         return set.iterator();
                     }
                 }
@@ -114,7 +91,7 @@ public class SortedEntitySet<T> implements Set<T> {
 
     @Override
     public Object[] toArray() {
-        Object[] result = new Object[size()];
+        Object[] result = new Object[size];
         int i = 0;
         for (T element : this) {
             result[i++] = element;
@@ -124,7 +101,7 @@ public class SortedEntitySet<T> implements Set<T> {
 
     @Override
     public <T1> T1[] toArray(T1[] a) {
-        List<T> list = new ArrayList<>();
+        List<T> list = new ArrayList<>(size);
         for (T element : this) {
             list.add(element);
         }
@@ -134,12 +111,25 @@ public class SortedEntitySet<T> implements Set<T> {
 
     @Override
     public boolean add(T t) {
-        return entitySets.get(t.getClass()).add(t);
+        Set<T> set = setOf(t);
+        if (set == null) {
+            throw new IntegrityException("Could not found mapper for class: " + t.getClass().getName());
+        }
+        if (!set.add(t)) {
+            return false;
+        }
+        size++;
+        return true;
     }
 
     @Override
     public boolean remove(Object o) {
-        return entitySets.containsKey(o.getClass()) && entitySets.get(o.getClass()).remove(o);
+        Set<T> set = setOf(o);
+        if (set == null || !set.remove(o)) {
+            return false;
+        }
+        size--;
+        return true;
     }
 
     @Override
@@ -154,27 +144,48 @@ public class SortedEntitySet<T> implements Set<T> {
 
     @Override
     public boolean addAll(Collection<? extends T> c) {
+        boolean changed = false;
         for (T t : c) {
-            entitySets.get(t.getClass()).add(t);
+            changed |= add(t);
         }
-        return false;
+        return changed;
     }
 
     @Override
     public boolean retainAll(Collection<?> c) {
-        entitySets.values().forEach(entitySet -> entitySet.retainAll(c));
-        return false;
+        boolean changed = false;
+        for (Set<T> set : entitySets) {
+            changed |= set.retainAll(c);
+        }
+        recount();
+        return changed;
     }
 
     @Override
     public boolean removeAll(Collection<?> c) {
-        entitySets.values().forEach(entitySet -> entitySet.removeAll(c));
-        return entitySets.values().stream().allMatch(Set::isEmpty);
+        boolean changed = false;
+        for (Object o : c) {
+            changed |= remove(o);
+        }
+        return changed;
     }
 
     @Override
     public void clear() {
-        entitySets.values().forEach(Set::clear);
+        if (size == 0) {
+            return;
+        }
+        for (Set<T> set : entitySets) {
+            set.clear();
+        }
+        size = 0;
+    }
+
+    private void recount() {
+        size = 0;
+        for (Set<T> set : entitySets) {
+            size += set.size();
+        }
     }
 
     @Override
@@ -182,14 +193,14 @@ public class SortedEntitySet<T> implements Set<T> {
         StringBuilder sb = new StringBuilder();
         sb.append(getClass().getSimpleName()).append(" {\n");
 
-        for (Class<?> clazz : entityOrder) {
+        for (int i = 0; i < entitySets.length; i++) {
             sb.append("  ")
-                    .append(clazz.getSimpleName())
+                    .append(entityOrder.get(i).getSimpleName())
                     .append(":");
 
-            Set<T> set = entitySets.get(clazz);
+            Set<T> set = entitySets[i];
 
-            if (set == null || set.isEmpty()) {
+            if (set.isEmpty()) {
                 sb.append(" []\n");
             } else {
                 sb.append(" [\n");
@@ -0,0 +1,36 @@
+package pl.edu.agh.dp.core.api;
+
+import pl.edu.agh.dp.core.finder.QuerySpec;
+
+import java.util.stream.Stream;
+
+/**
+ * Session without a persistence context, for imports and other bulk jobs. Nothing is cached,
+ * loaded entities get no lazy collections and no associations are cascaded - every call writes
+ * only the entity it was given. Consecutive writes of the same kind and class are sent as one
+ * JDBC batch; the batch is executed when it is full, before any other call and on {@link #flush()}.
+ * Generated ids are set on the entities when their batch is executed.
+ * AutoCloseable to be able to use in try ( ... )
+ */
+public interface StatelessSession extends AutoCloseable {
+
+    <T> void insert(T entity);
+    <T> void update(T entity);
+    <T> void delete(T entity);
+    <T> T get(Class<T> entityClass, Object id);
+
+    /**
+     * Streams entities straight from an open result set; must be closed, e.g. with try ( ... ).
+     */
+    <T> Stream<T> stream(Class<T> entityClass);
+    <T> Stream<T> stream(QuerySpec<T> querySpec);
+
+    /**
+     * Executes the pending batch without committing it.
+     */
+    void flush();
+    void commit();
+    void rollback();
+    void close();
+    boolean isOpen();
+}
@@ -0,0 +1,213 @@
+package pl.edu.agh.dp.core.api;
+
+import pl.edu.agh.dp.core.exceptions.IntegrityException;
+import pl.edu.agh.dp.core.finder.QuerySpec;
+import pl.edu.agh.dp.core.jdbc.JdbcExecutor;
+import pl.edu.agh.dp.core.logging.OrmLogger;
+import pl.edu.agh.dp.core.persister.EntityPersister;
+import pl.edu.agh.dp.core.persister.PersisterSession;
+import pl.edu.agh.dp.core.stats.Statistics;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class StatelessSessionImpl implements StatelessSession, PersisterSession {
+
+    private static final OrmLogger log = OrmLogger.getLogger(StatelessSessionImpl.class);
+
+    private enum Operation { INSERT, UPDATE, DELETE }
+
+    private final JdbcExecutor jdbcExecutor;
+    private final Map<Class<?>, EntityPersister> entityPersisters;
+    private final Statistics statistics;
+    private final int batchSize;
+
+    // pending batch: entities of one class waiting for the same operation
+    private Operation pendingOperation;
+    private Class<?> pendingClass;
+    private List<Object> pending = new ArrayList<>();
+    private boolean isOpen = false;
+
+    public StatelessSessionImpl(JdbcExecutor jdbcExecutor, Map<Class<?>, EntityPersister> entityPersisters,
+                                Statistics statistics, int batchSize) {
+        this.jdbcExecutor = jdbcExecutor;
+        this.entityPersisters = entityPersisters;
+        this.statistics = statistics;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Override
+    public <T> void insert(T entity) {
+        enqueue(Operation.INSERT, entity);
+    }
+
+    @Override
+    public <T> void update(T entity) {
+        enqueue(Operation.UPDATE, entity);
+    }
+
+    @Override
+    public <T> void delete(T entity) {
+        enqueue(Operation.DELETE, entity);
+    }
+
+    private void enqueue(Operation operation, Object entity) {
+        persister(entity.getClass());
+        if (operation != pendingOperation || entity.getClass() != pendingClass) {
+            flush();
+            pendingOperation = operation;
+            pendingClass = entity.getClass();
+        }
+        pending.add(entity);
+        if (pending.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    @Override
+    public <T> T get(Class<T> entityClass, Object id) {
+        flush();
+        Object entity = persister(entityClass).findById(id, this);
+        if (entity == null) {
+            return null;
+        }
+        statistics.entitiesLoaded(entity.getClass(), 1);
+        return entityClass.cast(entity);
+    }
+
+    @Override
+    public <T> Stream<T> stream(Class<T> entityClass) {
+        return stream(QuerySpec.of(entityClass));
+    }
+
+    @Override
+    public <T> Stream<T> stream(QuerySpec<T> querySpec) {
+        flush();
+        Class<T> entityClass = querySpec.getEntityType();
+        return persister(entityClass).streamBy(entityClass, this, querySpec).map(entity -> {
+            statistics.entitiesLoaded(entity.getClass(), 1);
+            return entity;
+        });
+    }
+
+    private EntityPersister persister(Class<?> entityClass) {
+        EntityPersister persister = entityPersisters.get(entityClass);
+        if (persister == null) {
+            throw new IntegrityException(
+                    "Could not find mapper for class: " + entityClass.getName()
+            );
+        }
+        return persister;
+    }
+
+    @Override
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<Object> entities = pending;
+        Class<?> entityClass = pendingClass;
+        // a failed batch is not retried on the next call
+        pending = new ArrayList<>();
+        EntityPersister persister = persister(entityClass);
+        switch (pendingOperation) {
+            case INSERT -> {
+                persister.insertAll(entities, this);
+                statistics.entitiesInserted(entityClass, entities.size());
+            }
+            case UPDATE -> {
+                persister.updateAll(entities, this);
+                statistics.entitiesUpdated(entityClass, entities.size());
+            }
+            case DELETE -> {
+                persister.deleteAll(entities, this);
+                statistics.entitiesDeleted(entityClass, entities.size());
+            }
+        }
+        statistics.flushed(System.nanoTime() - start);
+    }
+
+    @Override
+    public void commit() {
+        flush();
+        try {
+            long start = System.nanoTime();
+            jdbcExecutor.commit();
+            statistics.committed(System.nanoTime() - start);
+            jdbcExecutor.setAutoCommit(true); // end transaction
+            jdbcExecutor.setAutoCommit(false); // begin transaction
+        } catch (SQLException e) {
+            throw new IntegrityException(e.getMessage());
+        }
+    }
+
+    @Override
+    public void rollback() {
+        try {
+            pending.clear();
+            long start = System.nanoTime();
+            jdbcExecutor.rollback();
+            statistics.rolledBack(System.nanoTime() - start);
+            jdbcExecutor.setAutoCommit(true);
+            jdbcExecutor.setAutoCommit(false);
+        } catch (SQLException e) {
+            throw new IntegrityException(e.getMessage());
+        }
+    }
+
+    public void begin() {
+        try {
+            jdbcExecutor.setAutoCommit(false);
+            isOpen = true;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        log.debug("Closing stateless session");
+        if (isOpen) {
+            statistics.sessionClosed();
+        }
+        try {
+            // like Session, whatever was not committed is rolled back
+            pending.clear();
+            jdbcExecutor.rollback();
+            jdbcExecutor.setAutoCommit(true);
+        } catch (Exception e) {
+            log.error("Error closing connection", e);
+        } finally {
+            try {
+                jdbcExecutor.close();
+            } catch (SQLException e) {
+                log.error("Error closing connection", e);
+            }
+            isOpen = false;
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return isOpen;
+    }
+
+    @Override
+    public JdbcExecutor getJdbcExecutor() {
+        return jdbcExecutor;
+    }
+
+    @Override
+    public Map<Class<?>, EntityPersister> getEntityPersisters() {
+        return entityPersisters;
+    }
+
+    @Override
+    public Statistics getStatistics() {
+        return statistics;
+    }
+}
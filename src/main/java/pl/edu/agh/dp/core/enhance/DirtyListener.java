@@ -0,0 +1,11 @@
+package pl.edu.agh.dp.core.enhance;
+
+/**
+ * Told about the first write to a {@link DirtyTrackable} entity since its bits were cleared. The
+ * session managing the entity registers itself, so flush visits only the entities that were written.
+ */
+@FunctionalInterface
+public interface DirtyListener {
+
+    void written(Object entity);
+}
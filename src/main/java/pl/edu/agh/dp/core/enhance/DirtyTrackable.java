@@ -0,0 +1,24 @@
+package pl.edu.agh.dp.core.enhance;
+
+/**
+ * Implemented by entity classes rewritten by {@link EntityEnhancer}: every field write made by the
+ * class sets the bit of the field, so flush only looks at the entities (and columns) that were written.
+ * The methods are generated, entity code does not implement them.
+ */
+public interface DirtyTrackable {
+
+    /**
+     * Bits of the fields written since the last clear, indexed as in {@link DirtyTracking#fieldBits};
+     * null when nothing was written.
+     */
+    long[] $$orm_getDirty();
+
+    void $$orm_setDirty(long[] dirty);
+
+    /**
+     * Listener of the session managing the entity, null when it is not managed.
+     */
+    DirtyListener $$orm_getOwner();
+
+    void $$orm_setOwner(DirtyListener owner);
+}
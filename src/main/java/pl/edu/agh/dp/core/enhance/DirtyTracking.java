@@ -0,0 +1,136 @@
+package pl.edu.agh.dp.core.enhance;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runtime side of the enhanced entities: the write barrier called by the rewritten classes and
+ * the lookups flush uses. Entities that were not enhanced are simply not {@link DirtyTrackable},
+ * the session then compares all of their columns with the snapshot.
+ */
+public final class DirtyTracking {
+
+    // static method of the enhanced classes listing the tracked fields by bit
+    static final String FIELDS_METHOD = "$$orm_fields";
+
+    // every field counts as written; set when the ORM writes a field past the barrier
+    private static final long[] ALL = new long[0];
+
+    private static final ClassValue<Map<String, Integer>> FIELD_BITS = new ClassValue<>() {
+        @Override
+        protected Map<String, Integer> computeValue(Class<?> type) {
+            if (!DirtyTrackable.class.isAssignableFrom(type)) {
+                return null;
+            }
+            try {
+                Method fields = type.getMethod(FIELDS_METHOD);
+                String names = (String) fields.invoke(null);
+                Map<String, Integer> bits = new HashMap<>();
+                if (!names.isEmpty()) {
+                    String[] split = names.split(",");
+                    for (int i = 0; i < split.length; i++) {
+                        bits.put(split[i], i);
+                    }
+                }
+                return Collections.unmodifiableMap(bits);
+            } catch (ReflectiveOperationException e) {
+                return null;
+            }
+        }
+    };
+
+    private DirtyTracking() {
+    }
+
+    /**
+     * Write barrier, called after the enhanced class wrote the field with the bit.
+     */
+    public static void mark(Object entity, int bit) {
+        DirtyTrackable trackable = (DirtyTrackable) entity;
+        long[] dirty = trackable.$$orm_getDirty();
+        if (dirty == ALL) {
+            return;
+        }
+        int word = bit >>> 6;
+        if (dirty == null) {
+            dirty = new long[word + 1];
+            trackable.$$orm_setDirty(dirty);
+            written(trackable);
+        } else if (dirty.length <= word) {
+            dirty = Arrays.copyOf(dirty, word + 1);
+            trackable.$$orm_setDirty(dirty);
+        }
+        dirty[word] |= 1L << bit;
+    }
+
+    /**
+     * Marks every field of the entity as written, for writes that do not go through the barrier
+     * (associations set by the session). No-op for entities that are not enhanced.
+     */
+    public static void markAll(Object entity) {
+        if (entity instanceof DirtyTrackable trackable) {
+            boolean clean = trackable.$$orm_getDirty() == null;
+            trackable.$$orm_setDirty(ALL);
+            if (clean) {
+                written(trackable);
+            }
+        }
+    }
+
+    private static void written(DirtyTrackable trackable) {
+        DirtyListener owner = trackable.$$orm_getOwner();
+        if (owner != null) {
+            owner.written(trackable);
+        }
+    }
+
+    /**
+     * Registers the session told about the writes to the entity; no-op for entities that are
+     * not enhanced.
+     */
+    public static void attach(Object entity, DirtyListener owner) {
+        if (entity instanceof DirtyTrackable trackable) {
+            trackable.$$orm_setOwner(owner);
+        }
+    }
+
+    /**
+     * Unregisters the session, unless another one took the entity over since.
+     */
+    public static void detach(Object entity, DirtyListener owner) {
+        if (entity instanceof DirtyTrackable trackable && trackable.$$orm_getOwner() == owner) {
+            trackable.$$orm_setOwner(null);
+        }
+    }
+
+    public static void clear(Object entity) {
+        if (entity instanceof DirtyTrackable trackable) {
+            trackable.$$orm_setDirty(null);
+        }
+    }
+
+    /**
+     * Whether the field with the bit was written; fields without a bit (-1) always count as written.
+     */
+    public static boolean isWritten(long[] dirty, int bit) {
+        if (dirty == null) {
+            return false;
+        }
+        if (dirty == ALL || bit < 0) {
+            return true;
+        }
+        int word = bit >>> 6;
+        return word < dirty.length && (dirty[word] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Bit of every tracked field of the enhanced class, inherited ones included; null when the
+     * class was not enhanced.
+     */
+    public static Map<String, Integer> fieldBits(Class<?> type) {
+        return FIELD_BITS.get(type);
+    }
+}
@@ -0,0 +1,33 @@
+package pl.edu.agh.dp.core.enhance;
+
+import java.lang.instrument.Instrumentation;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Load time enhancement of the entity classes:
+ * {@code -javaagent:CoreORM.jar=com.example.model,com.example.billing}. The argument lists the
+ * packages to enhance besides the classes annotated with {@code @Entity}. ASM has to be on the
+ * class path.
+ */
+public final class EnhancementAgent {
+
+    private EnhancementAgent() {
+    }
+
+    public static void premain(String args, Instrumentation instrumentation) {
+        install(args, instrumentation);
+    }
+
+    /**
+     * When attached at runtime, only classes loaded afterwards are enhanced.
+     */
+    public static void agentmain(String args, Instrumentation instrumentation) {
+        install(args, instrumentation);
+    }
+
+    private static void install(String args, Instrumentation instrumentation) {
+        instrumentation.addTransformer(new EntityEnhancer(
+                args == null || args.isBlank() ? List.of() : Arrays.asList(args.split(","))));
+    }
+}
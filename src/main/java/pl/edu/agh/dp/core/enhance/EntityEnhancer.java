@@ -0,0 +1,352 @@
+package pl.edu.agh.dp.core.enhance;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import pl.edu.agh.dp.core.logging.OrmLogger;
+import pl.edu.agh.dp.core.mapping.annotations.Entity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.ClassFileTransformer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.ProtectionDomain;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Rewrites entity classes so that they track their own changes. An entity class gets a dirty
+ * bitset (the first enhanced class of a hierarchy holds it and implements {@link DirtyTrackable})
+ * and every field write of the class outside of the constructors goes through a synthetic static
+ * method that writes the field and sets its bit; the first write after a flush also tells the
+ * session managing the entity ({@link DirtyListener}). Writes through reflection, as the ORM does
+ * when hydrating, are not tracked.
+ * <p>
+ * Enhanced are classes annotated with {@link Entity} and classes of the given packages. Use it as
+ * a Java agent ({@link EnhancementAgent}) or at build time on the compiled classes
+ * ({@link #main}); without it, flush compares every managed entity with its snapshot.
+ */
+public final class EntityEnhancer implements ClassFileTransformer, Opcodes {
+
+    private static final OrmLogger log = OrmLogger.getLogger(EntityEnhancer.class);
+
+    private static final String FIELDS_METHOD = DirtyTracking.FIELDS_METHOD;
+    private static final String DIRTY_FIELD = "$$orm_dirty";
+    private static final String OWNER_FIELD = "$$orm_owner";
+    private static final String LISTENER = Type.getDescriptor(DirtyListener.class);
+    private static final String WRITE_PREFIX = "$$orm_write$";
+    private static final String TRACKABLE = Type.getInternalName(DirtyTrackable.class);
+    private static final String TRACKING = Type.getInternalName(DirtyTracking.class);
+    private static final String ENTITY = Type.getDescriptor(Entity.class);
+
+    // internal name prefixes, "com/example/model/"
+    private final List<String> packages;
+
+    public EntityEnhancer(Collection<String> packages) {
+        this.packages = packages.stream()
+                .map(String::trim)
+                .filter(p -> !p.isEmpty())
+                .map(p -> p.replace('.', '/') + "/")
+                .toList();
+    }
+
+    @Override
+    public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+                            ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+        // classes already defined cannot get new fields or methods
+        if (className == null || classBeingRedefined != null || className.startsWith("java/")) {
+            return null;
+        }
+        try {
+            return enhance(classfileBuffer, loader);
+        } catch (RuntimeException e) {
+            log.warn("Cannot enhance " + className + ", changes are found by comparing snapshots", e);
+            return null;
+        }
+    }
+
+    /**
+     * Enhanced class file, or null when the class is not to be enhanced. Superclasses are read
+     * from the loader to find the inherited tracked fields.
+     */
+    public byte[] enhance(byte[] classFile, ClassLoader loader) {
+        ClassInfo info = ClassInfo.read(classFile);
+        if (info.enhanced || !isEntity(info)) {
+            return null;
+        }
+        List<FieldInfo> inherited = new ArrayList<>();
+        boolean root = !collectInherited(info.superName, loader, inherited);
+
+        // bit of a field is its position: inherited fields root first, then the class's own
+        List<FieldInfo> all = new ArrayList<>(inherited);
+        all.addAll(info.fields);
+        Map<String, Integer> bits = new HashMap<>();
+        Map<String, String> descriptors = new HashMap<>();
+        for (int i = 0; i < all.size(); i++) {
+            bits.put(all.get(i).name, i);
+            descriptors.put(all.get(i).name, all.get(i).descriptor);
+        }
+
+        ClassReader reader = new ClassReader(classFile);
+        ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+        reader.accept(new Enhancing(writer, info.name, root, all, bits, descriptors), 0);
+        log.debug("Enhanced {} ({} tracked fields)", info.name, all.size());
+        return writer.toByteArray();
+    }
+
+    private boolean isEntity(ClassInfo info) {
+        if ((info.access & (ACC_INTERFACE | ACC_ANNOTATION | ACC_ENUM | ACC_MODULE)) != 0
+                || "java/lang/Record".equals(info.superName)) {
+            return false;
+        }
+        if (info.annotated) {
+            return true;
+        }
+        for (String prefix : packages) {
+            if (info.name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tracked fields of the enhanced superclasses, root first. Returns whether there is one.
+     */
+    private boolean collectInherited(String superName, ClassLoader loader, List<FieldInfo> inherited) {
+        Deque<ClassInfo> enhanced = new ArrayDeque<>();
+        for (String name = superName; name != null && !name.startsWith("java/"); ) {
+            byte[] bytes = readClass(name, loader);
+            if (bytes == null) {
+                break;
+            }
+            ClassInfo ancestor = ClassInfo.read(bytes);
+            if (isEntity(ancestor)) {
+                enhanced.push(ancestor);
+            }
+            name = ancestor.superName;
+        }
+        for (ClassInfo ancestor : enhanced) {
+            inherited.addAll(ancestor.fields);
+        }
+        return !enhanced.isEmpty();
+    }
+
+    private static byte[] readClass(String internalName, ClassLoader loader) {
+        ClassLoader source = loader != null ? loader : ClassLoader.getSystemClassLoader();
+        try (InputStream in = source.getResourceAsStream(internalName + ".class")) {
+            return in != null ? in.readAllBytes() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * What the enhancer needs from a class file: its name, superclass, {@link Entity} and the
+     * tracked fields - instance fields that are neither final, transient nor synthetic.
+     */
+    private static final class ClassInfo {
+        String name;
+        String superName;
+        int access;
+        boolean annotated;
+        // enhanced before, at build time
+        boolean enhanced;
+        final List<FieldInfo> fields = new ArrayList<>();
+
+        static ClassInfo read(byte[] classFile) {
+            ClassInfo info = new ClassInfo();
+            new ClassReader(classFile).accept(new ClassVisitor(ASM9) {
+                @Override
+                public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                    info.name = name;
+                    info.superName = superName;
+                    info.access = access;
+                }
+
+                @Override
+                public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                    if (ENTITY.equals(descriptor)) {
+                        info.annotated = true;
+                    }
+                    return null;
+                }
+
+                @Override
+                public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+                    if ((access & (ACC_STATIC | ACC_FINAL | ACC_TRANSIENT | ACC_SYNTHETIC)) == 0) {
+                        info.fields.add(new FieldInfo(name, descriptor));
+                    }
+                    return null;
+                }
+
+                @Override
+                public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                    if (FIELDS_METHOD.equals(name)) {
+                        info.enhanced = true;
+                    }
+                    return null;
+                }
+            }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            return info;
+        }
+    }
+
+    private record FieldInfo(String name, String descriptor) {
+    }
+
+    private static final class Enhancing extends ClassVisitor {
+        private final String className;
+        private final boolean root;
+        private final List<FieldInfo> fields;
+        private final Map<String, Integer> bits;
+        private final Map<String, String> descriptors;
+        // fields with a write method to generate
+        private final Set<String> written = new LinkedHashSet<>();
+
+        Enhancing(ClassVisitor next, String className, boolean root, List<FieldInfo> fields,
+                  Map<String, Integer> bits, Map<String, String> descriptors) {
+            super(ASM9, next);
+            this.className = className;
+            this.root = root;
+            this.fields = fields;
+            this.bits = bits;
+            this.descriptors = descriptors;
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            if (root) {
+                String[] extended = interfaces != null ? Arrays.copyOf(interfaces, interfaces.length + 1) : new String[1];
+                extended[extended.length - 1] = TRACKABLE;
+                interfaces = extended;
+            }
+            super.visit(version, access, name, signature, superName, interfaces);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            MethodVisitor mv = super.visitMethod(access, name, descriptor, signature, exceptions);
+            // field initializers of a new instance are not changes
+            if (mv == null || name.equals("<init>")) {
+                return mv;
+            }
+            return new MethodVisitor(ASM9, mv) {
+                @Override
+                public void visitFieldInsn(int opcode, String owner, String field, String fieldDescriptor) {
+                    if (opcode == PUTFIELD && owner.equals(className) && fieldDescriptor.equals(descriptors.get(field))) {
+                        written.add(field);
+                        super.visitMethodInsn(INVOKESTATIC, className, WRITE_PREFIX + field,
+                                "(L" + className + ";" + fieldDescriptor + ")V", false);
+                    } else {
+                        super.visitFieldInsn(opcode, owner, field, fieldDescriptor);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void visitEnd() {
+            if (root) {
+                addDirtyState();
+            }
+            addFieldsMethod();
+            for (String field : written) {
+                addWriteMethod(field, descriptors.get(field), bits.get(field));
+            }
+            super.visitEnd();
+        }
+
+        private void addDirtyState() {
+            addState(DIRTY_FIELD, "[J", "$$orm_getDirty", "$$orm_setDirty");
+            addState(OWNER_FIELD, LISTENER, "$$orm_getOwner", "$$orm_setOwner");
+        }
+
+        // transient field with a public getter and setter
+        private void addState(String field, String descriptor, String getter, String setter) {
+            cv.visitField(ACC_PRIVATE | ACC_TRANSIENT | ACC_SYNTHETIC, field, descriptor, null, null).visitEnd();
+
+            MethodVisitor get = cv.visitMethod(ACC_PUBLIC | ACC_SYNTHETIC, getter, "()" + descriptor, null, null);
+            get.visitCode();
+            get.visitVarInsn(ALOAD, 0);
+            get.visitFieldInsn(GETFIELD, className, field, descriptor);
+            get.visitInsn(ARETURN);
+            get.visitMaxs(0, 0);
+            get.visitEnd();
+
+            MethodVisitor set = cv.visitMethod(ACC_PUBLIC | ACC_SYNTHETIC, setter, "(" + descriptor + ")V", null, null);
+            set.visitCode();
+            set.visitVarInsn(ALOAD, 0);
+            set.visitVarInsn(ALOAD, 1);
+            set.visitFieldInsn(PUTFIELD, className, field, descriptor);
+            set.visitInsn(RETURN);
+            set.visitMaxs(0, 0);
+            set.visitEnd();
+        }
+
+        /**
+         * Names of the tracked fields by bit, read by {@link DirtyTracking#fieldBits}.
+         */
+        private void addFieldsMethod() {
+            StringJoiner names = new StringJoiner(",");
+            fields.forEach(f -> names.add(f.name()));
+            MethodVisitor mv = cv.visitMethod(ACC_PUBLIC | ACC_STATIC | ACC_SYNTHETIC, FIELDS_METHOD,
+                    "()Ljava/lang/String;", null, null);
+            mv.visitCode();
+            mv.visitLdcInsn(names.toString());
+            mv.visitInsn(ARETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        private void addWriteMethod(String field, String descriptor, int bit) {
+            MethodVisitor mv = cv.visitMethod(ACC_PRIVATE | ACC_STATIC | ACC_SYNTHETIC, WRITE_PREFIX + field,
+                    "(L" + className + ";" + descriptor + ")V", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(Type.getType(descriptor).getOpcode(ILOAD), 1);
+            mv.visitFieldInsn(PUTFIELD, className, field, descriptor);
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitLdcInsn(bit);
+            mv.visitMethodInsn(INVOKESTATIC, TRACKING, "mark", "(Ljava/lang/Object;I)V", false);
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+    }
+
+    /**
+     * Build time enhancement: rewrites the class files under the directory in place.
+     * {@code EntityEnhancer <classes directory> [package ...]}, e.g. run by exec-maven-plugin
+     * in the process-classes phase.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: EntityEnhancer <classes directory> [package ...]");
+            System.exit(1);
+        }
+        Path root = Path.of(args[0]);
+        EntityEnhancer enhancer = new EntityEnhancer(Arrays.asList(args).subList(1, args.length));
+        int count = 0;
+        try (URLClassLoader loader = new URLClassLoader(new URL[] { root.toUri().toURL() },
+                EntityEnhancer.class.getClassLoader());
+             Stream<Path> files = Files.walk(root)) {
+            for (Path file : files.filter(f -> f.toString().endsWith(".class")).toList()) {
+                byte[] enhanced = enhancer.enhance(Files.readAllBytes(file), loader);
+                if (enhanced != null) {
+                    Files.write(file, enhanced);
+                    count++;
+                }
+            }
+        }
+        System.out.println("Enhanced " + count + " classes in " + root);
+    }
+}
@@ -5,7 +5,9 @@ import pl.edu.agh.dp.core.api.Session;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public final class Finder<T> {
     
@@ -116,12 +118,48 @@ public final class Finder<T> {
         return this;
     }
     
+    // ==================== Routing Methods ====================
+
+    /**
+     * Runs this query on a read replica when one is configured. The replica may lag behind
+     * and does not see changes of the current transaction.
+     */
+    public Finder<T> readOnly() {
+        spec.readOnly();
+        return this;
+    }
+
     // ==================== Execution Methods ====================
 
     public List<T> list() {
         return session.findBy(spec);
     }
 
+    /**
+     * Lazily streams the results, the stream must be closed.
+     */
+    public Stream<T> stream() {
+        return session.stream(spec, false);
+    }
+
+    /**
+     * Streams results without keeping them in the session cache, for scans over large tables.
+     */
+    public Stream<T> stream(boolean detached) {
+        return session.stream(spec, detached);
+    }
+
+    /**
+     * Sets the fields of every matching entity in one statement per table, see {@link Session#updateWhere}.
+     */
+    public int update(Map<String, Object> assignments) {
+        return session.updateWhere(spec, assignments);
+    }
+
+    public int delete() {
+        return session.deleteWhere(spec);
+    }
+
     public Optional<T> first() {
         spec.limit(1);
         List<T> results = session.findBy(spec);
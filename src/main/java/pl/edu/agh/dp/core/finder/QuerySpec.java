@@ -18,6 +18,7 @@ public class QuerySpec<T> {
     private final List<String> fetchPaths = new ArrayList<>();
     private Integer limitValue = null;
     private Integer offsetValue = null;
+    private boolean readOnly = false;
     
     private QuerySpec(Class<T> entityType) {
         this.entityType = entityType;
@@ -37,6 +38,10 @@ public class QuerySpec<T> {
         return this;
     }
 
+    /**
+     * Relationship loaded for every result right after the query, e.g. {@code "department"} or
+     * the nested {@code "department.manager"}. Honored by list queries, not by streams.
+     */
     public QuerySpec<T> fetch(String path) {
         fetchPaths.add(path);
         return this;
@@ -52,6 +57,14 @@ public class QuerySpec<T> {
         return this;
     }
 
+    /**
+     * Allows the query to run on a read replica.
+     */
+    public QuerySpec<T> readOnly() {
+        this.readOnly = true;
+        return this;
+    }
+
     public boolean hasConditions() {
         return !conditions.isEmpty();
     }
@@ -5,4 +5,18 @@ import java.sql.SQLException;
 
 public interface ConnectionProvider {
     Connection getConnection();
+
+    /**
+     * Connection for queries that may run on a replica. Providers without replicas
+     * hand out a regular connection.
+     */
+    default Connection getReadConnection() {
+        return getConnection();
+    }
+
+    /**
+     * Releases resources held by the provider (e.g. pooled connections).
+     */
+    default void close() {
+    }
 }
@@ -1,7 +1,57 @@
 package pl.edu.agh.dp.core.jdbc;
 
+import java.util.List;
+
+/**
+ * SQL flavour and capabilities of the target database.
+ * <p>
+ * Resolved once per SessionFactory (see {@link DialectResolver}) so that the executor
+ * and the inheritance strategies never have to look at connection metadata on the hot path.
+ */
 public interface Dialect {
+
+    String getName();
+
     String getIdentitySelect(); // np. SELECT lastval()
-    String getLimitClause(int limit, int offset);
+
+    /**
+     * @param limit  max number of rows or null for none
+     * @param offset rows to skip or null for none
+     * @return clause with a leading space, or empty string
+     */
+    String getLimitClause(Integer limit, Integer offset);
+
     String quote(String identifier); // np. "user" albo `user`
+
+    /**
+     * Typed NULL used to pad UNION branches, so every branch has the same column types.
+     */
+    String castNull(String sqlType);
+
+    /**
+     * {@code INSERT ... RETURNING col} - generated ids come back as a result set in VALUES order.
+     */
+    boolean supportsReturning();
+
+    /**
+     * {@code INSERT ... VALUES (...), (...)} with many rows in one statement.
+     */
+    boolean supportsMultiRowValues();
+
+    /**
+     * Binding {@link java.util.List} parameters through {@link java.sql.Connection#createArrayOf}.
+     */
+    boolean supportsArrayBinding();
+
+    /**
+     * Upper bound of bind parameters in a single statement.
+     */
+    int getMaxBindParameters();
+
+    /**
+     * Builds an insert-or-update statement with one {@code ?} per column, in the given order.
+     *
+     * @param keyColumns columns of the unique key the conflict is detected on
+     */
+    String getUpsertSql(String table, List<String> columns, List<String> keyColumns);
 }
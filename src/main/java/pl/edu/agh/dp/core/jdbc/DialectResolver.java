@@ -0,0 +1,58 @@
+package pl.edu.agh.dp.core.jdbc;
+
+import pl.edu.agh.dp.core.logging.OrmLogger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Picks the {@link Dialect} either from the {@code orm.dialect} property
+ * (postgresql / h2 / sqlite or a class name) or from the database product name.
+ * Other databases get the {@link GenericDialect}.
+ */
+public final class DialectResolver {
+
+    private static final OrmLogger log = OrmLogger.getLogger(DialectResolver.class);
+
+    private DialectResolver() {
+    }
+
+    public static Dialect resolve(String configured, ConnectionProvider connectionProvider) {
+        if (configured != null && !configured.isBlank()) {
+            return fromName(configured.trim());
+        }
+        try (Connection connection = connectionProvider.getConnection()) {
+            return resolve(connection);
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not detect database dialect", e);
+        }
+    }
+
+    public static Dialect resolve(Connection connection) {
+        try {
+            return fromName(connection.getMetaData().getDatabaseProductName());
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not detect database dialect", e);
+        }
+    }
+
+    public static Dialect fromName(String name) {
+        if (name.contains(".")) {
+            try {
+                return (Dialect) Class.forName(name).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | ClassCastException e) {
+                throw new RuntimeException("Cannot instantiate dialect: " + name, e);
+            }
+        }
+        String lower = name.toLowerCase();
+        if (lower.contains("postgres")) {
+            return new PostgresDialect();
+        } else if (lower.contains("h2")) {
+            return new H2Dialect();
+        } else if (lower.contains("sqlite")) {
+            return new SQLiteDialect();
+        }
+        log.warn("No dialect for database {}, using standard SQL (set orm.dialect to a Dialect class)", name);
+        return new GenericDialect();
+    }
+}
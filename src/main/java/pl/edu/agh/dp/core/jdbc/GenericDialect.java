@@ -0,0 +1,87 @@
+package pl.edu.agh.dp.core.jdbc;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Any other database (MySQL, MariaDB, Oracle, ...): standard SQL and nothing else. Generated ids
+ * come from {@link java.sql.Statement#getGeneratedKeys()}, inserts are plain JDBC batches.
+ * LIMIT / OFFSET is written as the queries were before dialects existed.
+ */
+public class GenericDialect implements Dialect {
+
+    // kept low, Oracle allows at most 1000 expressions in a list
+    private static final int MAX_BIND_PARAMETERS = 1000;
+
+    @Override
+    public String getName() {
+        return "generic";
+    }
+
+    @Override
+    public String getIdentitySelect() {
+        // no portable query, ids are read with getGeneratedKeys
+        return null;
+    }
+
+    @Override
+    public String getLimitClause(Integer limit, Integer offset) {
+        StringBuilder sb = new StringBuilder();
+        if (limit != null) {
+            sb.append(" LIMIT ").append(limit);
+        }
+        if (offset != null) {
+            sb.append(" OFFSET ").append(offset);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    @Override
+    public String castNull(String sqlType) {
+        return "CAST(NULL AS " + sqlType + ")";
+    }
+
+    @Override
+    public boolean supportsReturning() {
+        return false;
+    }
+
+    @Override
+    public boolean supportsMultiRowValues() {
+        return false;
+    }
+
+    @Override
+    public boolean supportsArrayBinding() {
+        return false;
+    }
+
+    @Override
+    public int getMaxBindParameters() {
+        return MAX_BIND_PARAMETERS;
+    }
+
+    // SQL:2003 MERGE
+    @Override
+    public String getUpsertSql(String table, List<String> columns, List<String> keyColumns) {
+        String on = keyColumns.stream()
+                .map(c -> "t." + c + " = s." + c)
+                .collect(Collectors.joining(" AND "));
+        String updates = columns.stream()
+                .filter(c -> !keyColumns.contains(c))
+                .map(c -> "t." + c + " = s." + c)
+                .collect(Collectors.joining(", "));
+        return "MERGE INTO " + table + " t USING (VALUES ("
+                + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")) s ("
+                + String.join(", ", columns) + ") ON (" + on + ")"
+                + (updates.isEmpty() ? "" : " WHEN MATCHED THEN UPDATE SET " + updates)
+                + " WHEN NOT MATCHED THEN INSERT (" + String.join(", ", columns) + ") VALUES ("
+                + columns.stream().map(c -> "s." + c).collect(Collectors.joining(", ")) + ")";
+    }
+}
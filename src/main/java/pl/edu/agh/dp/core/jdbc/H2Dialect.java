@@ -0,0 +1,72 @@
+package pl.edu.agh.dp.core.jdbc;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * H2 (also in PostgreSQL compatibility mode). Generated keys are read with
+ * {@code getGeneratedKeys}, H2 has no {@code RETURNING}.
+ */
+public class H2Dialect implements Dialect {
+
+    private static final int MAX_BIND_PARAMETERS = 100_000;
+
+    @Override
+    public String getName() {
+        return "h2";
+    }
+
+    @Override
+    public String getIdentitySelect() {
+        return "SELECT LASTVAL()";
+    }
+
+    @Override
+    public String getLimitClause(Integer limit, Integer offset) {
+        StringBuilder sb = new StringBuilder();
+        if (limit != null) {
+            sb.append(" LIMIT ").append(limit);
+        }
+        if (offset != null) {
+            sb.append(" OFFSET ").append(offset);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    @Override
+    public String castNull(String sqlType) {
+        return "CAST(NULL AS " + sqlType + ")";
+    }
+
+    @Override
+    public boolean supportsReturning() {
+        return false;
+    }
+
+    @Override
+    public boolean supportsMultiRowValues() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsArrayBinding() {
+        return true;
+    }
+
+    @Override
+    public int getMaxBindParameters() {
+        return MAX_BIND_PARAMETERS;
+    }
+
+    @Override
+    public String getUpsertSql(String table, List<String> columns, List<String> keyColumns) {
+        return "MERGE INTO " + table + " (" + String.join(", ", columns) + ")"
+                + " KEY (" + String.join(", ", keyColumns) + ")"
+                + " VALUES (" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+    }
+}
@@ -5,11 +5,20 @@ import pl.edu.agh.dp.core.persister.RowMapper;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface JdbcExecutor {
 
     <T> List<T> query(String sql, RowMapper<T> mapper, Object... params);
 
+    /**
+     * Lazily maps rows while the caller iterates, instead of collecting them into a list.
+     * The result set stays open until the stream is exhausted or closed, so use try-with-resources.
+     * Rows are fetched from the server in chunks of the executor's fetch size; on PostgreSQL this
+     * needs an open transaction (autocommit off) to get a server-side cursor.
+     */
+    <T> Stream<T> stream(String sql, RowMapper<T> mapper, Object... params);
+
     <T> Optional<T> queryOne(String sql, RowMapper<T> mapper, Object... params);
 
     int update(String sql, Object... params);
@@ -18,6 +27,17 @@ public interface JdbcExecutor {
     
     Long insert(String sql, String idColumnName, Object... params);
 
+    /**
+     * Executes the same insert for every row using JDBC batching.
+     * Returns generated ids in row order, or an empty list when idColumnName is blank.
+     */
+    List<Long> insertBatch(String sql, String idColumnName, List<Object[]> rows);
+
+    /**
+     * Executes the same update/delete for every row using JDBC batching.
+     */
+    int[] updateBatch(String sql, List<Object[]> rows);
+
 
     void commit() throws SQLException;
 
@@ -1,19 +1,60 @@
 package pl.edu.agh.dp.core.jdbc;
 
+import lombok.Getter;
+import lombok.Setter;
+import pl.edu.agh.dp.core.logging.OrmLogger;
 import pl.edu.agh.dp.core.persister.RowMapper;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class JdbcExecutorImpl implements JdbcExecutor {
 
+    private static final OrmLogger log = OrmLogger.getLogger(JdbcExecutorImpl.class);
+    private static final OrmLogger sqlLog = OrmLogger.SQL;
+
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+    public static final int DEFAULT_BATCH_SIZE = 50;
+    public static final int DEFAULT_FETCH_SIZE = 500;
+
     private Connection connection;
+    @Getter
+    private final Dialect dialect;
+    @Getter
+    private final StatementCache statementCache;
+    @Getter
+    private final int batchSize;
+    @Getter
+    @Setter
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+    @Getter
+    @Setter
+    private StatementListener statementListener;
 
     public JdbcExecutorImpl(Connection connection) {
+        this(connection, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    public JdbcExecutorImpl(Connection connection, int statementCacheSize) {
+        this(connection, statementCacheSize, DEFAULT_BATCH_SIZE);
+    }
+
+    public JdbcExecutorImpl(Connection connection, int statementCacheSize, int batchSize) {
+        this(connection, statementCacheSize, batchSize, DialectResolver.resolve(connection));
+    }
+
+    public JdbcExecutorImpl(Connection connection, int statementCacheSize, int batchSize, Dialect dialect) {
         this.connection = connection;
+        this.dialect = dialect;
+        this.statementCache = new StatementCache(connection, statementCacheSize);
+        this.batchSize = Math.max(1, batchSize);
     }
 
 
@@ -30,72 +71,135 @@ public class JdbcExecutorImpl implements JdbcExecutor {
 
     @Override
     public void close() throws SQLException {
+        statementCache.clear();
         connection.close();
     }
 
     @Override
     public void executeStatement(String sql) {
         if (sql == null) {
-            System.err.println("sql is null");
+            log.warn("executeStatement called with null sql");
             return;
         }
+        sqlLog.debug(sql);
+        StatementTimer timer = StatementTimer.start(statementListener, StatementEvent.Kind.DDL, sql, new Object[0]);
         try(Statement statement = connection.createStatement()) {
-            statement.executeUpdate(sql);
+            timer.prepared();
+            int rows = statement.executeUpdate(sql);
+            timer.executed();
+            timer.finish(rows);
         }catch(SQLException e){
-            System.out.println("Sth in jdbcExecutorImpl.executeStatement");
-            System.err.println(e.getMessage());
+            timer.fail(e);
+            log.error("Statement failed: {}", e.getMessage());
         }
     }
 
     @Override
     public <T> List<T> query(String sql, RowMapper<T> mapper, Object... params) {
         List<T> results = new ArrayList<>();
-        
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        logSql(sql, params);
+        StatementTimer timer = StatementTimer.start(statementListener, StatementEvent.Kind.QUERY, sql, params);
+        PreparedStatement ps = null;
+        try {
+            ps = statementCache.prepare(sql);
             setParameters(ps, params);
-            
+            timer.prepared();
+
             try (ResultSet rs = ps.executeQuery()) {
+                timer.executed();
                 // mapping
                 while (rs.next()) {
                     T mapped = mapper.mapRow(rs);
                     results.add(mapped);
                 }
             }
+            timer.finish(results.size());
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            timer.fail(e);
+            statementCache.evict(sql, null);
             throw new RuntimeException("Query failed: " + sql, e);
+        } finally {
+            release(ps);
         }
         
         return results;
     }
 
+    @Override
+    public <T> Stream<T> stream(String sql, RowMapper<T> mapper, Object... params) {
+        logSql(sql, params);
+        StatementTimer timer = StatementTimer.start(statementListener, StatementEvent.Kind.STREAM, sql, params);
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            // not taken from the cache - the statement stays busy while the caller iterates
+            ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            setParameters(ps, params);
+            timer.prepared();
+            rs = ps.executeQuery();
+            timer.executed();
+        } catch (SQLException e) {
+            timer.fail(e);
+            if (ps != null) {
+                try {
+                    ps.close();
+                } catch (SQLException ignored) {
+                }
+            }
+            throw new RuntimeException("Stream failed: " + sql, e);
+        }
+        ResultSetSpliterator<T> rows = new ResultSetSpliterator<>(ps, rs, mapper, sql, timer);
+        return StreamSupport.stream(rows, false).onClose(rows::close);
+    }
+
     @Override
     public <T> Optional<T> queryOne(String sql, RowMapper<T> mapper, Object... params) {
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        logSql(sql, params);
+        StatementTimer timer = StatementTimer.start(statementListener, StatementEvent.Kind.QUERY, sql, params);
+        PreparedStatement ps = null;
+        try {
+            ps = statementCache.prepare(sql);
             setParameters(ps, params);
-            
+            timer.prepared();
+
             try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return Optional.of(mapper.mapRow(rs));
-                }
-                return Optional.empty();
+                timer.executed();
+                Optional<T> result = rs.next() ? Optional.of(mapper.mapRow(rs)) : Optional.empty();
+                timer.finish(result.isPresent() ? 1 : 0);
+                return result;
             }
         } catch (SQLException e) {
+            timer.fail(e);
+            statementCache.evict(sql, null);
             throw new RuntimeException("QueryOne failed: " + sql, e);
+        } finally {
+            release(ps);
         }
     }
 
     @Override
     public int update(String sql, Object... params) {
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        logSql(sql, params);
+        StatementTimer timer = StatementTimer.start(statementListener, StatementEvent.Kind.UPDATE, sql, params);
+        PreparedStatement ps = null;
+        try {
+            ps = statementCache.prepare(sql);
             setParameters(ps, params);
+            timer.prepared();
             int rows = ps.executeUpdate();
-            System.out.println("→ Rows affected: " + rows);
-            System.out.println("→ SQL: " + sql);
-            System.out.println("→ AutoCommit: " + connection.getAutoCommit());
+            timer.executed();
+            timer.finish(rows);
+            if (sqlLog.isTraceEnabled()) {
+                sqlLog.trace("Rows affected: {}", rows);
+            }
             return rows;
         } catch (SQLException e) {
+            timer.fail(e);
+            statementCache.evict(sql, null);
             throw new RuntimeException("Update failed: " + sql, e);
+        } finally {
+            release(ps);
         }
     }
 
@@ -107,67 +211,268 @@ public class JdbcExecutorImpl implements JdbcExecutor {
     @Override
     public Long insert(String sql, String idColumnName, Object... params) {
         boolean doReturnKey = !idColumnName.isBlank();
-        // Sprawdź czy to PostgreSQL
-        boolean isPostgres = false;
-        try {
-            isPostgres = connection.getMetaData().getDatabaseProductName().toLowerCase().contains("postgres");
-        } catch (SQLException ignored) {}
-        
+        boolean useReturning = dialect.supportsReturning();
+
         String sqlToExecute = sql;
-        // return generated id if postgres and idColumnName is not empty (id is not complex)
-        if (isPostgres && !sql.toLowerCase().contains("returning") && doReturnKey) {
+        // return generated id with RETURNING if idColumnName is not empty (id is not complex)
+        if (useReturning && !sql.toLowerCase().contains("returning") && doReturnKey) {
             sqlToExecute = sql + " RETURNING " + idColumnName;
         }
-        
-        try (PreparedStatement ps = isPostgres
-                ? connection.prepareStatement(sqlToExecute)
-                : doReturnKey ? connection.prepareStatement(sql, new String[]{idColumnName})
-                              : connection.prepareStatement(sql)) {
+
+        String[] keyColumns = !useReturning && doReturnKey ? new String[]{idColumnName} : null;
+        logSql(sqlToExecute, params);
+        StatementTimer timer = StatementTimer.start(statementListener, StatementEvent.Kind.INSERT, sqlToExecute, params);
+        PreparedStatement ps = null;
+        try {
+            ps = statementCache.prepare(sqlToExecute, keyColumns);
             setParameters(ps, params);
-            
-            System.out.println("→ SQL: " + sqlToExecute);
-            System.out.println("→ AutoCommit: " + connection.getAutoCommit());
-            
-            if (isPostgres && doReturnKey) {
-                // PostgreSQL z RETURNING: wykonaj query i pobierz id z ResultSet
+            timer.prepared();
+
+            if (useReturning && doReturnKey) {
+                // RETURNING: wykonaj query i pobierz id z ResultSet
                 try (ResultSet rs = ps.executeQuery()) {
+                    timer.executed();
                     if (rs.next()) {
                         long id = rs.getLong(1);
-                        System.out.println("→ Generated ID: " + id);
+                        timer.finish(1);
+                        if (sqlLog.isTraceEnabled()) {
+                            sqlLog.trace("Generated ID: {}", id);
+                        }
                         return id;
                     }
                     throw new SQLException("No generated key returned");
                 }
-            } else if (isPostgres) {
-                // PostgreSQL bez RETURNING: użyj executeUpdate
+            } else if (useReturning) {
+                // bez klucza: użyj executeUpdate
                 int rows = ps.executeUpdate();
-                System.out.println("→ Rows affected: " + rows);
+                timer.executed();
+                timer.finish(rows);
                 return null;
             } else {
-                // Inne bazy (H2, MySQL, etc.): standardowy sposób
+                // Bazy bez RETURNING (H2, SQLite): standardowy sposób
                 int rows = ps.executeUpdate();
-                System.out.println("→ Rows affected: " + rows);
-                
+                timer.executed();
+
                 try (ResultSet keys = ps.getGeneratedKeys()) {
                     if (doReturnKey) {
                         if (keys.next()) {
-                            return keys.getLong(1);
+                            long id = keys.getLong(1);
+                            timer.finish(rows);
+                            return id;
                         } else {
                             throw new SQLException("No generated key returned");
                         }
                     } else {
+                        timer.finish(rows);
                         return null;
                     }
                 }
             }
         } catch (SQLException e) {
+            timer.fail(e);
+            statementCache.evict(sqlToExecute, keyColumns);
             throw new RuntimeException("Insert failed: " + sqlToExecute, e);
+        } finally {
+            release(ps);
+        }
+    }
+
+    @Override
+    public List<Long> insertBatch(String sql, String idColumnName, List<Object[]> rows) {
+        boolean doReturnKey = !idColumnName.isBlank();
+        // ids of a multi-row insert can only be mapped back to rows through RETURNING
+        boolean multiRow = dialect.supportsMultiRowValues() && (!doReturnKey || dialect.supportsReturning());
+        if (multiRow && !rows.isEmpty() && rows.get(0).length > 0 && findValuesClause(sql) >= 0) {
+            return insertMultiRow(sql, idColumnName, rows);
+        }
+
+        String[] keyColumns = doReturnKey ? new String[]{idColumnName} : null;
+        List<Long> generatedIds = new ArrayList<>(doReturnKey ? rows.size() : 0);
+
+        if (sqlLog.isDebugEnabled()) {
+            sqlLog.debug("{} (batch of {})", sql, rows.size());
+        }
+        StatementTimer timer = StatementTimer.startBatch(statementListener, sql, rows);
+        PreparedStatement ps = null;
+        try {
+            ps = statementCache.prepare(sql, keyColumns);
+            timer.prepared();
+            for (int start = 0; start < rows.size(); start += batchSize) {
+                List<Object[]> chunk = rows.subList(start, Math.min(start + batchSize, rows.size()));
+                for (Object[] row : chunk) {
+                    setParameters(ps, row);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                if (doReturnKey) {
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        while (keys.next()) {
+                            generatedIds.add(keys.getLong(1));
+                        }
+                    }
+                    if (generatedIds.size() != start + chunk.size()) {
+                        throw new SQLException("Expected " + (start + chunk.size())
+                                + " generated keys but got " + generatedIds.size());
+                    }
+                }
+            }
+            timer.executed();
+            timer.finish(rows.size());
+            return generatedIds;
+        } catch (SQLException e) {
+            timer.fail(e);
+            statementCache.evict(sql, keyColumns);
+            throw new RuntimeException("Batch insert failed: " + sql, e);
+        } finally {
+            release(ps);
+        }
+    }
+
+    /**
+     * Inserts rows with {@code INSERT ... VALUES (...), (...) RETURNING id}, one statement per chunk.
+     * Without id column it is a plain multi-row insert. PostgreSQL returns the RETURNING rows
+     * in VALUES order, so ids map back to rows by position. Full chunks share one cached
+     * statement; the shorter last chunk is prepared uncached, a shape per row count would push
+     * the reused statements out of the cache.
+     */
+    private List<Long> insertMultiRow(String sql, String idColumnName, List<Object[]> rows) {
+        boolean doReturnKey = !idColumnName.isBlank();
+        List<Long> generatedIds = new ArrayList<>(doReturnKey ? rows.size() : 0);
+
+        int valuesIdx = findValuesClause(sql);
+        String head = sql.substring(0, valuesIdx) + " VALUES ";
+        String tuples = sql.substring(valuesIdx + " VALUES ".length()).trim();
+        if (tuples.endsWith(";")) {
+            tuples = tuples.substring(0, tuples.length() - 1).trim();
+        }
+        String returning = doReturnKey ? " RETURNING " + idColumnName : "";
+
+        int paramsPerRow = rows.get(0).length;
+        int rowsPerStatement = Math.max(1, Math.min(batchSize, dialect.getMaxBindParameters() / paramsPerRow));
+
+        for (int start = 0; start < rows.size(); start += rowsPerStatement) {
+            List<Object[]> chunk = rows.subList(start, Math.min(start + rowsPerStatement, rows.size()));
+            String chunkSql = head + String.join(", ", Collections.nCopies(chunk.size(), tuples)) + returning;
+
+            Object[] params = new Object[chunk.size() * paramsPerRow];
+            for (int i = 0; i < chunk.size(); i++) {
+                System.arraycopy(chunk.get(i), 0, params, i * paramsPerRow, paramsPerRow);
+            }
+
+            if (sqlLog.isDebugEnabled()) {
+                sqlLog.debug("{}... ({} rows){}", head, chunk.size(), returning);
+            }
+            boolean cached = chunk.size() == rowsPerStatement;
+            StatementTimer timer = StatementTimer.start(statementListener, StatementEvent.Kind.INSERT, chunkSql, params);
+            PreparedStatement ps = null;
+            try {
+                ps = cached ? statementCache.prepare(chunkSql) : statementCache.prepareUncached(chunkSql);
+                setParameters(ps, params);
+                timer.prepared();
+                if (doReturnKey) {
+                    try (ResultSet rs = ps.executeQuery()) {
+                        timer.executed();
+                        while (rs.next()) {
+                            generatedIds.add(rs.getLong(1));
+                        }
+                    }
+                    if (generatedIds.size() != start + chunk.size()) {
+                        throw new SQLException("Expected " + (start + chunk.size())
+                                + " generated keys but got " + generatedIds.size());
+                    }
+                } else {
+                    ps.executeUpdate();
+                    timer.executed();
+                }
+                timer.finish(chunk.size());
+            } catch (SQLException e) {
+                timer.fail(e);
+                if (cached) {
+                    statementCache.evict(chunkSql, null);
+                }
+                throw new RuntimeException("Multi-row insert failed: " + chunkSql, e);
+            } finally {
+                if (cached) {
+                    release(ps);
+                } else {
+                    closeQuietly(ps);
+                }
+            }
+        }
+        return generatedIds;
+    }
+
+    private int findValuesClause(String sql) {
+        String upper = sql.toUpperCase();
+        if (upper.contains(" RETURNING ") || upper.contains(" SELECT ")) {
+            return -1;
+        }
+        return upper.lastIndexOf(" VALUES ");
+    }
+
+    @Override
+    public int[] updateBatch(String sql, List<Object[]> rows) {
+        int[] counts = new int[rows.size()];
+
+        if (sqlLog.isDebugEnabled()) {
+            sqlLog.debug("{} (batch of {})", sql, rows.size());
+        }
+        StatementTimer timer = StatementTimer.startBatch(statementListener, sql, rows);
+        PreparedStatement ps = null;
+        try {
+            ps = statementCache.prepare(sql);
+            timer.prepared();
+            for (int start = 0; start < rows.size(); start += batchSize) {
+                List<Object[]> chunk = rows.subList(start, Math.min(start + batchSize, rows.size()));
+                for (Object[] row : chunk) {
+                    setParameters(ps, row);
+                    ps.addBatch();
+                }
+                int[] chunkCounts = ps.executeBatch();
+                System.arraycopy(chunkCounts, 0, counts, start, chunkCounts.length);
+            }
+            timer.executed();
+            timer.finish(Arrays.stream(counts).filter(c -> c > 0).asLongStream().sum());
+            return counts;
+        } catch (SQLException e) {
+            timer.fail(e);
+            statementCache.evict(sql, null);
+            throw new RuntimeException("Batch update failed: " + sql, e);
+        } finally {
+            release(ps);
+        }
+    }
+
+    private static void logSql(String sql, Object[] params) {
+        if (sqlLog.isTraceEnabled() && params.length > 0) {
+            sqlLog.trace("{} | params: {}", sql, Arrays.asList(params));
+        } else {
+            sqlLog.debug(sql);
+        }
+    }
+
+    private void release(PreparedStatement ps) {
+        if (ps != null) {
+            statementCache.release(ps);
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement ps) {
+        if (ps != null) {
+            try {
+                ps.close();
+            } catch (SQLException ignored) {
+            }
         }
     }
 
     private void setParameters(PreparedStatement ps, Object... params) throws SQLException {
         for (int i = 0; i < params.length; i++) {
             if (params[i] instanceof List<?> list) {
+                if (!dialect.supportsArrayBinding()) {
+                    throw new SQLException("List parameters are not supported by " + dialect.getName());
+                }
 
                 if (list.isEmpty()) {
                     ps.setArray(i + 1, this.connection.createArrayOf("text", new Object[]{}));
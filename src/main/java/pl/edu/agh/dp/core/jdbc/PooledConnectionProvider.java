@@ -0,0 +1,406 @@
+package pl.edu.agh.dp.core.jdbc;
+
+import lombok.Getter;
+import pl.edu.agh.dp.core.logging.OrmLogger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded connection pool sitting in front of another {@link ConnectionProvider}.
+ * <p>
+ * Borrowed connections are handed out as proxies - calling {@code close()} on them
+ * returns the physical connection to the pool instead of closing it. On return the
+ * connection is rolled back (when inside a transaction) and autocommit, isolation
+ * and read-only flags are reset to the values it had when it was opened.
+ * <p>
+ * Configuration (all optional, read by {@link #fromProperties}):
+ * <ul>
+ *     <li>{@code orm.pool.minSize} - idle connections kept open (default 0)</li>
+ *     <li>{@code orm.pool.maxSize} - max connections borrowed at once (default 10)</li>
+ *     <li>{@code orm.pool.acquireTimeoutMs} - how long {@link #getConnection()} waits (default 30000)</li>
+ *     <li>{@code orm.pool.idleTimeoutMs} - idle connections older than this are evicted (default 600000)</li>
+ *     <li>{@code orm.pool.validateOnBorrow} - run {@link Connection#isValid(int)} on borrow (default true)</li>
+ *     <li>{@code orm.pool.validationTimeoutSeconds} - timeout passed to isValid (default 2)</li>
+ *     <li>{@code orm.pool.leakDetectionThresholdMs} - report connections held longer than this, 0 disables (default 0)</li>
+ *     <li>{@code orm.pool.housekeepingPeriodMs} - eviction / leak check interval (default 30000)</li>
+ * </ul>
+ */
+public class PooledConnectionProvider implements ConnectionProvider {
+
+    private static final OrmLogger log = OrmLogger.getLogger(PooledConnectionProvider.class);
+
+    // connections used this recently are assumed alive and are not validated again
+    private static final long VALIDATION_BYPASS_MS = 500;
+
+    private final ConnectionProvider delegate;
+    @Getter
+    private final int minSize;
+    @Getter
+    private final int maxSize;
+    private final long acquireTimeoutMs;
+    private final long idleTimeoutMs;
+    private final boolean validateOnBorrow;
+    private final int validationTimeoutSeconds;
+    private final long leakDetectionThresholdMs;
+
+    private final Semaphore permits;
+    private final BlockingDeque<PooledEntry> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledEntry> borrowed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+
+    private volatile boolean closed = false;
+
+    public PooledConnectionProvider(ConnectionProvider delegate,
+                                    int minSize,
+                                    int maxSize,
+                                    long acquireTimeoutMs,
+                                    long idleTimeoutMs,
+                                    boolean validateOnBorrow,
+                                    int validationTimeoutSeconds,
+                                    long leakDetectionThresholdMs,
+                                    long housekeepingPeriodMs) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool max size must be positive, got: " + maxSize);
+        }
+        if (minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Pool min size must be between 0 and " + maxSize + ", got: " + minSize);
+        }
+        this.delegate = delegate;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.validateOnBorrow = validateOnBorrow;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.leakDetectionThresholdMs = leakDetectionThresholdMs;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "coreorm-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        fillToMinimum();
+        this.housekeeper.scheduleWithFixedDelay(this::housekeep,
+                housekeepingPeriodMs, housekeepingPeriodMs, TimeUnit.MILLISECONDS);
+    }
+
+    public static PooledConnectionProvider fromProperties(ConnectionProvider delegate, Properties properties) {
+        return new PooledConnectionProvider(
+                delegate,
+                Integer.parseInt(properties.getProperty("orm.pool.minSize", "0")),
+                Integer.parseInt(properties.getProperty("orm.pool.maxSize", "10")),
+                Long.parseLong(properties.getProperty("orm.pool.acquireTimeoutMs", "30000")),
+                Long.parseLong(properties.getProperty("orm.pool.idleTimeoutMs", "600000")),
+                Boolean.parseBoolean(properties.getProperty("orm.pool.validateOnBorrow", "true")),
+                Integer.parseInt(properties.getProperty("orm.pool.validationTimeoutSeconds", "2")),
+                Long.parseLong(properties.getProperty("orm.pool.leakDetectionThresholdMs", "0")),
+                Long.parseLong(properties.getProperty("orm.pool.housekeepingPeriodMs", "30000"))
+        );
+    }
+
+    @Override
+    public Connection getConnection() {
+        if (closed) {
+            throw new IllegalStateException("Connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new RuntimeException("Timed out after " + acquireTimeoutMs + "ms waiting for a connection. "
+                        + "Active: " + getActiveCount() + ", idle: " + getIdleCount() + ", max: " + maxSize);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a connection", e);
+        }
+
+        try {
+            PooledEntry entry = takeIdleOrCreate();
+            entry.borrowedAt = System.currentTimeMillis();
+            entry.leakReported = false;
+            entry.borrowStack = leakDetectionThresholdMs > 0 ? new Exception("Connection borrowed here") : null;
+            borrowed.add(entry);
+            return entry.newProxy();
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledEntry takeIdleOrCreate() {
+        PooledEntry entry;
+        // most recently returned first - it is the most likely to still be alive
+        while ((entry = idle.pollFirst()) != null) {
+            if (isUsable(entry)) {
+                return entry;
+            }
+            destroy(entry);
+        }
+        return createEntry();
+    }
+
+    private boolean isUsable(PooledEntry entry) {
+        if (!validateOnBorrow) {
+            return true;
+        }
+        if (System.currentTimeMillis() - entry.lastReturnedAt < VALIDATION_BYPASS_MS) {
+            return true;
+        }
+        try {
+            return entry.raw.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledEntry createEntry() {
+        Connection raw = delegate.getConnection();
+        try {
+            PooledEntry entry = new PooledEntry(raw);
+            totalConnections.incrementAndGet();
+            return entry;
+        } catch (SQLException e) {
+            closeQuietly(raw);
+            throw new RuntimeException("Could not initialize pooled connection", e);
+        }
+    }
+
+    void release(PooledEntry entry) {
+        borrowed.remove(entry);
+        try {
+            if (closed || !resetState(entry)) {
+                destroy(entry);
+            } else {
+                entry.lastReturnedAt = System.currentTimeMillis();
+                idle.offerFirst(entry);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Puts the connection back into the state it had when it was opened.
+     * Returns false when the connection is broken and should be discarded.
+     */
+    private boolean resetState(PooledEntry entry) {
+        Connection raw = entry.raw;
+        try {
+            if (raw.isClosed()) {
+                return false;
+            }
+            if (!entry.autoCommit) {
+                raw.rollback();
+                raw.setAutoCommit(entry.initialAutoCommit);
+                entry.autoCommit = entry.initialAutoCommit;
+            } else if (entry.autoCommit != entry.initialAutoCommit) {
+                raw.setAutoCommit(entry.initialAutoCommit);
+                entry.autoCommit = entry.initialAutoCommit;
+            }
+            if (entry.isolation != entry.initialIsolation) {
+                raw.setTransactionIsolation(entry.initialIsolation);
+                entry.isolation = entry.initialIsolation;
+            }
+            if (entry.readOnly != entry.initialReadOnly) {
+                raw.setReadOnly(entry.initialReadOnly);
+                entry.readOnly = entry.initialReadOnly;
+            }
+            raw.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            log.warn("Discarding pooled connection that could not be reset: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void destroy(PooledEntry entry) {
+        totalConnections.decrementAndGet();
+        closeQuietly(entry.raw);
+    }
+
+    private void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private void housekeep() {
+        try {
+            evictIdle();
+            fillToMinimum();
+            detectLeaks();
+        } catch (RuntimeException e) {
+            log.warn("Connection pool housekeeping failed", e);
+        }
+    }
+
+    private void evictIdle() {
+        if (idleTimeoutMs <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        // oldest entries sit at the tail of the deque
+        for (PooledEntry entry : idle.toArray(new PooledEntry[0])) {
+            if (totalConnections.get() <= minSize) {
+                break;
+            }
+            if (now - entry.lastReturnedAt > idleTimeoutMs && idle.remove(entry)) {
+                destroy(entry);
+            }
+        }
+    }
+
+    private void fillToMinimum() {
+        while (!closed && totalConnections.get() < minSize) {
+            PooledEntry entry = createEntry();
+            entry.lastReturnedAt = System.currentTimeMillis();
+            idle.offerLast(entry);
+        }
+    }
+
+    private void detectLeaks() {
+        if (leakDetectionThresholdMs <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (PooledEntry entry : borrowed) {
+            if (!entry.leakReported && now - entry.borrowedAt > leakDetectionThresholdMs) {
+                entry.leakReported = true;
+                log.warn("Possible connection leak: connection held for "
+                        + (now - entry.borrowedAt) + "ms by " + entry.borrowThread, entry.borrowStack);
+            }
+        }
+    }
+
+    public int getActiveCount() {
+        return borrowed.size();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getTotalCount() {
+        return totalConnections.get();
+    }
+
+    /**
+     * Closes all idle connections. Connections still borrowed are closed
+     * when they are returned.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledEntry entry;
+        while ((entry = idle.pollFirst()) != null) {
+            destroy(entry);
+        }
+    }
+
+    /**
+     * Physical connection with the state the pool needs to reset it.
+     */
+    private final class PooledEntry {
+        final Connection raw;
+        final boolean initialAutoCommit;
+        final int initialIsolation;
+        final boolean initialReadOnly;
+
+        boolean autoCommit;
+        int isolation;
+        boolean readOnly;
+
+        volatile long borrowedAt;
+        volatile long lastReturnedAt;
+        volatile boolean leakReported;
+        volatile Exception borrowStack;
+        volatile String borrowThread;
+
+        PooledEntry(Connection raw) throws SQLException {
+            this.raw = raw;
+            this.initialAutoCommit = raw.getAutoCommit();
+            this.initialIsolation = raw.getTransactionIsolation();
+            this.initialReadOnly = raw.isReadOnly();
+            this.autoCommit = initialAutoCommit;
+            this.isolation = initialIsolation;
+            this.readOnly = initialReadOnly;
+        }
+
+        Connection newProxy() {
+            borrowThread = Thread.currentThread().getName();
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new ConnectionHandler(this));
+        }
+    }
+
+    /**
+     * Handle given to the caller. Once closed it no longer reaches the physical connection,
+     * so a stale reference cannot interfere with whoever borrows the connection next.
+     */
+    private final class ConnectionHandler implements InvocationHandler {
+        private final PooledEntry entry;
+        private boolean handleClosed = false;
+
+        ConnectionHandler(PooledEntry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!handleClosed) {
+                        handleClosed = true;
+                        release(entry);
+                    }
+                    return null;
+                case "isClosed":
+                    return handleClosed || entry.raw.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + entry.raw + "]";
+                default:
+                    break;
+            }
+            if (handleClosed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            Object result;
+            try {
+                result = method.invoke(entry.raw, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            // track state changes so the pool only resets what was touched
+            String name = method.getName();
+            if (name.equals("setAutoCommit")) {
+                entry.autoCommit = (Boolean) args[0];
+            } else if (name.equals("setTransactionIsolation")) {
+                entry.isolation = (Integer) args[0];
+            } else if (name.equals("setReadOnly")) {
+                entry.readOnly = (Boolean) args[0];
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package pl.edu.agh.dp.core.jdbc;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class PostgresDialect implements Dialect {
+
+    // PostgreSQL wire protocol limit of bind parameters in one statement
+    private static final int MAX_BIND_PARAMETERS = 32767;
+
+    @Override
+    public String getName() {
+        return "postgresql";
+    }
+
+    @Override
+    public String getIdentitySelect() {
+        return "SELECT lastval()";
+    }
+
+    @Override
+    public String getLimitClause(Integer limit, Integer offset) {
+        StringBuilder sb = new StringBuilder();
+        if (limit != null) {
+            sb.append(" LIMIT ").append(limit);
+        }
+        if (offset != null) {
+            sb.append(" OFFSET ").append(offset);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    @Override
+    public String castNull(String sqlType) {
+        return "NULL::" + sqlType;
+    }
+
+    @Override
+    public boolean supportsReturning() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsMultiRowValues() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsArrayBinding() {
+        return true;
+    }
+
+    @Override
+    public int getMaxBindParameters() {
+        return MAX_BIND_PARAMETERS;
+    }
+
+    @Override
+    public String getUpsertSql(String table, List<String> columns, List<String> keyColumns) {
+        String updates = columns.stream()
+                .filter(c -> !keyColumns.contains(c))
+                .map(c -> c + " = EXCLUDED." + c)
+                .collect(Collectors.joining(", "));
+        return "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+                + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")"
+                + " ON CONFLICT (" + String.join(", ", keyColumns) + ")"
+                + (updates.isEmpty() ? " DO NOTHING" : " DO UPDATE SET " + updates);
+    }
+}
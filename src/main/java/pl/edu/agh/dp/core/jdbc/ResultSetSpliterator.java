@@ -0,0 +1,75 @@
+package pl.edu.agh.dp.core.jdbc;
+
+import pl.edu.agh.dp.core.persister.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Maps rows of an open ResultSet one at a time. The statement and the result set are
+ * closed when the rows run out, when mapping fails or when the owning stream is closed.
+ */
+class ResultSetSpliterator<T> extends Spliterators.AbstractSpliterator<T> implements AutoCloseable {
+
+    private final Statement statement;
+    private final ResultSet resultSet;
+    private final RowMapper<T> mapper;
+    private final String sql;
+    private final StatementTimer timer;
+    private long rows = 0;
+    private boolean closed = false;
+
+    ResultSetSpliterator(Statement statement, ResultSet resultSet, RowMapper<T> mapper, String sql, StatementTimer timer) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        this.statement = statement;
+        this.resultSet = resultSet;
+        this.mapper = mapper;
+        this.sql = sql;
+        this.timer = timer;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (closed) {
+            return false;
+        }
+        try {
+            if (!resultSet.next()) {
+                close();
+                return false;
+            }
+            action.accept(mapper.mapRow(resultSet));
+            rows++;
+            return true;
+        } catch (SQLException e) {
+            timer.fail(e);
+            close();
+            throw new RuntimeException("Stream failed: " + sql, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        timer.finish(rows);
+        try {
+            resultSet.close();
+        } catch (SQLException ignored) {
+        }
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+}
@@ -0,0 +1,176 @@
+package pl.edu.agh.dp.core.jdbc;
+
+import lombok.Getter;
+import pl.edu.agh.dp.core.logging.OrmLogger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+/**
+ * Sends writes to a primary database and read-only work to replicas.
+ * <p>
+ * {@link #getConnection()} always returns a primary connection. {@link #getReadConnection()} picks
+ * a replica by round-robin or by the lowest number of connections currently handed out
+ * (least in flight). A replica that fails to connect is skipped, and when every replica fails
+ * the read goes to the primary. Replicas are usually behind the primary, so reads routed there
+ * may not see the latest commits.
+ * <p>
+ * Configuration (read by {@link #fromProperties}):
+ * <ul>
+ *     <li>{@code db.replicas} - comma separated replica URLs</li>
+ *     <li>{@code db.replica.user}, {@code db.replica.password} - default to {@code db.user} / {@code db.password}</li>
+ *     <li>{@code orm.replica.balancing} - {@code round-robin} (default) or {@code least-in-flight}</li>
+ * </ul>
+ */
+public class RoutingConnectionProvider implements ConnectionProvider {
+
+    private static final OrmLogger log = OrmLogger.getLogger(RoutingConnectionProvider.class);
+
+    public enum Balancing {
+        ROUND_ROBIN, LEAST_IN_FLIGHT;
+
+        public static Balancing fromName(String name) {
+            return Balancing.valueOf(name.trim().toUpperCase().replace('-', '_'));
+        }
+    }
+
+    private final ConnectionProvider primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    @Getter
+    private final Balancing balancing;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public RoutingConnectionProvider(ConnectionProvider primary, List<ConnectionProvider> replicas, Balancing balancing) {
+        this.primary = primary;
+        for (ConnectionProvider replica : replicas) {
+            this.replicas.add(new Replica(replica));
+        }
+        this.balancing = balancing;
+    }
+
+    /**
+     * @param pooling applied to every replica provider, e.g. wrapping it in a pool
+     */
+    public static RoutingConnectionProvider fromProperties(ConnectionProvider primary, Properties properties,
+                                                           UnaryOperator<ConnectionProvider> pooling) {
+        String user = properties.getProperty("db.replica.user", properties.getProperty("db.user"));
+        String password = properties.getProperty("db.replica.password", properties.getProperty("db.password"));
+        List<ConnectionProvider> replicas = new ArrayList<>();
+        for (String url : properties.getProperty("db.replicas", "").split(",")) {
+            if (!url.isBlank()) {
+                replicas.add(pooling.apply(new JdbcConnectionProvider(url.trim(), user, password)));
+            }
+        }
+        Balancing balancing = Balancing.fromName(properties.getProperty("orm.replica.balancing", "round-robin"));
+        return new RoutingConnectionProvider(primary, replicas, balancing);
+    }
+
+    @Override
+    public Connection getConnection() {
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getReadConnection() {
+        int count = replicas.size();
+        if (count == 0) {
+            return primary.getConnection();
+        }
+        int first = pick();
+        for (int i = 0; i < count; i++) {
+            Replica replica = replicas.get((first + i) % count);
+            replica.inFlight.incrementAndGet();
+            try {
+                return replica.track(replica.provider.getConnection());
+            } catch (RuntimeException e) {
+                replica.inFlight.decrementAndGet();
+                log.warn("Replica unavailable, trying the next one", e);
+            }
+        }
+        log.warn("No replica available, reading from the primary");
+        return primary.getConnection();
+    }
+
+    private int pick() {
+        if (balancing == Balancing.ROUND_ROBIN) {
+            return Math.floorMod(next.getAndIncrement(), replicas.size());
+        }
+        int best = 0;
+        for (int i = 1; i < replicas.size(); i++) {
+            if (replicas.get(i).inFlight.get() < replicas.get(best).inFlight.get()) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    public int getReplicaCount() {
+        return replicas.size();
+    }
+
+    /**
+     * Connections of the given replica handed out and not closed yet.
+     */
+    public int getInFlight(int replicaIndex) {
+        return replicas.get(replicaIndex).inFlight.get();
+    }
+
+    @Override
+    public void close() {
+        primary.close();
+        for (Replica replica : replicas) {
+            replica.provider.close();
+        }
+    }
+
+    private static final class Replica {
+        final ConnectionProvider provider;
+        final AtomicInteger inFlight = new AtomicInteger();
+
+        Replica(ConnectionProvider provider) {
+            this.provider = provider;
+        }
+
+        Connection track(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new TrackingHandler(this, connection));
+        }
+    }
+
+    /**
+     * Decrements the replica's in-flight count once, when the connection is closed.
+     */
+    private static final class TrackingHandler implements InvocationHandler {
+        private final Replica replica;
+        private final Connection target;
+        private boolean closed = false;
+
+        TrackingHandler(Replica replica, Connection target) {
+            this.replica = replica;
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("close") && !closed) {
+                closed = true;
+                replica.inFlight.decrementAndGet();
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
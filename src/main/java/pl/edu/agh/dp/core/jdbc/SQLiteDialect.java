@@ -0,0 +1,79 @@
+package pl.edu.agh.dp.core.jdbc;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * SQLite. Columns are dynamically typed, so NULL padding needs no cast, and there are no array types.
+ */
+public class SQLiteDialect implements Dialect {
+
+    // SQLITE_MAX_VARIABLE_NUMBER default before 3.32
+    private static final int MAX_BIND_PARAMETERS = 999;
+
+    @Override
+    public String getName() {
+        return "sqlite";
+    }
+
+    @Override
+    public String getIdentitySelect() {
+        return "SELECT last_insert_rowid()";
+    }
+
+    @Override
+    public String getLimitClause(Integer limit, Integer offset) {
+        if (limit == null && offset == null) {
+            return "";
+        }
+        // SQLite accepts OFFSET only after LIMIT, -1 means no limit
+        StringBuilder sb = new StringBuilder(" LIMIT ").append(limit != null ? limit : -1);
+        if (offset != null) {
+            sb.append(" OFFSET ").append(offset);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    @Override
+    public String castNull(String sqlType) {
+        return "NULL";
+    }
+
+    @Override
+    public boolean supportsReturning() {
+        return false;
+    }
+
+    @Override
+    public boolean supportsMultiRowValues() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsArrayBinding() {
+        return false;
+    }
+
+    @Override
+    public int getMaxBindParameters() {
+        return MAX_BIND_PARAMETERS;
+    }
+
+    @Override
+    public String getUpsertSql(String table, List<String> columns, List<String> keyColumns) {
+        String updates = columns.stream()
+                .filter(c -> !keyColumns.contains(c))
+                .map(c -> c + " = excluded." + c)
+                .collect(Collectors.joining(", "));
+        return "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+                + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")"
+                + " ON CONFLICT (" + String.join(", ", keyColumns) + ")"
+                + (updates.isEmpty() ? " DO NOTHING" : " DO UPDATE SET " + updates);
+    }
+}
@@ -0,0 +1,150 @@
+package pl.edu.agh.dp.core.jdbc;
+
+import lombok.Getter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * LRU cache of prepared statements for a single connection.
+ * <p>
+ * Statements are keyed by SQL text and by the way generated keys are requested,
+ * because a statement prepared with {@code RETURN_GENERATED_KEYS} is not
+ * interchangeable with a plain one. When the cache is full the least recently
+ * used statement is closed. Max size 0 disables caching - every statement is
+ * then prepared fresh and closed by {@link #release}.
+ */
+public class StatementCache {
+
+    private final Connection connection;
+    @Getter
+    private final int maxSize;
+    private final LinkedHashMap<Key, PreparedStatement> statements;
+
+    @Getter
+    private long hits = 0;
+    @Getter
+    private long misses = 0;
+
+    public StatementCache(Connection connection, int maxSize) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, PreparedStatement> eldest) {
+                if (size() > StatementCache.this.maxSize) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public PreparedStatement prepare(String sql) throws SQLException {
+        return prepare(sql, null);
+    }
+
+    /**
+     * @param keyColumns column names to return as generated keys, or null for a plain statement
+     */
+    public PreparedStatement prepare(String sql, String[] keyColumns) throws SQLException {
+        if (maxSize <= 0) {
+            misses++;
+            return create(sql, keyColumns);
+        }
+        Key key = new Key(sql, keyColumns);
+        PreparedStatement ps = statements.get(key);
+        if (ps != null && !ps.isClosed()) {
+            hits++;
+            ps.clearParameters();
+            return ps;
+        }
+        misses++;
+        ps = create(sql, keyColumns);
+        statements.put(key, ps);
+        return ps;
+    }
+
+    /**
+     * Prepares a statement that is not cached, for SQL that is unlikely to repeat and would
+     * only push reused statements out. The caller closes it.
+     */
+    public PreparedStatement prepareUncached(String sql) throws SQLException {
+        misses++;
+        return create(sql, null);
+    }
+
+    private PreparedStatement create(String sql, String[] keyColumns) throws SQLException {
+        return keyColumns == null
+                ? connection.prepareStatement(sql)
+                : connection.prepareStatement(sql, keyColumns);
+    }
+
+    /**
+     * Called when the caller is done with the statement. Cached statements stay open,
+     * uncached ones are closed.
+     */
+    public void release(PreparedStatement ps) {
+        if (maxSize <= 0) {
+            closeQuietly(ps);
+        }
+    }
+
+    /**
+     * Drops a statement that failed, its state on the server side is unknown.
+     */
+    public void evict(String sql, String[] keyColumns) {
+        PreparedStatement ps = statements.remove(new Key(sql, keyColumns));
+        if (ps != null) {
+            closeQuietly(ps);
+        }
+    }
+
+    public int size() {
+        return statements.size();
+    }
+
+    public void clear() {
+        for (PreparedStatement ps : statements.values()) {
+            closeQuietly(ps);
+        }
+        statements.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private static final class Key {
+        private final String sql;
+        private final String[] keyColumns;
+        private final int hash;
+
+        Key(String sql, String[] keyColumns) {
+            this.sql = sql;
+            this.keyColumns = keyColumns;
+            this.hash = 31 * sql.hashCode() + Arrays.hashCode(keyColumns);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key key)) return false;
+            return hash == key.hash && Objects.equals(sql, key.sql) && Arrays.equals(keyColumns, key.keyColumns);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
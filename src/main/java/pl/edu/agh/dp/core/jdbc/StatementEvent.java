@@ -0,0 +1,43 @@
+package pl.edu.agh.dp.core.jdbc;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * One executed statement as seen by a {@link StatementListener}.
+ * <p>
+ * Timings are in nanoseconds: {@code prepare} covers taking the statement from the cache
+ * (or preparing it) and binding parameters, {@code execute} the driver call, {@code fetch}
+ * reading and mapping the result set. For batches every parameter set is bound inside the
+ * execute phase and for streams fetch lasts until the stream is closed.
+ */
+@Getter
+@AllArgsConstructor
+public class StatementEvent {
+
+    public enum Kind {
+        QUERY, STREAM, INSERT, UPDATE, BATCH, DDL
+    }
+
+    private final Kind kind;
+    private final String sql;
+    /** One entry per bound parameter set - a single one unless the statement was batched. */
+    private final List<Object[]> parameters;
+    /** Rows returned by a query or affected by an update, -1 when unknown. */
+    private final long rowCount;
+    private final long prepareNanos;
+    private final long executeNanos;
+    private final long fetchNanos;
+    /** Set when the statement failed. */
+    private final Throwable error;
+
+    public long getTotalNanos() {
+        return prepareNanos + executeNanos + fetchNanos;
+    }
+
+    public boolean isFailed() {
+        return error != null;
+    }
+}
@@ -0,0 +1,37 @@
+package pl.edu.agh.dp.core.jdbc;
+
+import java.util.List;
+
+/**
+ * Callback invoked by {@link JdbcExecutorImpl} after every statement it runs, successful or not.
+ * <p>
+ * Listeners run on the thread executing the statement, so they should be cheap and thread-safe -
+ * one listener instance is shared by all sessions of a factory. Exceptions thrown by a listener
+ * are logged and otherwise ignored.
+ * <p>
+ * Register with {@link pl.edu.agh.dp.core.api.Configuration#addStatementListener} or list class
+ * names (public no-arg constructor) in {@code orm.jdbc.statementListeners}, comma separated.
+ */
+@FunctionalInterface
+public interface StatementListener {
+
+    void onStatement(StatementEvent event);
+
+    /**
+     * Returns a listener calling all given listeners in order, or null when there are none.
+     */
+    static StatementListener of(List<StatementListener> listeners) {
+        if (listeners.isEmpty()) {
+            return null;
+        }
+        if (listeners.size() == 1) {
+            return listeners.get(0);
+        }
+        List<StatementListener> copy = List.copyOf(listeners);
+        return event -> {
+            for (StatementListener listener : copy) {
+                listener.onStatement(event);
+            }
+        };
+    }
+}
@@ -0,0 +1,86 @@
+package pl.edu.agh.dp.core.jdbc;
+
+import pl.edu.agh.dp.core.logging.OrmLogger;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records phase boundaries of one statement and reports them to the listener.
+ * Without a listener {@link #NONE} is used, so nothing is allocated or timed.
+ */
+class StatementTimer {
+
+    private static final OrmLogger log = OrmLogger.getLogger(StatementTimer.class);
+    private static final long UNSET = Long.MIN_VALUE;
+
+    static final StatementTimer NONE = new StatementTimer(null, null, null, null);
+
+    private final StatementListener listener;
+    private final StatementEvent.Kind kind;
+    private final String sql;
+    private final List<Object[]> parameters;
+    private final long start;
+    private long prepared = UNSET;
+    private long executed = UNSET;
+    private boolean done = false;
+
+    private StatementTimer(StatementListener listener, StatementEvent.Kind kind, String sql, List<Object[]> parameters) {
+        this.listener = listener;
+        this.kind = kind;
+        this.sql = sql;
+        this.parameters = parameters;
+        this.start = listener != null ? System.nanoTime() : 0;
+    }
+
+    static StatementTimer start(StatementListener listener, StatementEvent.Kind kind, String sql, Object[] params) {
+        if (listener == null) {
+            return NONE;
+        }
+        return new StatementTimer(listener, kind, sql, Collections.singletonList(params));
+    }
+
+    static StatementTimer startBatch(StatementListener listener, String sql, List<Object[]> rows) {
+        if (listener == null) {
+            return NONE;
+        }
+        return new StatementTimer(listener, StatementEvent.Kind.BATCH, sql, rows);
+    }
+
+    void prepared() {
+        if (listener != null) {
+            prepared = System.nanoTime();
+        }
+    }
+
+    void executed() {
+        if (listener != null) {
+            executed = System.nanoTime();
+        }
+    }
+
+    void finish(long rowCount) {
+        fire(rowCount, null);
+    }
+
+    void fail(Throwable error) {
+        fire(-1, error);
+    }
+
+    private void fire(long rowCount, Throwable error) {
+        if (listener == null || done) {
+            return;
+        }
+        done = true;
+        long end = System.nanoTime();
+        // a phase that was never reached ends where the statement ended
+        long prepareEnd = prepared != UNSET ? prepared : end;
+        long executeEnd = executed != UNSET ? executed : end;
+        try {
+            listener.onStatement(new StatementEvent(kind, sql, parameters, rowCount,
+                    prepareEnd - start, executeEnd - prepareEnd, end - executeEnd, error));
+        } catch (RuntimeException e) {
+            log.warn("Statement listener failed", e);
+        }
+    }
+}
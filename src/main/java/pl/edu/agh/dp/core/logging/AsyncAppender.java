@@ -0,0 +1,98 @@
+package pl.edu.agh.dp.core.logging;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands events to a background thread through a fixed size ring buffer, so the calling
+ * thread never waits for console or file I/O. When the buffer is full new events are
+ * dropped (and counted) instead of blocking the caller.
+ */
+public class AsyncAppender implements LogAppender {
+
+    private static final long POLL_TIMEOUT_MS = 100;
+
+    private final LogAppender delegate;
+    private final ArrayBlockingQueue<Event> buffer;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    public AsyncAppender(LogAppender delegate, int bufferSize) {
+        this.delegate = delegate;
+        this.buffer = new ArrayBlockingQueue<>(Math.max(1, bufferSize));
+        this.worker = new Thread(this::drainLoop, "orm-log-writer");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    @Override
+    public void append(LogLevel level, String category, String message, Throwable error) {
+        if (!running || !buffer.offer(new Event(level, category, message, error))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void drainLoop() {
+        while (running) {
+            try {
+                Event event = buffer.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (event != null) {
+                    write(event);
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        drain();
+    }
+
+    private void drain() {
+        Event event;
+        while ((event = buffer.poll()) != null) {
+            write(event);
+        }
+    }
+
+    private void write(Event event) {
+        try {
+            delegate.append(event.level, event.category, event.message, event.error);
+        } catch (RuntimeException ignored) {
+            // a broken appender must not kill the writer thread
+        }
+    }
+
+    /**
+     * Number of events lost because the buffer was full.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+        delegate.close();
+    }
+
+    private static final class Event {
+        final LogLevel level;
+        final String category;
+        final String message;
+        final Throwable error;
+
+        Event(LogLevel level, String category, String message, Throwable error) {
+            this.level = level;
+            this.category = category;
+            this.message = message;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package pl.edu.agh.dp.core.logging;
+
+import java.io.PrintStream;
+import java.time.LocalTime;
+
+/**
+ * Writes to stdout, WARN and ERROR go to stderr.
+ */
+public class ConsoleAppender implements LogAppender {
+
+    @Override
+    public void append(LogLevel level, String category, String message, Throwable error) {
+        PrintStream out = level.compareTo(LogLevel.WARN) >= 0 ? System.err : System.out;
+        StringBuilder sb = new StringBuilder(64 + message.length());
+        sb.append(LocalTime.now()).append(' ')
+                .append(level).append(' ')
+                .append(category).append(" - ")
+                .append(message);
+        synchronized (out) {
+            out.println(sb);
+            if (error != null) {
+                error.printStackTrace(out);
+            }
+        }
+    }
+}
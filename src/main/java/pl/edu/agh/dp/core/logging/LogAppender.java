@@ -0,0 +1,16 @@
+package pl.edu.agh.dp.core.logging;
+
+/**
+ * Destination of log events. Only called for events that passed the level check,
+ * so implementations may format eagerly.
+ */
+public interface LogAppender {
+
+    void append(LogLevel level, String category, String message, Throwable error);
+
+    /**
+     * Flushes pending events and releases resources.
+     */
+    default void close() {
+    }
+}
@@ -0,0 +1,5 @@
+package pl.edu.agh.dp.core.logging;
+
+public enum LogLevel {
+    TRACE, DEBUG, INFO, WARN, ERROR, OFF
+}
@@ -0,0 +1,255 @@
+package pl.edu.agh.dp.core.logging;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Logging facade used across the ORM.
+ * <p>
+ * Every logger keeps its effective level in a field, so a disabled call costs one
+ * comparison. Messages are built only after the level check - use the {@code {}}
+ * placeholder overloads (or a Supplier) instead of string concatenation, and guard
+ * anything more expensive with {@link #isDebugEnabled()} / {@link #isTraceEnabled()}.
+ * <p>
+ * Levels are set per category prefix, e.g. {@code orm.log.level.orm.sql=DEBUG} shows every
+ * statement and {@code orm.log.level.pl.edu.agh.dp.core.persister=DEBUG} the persisters.
+ * SQL is logged under the {@link #SQL} category.
+ */
+public final class OrmLogger {
+
+    public static final String SQL_CATEGORY = "orm.sql";
+    public static final int DEFAULT_ASYNC_BUFFER_SIZE = 8192;
+
+    private static final Map<String, OrmLogger> LOGGERS = new ConcurrentHashMap<>();
+    private static final Map<String, LogLevel> CATEGORY_LEVELS = new ConcurrentHashMap<>();
+    private static volatile LogLevel rootLevel = LogLevel.INFO;
+    private static volatile LogAppender appender = new ConsoleAppender();
+
+    public static final OrmLogger SQL = getLogger(SQL_CATEGORY);
+
+    private final String category;
+    private volatile int threshold;
+
+    private OrmLogger(String category) {
+        this.category = category;
+        this.threshold = resolveLevel(category).ordinal();
+    }
+
+    public static OrmLogger getLogger(Class<?> type) {
+        return getLogger(type.getName());
+    }
+
+    public static OrmLogger getLogger(String category) {
+        return LOGGERS.computeIfAbsent(category, OrmLogger::new);
+    }
+
+    // ==================== Configuration ====================
+
+    /**
+     * Reads {@code orm.log.level} (root), {@code orm.log.level.<category>} and
+     * {@code orm.log.async} / {@code orm.log.async.bufferSize}.
+     */
+    public static synchronized void configure(Properties properties) {
+        String root = properties.getProperty("orm.log.level");
+        if (root != null) {
+            rootLevel = LogLevel.valueOf(root.trim().toUpperCase());
+        }
+        String prefix = "orm.log.level.";
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                CATEGORY_LEVELS.put(key.substring(prefix.length()),
+                        LogLevel.valueOf(properties.getProperty(key).trim().toUpperCase()));
+            }
+        }
+        if (Boolean.parseBoolean(properties.getProperty("orm.log.async", "false"))
+                && !(appender instanceof AsyncAppender)) {
+            int bufferSize = Integer.parseInt(properties.getProperty(
+                    "orm.log.async.bufferSize", String.valueOf(DEFAULT_ASYNC_BUFFER_SIZE)));
+            AsyncAppender async = new AsyncAppender(appender, bufferSize);
+            setAppender(async);
+            // flush what is still buffered when the JVM exits
+            Runtime.getRuntime().addShutdownHook(new Thread(async::close, "orm-log-flush"));
+        }
+        refreshLevels();
+    }
+
+    public static synchronized void setRootLevel(LogLevel level) {
+        rootLevel = level;
+        refreshLevels();
+    }
+
+    public static synchronized void setLevel(String categoryPrefix, LogLevel level) {
+        if (level == null) {
+            CATEGORY_LEVELS.remove(categoryPrefix);
+        } else {
+            CATEGORY_LEVELS.put(categoryPrefix, level);
+        }
+        refreshLevels();
+    }
+
+    /**
+     * Replaces the appender and returns the previous one (not closed).
+     */
+    public static synchronized LogAppender setAppender(LogAppender newAppender) {
+        LogAppender previous = appender;
+        appender = newAppender;
+        return previous;
+    }
+
+    public static LogAppender getAppender() {
+        return appender;
+    }
+
+    private static void refreshLevels() {
+        for (OrmLogger logger : LOGGERS.values()) {
+            logger.threshold = resolveLevel(logger.category).ordinal();
+        }
+    }
+
+    // the longest configured prefix of the category wins
+    private static LogLevel resolveLevel(String category) {
+        LogLevel level = rootLevel;
+        int matched = -1;
+        for (Map.Entry<String, LogLevel> entry : CATEGORY_LEVELS.entrySet()) {
+            String prefix = entry.getKey();
+            if (prefix.length() > matched && category.startsWith(prefix)) {
+                level = entry.getValue();
+                matched = prefix.length();
+            }
+        }
+        return level;
+    }
+
+    // ==================== Level checks ====================
+
+    public boolean isEnabled(LogLevel level) {
+        return level.ordinal() >= threshold && level != LogLevel.OFF;
+    }
+
+    public boolean isTraceEnabled() {
+        return LogLevel.TRACE.ordinal() >= threshold;
+    }
+
+    public boolean isDebugEnabled() {
+        return LogLevel.DEBUG.ordinal() >= threshold;
+    }
+
+    public boolean isInfoEnabled() {
+        return LogLevel.INFO.ordinal() >= threshold;
+    }
+
+    public boolean isWarnEnabled() {
+        return LogLevel.WARN.ordinal() >= threshold;
+    }
+
+    // ==================== Logging ====================
+
+    public void trace(String message) {
+        if (isTraceEnabled()) write(LogLevel.TRACE, message, null);
+    }
+
+    public void trace(String pattern, Object arg) {
+        if (isTraceEnabled()) write(LogLevel.TRACE, format(pattern, arg, null, null, 1), null);
+    }
+
+    public void trace(String pattern, Object arg1, Object arg2) {
+        if (isTraceEnabled()) write(LogLevel.TRACE, format(pattern, arg1, arg2, null, 2), null);
+    }
+
+    public void trace(String pattern, Object arg1, Object arg2, Object arg3) {
+        if (isTraceEnabled()) write(LogLevel.TRACE, format(pattern, arg1, arg2, arg3, 3), null);
+    }
+
+    public void trace(Supplier<String> message) {
+        if (isTraceEnabled()) write(LogLevel.TRACE, message.get(), null);
+    }
+
+    public void debug(String message) {
+        if (isDebugEnabled()) write(LogLevel.DEBUG, message, null);
+    }
+
+    public void debug(String pattern, Object arg) {
+        if (isDebugEnabled()) write(LogLevel.DEBUG, format(pattern, arg, null, null, 1), null);
+    }
+
+    public void debug(String pattern, Object arg1, Object arg2) {
+        if (isDebugEnabled()) write(LogLevel.DEBUG, format(pattern, arg1, arg2, null, 2), null);
+    }
+
+    public void debug(String pattern, Object arg1, Object arg2, Object arg3) {
+        if (isDebugEnabled()) write(LogLevel.DEBUG, format(pattern, arg1, arg2, arg3, 3), null);
+    }
+
+    public void debug(Supplier<String> message) {
+        if (isDebugEnabled()) write(LogLevel.DEBUG, message.get(), null);
+    }
+
+    public void info(String message) {
+        if (isInfoEnabled()) write(LogLevel.INFO, message, null);
+    }
+
+    public void info(String pattern, Object arg) {
+        if (isInfoEnabled()) write(LogLevel.INFO, format(pattern, arg, null, null, 1), null);
+    }
+
+    public void info(String pattern, Object arg1, Object arg2) {
+        if (isInfoEnabled()) write(LogLevel.INFO, format(pattern, arg1, arg2, null, 2), null);
+    }
+
+    public void warn(String message) {
+        if (isWarnEnabled()) write(LogLevel.WARN, message, null);
+    }
+
+    public void warn(String pattern, Object arg) {
+        if (isWarnEnabled()) write(LogLevel.WARN, format(pattern, arg, null, null, 1), null);
+    }
+
+    public void warn(String pattern, Object arg1, Object arg2) {
+        if (isWarnEnabled()) write(LogLevel.WARN, format(pattern, arg1, arg2, null, 2), null);
+    }
+
+    public void warn(String message, Throwable error) {
+        if (isWarnEnabled()) write(LogLevel.WARN, message, error);
+    }
+
+    public void error(String message) {
+        if (isEnabled(LogLevel.ERROR)) write(LogLevel.ERROR, message, null);
+    }
+
+    public void error(String pattern, Object arg) {
+        if (isEnabled(LogLevel.ERROR)) write(LogLevel.ERROR, format(pattern, arg, null, null, 1), null);
+    }
+
+    public void error(String message, Throwable error) {
+        if (isEnabled(LogLevel.ERROR)) write(LogLevel.ERROR, message, error);
+    }
+
+    private void write(LogLevel level, String message, Throwable error) {
+        try {
+            appender.append(level, category, message, error);
+        } catch (RuntimeException ignored) {
+            // logging must never break the caller
+        }
+    }
+
+    /**
+     * Replaces consecutive {@code {}} with the arguments; surplus placeholders stay as they are.
+     */
+    static String format(String pattern, Object arg1, Object arg2, Object arg3, int argCount) {
+        StringBuilder sb = new StringBuilder(pattern.length() + 32);
+        int from = 0;
+        for (int i = 0; i < argCount; i++) {
+            int at = pattern.indexOf("{}", from);
+            if (at < 0) {
+                break;
+            }
+            Object arg = i == 0 ? arg1 : i == 1 ? arg2 : arg3;
+            sb.append(pattern, from, at).append(arg);
+            from = at + 2;
+        }
+        sb.append(pattern, from, pattern.length());
+        return sb.toString();
+    }
+}
@@ -1,18 +1,19 @@
 package pl.edu.agh.dp.core.mapping;
 
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
 import pl.edu.agh.dp.core.api.Session;
 import pl.edu.agh.dp.core.api.LazyList;
 import pl.edu.agh.dp.core.api.LazySet;
+import pl.edu.agh.dp.core.enhance.DirtyTracking;
 import pl.edu.agh.dp.core.exceptions.IntegrityException;
+import pl.edu.agh.dp.core.util.FieldAccessor;
+import pl.edu.agh.dp.core.util.FieldAccessors;
 
 import java.util.*;
 
 @Getter
 @Setter
-@AllArgsConstructor
 public class AssociationMetadata {
 
     public static final String alias = "a1";
@@ -41,6 +42,32 @@ public class AssociationMetadata {
     private List<PropertyMetadata> joinColumns;
     private List<PropertyMetadata> targetJoinColumns;
     private EntityMetadata associationTable;
+    // collections of how many owners are loaded at once
+    private int batchSize = 1;
+    // to-one targets referenced through a proxy when the row holds the foreign key
+    private boolean proxied = true;
+    // size, contains and get of an unloaded collection query the database instead of loading it
+    private boolean extraLazy;
+    // resolved by MetadataRegistry.build
+    private FieldAccessor accessor;
+    private FieldAccessor mappedByAccessor;
+
+    public AssociationMetadata(Type type, Class<?> targetEntity, String field, String mappedBy, Boolean hasForeignKey,
+                               String tableName, String targetTableName, CollectionType collectionType,
+                               List<PropertyMetadata> joinColumns, List<PropertyMetadata> targetJoinColumns,
+                               EntityMetadata associationTable) {
+        this.type = type;
+        this.targetEntity = targetEntity;
+        this.field = field;
+        this.mappedBy = mappedBy;
+        this.hasForeignKey = hasForeignKey;
+        this.tableName = tableName;
+        this.targetTableName = targetTableName;
+        this.collectionType = collectionType;
+        this.joinColumns = joinColumns;
+        this.targetJoinColumns = targetJoinColumns;
+        this.associationTable = associationTable;
+    }
 
     public AssociationMetadata(AssociationMetadata other) {
         this.type = other.type;
@@ -65,6 +92,61 @@ public class AssociationMetadata {
                 .toList();
 
         this.associationTable = other.associationTable; // intentional shared reference
+        this.batchSize = other.batchSize;
+        this.proxied = other.proxied;
+        this.extraLazy = other.extraLazy;
+        this.accessor = other.accessor;
+        this.mappedByAccessor = other.mappedByAccessor;
+    }
+
+    public void resolveAccessor(Class<?> owner) {
+        if (accessor == null || !accessor.getDeclaringClass().isAssignableFrom(owner)) {
+            accessor = FieldAccessors.find(owner, field);
+        }
+        if (mappedBy != null && targetEntity != null) {
+            mappedByAccessor = FieldAccessors.find(targetEntity, mappedBy);
+        }
+    }
+
+    /**
+     * Value of the association field on the owning entity.
+     */
+    public Object getValue(Object owner) {
+        FieldAccessor resolved = accessor;
+        if (resolved == null || !resolved.appliesTo(owner)) {
+            resolved = FieldAccessors.get(owner.getClass(), field);
+        }
+        return resolved.get(owner);
+    }
+
+    public void setValue(Object owner, Object value) {
+        FieldAccessor resolved = accessor;
+        if (resolved == null || !resolved.appliesTo(owner)) {
+            resolved = FieldAccessors.get(owner.getClass(), field);
+        }
+        resolved.set(owner, value);
+        // written past the enhanced setter
+        DirtyTracking.markAll(owner);
+    }
+
+    /**
+     * Value of the opposite side ({@code mappedBy}) on an entity of the target class.
+     */
+    public Object getMappedByValue(Object target) {
+        FieldAccessor resolved = mappedByAccessor;
+        if (resolved == null || !resolved.appliesTo(target)) {
+            resolved = FieldAccessors.get(target.getClass(), mappedBy);
+        }
+        return resolved.get(target);
+    }
+
+    public void setMappedByValue(Object target, Object value) {
+        FieldAccessor resolved = mappedByAccessor;
+        if (resolved == null || !resolved.appliesTo(target)) {
+            resolved = FieldAccessors.get(target.getClass(), mappedBy);
+        }
+        resolved.set(target, value);
+        DirtyTracking.markAll(target);
     }
 
     public PropertyMetadata getFieldProperty() {
@@ -84,9 +166,9 @@ public class AssociationMetadata {
         if (collectionType == CollectionType.NONE) {
             throw new IntegrityException("In this relationship, collections are not supported.");
         } else if (collectionType == CollectionType.LIST) {
-            return new LazyList<>(session, owner, field);
+            return new LazyList<>(session, owner, field, extraLazy);
         } else if (collectionType == CollectionType.SET) {
-            return new LazySet<>(session, owner, field);
+            return new LazySet<>(session, owner, field, extraLazy);
         } else {
             throw new IntegrityException("Collection '" + collectionType + "' is not supported.");
         }
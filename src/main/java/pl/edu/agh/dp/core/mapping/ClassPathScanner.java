@@ -1,5 +1,6 @@
 package pl.edu.agh.dp.core.mapping;
 
+import pl.edu.agh.dp.core.logging.OrmLogger;
 import pl.edu.agh.dp.core.mapping.annotations.Entity;
 
 import java.io.*;
@@ -13,6 +14,8 @@ import java.util.jar.*;
 
 public class ClassPathScanner {
 
+    private static final OrmLogger log = OrmLogger.getLogger(ClassPathScanner.class);
+
     public static Set<Class<?>> scanForEntities(ClassLoader cl) {
         return scanForEntities(cl, (String[]) null);
     }
@@ -49,7 +52,7 @@ public class ClassPathScanner {
                 scanResource(resource, basePackage, cl, entities);
             }
         } catch (Exception e) {
-            System.err.println("ClassPathScanner: Error scanning package " + basePackage + ": " + e.getMessage());
+            log.warn("Error scanning package {}: {}", basePackage, e.getMessage());
         }
     }
 
@@ -71,7 +74,7 @@ public class ClassPathScanner {
                 scanNestedJar(resource, basePackage, cl, entities);
             }
         } catch (Exception e) {
-            System.err.println("ClassPathScanner: Error scanning resource " + resource + ": " + e.getMessage());
+            log.warn("Error scanning resource {}: {}", resource, e.getMessage());
         }
     }
 
@@ -106,7 +109,7 @@ public class ClassPathScanner {
                     scanJarFile(new File(filePath), basePackage, cl, entities);
                 }
             } catch (Exception ex) {
-                System.err.println("ClassPathScanner: Failed to scan JAR: " + jarUrl);
+                log.warn("Failed to scan JAR: {}", jarUrl);
             }
         }
     }
@@ -127,7 +130,7 @@ public class ClassPathScanner {
                 scanClassesFromUrl(classUrl, basePackage, cl, entities, scannedClasses);
             }
         } catch (Exception e) {
-            System.err.println("ClassPathScanner: Error with nested JAR: " + e.getMessage());
+            log.warn("Error with nested JAR: {}", e.getMessage());
         }
     }
 
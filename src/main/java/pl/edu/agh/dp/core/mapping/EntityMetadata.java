@@ -7,6 +7,7 @@ import lombok.Setter;
 import pl.edu.agh.dp.core.util.ReflectionUtils;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 @Getter
 @Setter
@@ -54,7 +55,7 @@ public class EntityMetadata {
             cond.append(" = ");
 
             if (pm.getType() == String.class) cond.append("'");
-            cond.append(ReflectionUtils.getFieldValue(entity, pm.getName()));
+            cond.append(pm.getValue(entity));
             if (pm.getType() == String.class) cond.append("'");
 
             conditions.add(cond.toString());
@@ -62,6 +63,23 @@ public class EntityMetadata {
         return new TargetStatement(String.join(" AND ", conditions), tableName);
     }
 
+    /**
+     * Id condition for {@code size} entities bound as parameters: {@code id IN (?, ...)},
+     * or one group of conditions per entity for composite ids.
+     */
+    public TargetStatement getSelectByIdsStatement(int size) {
+        List<String> columns = new ArrayList<>();
+        for (PropertyMetadata pm : idColumns.values()) {
+            columns.add(TargetStatement.getTargetName() + "." + pm.getColumnName());
+        }
+        if (columns.size() == 1) {
+            return new TargetStatement(columns.get(0) + " IN (" + String.join(", ", Collections.nCopies(size, "?")) + ")",
+                    tableName);
+        }
+        String group = "(" + columns.stream().map(column -> column + " = ?").collect(Collectors.joining(" AND ")) + ")";
+        return new TargetStatement("(" + String.join(" OR ", Collections.nCopies(size, group)) + ")", tableName);
+    }
+
     public String getSqlTable() {
         StringBuilder sb = new StringBuilder();
         sb.append("CREATE TABLE IF NOT EXISTS ").append(tableName);
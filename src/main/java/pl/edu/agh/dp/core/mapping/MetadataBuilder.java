@@ -39,6 +39,10 @@ public class MetadataBuilder {
         List<PropertyMetadata> idProperties = new ArrayList<>();
 
         for (Field f : clazz.getDeclaredFields()) {
+            // state added by the enhancer (see EntityEnhancer) or other tools
+            if (f.isSynthetic()) {
+                continue;
+            }
             // foreign keys and relationships
             boolean isForeignColumn = true;
             if (f.isAnnotationPresent(OneToOne.class)) {
@@ -206,6 +210,7 @@ public class MetadataBuilder {
                 new ArrayList<>(),
                 null
         );
+        am.setProxied(annotation.proxy());
         meta.addAssociationMetadata(am);
     }
 
@@ -241,6 +246,8 @@ public class MetadataBuilder {
                 new ArrayList<>(),
                 null
         );
+        am.setBatchSize(Math.max(1, annotation.batchSize()));
+        am.setExtraLazy(annotation.extraLazy());
         meta.addAssociationMetadata(am);
     }
 
@@ -289,6 +296,7 @@ public class MetadataBuilder {
                 new ArrayList<>(),
                 null
         );
+        am.setProxied(annotation.proxy());
         meta.addAssociationMetadata(am);
     }
 
@@ -339,6 +347,8 @@ public class MetadataBuilder {
                 new ArrayList<>(),
                 null
         );
+        am.setBatchSize(Math.max(1, annotation.batchSize()));
+        am.setExtraLazy(annotation.extraLazy());
         meta.addAssociationMetadata(am);
     }
 
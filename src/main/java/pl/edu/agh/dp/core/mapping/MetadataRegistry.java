@@ -1,6 +1,7 @@
 package pl.edu.agh.dp.core.mapping;
 
 import lombok.Getter;
+import pl.edu.agh.dp.core.logging.OrmLogger;
 import pl.edu.agh.dp.core.mapping.annotations.DiscriminatorColumn;
 import pl.edu.agh.dp.core.mapping.annotations.DiscriminatorValue;
 import pl.edu.agh.dp.core.mapping.annotations.Entity;
@@ -14,6 +15,8 @@ import java.lang.reflect.Field;
 @Getter
 public class MetadataRegistry {
 
+    private static final OrmLogger log = OrmLogger.getLogger(MetadataRegistry.class);
+
     private final Map<Class<?>, EntityMetadata> entities = new HashMap<>();
 
     public void build(List<Class<?>> entitiesClasses) {
@@ -48,10 +51,31 @@ public class MetadataRegistry {
             }
         }
 
-        // printing -> change for logging
-        for (Class<?> clazz : entitiesClasses){
-            EntityMetadata entity = entities.get(clazz);
-            System.out.println(entity);
+        // bind properties and associations to their fields once, rows are hydrated without lookups
+        for (EntityMetadata entity : entities.values()) {
+            resolveAccessors(entity);
+        }
+
+        if (log.isDebugEnabled()) {
+            for (Class<?> clazz : entitiesClasses){
+                log.debug("{}", entities.get(clazz));
+            }
+        }
+    }
+
+    private void resolveAccessors(EntityMetadata entity) {
+        Class<?> owner = entity.getEntityClass();
+        for (PropertyMetadata pm : entity.getProperties().values()) {
+            pm.resolveAccessor(owner);
+        }
+        for (PropertyMetadata pm : entity.getIdColumns().values()) {
+            pm.resolveAccessor(owner);
+        }
+        for (PropertyMetadata pm : entity.getFkColumns().values()) {
+            pm.resolveAccessor(owner);
+        }
+        for (AssociationMetadata am : entity.getAssociationMetadata().values()) {
+            am.resolveAccessor(owner);
         }
     }
 
@@ -900,8 +924,8 @@ public class MetadataRegistry {
         // Zapisz mapy w metadanych Roota (to tam będziemy szukać przy ładowaniu danych)
         inhMetadata.setClassToDiscriminator(classToDisc);
         inhMetadata.setDiscriminatorToClass(discToClass);
-        System.out.println("\nclass to disc " + inhMetadata.getClassToDiscriminator());
-        System.out.println("\ndisc to class " + inhMetadata.getDiscriminatorToClass());
+        log.debug("class to disc {}", inhMetadata.getClassToDiscriminator());
+        log.debug("disc to class {}", inhMetadata.getDiscriminatorToClass());
     }
 
     private List<EntityMetadata> getAllSubclasses(EntityMetadata root) {
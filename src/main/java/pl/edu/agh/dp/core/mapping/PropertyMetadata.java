@@ -1,9 +1,10 @@
 package pl.edu.agh.dp.core.mapping;
 
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import pl.edu.agh.dp.core.util.FieldAccessor;
+import pl.edu.agh.dp.core.util.FieldAccessors;
 
 import java.lang.reflect.Type;
 import java.time.LocalDate;
@@ -16,7 +17,6 @@ import java.util.List;
 import java.util.UUID;
 
 @Getter
-@AllArgsConstructor
 @Setter
 @NoArgsConstructor
 public class PropertyMetadata implements Cloneable {
@@ -31,6 +31,24 @@ public class PropertyMetadata implements Cloneable {
     boolean isIndex = false;        // false
     Object defaultValue = "__UNSET__";     // default to unset
     String references = null;       // if foreign key
+    // resolved by MetadataRegistry.build, null when no field of that name exists (e.g. fk columns)
+    FieldAccessor accessor = null;
+
+    public PropertyMetadata(String name, String columnName, Type type, String sqlType, boolean isId,
+                            boolean autoIncrement, boolean isUnique, boolean isNullable, boolean isIndex,
+                            Object defaultValue, String references) {
+        this.name = name;
+        this.columnName = columnName;
+        this.type = type;
+        this.sqlType = sqlType;
+        this.isId = isId;
+        this.autoIncrement = autoIncrement;
+        this.isUnique = isUnique;
+        this.isNullable = isNullable;
+        this.isIndex = isIndex;
+        this.defaultValue = defaultValue;
+        this.references = references;
+    }
 
     public PropertyMetadata(PropertyMetadata other) {
         this.name = other.getName();
@@ -44,6 +62,32 @@ public class PropertyMetadata implements Cloneable {
         this.isIndex = other.isIndex();
         this.defaultValue = other.getDefaultValue();
         this.references = other.getReferences();
+        this.accessor = other.getAccessor();
+    }
+
+    /**
+     * Binds the property to the field of the given class (or one of its superclasses), if there is one.
+     */
+    public void resolveAccessor(Class<?> owner) {
+        if (name != null && (accessor == null || !accessor.getDeclaringClass().isAssignableFrom(owner))) {
+            accessor = FieldAccessors.find(owner, name);
+        }
+    }
+
+    public Object getValue(Object target) {
+        FieldAccessor resolved = accessor;
+        if (resolved == null || !resolved.appliesTo(target)) {
+            resolved = FieldAccessors.get(target.getClass(), name);
+        }
+        return resolved.get(target);
+    }
+
+    public void setValue(Object target, Object value) {
+        FieldAccessor resolved = accessor;
+        if (resolved == null || !resolved.appliesTo(target)) {
+            resolved = FieldAccessors.get(target.getClass(), name);
+        }
+        resolved.set(target, value);
     }
 
     public String toSqlColumn() {
@@ -9,4 +9,16 @@ import java.lang.annotation.Target;
 @Target(ElementType.FIELD)
 public @interface OneToMany {
     String mappedBy() default "";
+
+    /**
+     * Number of uninitialized collections of this relationship loaded together: when one is
+     * accessed, the same collection of other owners in the session comes with it in one query.
+     */
+    int batchSize() default 1;
+
+    /**
+     * Size, isEmpty, contains (and get of a list) of the collection run a COUNT / EXISTS / single
+     * row query while it is not loaded; it is loaded by everything else, e.g. iteration.
+     */
+    boolean extraLazy() default false;
 }
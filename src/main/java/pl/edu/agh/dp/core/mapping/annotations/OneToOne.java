@@ -9,4 +9,10 @@ import java.lang.annotation.Target;
 @Target(ElementType.FIELD)
 public @interface OneToOne {
     String mappedBy() default "";
+
+    /**
+     * When the row holds the foreign key, a loaded entity gets a proxy of the target carrying
+     * its id, initialized on first access; false leaves the field null until {@code Session.load}.
+     */
+    boolean proxy() default true;
 }
@@ -1,14 +1,20 @@
 package pl.edu.agh.dp.core.persister;
 
 import lombok.NoArgsConstructor;
+import pl.edu.agh.dp.core.enhance.DirtyTrackable;
+import pl.edu.agh.dp.core.enhance.DirtyTracking;
 import pl.edu.agh.dp.core.exceptions.IntegrityException;
 import pl.edu.agh.dp.core.finder.Condition;
 import pl.edu.agh.dp.core.finder.QuerySpec;
 import pl.edu.agh.dp.core.finder.Sort;
+import pl.edu.agh.dp.core.jdbc.Dialect;
 import pl.edu.agh.dp.core.jdbc.JdbcExecutor;
+import pl.edu.agh.dp.core.logging.OrmLogger;
 import pl.edu.agh.dp.core.mapping.AssociationMetadata;
 import pl.edu.agh.dp.core.mapping.EntityMetadata;
+import pl.edu.agh.dp.core.mapping.PairTargetStatements;
 import pl.edu.agh.dp.core.mapping.PropertyMetadata;
+import pl.edu.agh.dp.core.mapping.TargetStatement;
 import pl.edu.agh.dp.core.util.ReflectionUtils;
 
 import java.lang.reflect.ParameterizedType;
@@ -24,66 +30,65 @@ import java.util.stream.Stream;
 @NoArgsConstructor(force = true)
 public abstract class AbstractInheritanceStrategy implements InheritanceStrategy {
 
+    private static final OrmLogger log = OrmLogger.getLogger(AbstractInheritanceStrategy.class);
+
+    // queries embedding literal values (relationship loads) get a plan each, so the cache is an LRU:
+    // the one-off shapes push each other out while the ones in use stay
+    private static final int MAX_ROW_PLANS = 256;
+    // label of the owner columns of a batch load
+    private static final String OWNER_COLUMN = "orm_owner_";
+
     protected final EntityMetadata entityMetadata;
+    protected final Dialect dialect;
+    protected final EntitySqlPlan sqlPlan;
+    private final Map<String, RowPlan> rowPlans = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, RowPlan> eldest) {
+                    return size() > MAX_ROW_PLANS;
+                }
+            });
 
-    protected AbstractInheritanceStrategy(EntityMetadata metadata) {
+    protected AbstractInheritanceStrategy(EntityMetadata metadata, Dialect dialect, EntitySqlPlan sqlPlan) {
         this.entityMetadata = metadata;
+        this.dialect = dialect;
+        this.sqlPlan = sqlPlan;
     }
 
-    protected Object getValueFromResultSet(ResultSet rs, String columnName, Type type) throws SQLException {
-        if (type instanceof ParameterizedType) {
-            ParameterizedType pt = (ParameterizedType) type;
-
-            if (pt.getRawType() == List.class) {
-                Type elementType = pt.getActualTypeArguments()[0];
+    /**
+     * Mapper for the rows of the query: the plan is compiled from the result set metadata on the
+     * first row and kept per SQL string, so later queries of the same shape skip building it.
+     */
+    protected RowMapper<Object> planned(String sql, RowPlan.Factory factory) {
+        return new RowMapper<>() {
+            private RowPlan plan;
 
-                if (elementType == Integer.class) {
-                    List<Integer> val = (List<Integer>) rs.getObject(columnName);
-                    return rs.wasNull() ? null : val;
-                } else if (elementType == String.class) {
-                    List<String> val = (List<String>) rs.getObject(columnName);
-                    return rs.wasNull() ? null : val;
+            @Override
+            public Object mapRow(ResultSet rs) throws SQLException {
+                if (plan == null) {
+                    plan = rowPlans.get(sql);
+                    if (plan == null) {
+                        plan = factory.build(rs.getMetaData());
+                        rowPlans.put(sql, plan);
+                    }
                 }
+                return plan.map(rs);
+            }
+        };
+    }
+
+    /**
+     * Proxies of the to-one targets of the class and its parents, read from the foreign key
+     * columns; labelled {@code table_column} when {@code qualified}.
+     */
+    protected static void references(RowPlan.EntityPlan entityPlan, EntityMetadata meta, boolean qualified) {
+        for (EntityMetadata current = meta; current != null; current = current.getInheritanceMetadata().getParent()) {
+            for (Map.Entry<AssociationMetadata, PropertyMetadata> reference : EntitySqlPlan.references(current).entrySet()) {
+                PropertyMetadata fk = reference.getValue();
+                String label = qualified ? current.getTableName() + "_" + fk.getColumnName() : fk.getColumnName();
+                entityPlan.reference(label, reference.getKey(), fk);
             }
-        } else if (type == Long.class || type == long.class) {
-            long val = rs.getLong(columnName);
-            return rs.wasNull() ? null : val;
-        } else if (type == Integer.class || type == int.class) {
-            int val = rs.getInt(columnName);
-            return rs.wasNull() ? null : val;
-        } else if (type == Short.class || type == short.class) {
-            short val = rs.getShort(columnName);
-            return rs.wasNull() ? null : val;
-        } else if (type == Float.class || type == float.class) {
-            float val = rs.getFloat(columnName);
-            return rs.wasNull() ? null : val;
-        } else if (type == String.class) {
-            return rs.getString(columnName);
-        } else if (type == Double.class || type == double.class) {
-            double val = rs.getDouble(columnName);
-            return rs.wasNull() ? null : val;
-        } else if (type == Boolean.class || type == boolean.class) {
-            boolean val = rs.getBoolean(columnName);
-            return rs.wasNull() ? null : val;
-        } else if (type == LocalTime.class) {
-            java.sql.Time sqlTime = rs.getTime(columnName);
-            return sqlTime != null ? sqlTime.toLocalTime() : null;
-        } else if (type == LocalDate.class) {
-            java.sql.Date sqlDate = rs.getDate(columnName);
-            return sqlDate != null ? sqlDate.toLocalDate() : null;
-        } else if (type == LocalDateTime.class) {
-            java.sql.Timestamp sqlTimestamp = rs.getTimestamp(columnName);
-            return sqlTimestamp != null ? sqlTimestamp.toLocalDateTime() : null;
-        } else if (type == OffsetDateTime.class) {
-            Object obj = rs.getObject(columnName);
-            if (obj == null) return null;
-            if (obj instanceof OffsetDateTime) return obj;
-            if (obj instanceof java.sql.Timestamp) {
-                return ((java.sql.Timestamp) obj).toLocalDateTime().atOffset(java.time.ZoneOffset.UTC);
-            }
-        }
-
-        return rs.getObject(columnName);
+        }
     }
 
     protected Object getIdValue(Object entity) {
@@ -91,32 +96,427 @@ public abstract class AbstractInheritanceStrategy implements InheritanceStrategy
 
         if (idColumns.size() == 1) {
             PropertyMetadata idProp = idColumns.iterator().next();
-            return ReflectionUtils.getFieldValue(entity, idProp.getName());
+            return idProp.getValue(entity);
         } else {
             // Composite key - zwróć mapę
             Map<String, Object> compositeId = new HashMap<>();
             for (PropertyMetadata idProp : idColumns) {
-                Object value = ReflectionUtils.getFieldValue(entity, idProp.getName());
+                Object value = idProp.getValue(entity);
                 compositeId.put(idProp.getColumnName(), value);
             }
             return compositeId;
         }
     }
 
-    protected void appendIdWhereClause(StringBuilder sql, List<Object> params, Collection<PropertyMetadata> idColumns, Object id) {
+    /**
+     * Parameters of a find by id: the id itself, or its fields for composite keys.
+     */
+    protected Object[] idParams(Collection<PropertyMetadata> idColumns, Object id) {
         if (idColumns.size() == 1) {
             PropertyMetadata pm = idColumns.iterator().next();
-            sql.append(pm.getColumnName()).append(" = ?");
-            params.add(((Class<?>)pm.getType()).cast(id));
-        } else {
-            // composite key
-            int count = 0;
-            for(PropertyMetadata pm : idColumns) {
-                if(count > 0) sql.append(" AND ");
-                sql.append(pm.getColumnName()).append(" = ?");
-                Object val = ReflectionUtils.getFieldValue(id, pm.getName());
-                params.add(val);
-                count++;
+            return new Object[] { ((Class<?>) pm.getType()).cast(id) };
+        }
+        Object[] params = new Object[idColumns.size()];
+        int i = 0;
+        for (PropertyMetadata pm : idColumns) {
+            params[i++] = pm.getValue(id);
+        }
+        return params;
+    }
+
+    /**
+     * INSERT columns of the table with their values; null values are left out so the database
+     * defaults apply.
+     */
+    protected void collectInsertValues(EntitySqlPlan.TableSql table, Object entity, List<String> columns, List<Object> values) {
+        for (PropertyMetadata prop : table.getInsertable()) {
+            Object value = prop.getValue(entity);
+            if (value != null) {
+                columns.add(prop.getColumnName());
+                values.add(value);
+            }
+        }
+        for (PropertyMetadata prop : table.getAlwaysNull()) {
+            columns.add(prop.getColumnName());
+            values.add(null);
+        }
+    }
+
+    protected void collectUpdateValues(EntitySqlPlan.TableSql table, Object entity, List<String> setColumns, List<Object> values) {
+        for (PropertyMetadata prop : table.getUpdatable()) {
+            setColumns.add(prop.getColumnName());
+            values.add(prop.getValue(entity));
+        }
+    }
+
+    /**
+     * UPDATEs of the state columns that differ from the snapshot, one per table with a change and
+     * table by table so that the same shapes batch. Enhanced entities (see {@link DirtyTrackable})
+     * only compare the columns of the fields written since the last flush. Snapshots of the updated
+     * entities are brought up to date once the statements ran. Returns the number of entities updated.
+     */
+    @Override
+    public int updateDirty(List<Object> entities, List<Object[]> snapshots, PersisterSession session) {
+        List<EntitySqlPlan.StateColumn> state = sqlPlan.getState();
+        int[] stateBits = sqlPlan.getStateBits();
+        List<Object> changed = new ArrayList<>();
+        List<Object[]> changedSnapshots = new ArrayList<>();
+        List<Object[]> currentValues = new ArrayList<>();
+        List<BitSet> dirtyColumns = new ArrayList<>();
+        List<DirtyTrackable> written = new ArrayList<>();
+        for (int e = 0; e < entities.size(); e++) {
+            Object entity = entities.get(e);
+            Object[] snapshot = snapshots.get(e);
+            long[] writtenFields = null;
+            if (stateBits != null && entity instanceof DirtyTrackable trackable) {
+                writtenFields = trackable.$$orm_getDirty();
+                if (writtenFields == null) {
+                    continue;
+                }
+                written.add(trackable);
+            }
+            BitSet dirty = null;
+            Object[] current = null;
+            for (int i = 0; i < state.size(); i++) {
+                if (writtenFields != null && !DirtyTracking.isWritten(writtenFields, stateBits[i])) {
+                    continue;
+                }
+                EntitySqlPlan.StateColumn column = state.get(i);
+                Object value = column.read(entity);
+                if (column.isWritten(value) && !Objects.equals(value, snapshot[i])) {
+                    if (dirty == null) {
+                        dirty = new BitSet(state.size());
+                        current = new Object[state.size()];
+                    }
+                    dirty.set(i);
+                    current[i] = value;
+                }
+            }
+            if (dirty != null) {
+                changed.add(entity);
+                changedSnapshots.add(snapshot);
+                currentValues.add(current);
+                dirtyColumns.add(dirty);
+            }
+        }
+        if (changed.isEmpty()) {
+            written.forEach(DirtyTracking::clear);
+            return 0;
+        }
+
+        List<PendingStatement> updates = new ArrayList<>();
+        List<EntitySqlPlan.TableSql> tables = sqlPlan.getTables();
+        for (int t = 0; t < tables.size(); t++) {
+            EntitySqlPlan.TableSql table = tables.get(t);
+            for (int e = 0; e < changed.size(); e++) {
+                BitSet dirty = dirtyColumns.get(e);
+                List<String> setColumns = new ArrayList<>();
+                List<Object> params = new ArrayList<>();
+                for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1)) {
+                    if (state.get(i).table() == t) {
+                        setColumns.add(state.get(i).column());
+                        params.add(currentValues.get(e)[i]);
+                    }
+                }
+                if (setColumns.isEmpty()) {
+                    continue;
+                }
+                for (PropertyMetadata pm : table.getIdColumns()) {
+                    params.add(pm.getValue(changed.get(e)));
+                }
+                updates.add(new PendingStatement(table.updateSql(setColumns), params.toArray()));
+            }
+        }
+        try {
+            executeGrouped(session.getJdbcExecutor(), updates);
+        } catch (Exception e) {
+            throw new RuntimeException("Error updating entities " + changed, e);
+        }
+
+        for (int e = 0; e < changed.size(); e++) {
+            BitSet dirty = dirtyColumns.get(e);
+            for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1)) {
+                changedSnapshots.get(e)[i] = currentValues.get(e)[i];
+            }
+        }
+        written.forEach(DirtyTracking::clear);
+        return changed.size();
+    }
+
+    @Override
+    public void updateAssociations(List<Object> entities, PersisterSession session) {
+        List<PendingStatement> statements = new ArrayList<>();
+        for (Object entity : entities) {
+            collectAssociationUpdates(entity, statements);
+        }
+        try {
+            executeGrouped(session.getJdbcExecutor(), statements);
+        } catch (Exception e) {
+            throw new RuntimeException("Error updating association tables of " + entities, e);
+        }
+    }
+
+    // ==================== Bulk UPDATE / DELETE ====================
+
+    /**
+     * Rows matched by a bulk statement: the FROM clause (one table, or the joined tables of the
+     * hierarchy) and the condition picking the rows of the entity and its subclasses that match
+     * the spec. {@code table} holds the id columns.
+     */
+    protected record BulkFilter(String table, String from, String where, List<Object> params) {
+
+        String whereClause() {
+            return where.isEmpty() ? "" : " WHERE " + where;
+        }
+
+        String select(String columns) {
+            return "SELECT " + columns + " FROM " + from + whereClause();
+        }
+    }
+
+    /**
+     * SINGLE_TABLE and TABLE_PER_CLASS rows live in one table, so there is a filter for every table
+     * holding rows of the entity. JOINED and CONCRETE_CLASS rows span tables and get one filter
+     * over the joined tables instead, see {@link #bulkDeleteTables()}.
+     */
+    protected abstract List<BulkFilter> bulkFilters(QuerySpec<?> querySpec);
+
+    /**
+     * Tables holding a part of every row (subclasses first), or empty when a row is a single
+     * table of {@link #bulkFilters}.
+     */
+    protected List<String> bulkDeleteTables() {
+        return List.of();
+    }
+
+    /**
+     * Tables of the subclasses, deepest first, followed by {@link EntitySqlPlan#getTables()} from
+     * the entity up to the root.
+     */
+    protected List<String> childFirstTables(List<EntityMetadata> subclasses) {
+        List<String> tables = new ArrayList<>();
+        for (int i = subclasses.size() - 1; i >= 0; i--) {
+            if (subclasses.get(i) != entityMetadata) {
+                tables.add(subclasses.get(i).getTableName());
+            }
+        }
+        List<EntitySqlPlan.TableSql> own = sqlPlan.getTables();
+        for (int i = own.size() - 1; i >= 0; i--) {
+            tables.add(own.get(i).getTableName());
+        }
+        return tables;
+    }
+
+    /**
+     * Filter over the joined tables of {@link EntitySqlPlan#getPolymorphicSelect()}: a row belongs
+     * to the entity when one of the given tables has a part of it. No tables means every row.
+     */
+    protected BulkFilter joinedBulkFilter(String table, List<EntityMetadata> rowTables,
+                                          String conditions, List<Object> params) {
+        String polymorphic = sqlPlan.getPolymorphicSelect();
+        String from = polymorphic.substring(polymorphic.indexOf(" FROM ") + " FROM ".length());
+        String pkName = sqlPlan.getRoot().getIdColumns().values().iterator().next().getColumnName();
+        List<String> where = new ArrayList<>();
+        if (!rowTables.isEmpty()) {
+            where.add("(" + rowTables.stream().map(meta -> meta.getTableName() + "." + pkName + " IS NOT NULL")
+                    .collect(Collectors.joining(" OR ")) + ")");
+        }
+        if (!conditions.isEmpty()) {
+            where.add(conditions);
+        }
+        return new BulkFilter(table, from, String.join(" AND ", where), params);
+    }
+
+    @Override
+    public int updateWhere(QuerySpec<?> querySpec, Map<String, Object> assignments, PersisterSession session,
+                           List<Object[]> matched) {
+        if (assignments.isEmpty()) {
+            return 0;
+        }
+        Map<EntitySqlPlan.TableSql, Map<String, Object>> columns = assignedColumns(assignments);
+        JdbcExecutor jdbc = session.getJdbcExecutor();
+        List<BulkFilter> filters = bulkFilters(querySpec);
+        try {
+            if (bulkDeleteTables().isEmpty()) {
+                // every filtered table has all the columns of the entity
+                Map<String, Object> set = columns.values().iterator().next();
+                int updated = 0;
+                for (BulkFilter filter : filters) {
+                    collectIds(jdbc, filter, matched);
+                    List<Object> params = new ArrayList<>(set.values());
+                    params.addAll(filter.params());
+                    updated += jdbc.update("UPDATE " + filter.table() + " SET " + setClause(set.keySet())
+                            + filter.whereClause(), params.toArray());
+                }
+                return updated;
+            }
+            BulkFilter filter = filters.get(0);
+            if (columns.size() == 1) {
+                collectIds(jdbc, filter, matched);
+                Map.Entry<EntitySqlPlan.TableSql, Map<String, Object>> only = columns.entrySet().iterator().next();
+                List<Object> params = new ArrayList<>(only.getValue().values());
+                params.addAll(filter.params());
+                return jdbc.update("UPDATE " + only.getKey().getTableName() + " SET " + setClause(only.getValue().keySet())
+                        + " WHERE " + idInSubquery(filter), params.toArray());
+            }
+            // an UPDATE of one table may change what the condition matches for the next one
+            List<Object[]> ids = selectIds(jdbc, filter);
+            if (matched != null) {
+                matched.addAll(ids);
+            }
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            for (Map.Entry<EntitySqlPlan.TableSql, Map<String, Object>> entry : columns.entrySet()) {
+                List<Object[]> rows = new ArrayList<>(ids.size());
+                for (Object[] id : ids) {
+                    List<Object> row = new ArrayList<>(entry.getValue().values());
+                    row.addAll(Arrays.asList(id));
+                    rows.add(row.toArray());
+                }
+                jdbc.updateBatch(entry.getKey().updateSql(List.copyOf(entry.getValue().keySet())), rows);
+            }
+            return ids.size();
+        } catch (Exception e) {
+            throw new RuntimeException("Error in bulk update of " + entityMetadata.getEntityClass().getSimpleName(), e);
+        }
+    }
+
+    @Override
+    public int deleteWhere(QuerySpec<?> querySpec, PersisterSession session, List<Object[]> matched) {
+        JdbcExecutor jdbc = session.getJdbcExecutor();
+        List<BulkFilter> filters = bulkFilters(querySpec);
+        List<String> tables = bulkDeleteTables();
+        try {
+            if (tables.size() <= 1) {
+                for (BulkFilter filter : filters) {
+                    collectIds(jdbc, filter, matched);
+                }
+            }
+            // association rows first, while the condition still sees the entities
+            for (BulkFilter filter : filters) {
+                deleteAssociationRows(jdbc, filter);
+            }
+            if (tables.isEmpty()) {
+                int deleted = 0;
+                for (BulkFilter filter : filters) {
+                    deleted += jdbc.update("DELETE FROM " + filter.table() + filter.whereClause(), filter.params().toArray());
+                }
+                return deleted;
+            }
+            BulkFilter filter = filters.get(0);
+            if (tables.size() == 1) {
+                return jdbc.update("DELETE FROM " + tables.get(0) + " WHERE " + idInSubquery(filter),
+                        filter.params().toArray());
+            }
+            // every DELETE removes rows the joined condition needs
+            List<Object[]> ids = selectIds(jdbc, filter);
+            if (matched != null) {
+                matched.addAll(ids);
+            }
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            String where = EntitySqlPlan.idWhere(null, sqlPlan.getRoot().getIdColumns().values());
+            for (String table : tables) {
+                jdbc.updateBatch("DELETE FROM " + table + " WHERE " + where, ids);
+            }
+            return ids.size();
+        } catch (Exception e) {
+            throw new RuntimeException("Error in bulk delete of " + entityMetadata.getEntityClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Assigned values by column and by the table holding the column. Only plain properties of
+     * the entity can be assigned, ids and associations cannot.
+     */
+    private Map<EntitySqlPlan.TableSql, Map<String, Object>> assignedColumns(Map<String, Object> assignments) {
+        Map<EntitySqlPlan.TableSql, Map<String, Object>> columns = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> assignment : assignments.entrySet()) {
+            EntitySqlPlan.TableSql owner = null;
+            String column = null;
+            for (EntitySqlPlan.TableSql table : sqlPlan.getTables()) {
+                for (PropertyMetadata pm : table.getUpdatable()) {
+                    if (pm.getName().equals(assignment.getKey())) {
+                        owner = table;
+                        column = pm.getColumnName();
+                    }
+                }
+            }
+            if (column == null) {
+                throw new IntegrityException(
+                        "Field cannot be assigned in a bulk update.\n" +
+                        "Class: " + entityMetadata.getEntityClass().getName() + "\n" +
+                        "Field: " + assignment.getKey() + "\n" +
+                        "Only fields of the entity that are not ids or relationships can be set."
+                );
+            }
+            columns.computeIfAbsent(owner, k -> new LinkedHashMap<>()).put(column, assignment.getValue());
+        }
+        return columns;
+    }
+
+    private static String setClause(Collection<String> columns) {
+        return String.join(" = ?, ", columns) + " = ?";
+    }
+
+    /**
+     * {@code id IN (SELECT ...)} over the filtered rows, a row value for composite ids.
+     */
+    private String idInSubquery(BulkFilter filter) {
+        Collection<PropertyMetadata> idColumns = sqlPlan.getRoot().getIdColumns().values();
+        String columns = idColumns.stream().map(PropertyMetadata::getColumnName).collect(Collectors.joining(", "));
+        String selected = idColumns.stream().map(pm -> filter.table() + "." + pm.getColumnName())
+                .collect(Collectors.joining(", "));
+        return (idColumns.size() == 1 ? columns : "(" + columns + ")") + " IN (" + filter.select(selected) + ")";
+    }
+
+    // ids of the rows a single statement is about to change, when the caller asks for them
+    private void collectIds(JdbcExecutor jdbc, BulkFilter filter, List<Object[]> matched) {
+        if (matched != null) {
+            matched.addAll(selectIds(jdbc, filter));
+        }
+    }
+
+    private List<Object[]> selectIds(JdbcExecutor jdbc, BulkFilter filter) {
+        Collection<PropertyMetadata> idColumns = sqlPlan.getRoot().getIdColumns().values();
+        String selected = idColumns.stream().map(pm -> filter.table() + "." + pm.getColumnName())
+                .collect(Collectors.joining(", "));
+        int count = idColumns.size();
+        return jdbc.query(filter.select(selected), rs -> {
+            Object[] id = new Object[count];
+            for (int i = 0; i < count; i++) {
+                id[i] = rs.getObject(i + 1);
+            }
+            return id;
+        }, filter.params().toArray());
+    }
+
+    /**
+     * Rows of the many to many tables pointing at the filtered entities, of the entity and of
+     * every subclass.
+     */
+    private void deleteAssociationRows(JdbcExecutor jdbc, BulkFilter filter) {
+        Set<String> done = new HashSet<>();
+        for (EntityMetadata meta : sqlPlan.getSubclasses()) {
+            for (AssociationMetadata am : meta.getAssociationMetadata().values()) {
+                if (am.getType() != AssociationMetadata.Type.MANY_TO_MANY) {
+                    continue;
+                }
+                List<String> columns = new ArrayList<>();
+                List<String> referenced = new ArrayList<>();
+                for (PropertyMetadata pm : am.getTargetJoinColumns()) {
+                    columns.add(pm.getColumnName());
+                    referenced.add(filter.table() + "." + resolveColumnName(pm.getReferencedName(), meta));
+                }
+                String tableName = am.getAssociationTable().getTableName();
+                if (!done.add(tableName + columns)) {
+                    continue;
+                }
+                String target = columns.size() == 1 ? columns.get(0) : "(" + String.join(", ", columns) + ")";
+                jdbc.update("DELETE FROM " + tableName + " WHERE " + target + " IN ("
+                        + filter.select(String.join(", ", referenced)) + ")", filter.params().toArray());
             }
         }
     }
@@ -126,7 +526,7 @@ public abstract class AbstractInheritanceStrategy implements InheritanceStrategy
 
         // handle relationships
         for (AssociationMetadata am : meta.getAssociationMetadata().values()) {
-            Object value = ReflectionUtils.getFieldValue(entity, am.getField());
+            Object value = am.getValue(entity);
             if (value != null && meta.getFkColumns().containsKey(am.getField())) { // check if value belongs to the sql table
                 // set fk id
                 if (am.getHasForeignKey()) {
@@ -160,138 +560,379 @@ public abstract class AbstractInheritanceStrategy implements InheritanceStrategy
     }
 
     protected void insertAssociationTables(JdbcExecutor jdbc, Object entity) {
+        List<PendingStatement> statements = new ArrayList<>();
+        collectAssociationInserts(entity, statements);
+        insertGrouped(jdbc, statements);
+    }
+
+    protected void collectAssociationInserts(Object entity, List<PendingStatement> statements) {
         assert entityMetadata != null;
 
         // handle relationships
         for (AssociationMetadata am : entityMetadata.getAssociationMetadata().values()) {
-            Object value = ReflectionUtils.getFieldValue(entity, am.getField());
+            Object value = am.getValue(entity);
             if (value != null
                  && am.getHasForeignKey()
                  && am.getType() == AssociationMetadata.Type.MANY_TO_MANY
                  && !((Collection) value).isEmpty())
             {
-                List<String> targetRef = new ArrayList<>();
-                List<String> currentRef = new ArrayList<>();
-
-                String assFieldname = am.getField();
-                EntityMetadata assTable = am.getAssociationTable();
-
-                List<String> assColumns = new ArrayList<>();
-                for (PropertyMetadata pm : am.getTargetJoinColumns()) {
-                    currentRef.add(pm.getReferencedName());
-                    assColumns.add(pm.getColumnName());
-                }
-                for (PropertyMetadata pm : am.getJoinColumns()) {
-                    targetRef.add(pm.getReferencedName());
-                    assColumns.add(pm.getColumnName());
-                }
-                String assStmt = "INSERT INTO " + assTable.getTableName() +
-                        " (" + String.join(", ", assColumns) + " )" +
-                        " VALUES ";
-                String assValuesStmt = "(" + "?,".repeat(assColumns.size() - 1) + "?)";
-
-                System.out.println(assStmt);
-                List<Object> baseValues = new ArrayList<>();
-                List<List<Object>> assAssValues = new ArrayList<>();
-                for (String fieldName : currentRef) {
-                    System.out.println(fieldName + " from " + entity.getClass().getSimpleName());
-                    Object field = ReflectionUtils.getFieldValue(entity, fieldName);
-                    baseValues.add(field);
-                }
-                Collection<?> assField = (Collection<?>) ReflectionUtils.getFieldValue(entity, assFieldname);
-                for (Object relationshipEntity : assField) {
-                    // first is the example, copy it and fill with the other values
-                    assAssValues.add(new ArrayList<>(baseValues));
-                    List<Object> assValues = assAssValues.get(assAssValues.size() - 1);
-                    for (String fieldName : targetRef) {
-                        System.out.println(fieldName + " from " + relationshipEntity.getClass().getSimpleName());
-                        Object field = ReflectionUtils.getFieldValue(relationshipEntity, fieldName);
-                        assValues.add(field);
-                    }
-                }
-                // flatten array
-                assStmt += String.join(", ", java.util.Collections.nCopies(assAssValues.size(), assValuesStmt)) +";";
-                List<Object> array = new ArrayList<>();
-                for (List<Object> el : assAssValues) {
-                    array.addAll(el);
-                }
-                System.out.println(array);
-                jdbc.insert(assStmt, "", array.toArray());
+                statements.add(buildAssociationInsert(am, entity, (Collection<?>) value));
             }
         }
     }
 
     protected void updateAssociationTables(JdbcExecutor jdbc, Object entity) {
+        List<PendingStatement> statements = new ArrayList<>();
+        collectAssociationUpdates(entity, statements);
+        executeGrouped(jdbc, statements);
+    }
+
+    protected void collectAssociationUpdates(Object entity, List<PendingStatement> statements) {
         assert entityMetadata != null;
 
         // handle relationships
         for (AssociationMetadata am : entityMetadata.getAssociationMetadata().values()) {
-            Object value = ReflectionUtils.getFieldValue(entity, am.getField());
+            Object value = am.getValue(entity);
             if (value != null
                 && am.getType() == AssociationMetadata.Type.MANY_TO_MANY)
             {
-                List<String> targetRef = new ArrayList<>();
-                List<String> currentRef = new ArrayList<>();
-
-                String assFieldname = am.getField();
                 EntityMetadata assTable = am.getAssociationTable();
 
-                List<String> assColumns = new ArrayList<>();
+                List<String> conditions = new ArrayList<>();
+                List<Object> baseValues = new ArrayList<>();
                 for (PropertyMetadata pm : am.getTargetJoinColumns()) {
-                    currentRef.add(pm.getReferencedName());
-                    assColumns.add(pm.getColumnName());
+                    conditions.add(pm.getColumnName() + " = ?");
+                    baseValues.add(ReflectionUtils.getFieldValue(entity, pm.getReferencedName()));
                 }
-                for (PropertyMetadata pm : am.getJoinColumns()) {
-                    targetRef.add(pm.getReferencedName());
-                    assColumns.add(pm.getColumnName());
-                }
-                String assStmt = "INSERT INTO " + assTable.getTableName() +
-                        " (" + String.join(", ", assColumns) + " )" +
-                        " VALUES ";
-                String assValuesStmt = "(" + "?,".repeat(assColumns.size() - 1) + "?)";
-
-                System.out.println(assStmt);
-                List<List<Object>> assAssValues = new ArrayList<>();
-                assAssValues.add(new ArrayList<>());
-                for (String fieldName : currentRef) {
-                    System.out.println(fieldName + " from " + entity.getClass().getSimpleName());
-                    Object field = ReflectionUtils.getFieldValue(entity, fieldName);
-                    assAssValues.get(0).add(field);
+                String deleteStmt = "DELETE FROM " + assTable.getTableName() + " WHERE " + String.join(" AND ", conditions);
+                statements.add(new PendingStatement(deleteStmt, baseValues.toArray()));
+                // only delete if empty
+                if (((Collection) value).isEmpty()) {
+                    continue;
                 }
-                Collection<?> assField = (Collection<?>) ReflectionUtils.getFieldValue(entity, assFieldname);
-                for (Object relationshipEntity : assField) {
-                    // first is the example, copy it and fill with the other values
-                    assAssValues.add(new ArrayList<>(){{addAll(assAssValues.get(0));}});
-                    List<Object> assValues = assAssValues.get(assAssValues.size() - 1);
-                    for (String fieldName : targetRef) {
-                        System.out.println(fieldName + " from " + relationshipEntity.getClass().getSimpleName());
-                        Object field = ReflectionUtils.getFieldValue(relationshipEntity, fieldName);
-                        assValues.add(field);
-                    }
+                statements.add(buildAssociationInsert(am, entity, (Collection<?>) value));
+            }
+        }
+    }
+
+    private PendingStatement buildAssociationInsert(AssociationMetadata am, Object entity, Collection<?> related) {
+        List<String> targetRef = new ArrayList<>();
+        List<String> currentRef = new ArrayList<>();
+
+        EntityMetadata assTable = am.getAssociationTable();
+
+        List<String> assColumns = new ArrayList<>();
+        for (PropertyMetadata pm : am.getTargetJoinColumns()) {
+            currentRef.add(pm.getReferencedName());
+            assColumns.add(pm.getColumnName());
+        }
+        for (PropertyMetadata pm : am.getJoinColumns()) {
+            targetRef.add(pm.getReferencedName());
+            assColumns.add(pm.getColumnName());
+        }
+        String assStmt = "INSERT INTO " + assTable.getTableName() +
+                " (" + String.join(", ", assColumns) + " )" +
+                " VALUES ";
+        String assValuesStmt = "(" + "?,".repeat(assColumns.size() - 1) + "?)";
+
+        List<Object> baseValues = new ArrayList<>();
+        for (String fieldName : currentRef) {
+            baseValues.add(ReflectionUtils.getFieldValue(entity, fieldName));
+        }
+        // one row per related entity, flattened
+        List<Object> array = new ArrayList<>();
+        for (Object relationshipEntity : related) {
+            array.addAll(baseValues);
+            for (String fieldName : targetRef) {
+                array.add(ReflectionUtils.getFieldValue(relationshipEntity, fieldName));
+            }
+        }
+        assStmt += String.join(", ", java.util.Collections.nCopies(related.size(), assValuesStmt)) + ";";
+        return new PendingStatement(assStmt, array.toArray());
+    }
+
+    /**
+     * SELECT for a QuerySpec. The mapper may return instances of other classes of the
+     * hierarchy, callers keep only those of the requested type.
+     */
+    protected static class SelectQuery {
+        final String sql;
+        final Object[] params;
+        final RowMapper<?> mapper;
+
+        SelectQuery(String sql, Object[] params, RowMapper<?> mapper) {
+            this.sql = sql;
+            this.params = params;
+            this.mapper = mapper;
+        }
+    }
+
+    protected abstract <T> SelectQuery buildFindByQuery(Class<T> type, QuerySpec<T> querySpec);
+
+    /**
+     * SELECT of the entities joined to the owner of a relationship ({@link #getPairStatement}),
+     * with the owner columns appended to the select list.
+     */
+    protected abstract SelectQuery buildFindAllQuery(PairTargetStatements pairTargetStatements,
+                                                     List<String> ownerColumns, Object[] params);
+
+    @Override
+    public <T> List<T> findAll(Class<T> type, PersisterSession session, PairTargetStatements pairTargetStatements) {
+        SelectQuery query = buildFindAllQuery(pairTargetStatements, List.of(), new Object[0]);
+        // a relationship is loaded in the order get(i) of an extra lazy list reads it
+        String sql = pairTargetStatements.getJoinStatements().get(0).isBlank() ? query.sql : query.sql + idOrder();
+        try {
+            List<?> results = session.getJdbcExecutor().query(sql, query.mapper, query.params);
+            List<T> filtered = new ArrayList<>();
+            for (Object obj : results) {
+                if (type.isInstance(obj)) {
+                    filtered.add(type.cast(obj));
                 }
+            }
+            return filtered;
+        } catch (Exception e) {
+            throw new RuntimeException("Error finding entities in " + getClass().getSimpleName(), e);
+        }
+    }
 
-                StringBuilder deleteStmt = new StringBuilder("DELETE FROM " + assTable.getTableName() + " WHERE");
-                for (int i = 0; i < currentRef.size(); i++) {
-                    String colName = assColumns.get(i);
-                    Object colValue = assAssValues.get(0).get(i);
-                    deleteStmt.append(" ").append(assTable.getTableName()).append(".").append(colName).append(" = ").append(colValue);
+    @Override
+    public List<Object[]> findAllByOwners(Class<?> type, PersisterSession session, PairTargetStatements pairTargetStatements,
+                                          List<String> ownerColumns, Object[] params) {
+        SelectQuery query = buildFindAllQuery(pairTargetStatements, ownerColumns, params);
+        int count = ownerColumns.size();
+        try {
+            List<Object[]> rows = session.getJdbcExecutor().query(query.sql + idOrder(), rs -> {
+                Object[] row = new Object[count + 1];
+                row[0] = query.mapper.mapRow(rs);
+                for (int i = 0; i < count; i++) {
+                    row[i + 1] = rs.getObject(OWNER_COLUMN + i);
                 }
-                System.out.println(deleteStmt.toString());
-                jdbc.update(deleteStmt.toString());
-                // only delete if empty
-                if (((Collection) value).isEmpty()) {
-                    return;
+                return row;
+            }, query.params);
+            rows.removeIf(row -> !type.isInstance(row[0]));
+            return rows;
+        } catch (Exception e) {
+            throw new RuntimeException("Error batch loading entities in " + getClass().getSimpleName(), e);
+        }
+    }
+
+    @Override
+    public long count(PersisterSession session, PairTargetStatements pairTargetStatements, Object[] params) {
+        SelectQuery query = buildFindAllQuery(pairTargetStatements, List.of(), params);
+        try {
+            return session.getJdbcExecutor().queryOne(countQuery(query.sql), rs -> rs.getLong(1), query.params)
+                    .orElse(0L);
+        } catch (Exception e) {
+            throw new RuntimeException("Error counting entities in " + getClass().getSimpleName(), e);
+        }
+    }
+
+    @Override
+    public boolean exists(PersisterSession session, PairTargetStatements pairTargetStatements, Object[] params) {
+        SelectQuery query = buildFindAllQuery(pairTargetStatements, List.of(), params);
+        try {
+            return session.getJdbcExecutor().queryOne(existsQuery(query.sql), rs -> rs.getBoolean(1), query.params)
+                    .orElse(false);
+        } catch (Exception e) {
+            throw new RuntimeException("Error probing entities in " + getClass().getSimpleName(), e);
+        }
+    }
+
+    @Override
+    public <T> T findAt(Class<T> type, PersisterSession session, PairTargetStatements pairTargetStatements, int index) {
+        SelectQuery query = buildFindAllQuery(pairTargetStatements, List.of(), new Object[0]);
+        String sql = query.sql + idOrder() + dialect.getLimitClause(1, index);
+        try {
+            Object entity = session.getJdbcExecutor().queryOne(sql, query.mapper, query.params).orElse(null);
+            return type.isInstance(entity) ? type.cast(entity) : null;
+        } catch (Exception e) {
+            throw new RuntimeException("Error finding entity in " + getClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * ORDER BY of the ids of the entities selected by buildFindAllQuery, so the entities of a
+     * relationship come in the same order whichever rows are read.
+     */
+    protected abstract String idOrder();
+
+    protected static String idOrder(String tableName, Collection<PropertyMetadata> idColumns) {
+        return " ORDER BY " + idColumns.stream()
+                .map(pm -> (tableName != null ? tableName + "." : "") + pm.getColumnName())
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * COUNT(*) in place of the select list of the query.
+     */
+    protected String countQuery(String select) {
+        return "SELECT COUNT(*)" + select.substring(select.indexOf(" FROM "));
+    }
+
+    /**
+     * The query without its select list, wrapped in EXISTS.
+     */
+    protected String existsQuery(String select) {
+        return "SELECT EXISTS (SELECT 1" + select.substring(select.indexOf(" FROM ")) + ")";
+    }
+
+    /**
+     * Appends the owner columns to the select list, before the first FROM.
+     */
+    protected static String withOwnerColumns(String select, List<String> ownerColumns) {
+        if (ownerColumns.isEmpty()) {
+            return select;
+        }
+        StringBuilder columns = new StringBuilder();
+        for (int i = 0; i < ownerColumns.size(); i++) {
+            columns.append(", ").append(ownerColumns.get(i)).append(" AS ").append(OWNER_COLUMN).append(i);
+        }
+        int from = select.indexOf(" FROM ");
+        return select.substring(0, from) + columns + select.substring(from);
+    }
+
+    @Override
+    public PairTargetStatements getBatchPairStatement(String relationshipName, int size) {
+        assert entityMetadata != null;
+        AssociationMetadata associationMetadata = entityMetadata.getAssociationMetadata().get(relationshipName);
+        TargetStatement joinStmt = associationMetadata.getJoinStatement();
+        TargetStatement whereStmt = entityMetadata.getSelectByIdsStatement(size);
+        whereStmt.setTargetTableName(joinStmt.getRootTableName());
+        return new PairTargetStatements(whereStmt, joinStmt);
+    }
+
+    @Override
+    public <T> List<T> findBy(Class<T> type, PersisterSession session, QuerySpec<T> querySpec) {
+        SelectQuery query = buildFindByQuery(type, querySpec);
+        try {
+            List<?> results = session.getJdbcExecutor().query(query.sql, query.mapper, query.params);
+            List<T> filtered = new ArrayList<>();
+            for (Object obj : results) {
+                if (type.isInstance(obj)) {
+                    filtered.add(type.cast(obj));
                 }
+            }
+            return filtered;
+        } catch (Exception e) {
+            throw new RuntimeException("Error finding entities with QuerySpec in " + getClass().getSimpleName(), e);
+        }
+    }
+
+    @Override
+    public <T> Stream<T> streamBy(Class<T> type, PersisterSession session, QuerySpec<T> querySpec) {
+        SelectQuery query = buildFindByQuery(type, querySpec);
+        return session.getJdbcExecutor().stream(query.sql, query.mapper, query.params)
+                .filter(type::isInstance)
+                .map(type::cast);
+    }
+
+    /**
+     * Statement collected during a bulk operation. Consecutive statements with the same
+     * SQL are sent to the database as one JDBC batch.
+     */
+    protected static class PendingStatement {
+        final String sql;
+        final Object[] params;
+        final String keyColumn;
+
+        PendingStatement(String sql, Object[] params) {
+            this(sql, params, "");
+        }
+
+        PendingStatement(String sql, Object[] params, String keyColumn) {
+            this.sql = sql;
+            this.params = params;
+            this.keyColumn = keyColumn;
+        }
+
+        boolean sameShape(PendingStatement other) {
+            return sql.equals(other.sql) && keyColumn.equals(other.keyColumn);
+        }
+    }
+
+    /**
+     * Runs statements in order, batching runs of consecutive statements with the same SQL.
+     */
+    protected void executeGrouped(JdbcExecutor jdbc, List<PendingStatement> statements) {
+        int i = 0;
+        while (i < statements.size()) {
+            int end = endOfGroup(statements, i);
+            PendingStatement first = statements.get(i);
+            if (end - i == 1) {
+                jdbc.update(first.sql, first.params);
+            } else {
+                jdbc.updateBatch(first.sql, paramsOf(statements, i, end));
+            }
+            i = end;
+        }
+    }
 
-                // remove first example
-                assAssValues.remove(0);
-                // flatten array
-                assStmt += String.join(", ", java.util.Collections.nCopies(assAssValues.size(), assValuesStmt)) +";";
-                List<Object> array = new ArrayList<>();
-                for (List<Object> el : assAssValues) {
-                    array.addAll(el);
+    /**
+     * Like {@link #executeGrouped} but for inserts - runs go through {@link JdbcExecutor#insertBatch},
+     * which may send them as one multi-row INSERT. Returns the generated key of every statement
+     * (null for statements that do not return one).
+     */
+    protected List<Long> insertGrouped(JdbcExecutor jdbc, List<PendingStatement> statements) {
+        List<Long> generatedIds = new ArrayList<>(statements.size());
+        int i = 0;
+        while (i < statements.size()) {
+            int end = endOfGroup(statements, i);
+            PendingStatement first = statements.get(i);
+            if (end - i == 1) {
+                generatedIds.add(jdbc.insert(first.sql, first.keyColumn, first.params));
+            } else {
+                List<Long> ids = jdbc.insertBatch(first.sql, first.keyColumn, paramsOf(statements, i, end));
+                if (first.keyColumn.isBlank()) {
+                    generatedIds.addAll(Collections.nCopies(end - i, null));
+                } else {
+                    generatedIds.addAll(ids);
                 }
-                jdbc.insert(assStmt, "", array.toArray());
+            }
+            i = end;
+        }
+        return generatedIds;
+    }
+
+    private int endOfGroup(List<PendingStatement> statements, int start) {
+        int end = start + 1;
+        while (end < statements.size() && statements.get(end).sameShape(statements.get(start))) {
+            end++;
+        }
+        return end;
+    }
+
+    private List<Object[]> paramsOf(List<PendingStatement> statements, int start, int end) {
+        List<Object[]> rows = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            rows.add(statements.get(i).params);
+        }
+        return rows;
+    }
+
+    /**
+     * Entities referencing their own hierarchy through a foreign key need the referenced
+     * row's id before their own insert is built, so they cannot be batched.
+     */
+    protected boolean hasSelfReference() {
+        assert entityMetadata != null;
+        Class<?> rootClass = entityMetadata.getInheritanceMetadata().getRootClass().getEntityClass();
+        for (AssociationMetadata am : entityMetadata.getAssociationMetadata().values()) {
+            boolean isToOne = am.getType() == AssociationMetadata.Type.ONE_TO_ONE
+                    || am.getType() == AssociationMetadata.Type.MANY_TO_ONE;
+            if (isToOne && am.getHasForeignKey() && rootClass.isAssignableFrom(am.getTargetEntity())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected void assignGeneratedId(Object entity, EntityMetadata idOwner, Long generatedId) {
+        int numOfIds = idOwner.getIdColumns().size();
+        if (numOfIds == 1) {        // we have one key if there's more then for sure it's not autoincrement
+            PropertyMetadata idPropName = idOwner.getIdColumns().values().iterator().next();
+            if (idPropName.isAutoIncrement()) {
+                log.trace("seting id in {} value: {}", entity, generatedId);
+                idPropName.setValue(entity, generatedId);
             }
         }
     }
@@ -300,7 +941,7 @@ public abstract class AbstractInheritanceStrategy implements InheritanceStrategy
         assert entityMetadata != null;
         Set<String> idProvided = new HashSet<>();
         for (PropertyMetadata pm : entityMetadata.getIdColumns().values()) {
-            Object value = ReflectionUtils.getFieldValue(entity, pm.getName());
+            Object value = pm.getValue(entity);
             if (value != null) {
                 idProvided.add(pm.getName());
             } else {
@@ -349,17 +990,6 @@ public abstract class AbstractInheritanceStrategy implements InheritanceStrategy
         return isCompositeKey || !idProvided.isEmpty() ? "" : idColumns.iterator().next().getColumnName();
     }
 
-    protected String buildWhereClause(EntityMetadata meta) {
-        Collection<PropertyMetadata> idColumns = meta.getIdColumns().values();
-        List<String> conditions = new ArrayList<>();
-
-        for (PropertyMetadata idProp : idColumns) {
-            conditions.add(idProp.getColumnName() + " = ?");
-        }
-
-        return String.join(" AND ", conditions);
-    }
-
     protected String resolveColumnName(String fieldName, EntityMetadata meta) {
         PropertyMetadata pm = meta.getProperties().get(fieldName);
         if (pm != null) {
@@ -410,14 +1040,7 @@ public abstract class AbstractInheritanceStrategy implements InheritanceStrategy
     }
 
     protected <T> String buildQuerySpecLimitOffsetClause(QuerySpec<T> querySpec) {
-        StringBuilder sb = new StringBuilder();
-        if (querySpec.hasLimit()) {
-            sb.append(" LIMIT ").append(querySpec.getLimitValue());
-        }
-        if (querySpec.hasOffset()) {
-            sb.append(" OFFSET ").append(querySpec.getOffsetValue());
-        }
-        return sb.toString();
+        return dialect.getLimitClause(querySpec.getLimitValue(), querySpec.getOffsetValue());
     }
 
     protected Object[] prepareIdParams(Object idValue) {
@@ -429,19 +1052,6 @@ public abstract class AbstractInheritanceStrategy implements InheritanceStrategy
         }
     }
 
-    protected boolean fieldBelongsToClass(PropertyMetadata prop, Class<?> targetClass) {
-
-        if (prop.getColumnName().equals("DTYPE")){
-            return false;
-        }
-        try {
-            targetClass.getDeclaredField(prop.getName());
-            return true;
-        } catch (NoSuchFieldException e) {
-            return false;
-        }
-    }
-
     protected static Object castSqlValueToJava(Class<?> targetType, Object sqlValue) {
         if (sqlValue == null) {
             return null;
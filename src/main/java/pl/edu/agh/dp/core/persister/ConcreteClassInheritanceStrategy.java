@@ -1,15 +1,15 @@
 package pl.edu.agh.dp.core.persister;
 
 import javafx.util.Pair;
-import pl.edu.agh.dp.core.api.Session;
 import pl.edu.agh.dp.core.finder.Condition;
 import pl.edu.agh.dp.core.finder.QuerySpec;
 import pl.edu.agh.dp.core.finder.Sort;
+import pl.edu.agh.dp.core.jdbc.Dialect;
 import pl.edu.agh.dp.core.jdbc.JdbcExecutor;
 import pl.edu.agh.dp.core.mapping.*;
 import pl.edu.agh.dp.core.util.ReflectionUtils;
 
-import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.*;
 
@@ -25,8 +25,8 @@ import java.util.*;
  */
 public class ConcreteClassInheritanceStrategy extends AbstractInheritanceStrategy {
 
-    public ConcreteClassInheritanceStrategy(EntityMetadata metadata) {
-        super(metadata);
+    public ConcreteClassInheritanceStrategy(EntityMetadata metadata, Dialect dialect, EntitySqlPlan sqlPlan) {
+        super(metadata, dialect, sqlPlan);
     }
 
     @Override
@@ -57,127 +57,29 @@ public class ConcreteClassInheritanceStrategy extends AbstractInheritanceStrateg
         return new Pair<>(sb.toString(), entityMetadata.getSqlConstraints());
     }
 
-    /**
-     * Build chain of only NON-ABSTRACT classes from root to this entity.
-     * Abstract classes don't have tables, their fields are merged in during
-     * metadata setup.
-     */
-    private List<EntityMetadata> buildConcreteChain() {
-        List<EntityMetadata> fullChain = new ArrayList<>();
-        fullChain.add(entityMetadata);
-
-        EntityMetadata current = entityMetadata;
-        while (current.getInheritanceMetadata().getParent() != null) {
-            current = current.getInheritanceMetadata().getParent();
-            fullChain.add(current);
-        }
-        Collections.reverse(fullChain);
-
-        // Filter to only non-abstract classes
-        List<EntityMetadata> concreteChain = new ArrayList<>();
-        for (EntityMetadata meta : fullChain) {
-            if (!meta.isAbstract()) {
-                concreteChain.add(meta);
-            }
-        }
-        return concreteChain;
-    }
-
     @Override
-    public Object insert(Object entity, Session session) {
+    public Object insert(Object entity, PersisterSession session) {
         try {
             JdbcExecutor jdbc = session.getJdbcExecutor();
 
             Long generatedId = null;
             // Only insert into non-abstract tables
-            List<EntityMetadata> concreteChain = buildConcreteChain();
-
-            assert entityMetadata != null;
-            EntityMetadata root = entityMetadata.getInheritanceMetadata().getRootClass();
-
-            List<PropertyMetadata> idColumns = new ArrayList<>(root.getIdColumns().values());
-            Set<String> idProvided = getProvidedIds(entity);
-            String idProp = getIdNameAndCheckCompositeKey(idProvided, idColumns);
+            List<EntitySqlPlan.TableSql> tables = sqlPlan.getTables();
 
-            for (int i = 0; i < concreteChain.size(); i++) {
-                EntityMetadata meta = concreteChain.get(i);
-                List<String> columns = new ArrayList<>();
-                List<Object> values = new ArrayList<>();
+            String idProp = getRootIdProp(entity);
 
+            for (int i = 0; i < tables.size(); i++) {
+                EntityMetadata meta = tables.get(i).getMeta();
                 boolean isFirstConcreteInChain = (i == 0);
+                PendingStatement insert = buildLevelInsert(entity, tables.get(i), isFirstConcreteInChain, generatedId, idProp);
 
-                for (PropertyMetadata prop : meta.getProperties().values()) {
-                    // For the first concrete class, properties include merged abstract
-                    // parent fields; use hierarchy check instead of DeclaredField check
-                    if (isFirstConcreteInChain) {
-                        if (!fieldExistsInHierarchy(prop, meta.getEntityClass())) {
-                            continue;
-                        }
-                    } else {
-                        if (!fieldBelongsToClass(prop, meta.getEntityClass())) {
-                            continue;
-                        }
-                    }
-
-                    // ID auto-increment support for first concrete table
-                    if (isFirstConcreteInChain && prop.isId() && prop.isAutoIncrement()) {
-                        continue;
-                    }
-
-                    Object value = ReflectionUtils.getFieldValue(entity, prop.getName());
-                    if (value != null) {
-                        columns.add(prop.getColumnName());
-                        values.add(value);
-                    }
-                }
+                Long currentResult = jdbc.insert(insert.sql, insert.keyColumn, insert.params);
 
-                // DTYPE only in first concrete table
                 if (isFirstConcreteInChain) {
-                    columns.add("DTYPE");
-                    values.add(root.getInheritanceMetadata().getClassToDiscriminator()
-                            .get(entityMetadata.getEntityClass()));
-                }
-
-                // FK for non-first concrete tables
-                if (!isFirstConcreteInChain) {
-                    if (generatedId == null) {
-                        throw new RuntimeException("Generated ID is null but trying to insert into child table!");
-                    }
-                    String childIdColumnName = root.getIdColumns().keySet().iterator().next();
-                    columns.add(childIdColumnName);
-                    values.add(generatedId);
-                }
-
-                // relationships
-                fillRelationshipData(entity, meta, columns, values);
-
-                StringBuilder sql = new StringBuilder();
-                sql.append("INSERT INTO ")
-                        .append(meta.getTableName())
-                        .append(" (")
-                        .append(String.join(", ", columns))
-                        .append(") VALUES (")
-                        .append("?,".repeat(values.size()));
-                sql.deleteCharAt(sql.length() - 1);
-                sql.append(")");
-
-                System.out.println(
-                        "ConcreteClass Insert SQL (" + (isFirstConcreteInChain ? "FIRST" : "CHILD") + "): " + sql);
-                System.out.println("Values: " + values);
-
-                Long currentResult = jdbc.insert(sql.toString(), isFirstConcreteInChain ? idProp : "",
-                        values.toArray());
-
-                if (isFirstConcreteInChain) {
-                    int numOfIds = meta.getIdColumns().size();
-                    if (numOfIds == 1) {
+                    if (meta.getIdColumns().size() == 1) {
                         generatedId = currentResult;
-                        PropertyMetadata idPropName = meta.getIdColumns().values().iterator().next();
-                        if (idPropName.isAutoIncrement()) {
-                            System.out.println("Setting id in " + entity + " value: " + generatedId);
-                            ReflectionUtils.setFieldValue(entity, idPropName.getName(), generatedId);
-                        }
                     }
+                    assignGeneratedId(entity, meta, currentResult);
                 }
             }
 
@@ -192,114 +94,182 @@ public class ConcreteClassInheritanceStrategy extends AbstractInheritanceStrateg
     }
 
     @Override
-    public void update(Object entity, Session session) {
+    public void insertAll(List<Object> entities, PersisterSession session) {
+        if (entities.size() == 1 || hasSelfReference()) {
+            super.insertAll(entities, session);
+            return;
+        }
         try {
             JdbcExecutor jdbc = session.getJdbcExecutor();
-            List<EntityMetadata> concreteChain = buildConcreteChain();
+            List<EntitySqlPlan.TableSql> tables = sqlPlan.getTables();
+            EntityMetadata firstConcrete = tables.get(0).getMeta();
 
-            for (int i = 0; i < concreteChain.size(); i++) {
-                EntityMetadata meta = concreteChain.get(i);
-                boolean isFirstConcreteInChain = (i == 0);
-                List<String> setColumns = new ArrayList<>();
-                List<Object> values = new ArrayList<>();
-
-                for (PropertyMetadata prop : meta.getProperties().values()) {
-                    if (isFirstConcreteInChain) {
-                        if (!fieldExistsInHierarchy(prop, meta.getEntityClass())) {
-                            continue;
-                        }
-                    } else {
-                        if (!fieldBelongsToClass(prop, meta.getEntityClass())) {
-                            continue;
-                        }
-                    }
+            // first concrete table generates the ids for the rest of the chain
+            List<PendingStatement> firstInserts = new ArrayList<>();
+            for (Object entity : entities) {
+                firstInserts.add(buildLevelInsert(entity, tables.get(0), true, null, getRootIdProp(entity)));
+            }
+            List<Long> results = insertGrouped(jdbc, firstInserts);
 
-                    if (prop.isId()) {
-                        continue;
-                    }
+            List<Long> generatedIds = new ArrayList<>();
+            for (int i = 0; i < entities.size(); i++) {
+                generatedIds.add(firstConcrete.getIdColumns().size() == 1 ? results.get(i) : null);
+                assignGeneratedId(entities.get(i), firstConcrete, results.get(i));
+            }
 
-                    setColumns.add(prop.getColumnName());
-                    Object value = ReflectionUtils.getFieldValue(entity, prop.getName());
-                    values.add(value);
+            List<PendingStatement> childInserts = new ArrayList<>();
+            for (EntitySqlPlan.TableSql table : tables.subList(1, tables.size())) {
+                for (int i = 0; i < entities.size(); i++) {
+                    childInserts.add(buildLevelInsert(entities.get(i), table, false, generatedIds.get(i), ""));
                 }
+            }
+            insertGrouped(jdbc, childInserts);
 
-                fillRelationshipData(entity, meta, setColumns, values);
+            List<PendingStatement> associationInserts = new ArrayList<>();
+            for (Object entity : entities) {
+                collectAssociationInserts(entity, associationInserts);
+            }
+            insertGrouped(jdbc, associationInserts);
+        } catch (Exception e) {
+            throw new RuntimeException("Error inserting entities with concrete class strategy: " + entities, e);
+        }
+    }
 
-                if (setColumns.isEmpty()) {
-                    continue;
-                }
+    private String getRootIdProp(Object entity) {
+        assert entityMetadata != null;
+        EntityMetadata root = entityMetadata.getInheritanceMetadata().getRootClass();
 
-                assert entityMetadata != null;
-                // Use the first concrete class as the reference for ID lookup
-                EntityMetadata firstConcrete = concreteChain.get(0);
-                Object idValue = getIdValue(entity);
-                String whereClause = buildWhereClause(firstConcrete);
-                Object[] idParams = prepareIdParams(idValue);
+        List<PropertyMetadata> idColumns = new ArrayList<>(root.getIdColumns().values());
+        Set<String> idProvided = getProvidedIds(entity);
+        return getIdNameAndCheckCompositeKey(idProvided, idColumns);
+    }
 
-                List<Object> allParams = new ArrayList<>(values);
-                allParams.addAll(Arrays.asList(idParams));
+    private PendingStatement buildLevelInsert(Object entity, EntitySqlPlan.TableSql table, boolean isFirstConcreteInChain,
+                                              Long generatedId, String idProp) {
+        EntityMetadata root = sqlPlan.getRoot();
+        EntityMetadata meta = table.getMeta();
 
-                StringBuilder sql = new StringBuilder();
-                sql.append("UPDATE ").append(meta.getTableName())
-                        .append(" SET ").append(String.join(" = ?, ", setColumns))
-                        .append(setColumns.isEmpty() ? "" : " = ?")
-                        .append(" WHERE ").append(whereClause);
+        List<String> columns = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
 
-                System.out.println("ConcreteClass UPDATE SQL (" + meta.getTableName() + "): " + sql);
-                System.out.println("Values: " + allParams);
+        // For the first concrete class, the columns include merged abstract parent fields
+        collectInsertValues(table, entity, columns, values);
 
-                jdbc.update(sql.toString(), allParams.toArray());
-            }
+        // DTYPE only in first concrete table
+        if (isFirstConcreteInChain) {
+            columns.add("DTYPE");
+            values.add(root.getInheritanceMetadata().getClassToDiscriminator()
+                    .get(entityMetadata.getEntityClass()));
+        }
 
-            // association tables
-            updateAssociationTables(jdbc, entity);
-        } catch (Exception e) {
-            throw new RuntimeException("Error updating entity with concrete class strategy: " + entity, e);
+        // FK for non-first concrete tables
+        if (!isFirstConcreteInChain) {
+            if (generatedId == null) {
+                throw new RuntimeException("Generated ID is null but trying to insert into child table!");
+            }
+            String childIdColumnName = root.getIdColumns().keySet().iterator().next();
+            columns.add(childIdColumnName);
+            values.add(generatedId);
         }
+
+        // relationships
+        fillRelationshipData(entity, meta, columns, values);
+
+        return new PendingStatement(table.insertSql(columns), values.toArray(), isFirstConcreteInChain ? idProp : "");
     }
 
     @Override
-    public void delete(Object entity, Session session) {
+    public void update(Object entity, PersisterSession session) {
+        updateAll(List.of(entity), session);
+    }
+
+    @Override
+    public void updateAll(List<Object> entities, PersisterSession session) {
         try {
             JdbcExecutor jdbc = session.getJdbcExecutor();
-            List<EntityMetadata> chain = buildConcreteChain();
+            List<PendingStatement> updates = new ArrayList<>();
+            for (EntitySqlPlan.TableSql table : sqlPlan.getTables()) {
+                for (Object entity : entities) {
+                    PendingStatement update = buildLevelUpdate(entity, table);
+                    if (update != null) {
+                        updates.add(update);
+                    }
+                }
+            }
+            executeGrouped(jdbc, updates);
 
-            // DELETE from child to root to respect FK constraints
-            Collections.reverse(chain);
+            // association tables
+            List<PendingStatement> associationUpdates = new ArrayList<>();
+            for (Object entity : entities) {
+                collectAssociationUpdates(entity, associationUpdates);
+            }
+            executeGrouped(jdbc, associationUpdates);
+        } catch (Exception e) {
+            throw new RuntimeException("Error updating entity with concrete class strategy: "
+                    + (entities.size() == 1 ? entities.get(0) : entities), e);
+        }
+    }
 
-            assert entityMetadata != null;
-            EntityMetadata firstConcrete = chain.get(chain.size() - 1); // after reverse, first concrete is last
-            Object idValue = getIdValue(entity);
-            Object[] idParams = prepareIdParams(idValue);
+    /**
+     * Update of a single table in the chain, null when the table has nothing to update.
+     */
+    private PendingStatement buildLevelUpdate(Object entity, EntitySqlPlan.TableSql table) {
+        List<String> setColumns = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
 
-            for (EntityMetadata meta : chain) {
-                String whereClause = buildWhereClause(firstConcrete);
+        collectUpdateValues(table, entity, setColumns, values);
 
-                StringBuilder sql = new StringBuilder();
-                sql.append("DELETE FROM ").append(meta.getTableName())
-                        .append(" WHERE ").append(whereClause);
+        fillRelationshipData(entity, table.getMeta(), setColumns, values);
 
-                System.out.println("ConcreteClass DELETE SQL (" + meta.getTableName() + "): " + sql);
-                System.out.println("ID: " + idValue);
+        if (setColumns.isEmpty()) {
+            return null;
+        }
+
+        // ids as in the first concrete table
+        List<Object> allParams = new ArrayList<>(values);
+        allParams.addAll(Arrays.asList(prepareIdParams(getIdValue(entity))));
 
-                jdbc.update(sql.toString(), idParams);
+        return new PendingStatement(table.updateSql(setColumns), allParams.toArray());
+    }
+
+    @Override
+    public void delete(Object entity, PersisterSession session) {
+        deleteAll(List.of(entity), session);
+    }
+
+    @Override
+    public void deleteAll(List<Object> entities, PersisterSession session) {
+        try {
+            JdbcExecutor jdbc = session.getJdbcExecutor();
+            List<EntitySqlPlan.TableSql> tables = sqlPlan.getTables();
+
+            // DELETE from child to root to respect FK constraints
+            List<PendingStatement> deletes = new ArrayList<>();
+            for (int i = tables.size() - 1; i >= 0; i--) {
+                String sql = tables.get(i).getDeleteSql();
+
+                for (Object entity : entities) {
+                    Object idValue = getIdValue(entity);
+                    deletes.add(new PendingStatement(sql, prepareIdParams(idValue)));
+                }
             }
+            executeGrouped(jdbc, deletes);
 
         } catch (Exception e) {
-            throw new RuntimeException("Error deleting entity with concrete class strategy: " + entity, e);
+            throw new RuntimeException("Error deleting entity with concrete class strategy: "
+                    + (entities.size() == 1 ? entities.get(0) : entities), e);
         }
     }
 
     @Override
-    public Object findById(Object id, Session session) {
+    public Object findById(Object id, PersisterSession session) {
         try {
             assert entityMetadata != null;
             SqlAndParams query = buildPolymorphicQuery(id);
 
-            System.out.println("ConcreteClass findById SQL: " + query.sql);
 
             JdbcExecutor jdbc = session.getJdbcExecutor();
-            return jdbc.queryOne(query.sql, this::mapRow, query.params.toArray()).orElse(null);
+            return jdbc.queryOne(query.sql, planned(query.sql, this::buildRowPlan), query.params.toArray()).orElse(null);
 
         } catch (Exception e) {
             throw new RuntimeException("Error finding entity with id = " + id, e);
@@ -307,85 +277,86 @@ public class ConcreteClassInheritanceStrategy extends AbstractInheritanceStrateg
     }
 
     @Override
-    public <T> List<T> findAll(Class<T> type, Session session, PairTargetStatements pairTargetStatements) {
+    protected SelectQuery buildFindAllQuery(PairTargetStatements pairTargetStatements, List<String> ownerColumns,
+                                            Object[] params) {
         TargetStatement joinStmt = pairTargetStatements.getJoinStatements().get(0);
         TargetStatement whereStmt = pairTargetStatements.getWhereStatements().get(0);
         assert entityMetadata != null;
-        try {
-            SqlAndParams query = buildPolymorphicQuery(null);
+        SqlAndParams query = buildPolymorphicQuery(null);
 
-            query.sql += " " + joinStmt.getStatement();
+        query.sql = withOwnerColumns(query.sql, ownerColumns) + " " + joinStmt.getStatement();
 
-            if (!whereStmt.isBlank()) {
-                query.sql += " WHERE " + whereStmt.getStatement();
-            }
-
-            System.out.println("ConcreteClass findAll SQL: " + query.sql);
-
-            JdbcExecutor jdbc = session.getJdbcExecutor();
-            List<Object> results = jdbc.query(query.sql, this::mapRow);
-
-            List<T> filtered = new ArrayList<>();
-            for (Object obj : results) {
-                if (type.isInstance(obj)) {
-                    filtered.add(type.cast(obj));
-                }
-            }
-            return filtered;
-
-        } catch (Exception e) {
-            throw new RuntimeException("Error finding entities in ConcreteClass Strategy", e);
+        if (!whereStmt.isBlank()) {
+            query.sql += " WHERE " + whereStmt.getStatement();
         }
+
+        return new SelectQuery(query.sql, params, planned(query.sql, this::buildRowPlan));
     }
 
     @Override
-    public <T> List<T> findBy(Class<T> type, Session session, QuerySpec<T> querySpec) {
+    protected String idOrder() {
         assert entityMetadata != null;
-        try {
-            SqlAndParams query = buildPolymorphicQuery(null);
+        return idOrder(sqlPlan.getConcreteHierarchy().get(0).getTableName(), entityMetadata.getIdColumns().values());
+    }
 
-            List<Object> params = new ArrayList<>(query.params);
+    @Override
+    protected <T> SelectQuery buildFindByQuery(Class<T> type, QuerySpec<T> querySpec) {
+        assert entityMetadata != null;
+        SqlAndParams query = buildPolymorphicQuery(null);
 
-            String querySpecWhere = buildConcreteQuerySpecWhereClause(querySpec, params);
-            if (!querySpecWhere.isEmpty()) {
-                if (query.sql.contains(" WHERE ")) {
-                    query.sql += " AND " + querySpecWhere;
-                } else {
-                    query.sql += " WHERE " + querySpecWhere;
-                }
-            }
+        List<Object> params = new ArrayList<>(query.params);
 
-            String orderBy = buildConcreteQuerySpecOrderByClause(querySpec);
-            if (!orderBy.isEmpty()) {
-                query.sql += " ORDER BY " + orderBy;
+        String querySpecWhere = buildConcreteQuerySpecWhereClause(querySpec, params);
+        if (!querySpecWhere.isEmpty()) {
+            if (query.sql.contains(" WHERE ")) {
+                query.sql += " AND " + querySpecWhere;
+            } else {
+                query.sql += " WHERE " + querySpecWhere;
             }
+        }
 
-            query.sql += buildQuerySpecLimitOffsetClause(querySpec);
+        String orderBy = buildConcreteQuerySpecOrderByClause(querySpec);
+        if (!orderBy.isEmpty()) {
+            query.sql += " ORDER BY " + orderBy;
+        }
 
-            System.out.println("ConcreteClass Finder SQL: " + query.sql);
-            System.out.println("ConcreteClass Finder params: " + params);
+        query.sql += buildQuerySpecLimitOffsetClause(querySpec);
 
-            JdbcExecutor jdbc = session.getJdbcExecutor();
-            List<Object> results = jdbc.query(query.sql, this::mapRow, params.toArray());
 
-            List<T> filtered = new ArrayList<>();
-            for (Object obj : results) {
-                if (type.isInstance(obj)) {
-                    filtered.add(type.cast(obj));
-                }
-            }
-            return filtered;
+        return new SelectQuery(query.sql, params.toArray(), planned(query.sql, this::buildRowPlan));
+    }
 
-        } catch (Exception e) {
-            throw new RuntimeException("Error finding entities with QuerySpec in ConcreteClass Strategy", e);
+    @Override
+    protected List<BulkFilter> bulkFilters(QuerySpec<?> querySpec) {
+        assert entityMetadata != null;
+        List<Object> params = new ArrayList<>();
+        String where = buildConcreteQuerySpecWhereClause(querySpec, params);
+        EntityMetadata base = sqlPlan.getConcreteHierarchy().get(0);
+        // an abstract entity has no table, its rows are the rows of its concrete subclasses
+        List<EntityMetadata> rowTables = entityMetadata.isAbstract()
+                ? topConcrete(sqlPlan.getConcreteSubclasses())
+                : List.of(entityMetadata);
+        if (rowTables.contains(base)) {
+            rowTables = List.of();
         }
+        return List.of(joinedBulkFilter(base.getTableName(), rowTables, where, params));
+    }
+
+    private static List<EntityMetadata> topConcrete(List<EntityMetadata> concrete) {
+        return concrete.stream()
+                .filter(meta -> meta.findNearestConcreteParent() == null || !concrete.contains(meta.findNearestConcreteParent()))
+                .toList();
+    }
+
+    @Override
+    protected List<String> bulkDeleteTables() {
+        return childFirstTables(sqlPlan.getConcreteSubclasses());
     }
 
     // ==================== Helper methods ====================
 
     private String findTableForField(String fieldName) {
-        List<EntityMetadata> allConcrete = getAllConcreteSubclassesIncludingRoot(
-                entityMetadata.getInheritanceMetadata().getRootClass());
+        List<EntityMetadata> allConcrete = sqlPlan.getConcreteHierarchy();
 
         for (EntityMetadata meta : allConcrete) {
             if (meta.getProperties().containsKey(fieldName)) {
@@ -400,8 +371,7 @@ public class ConcreteClassInheritanceStrategy extends AbstractInheritanceStrateg
     }
 
     private String resolveColumnName(String fieldName) {
-        List<EntityMetadata> allConcrete = getAllConcreteSubclassesIncludingRoot(
-                entityMetadata.getInheritanceMetadata().getRootClass());
+        List<EntityMetadata> allConcrete = sqlPlan.getConcreteHierarchy();
 
         for (EntityMetadata meta : allConcrete) {
             PropertyMetadata pm = meta.getProperties().get(fieldName);
@@ -463,218 +433,51 @@ public class ConcreteClassInheritanceStrategy extends AbstractInheritanceStrateg
     }
 
     /**
-     * Build a polymorphic query that joins only non-abstract tables.
-     * Abstract class fields are already present in the first concrete class's
-     * table.
+     * The polymorphic select of the plan, joining only non-abstract tables, restricted
+     * to the id when given.
      */
     private SqlAndParams buildPolymorphicQuery(Object id) {
-        EntityMetadata root = entityMetadata.getInheritanceMetadata().getRootClass();
-        List<EntityMetadata> allConcrete = getAllConcreteSubclassesIncludingRoot(root);
-
-        // The "base" table is the first concrete class (which has merged abstract
-        // fields)
-        EntityMetadata baseTable = allConcrete.get(0);
-
-        StringBuilder selectPart = new StringBuilder("SELECT ");
-        StringBuilder joinPart = new StringBuilder(" FROM " + baseTable.getTableName());
-
-        List<String> columns = new ArrayList<>();
-
-        // Column list with aliases from each concrete table
-        for (EntityMetadata meta : allConcrete) {
-            for (PropertyMetadata prop : meta.getProperties().values()) {
-                if (prop.getSqlType() != null) {
-                    columns.add(meta.getTableName() + "." + prop.getColumnName() +
-                            " AS " + meta.getTableName() + "_" + prop.getColumnName());
-                }
-            }
+        if (id == null) {
+            return new SqlAndParams(sqlPlan.getPolymorphicSelect(), new ArrayList<>());
         }
-
-        selectPart.append(String.join(", ", columns));
-
-        // LEFT JOINs between concrete tables only
-        for (EntityMetadata sub : allConcrete) {
-            if (sub == baseTable)
-                continue;
-
-            // Find the nearest concrete parent for this sub
-            EntityMetadata concreteParent = sub.findNearestConcreteParent();
-            if (concreteParent == null) {
-                concreteParent = baseTable;
-            }
-
-            String pkName = baseTable.getIdColumns().values().iterator().next().getColumnName();
-
-            joinPart.append(" LEFT JOIN ").append(sub.getTableName())
-                    .append(" ON ")
-                    .append(concreteParent.getTableName()).append(".").append(pkName)
-                    .append(" = ")
-                    .append(sub.getTableName()).append(".").append(pkName);
-        }
-
-        // WHERE
-        List<Object> params = new ArrayList<>();
-        if (id != null) {
-            List<PropertyMetadata> idColumns = entityMetadata.getIdColumns().values().stream().toList();
-            joinPart.append(" WHERE ");
-
-            if (idColumns.size() == 1) {
-                PropertyMetadata pm = idColumns.iterator().next();
-                joinPart.append(baseTable.getTableName()).append(".").append(pm.getColumnName()).append(" = ?");
-                params.add(((Class<?>)pm.getType()).cast(id));
-            } else {
-                int count = 0;
-                for (PropertyMetadata pm : idColumns) {
-                    if (count > 0)
-                        joinPart.append(" AND ");
-                    joinPart.append(baseTable.getTableName()).append(".").append(pm.getColumnName()).append(" = ?");
-                    Object val = ReflectionUtils.getFieldValue(id, pm.getName());
-                    params.add(val);
-                    count++;
-                }
-            }
-        }
-
-        return new SqlAndParams(selectPart.toString() + joinPart.toString(), params);
+        Object[] params = idParams(entityMetadata.getIdColumns().values(), id);
+        return new SqlAndParams(sqlPlan.getFindByIdSql(), new ArrayList<>(Arrays.asList(params)));
     }
 
-    private Object mapRow(ResultSet rs) throws SQLException {
-        try {
-            assert entityMetadata != null;
-            EntityMetadata root = entityMetadata.getInheritanceMetadata().getRootClass();
-            List<EntityMetadata> allConcrete = getAllConcreteSubclassesIncludingRoot(root);
-            EntityMetadata baseTable = allConcrete.get(0);
-
-            String discriminatorCol = "DTYPE";
-            String alias = baseTable.getTableName() + "_" + discriminatorCol;
-
-            String className;
-            try {
-                className = rs.getString(alias);
-            } catch (SQLException e) {
-                className = rs.getString(discriminatorCol);
-            }
-
-            if (className == null) {
-                className = root.getEntityClass().getName();
-            }
+    /**
+     * Columns are aliased {@code table_column}; every class reads the columns of its own table
+     * and of its non-abstract parents (abstract parents have no table).
+     */
+    private RowPlan buildRowPlan(ResultSetMetaData metaData) throws SQLException {
+        assert entityMetadata != null;
+        EntityMetadata root = sqlPlan.getRoot();
+        List<EntityMetadata> allConcrete = sqlPlan.getConcreteHierarchy();
+        EntityMetadata baseTable = allConcrete.get(0);
+        RowPlan.Builder plan = new RowPlan.Builder(metaData);
 
-            Class<?> realClass;
-            try {
-                realClass = root.getInheritanceMetadata().getDiscriminatorToClass().get(className);
+        String alias = baseTable.getTableName() + "_DTYPE";
+        plan.discriminator(plan.hasColumn(alias) ? alias : "DTYPE");
 
-                if (realClass == null) {
-                    realClass = Class.forName(className);
+        for (EntityMetadata meta : allConcrete) {
+            RowPlan.EntityPlan entityPlan = plan.entity(meta.getEntityClass());
+            // Walk upward through the hierarchy, but only read from non-abstract tables
+            for (EntityMetadata current = meta; current != null; current = current.getInheritanceMetadata().getParent()) {
+                if (current.isAbstract()) {
+                    continue;
                 }
-            } catch (Exception e) {
-                throw new RuntimeException("Unknown entity type: " + className);
-            }
-
-            Object instance = realClass.getDeclaredConstructor().newInstance();
-
-            populateFieldsWithAliases(instance, rs, realClass);
-
-            return instance;
-
-        } catch (Exception e) {
-            throw new RuntimeException("Error mapping row in ConcreteClass strategy", e);
-        }
-    }
-
-    private void populateFieldsWithAliases(Object instance, ResultSet rs, Class<?> realClass) throws SQLException {
-        EntityMetadata currentMeta = findMetadataForClass(realClass);
-
-        // Walk upward through the hierarchy, but only read from non-abstract tables
-        while (currentMeta != null) {
-            if (!currentMeta.isAbstract()) {
-                for (PropertyMetadata prop : currentMeta.getProperties().values()) {
-                    if (prop.getSqlType() == null)
-                        continue;
-                    if (prop.getName() == null)
-                        continue;
-                    if (Objects.equals(prop.getColumnName(), "DTYPE"))
+                for (PropertyMetadata prop : current.getProperties().values()) {
+                    if (prop.getSqlType() == null || Objects.equals(prop.getColumnName(), "DTYPE")) {
                         continue;
-
-                    String columnAlias = currentMeta.getTableName() + "_" + prop.getColumnName();
-
-                    try {
-                        String fieldName = prop.getName();
-                        Object value = getValueFromResultSet(rs, columnAlias, prop.getType());
-
-                        if (value != null) {
-                            Object castedValue = castSqlValueToJava((Class<?>) prop.getType(), value);
-                            ReflectionUtils.setFieldValue(instance, fieldName, castedValue);
-                        }
-                    } catch (SQLException e) {
-                        // ignore - column may not exist in this result set
                     }
+                    entityPlan.column(current.getTableName() + "_" + prop.getColumnName(), prop);
                 }
             }
-
-            // go to parent
-            if (currentMeta.getInheritanceMetadata().getParent() != null) {
-                currentMeta = currentMeta.getInheritanceMetadata().getParent();
-            } else {
-                currentMeta = null;
-            }
-        }
-    }
-
-    /**
-     * Get all non-abstract subclasses (including root if not abstract) via BFS.
-     */
-    private List<EntityMetadata> getAllConcreteSubclassesIncludingRoot(EntityMetadata root) {
-        List<EntityMetadata> list = new ArrayList<>();
-        if (!root.isAbstract()) {
-            list.add(root);
-        }
-
-        List<EntityMetadata> toProcess = new ArrayList<>(root.getInheritanceMetadata().getChildren());
-        while (!toProcess.isEmpty()) {
-            EntityMetadata current = toProcess.remove(0);
-            if (!current.isAbstract()) {
-                list.add(current);
-            }
-            toProcess.addAll(current.getInheritanceMetadata().getChildren());
-        }
-        return list;
-    }
-
-    private EntityMetadata findMetadataForClass(Class<?> clazz) {
-        EntityMetadata root = entityMetadata.getInheritanceMetadata().getRootClass();
-        if (root.getEntityClass().equals(clazz))
-            return root;
-
-        // BFS search
-        List<EntityMetadata> queue = new ArrayList<>(root.getInheritanceMetadata().getChildren());
-        while (!queue.isEmpty()) {
-            EntityMetadata current = queue.remove(0);
-            if (current.getEntityClass().equals(clazz))
-                return current;
-            queue.addAll(current.getInheritanceMetadata().getChildren());
-        }
-        return null;
-    }
-
-    /**
-     * Check if a field exists anywhere in the class hierarchy (including
-     * superclasses).
-     * Unlike fieldBelongsToClass which uses getDeclaredField (only direct fields),
-     * this walks up the hierarchy to find inherited fields from abstract parents.
-     */
-    private boolean fieldExistsInHierarchy(PropertyMetadata prop, Class<?> clazz) {
-        if (prop.getColumnName().equals("DTYPE")) {
-            return false;
-        }
-        Class<?> current = clazz;
-        while (current != null && current != Object.class) {
-            try {
-                current.getDeclaredField(prop.getName());
-                return true;
-            } catch (NoSuchFieldException e) {
-                current = current.getSuperclass();
-            }
+            references(entityPlan, meta, true);
+            // rows may hold the class name instead of the discriminator value
+            plan.when(meta.getEntityClass().getName(), meta.getEntityClass());
         }
-        return false;
+        root.getInheritanceMetadata().getDiscriminatorToClass().forEach(plan::when);
+        plan.otherwise(root.getEntityClass());
+        return plan.build();
     }
 }
@@ -1,21 +1,32 @@
 package pl.edu.agh.dp.core.persister;
 
-import pl.edu.agh.dp.core.api.Session;
 import pl.edu.agh.dp.core.finder.QuerySpec;
 import pl.edu.agh.dp.core.mapping.EntityMetadata;
 import pl.edu.agh.dp.core.mapping.PairTargetStatements;
 
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public interface EntityPersister {
-    Object findById(Object id, Session session);
-    <T> List<T> findAll(Class<T> entityClass, Session session);
-    <T> List<T> findAll(Class<T> entityClass, Session session, PairTargetStatements pairTargetStatements);
-    <T> List<T> findBy(Class<T> entityClass, Session session, QuerySpec<T> querySpec);
-    void insert(Object entity, Session session);
-    void update(Object entity, Session session);
-    void delete(Object entity, Session session);
+    Object findById(Object id, PersisterSession session);
+    <T> List<T> findAll(Class<T> entityClass, PersisterSession session);
+    <T> List<T> findAll(Class<T> entityClass, PersisterSession session, PairTargetStatements pairTargetStatements);
+    <T> List<T> findBy(Class<T> entityClass, PersisterSession session, QuerySpec<T> querySpec);
+    <T> Stream<T> streamBy(Class<T> entityClass, PersisterSession session, QuerySpec<T> querySpec);
+    void insert(Object entity, PersisterSession session);
+    void update(Object entity, PersisterSession session);
+    void delete(Object entity, PersisterSession session);
+    void insertAll(List<Object> entities, PersisterSession session);
+    void updateAll(List<Object> entities, PersisterSession session);
+    void deleteAll(List<Object> entities, PersisterSession session);
+    int updateDirty(List<Object> entities, List<Object[]> snapshots, PersisterSession session);
+    void updateAssociations(List<Object> entities, PersisterSession session);
+    int updateWhere(QuerySpec<?> querySpec, Map<String, Object> assignments, PersisterSession session,
+                    List<Object[]> matched);
+    int deleteWhere(QuerySpec<?> querySpec, PersisterSession session, List<Object[]> matched);
 
     InheritanceStrategy getInheritanceStrategy();
     EntityMetadata getEntityMetadata();
+    EntitySqlPlan getSqlPlan();
 }
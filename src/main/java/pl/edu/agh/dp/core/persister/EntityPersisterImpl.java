@@ -3,12 +3,13 @@ package pl.edu.agh.dp.core.persister;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
-import pl.edu.agh.dp.core.api.Session;
 import pl.edu.agh.dp.core.finder.QuerySpec;
+import pl.edu.agh.dp.core.jdbc.Dialect;
 import pl.edu.agh.dp.core.mapping.EntityMetadata;
 import pl.edu.agh.dp.core.mapping.PairTargetStatements;
 
 import java.util.*;
+import java.util.stream.Stream;
 
 @Getter
 @Setter
@@ -23,43 +24,89 @@ public class EntityPersisterImpl implements EntityPersister {
 
     private InheritanceStrategy inheritanceStrategy;
 
-    public EntityPersisterImpl(EntityMetadata metadata) {
+    // SQL templates of the entity, the metadata does not change after the factory is built
+    private EntitySqlPlan sqlPlan;
+
+    public EntityPersisterImpl(EntityMetadata metadata, Dialect dialect) {
         this.metadata = metadata;
-        this.inheritanceStrategy = InheritanceStrategyFactory.build(metadata.getInheritanceMetadata().getType(), metadata);
+        this.sqlPlan = new EntitySqlPlan(metadata, dialect);
+        this.inheritanceStrategy = InheritanceStrategyFactory.build(metadata.getInheritanceMetadata().getType(),
+                metadata, dialect, sqlPlan);
     }
 
     @Override
-    public Object findById(Object id, Session session) {
+    public Object findById(Object id, PersisterSession session) {
         return  inheritanceStrategy.findById(id, session);
     }
 
     @Override
-    public  <T> List<T> findAll(Class<T> entityClass, Session session) {
+    public  <T> List<T> findAll(Class<T> entityClass, PersisterSession session) {
         return inheritanceStrategy.findAll(entityClass, session, new PairTargetStatements());
     }
 
     @Override
-    public <T> List<T> findAll(Class<T> entityClass, Session session, PairTargetStatements pairTargetStatements) {
+    public <T> List<T> findAll(Class<T> entityClass, PersisterSession session, PairTargetStatements pairTargetStatements) {
         return inheritanceStrategy.findAll(entityClass, session, pairTargetStatements);
     }
 
     @Override
-    public <T> List<T> findBy(Class<T> entityClass, Session session, QuerySpec<T> querySpec) {
+    public <T> List<T> findBy(Class<T> entityClass, PersisterSession session, QuerySpec<T> querySpec) {
         return inheritanceStrategy.findBy(entityClass, session, querySpec);
     }
 
     @Override
-    public void insert(Object entity, Session session) {
+    public <T> Stream<T> streamBy(Class<T> entityClass, PersisterSession session, QuerySpec<T> querySpec) {
+        return inheritanceStrategy.streamBy(entityClass, session, querySpec);
+    }
+
+    @Override
+    public void insert(Object entity, PersisterSession session) {
         inheritanceStrategy.insert(entity, session);
     }
 
     @Override
-    public void update(Object entity, Session session) {
+    public void update(Object entity, PersisterSession session) {
         inheritanceStrategy.update(entity, session);
     }
 
     @Override
-    public void delete(Object entity, Session session) {
+    public void delete(Object entity, PersisterSession session) {
         inheritanceStrategy.delete(entity, session);
     }
+
+    @Override
+    public void insertAll(List<Object> entities, PersisterSession session) {
+        inheritanceStrategy.insertAll(entities, session);
+    }
+
+    @Override
+    public void updateAll(List<Object> entities, PersisterSession session) {
+        inheritanceStrategy.updateAll(entities, session);
+    }
+
+    @Override
+    public void deleteAll(List<Object> entities, PersisterSession session) {
+        inheritanceStrategy.deleteAll(entities, session);
+    }
+
+    @Override
+    public int updateDirty(List<Object> entities, List<Object[]> snapshots, PersisterSession session) {
+        return inheritanceStrategy.updateDirty(entities, snapshots, session);
+    }
+
+    @Override
+    public void updateAssociations(List<Object> entities, PersisterSession session) {
+        inheritanceStrategy.updateAssociations(entities, session);
+    }
+
+    @Override
+    public int updateWhere(QuerySpec<?> querySpec, Map<String, Object> assignments, PersisterSession session,
+                           List<Object[]> matched) {
+        return inheritanceStrategy.updateWhere(querySpec, assignments, session, matched);
+    }
+
+    @Override
+    public int deleteWhere(QuerySpec<?> querySpec, PersisterSession session, List<Object[]> matched) {
+        return inheritanceStrategy.deleteWhere(querySpec, session, matched);
+    }
 }
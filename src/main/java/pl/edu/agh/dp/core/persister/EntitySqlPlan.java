@@ -0,0 +1,512 @@
+package pl.edu.agh.dp.core.persister;
+
+import lombok.Getter;
+import pl.edu.agh.dp.core.enhance.DirtyTracking;
+import pl.edu.agh.dp.core.jdbc.Dialect;
+import pl.edu.agh.dp.core.mapping.AssociationMetadata;
+import pl.edu.agh.dp.core.mapping.EntityMetadata;
+import pl.edu.agh.dp.core.mapping.InheritanceType;
+import pl.edu.agh.dp.core.mapping.PropertyMetadata;
+import pl.edu.agh.dp.core.util.FieldAccessor;
+import pl.edu.agh.dp.core.util.FieldAccessors;
+import pl.edu.agh.dp.core.util.ReflectionUtils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Everything about the SQL of one entity that only depends on the metadata - the hierarchy
+ * lists, the columns of every table and the statement templates - computed once when the
+ * persister is created. The strategies only bind parameters.
+ * INSERTs leave out null columns and both INSERTs and UPDATEs get the foreign keys of the set
+ * associations, so their SQL is cached per column list (see {@link TableSql}).
+ */
+@Getter
+public final class EntitySqlPlan {
+
+    private final EntityMetadata entity;
+    private final EntityMetadata root;
+    // root -> entity
+    private final List<EntityMetadata> chain;
+    // root and all its subclasses, breadth first
+    private final List<EntityMetadata> hierarchy;
+    private final List<EntityMetadata> concreteHierarchy;
+    // entity and its subclasses, breadth first
+    private final List<EntityMetadata> subclasses;
+    private final List<EntityMetadata> concreteSubclasses;
+
+    // tables written for the entity, in insert order
+    private final List<TableSql> tables;
+    private final String findByIdSql;
+    // hydrated state compared by the dirty check, table by table
+    private final List<StateColumn> state;
+    // dirty bit of the field behind every state column (-1 when it has none), null when the
+    // class was not enhanced
+    private final int[] stateBits;
+
+    // SINGLE_TABLE
+    private final String discriminatorColumn;
+    private final String discriminatorInList;
+    private final List<PropertyMetadata> singleTableColumns;
+    private final Map<Class<?>, TableSql> singleTables;
+
+    // JOINED / CONCRETE_CLASS - aliased columns of all the tables, LEFT JOINed, no WHERE
+    private final String polymorphicSelect;
+
+    // TABLE_PER_CLASS - one SELECT per concrete table, NULL padded to the same columns
+    private final Map<String, PropertyMetadata> unionProperties;
+    private final Map<EntityMetadata, String> unionSelects;
+    private final String concreteLookupSql;
+    private final Map<EntityMetadata, String> loadSqls;
+
+    public EntitySqlPlan(EntityMetadata entity, Dialect dialect) {
+        this.entity = entity;
+        this.root = entity.getInheritanceMetadata().getRootClass();
+
+        List<EntityMetadata> path = new ArrayList<>();
+        for (EntityMetadata current = entity; current != null; current = current.getInheritanceMetadata().getParent()) {
+            path.add(current);
+        }
+        Collections.reverse(path);
+        this.chain = List.copyOf(path);
+        this.hierarchy = breadthFirst(root);
+        this.concreteHierarchy = withoutAbstract(hierarchy);
+        this.subclasses = breadthFirst(entity);
+        this.concreteSubclasses = withoutAbstract(subclasses);
+
+        InheritanceType type = entity.getInheritanceMetadata().getType();
+        this.discriminatorColumn = root.getInheritanceMetadata().getDiscriminatorColumnName();
+        this.discriminatorInList = type == InheritanceType.SINGLE_TABLE ? buildDiscriminatorInList() : null;
+        this.singleTableColumns = type == InheritanceType.SINGLE_TABLE
+                ? List.copyOf(root.getAllColumnsForSingleTable().values())
+                : List.of();
+
+        Map<Class<?>, TableSql> single = new HashMap<>();
+        Map<String, PropertyMetadata> union = new LinkedHashMap<>();
+        Map<EntityMetadata, String> selects = new IdentityHashMap<>();
+        Map<EntityMetadata, String> loads = new IdentityHashMap<>();
+        String polymorphic = null;
+        String lookup = null;
+
+        switch (type) {
+            case SINGLE_TABLE -> {
+                for (EntityMetadata sub : subclasses) {
+                    single.put(sub.getEntityClass(), singleTable(sub.getEntityClass()));
+                }
+                this.tables = List.of(single.get(entity.getEntityClass()));
+                this.findByIdSql = "SELECT * FROM " + entity.getTableName() + " WHERE "
+                        + idWhere(null, entity.getIdColumns().values());
+            }
+            case JOINED -> {
+                List<TableSql> levels = new ArrayList<>();
+                for (EntityMetadata meta : chain) {
+                    boolean isRoot = meta.getInheritanceMetadata().isRoot();
+                    levels.add(new TableSql(meta, root,
+                            ownColumns(meta, false, isRoot),
+                            ownColumns(meta, false, false).stream().filter(pm -> !pm.isId()).toList(),
+                            List.of()));
+                }
+                this.tables = List.copyOf(levels);
+                polymorphic = buildJoinedSelect();
+                this.findByIdSql = polymorphic + " WHERE " + idWhere(root.getTableName(), entity.getIdColumns().values());
+            }
+            case CONCRETE_CLASS -> {
+                List<EntityMetadata> concreteChain = withoutAbstract(chain);
+                List<TableSql> levels = new ArrayList<>();
+                for (int i = 0; i < concreteChain.size(); i++) {
+                    EntityMetadata meta = concreteChain.get(i);
+                    // the first table also holds the fields of the abstract parents
+                    boolean first = i == 0;
+                    levels.add(new TableSql(meta, concreteChain.get(0),
+                            ownColumns(meta, first, first),
+                            ownColumns(meta, first, false).stream().filter(pm -> !pm.isId()).toList(),
+                            List.of()));
+                }
+                this.tables = List.copyOf(levels);
+                EntityMetadata base = concreteHierarchy.get(0);
+                polymorphic = buildConcreteSelect(base);
+                this.findByIdSql = polymorphic + " WHERE " + idWhere(base.getTableName(), entity.getIdColumns().values());
+            }
+            case TABLE_PER_CLASS -> {
+                List<PropertyMetadata> properties = List.copyOf(entity.getProperties().values());
+                this.tables = List.of(new TableSql(entity, entity, properties,
+                        properties.stream().filter(pm -> !pm.isId()).toList(), List.of()));
+                for (EntityMetadata sub : concreteSubclasses) {
+                    union.putAll(sub.getProperties());
+                }
+                for (EntityMetadata sub : concreteSubclasses) {
+                    selects.put(sub, buildUnionSelect(sub, union, dialect));
+                    loads.put(sub, "SELECT " + sub.getColumnsForConcreteTable().stream()
+                            .map(PropertyMetadata::getColumnName).collect(Collectors.joining(", "))
+                            + " FROM " + sub.getTableName()
+                            + " WHERE " + idWhere(null, root.getIdColumns().values()));
+                }
+                lookup = concreteSubclasses.stream()
+                        .map(sub -> "SELECT '" + sub.getEntityClass().getName() + "' as DTYPE FROM " + sub.getTableName()
+                                + " WHERE " + idWhere(null, root.getIdColumns().values()))
+                        .collect(Collectors.joining(" UNION ALL "));
+                this.findByIdSql = null;
+            }
+            default -> throw new IllegalStateException("Unknown inheritance type " + type);
+        }
+
+        this.singleTables = Collections.unmodifiableMap(single);
+        this.polymorphicSelect = polymorphic;
+        this.unionProperties = Collections.unmodifiableMap(union);
+        this.unionSelects = Collections.unmodifiableMap(selects);
+        this.concreteLookupSql = lookup;
+        this.loadSqls = Collections.unmodifiableMap(loads);
+        this.state = buildState(type);
+        this.stateBits = buildStateBits();
+    }
+
+    /**
+     * Current values of the state columns, the snapshot the dirty check compares against.
+     */
+    public Object[] snapshot(Object instance) {
+        Object[] values = new Object[state.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = state.get(i).read(instance);
+        }
+        return values;
+    }
+
+    /**
+     * Takes the foreign keys of the association into the snapshot, after it was loaded.
+     */
+    public void snapshotAssociation(Object instance, String field, Object[] snapshot) {
+        for (int i = 0; i < snapshot.length; i++) {
+            StateColumn column = state.get(i);
+            if (column.association() != null && column.association().getField().equals(field)) {
+                snapshot[i] = column.read(instance);
+            }
+        }
+    }
+
+    private int[] buildStateBits() {
+        Map<String, Integer> bits = DirtyTracking.fieldBits(entity.getEntityClass());
+        if (bits == null) {
+            return null;
+        }
+        int[] result = new int[state.size()];
+        for (int i = 0; i < result.length; i++) {
+            StateColumn column = state.get(i);
+            String field = column.association() != null ? column.association().getField() : column.property().getName();
+            result[i] = bits.getOrDefault(field, -1);
+        }
+        return result;
+    }
+
+    /**
+     * The updatable columns of every table followed by the foreign keys the table holds, the
+     * same columns an UPDATE of the entity sets.
+     */
+    private List<StateColumn> buildState(InheritanceType type) {
+        List<StateColumn> columns = new ArrayList<>();
+        for (int i = 0; i < tables.size(); i++) {
+            TableSql table = tables.get(i);
+            // JOINED / CONCRETE_CLASS tables hold the associations of their own class
+            EntityMetadata owner = type == InheritanceType.JOINED || type == InheritanceType.CONCRETE_CLASS
+                    ? table.getMeta()
+                    : entity;
+            Set<String> names = new HashSet<>();
+            for (PropertyMetadata pm : table.getUpdatable()) {
+                columns.add(new StateColumn(i, pm.getColumnName(), pm, null));
+                names.add(pm.getColumnName());
+            }
+            for (AssociationMetadata am : owner.getAssociationMetadata().values()) {
+                if (!owner.getFkColumns().containsKey(am.getField()) || !am.getHasForeignKey()
+                        || am.getType() == AssociationMetadata.Type.MANY_TO_MANY) {
+                    continue;
+                }
+                for (PropertyMetadata pm : am.getJoinColumns()) {
+                    if (pm.getReferences() != null && Objects.equals(am.getField(), pm.getName())
+                            && names.add(pm.getColumnName())) {
+                        columns.add(new StateColumn(i, pm.getColumnName(), pm, am));
+                    }
+                }
+            }
+        }
+        return List.copyOf(columns);
+    }
+
+    /**
+     * SINGLE_TABLE row of the given class; rows of classes outside of the entity subtree
+     * are planned on the spot.
+     */
+    public TableSql singleTable(Class<?> type) {
+        TableSql table = singleTables == null ? null : singleTables.get(type);
+        if (table != null) {
+            return table;
+        }
+        List<PropertyMetadata> insertable = new ArrayList<>();
+        List<PropertyMetadata> updatable = new ArrayList<>();
+        List<PropertyMetadata> alwaysNull = new ArrayList<>();
+        for (PropertyMetadata pm : singleTableColumns) {
+            if (pm.getColumnName().equals(discriminatorColumn)) {
+                continue;
+            }
+            boolean belongs = FieldAccessors.find(type, pm.getName()) != null;
+            if (!(pm.isId() && pm.isAutoIncrement())) {
+                (belongs ? insertable : alwaysNull).add(pm);
+            }
+            if (belongs && !pm.isId()) {
+                updatable.add(pm);
+            }
+        }
+        return new TableSql(root, root, insertable, updatable, alwaysNull);
+    }
+
+    /**
+     * Columns of the table of {@code meta}: fields declared by the class itself, or anywhere in its
+     * hierarchy when {@code inherited}. Auto increment ids are left out of the table generating them.
+     */
+    private static List<PropertyMetadata> ownColumns(EntityMetadata meta, boolean inherited, boolean generatesId) {
+        List<PropertyMetadata> columns = new ArrayList<>();
+        for (PropertyMetadata pm : meta.getProperties().values()) {
+            if (pm.getColumnName().equals("DTYPE")) {
+                continue;
+            }
+            FieldAccessor accessor = FieldAccessors.find(meta.getEntityClass(), pm.getName());
+            if (accessor == null || !inherited && accessor.getDeclaringClass() != meta.getEntityClass()) {
+                continue;
+            }
+            if (generatesId && pm.isId() && pm.isAutoIncrement()) {
+                continue;
+            }
+            columns.add(pm);
+        }
+        return List.copyOf(columns);
+    }
+
+    private String buildDiscriminatorInList() {
+        Map<Class<?>, String> classToDiscriminator = root.getInheritanceMetadata().getClassToDiscriminator();
+        return subclasses.stream()
+                .map(sub -> "'" + classToDiscriminator.get(sub.getEntityClass()) + "'")
+                .collect(Collectors.joining(","));
+    }
+
+    private String buildJoinedSelect() {
+        StringBuilder sql = new StringBuilder("SELECT ").append(aliasedColumns(hierarchy, false))
+                .append(" FROM ").append(root.getTableName());
+        String pkName = root.getIdColumns().values().iterator().next().getColumnName();
+        for (EntityMetadata sub : hierarchy) {
+            if (sub == root) continue;
+            EntityMetadata parent = sub.getInheritanceMetadata().getParent();
+            sql.append(" LEFT JOIN ").append(sub.getTableName())
+                    .append(" ON ").append(parent.getTableName()).append(".").append(pkName)
+                    .append(" = ").append(sub.getTableName()).append(".").append(pkName);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Like the JOINED select but over the non-abstract tables only; abstract class fields
+     * are already present in the first concrete class's table.
+     */
+    private String buildConcreteSelect(EntityMetadata base) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(aliasedColumns(concreteHierarchy, true))
+                .append(" FROM ").append(base.getTableName());
+        String pkName = base.getIdColumns().values().iterator().next().getColumnName();
+        for (EntityMetadata sub : concreteHierarchy) {
+            if (sub == base) continue;
+            EntityMetadata concreteParent = sub.findNearestConcreteParent();
+            if (concreteParent == null) {
+                concreteParent = base;
+            }
+            sql.append(" LEFT JOIN ").append(sub.getTableName())
+                    .append(" ON ").append(concreteParent.getTableName()).append(".").append(pkName)
+                    .append(" = ").append(sub.getTableName()).append(".").append(pkName);
+        }
+        return sql.toString();
+    }
+
+    private static String aliasedColumns(List<EntityMetadata> metas, boolean abstractParentsMerged) {
+        List<String> columns = new ArrayList<>();
+        for (EntityMetadata meta : metas) {
+            for (PropertyMetadata prop : meta.getProperties().values()) {
+                if (prop.getSqlType() != null) {
+                    columns.add(meta.getTableName() + "." + prop.getColumnName() +
+                            " AS " + meta.getTableName() + "_" + prop.getColumnName());
+                }
+            }
+            // the ids the proxies of the to-one targets are created with
+            for (Map.Entry<AssociationMetadata, PropertyMetadata> reference : references(meta).entrySet()) {
+                if (holdsField(meta, reference.getKey().getField(), abstractParentsMerged)) {
+                    PropertyMetadata fk = reference.getValue();
+                    columns.add(meta.getTableName() + "." + fk.getColumnName() +
+                            " AS " + meta.getTableName() + "_" + fk.getColumnName());
+                }
+            }
+        }
+        return String.join(", ", columns);
+    }
+
+    /**
+     * Whether the table of {@code meta} has the column of the field: fields declared by the class,
+     * and for CONCRETE_CLASS also those of its abstract parents.
+     */
+    private static boolean holdsField(EntityMetadata meta, String field, boolean abstractParentsMerged) {
+        FieldAccessor accessor = FieldAccessors.find(meta.getEntityClass(), field);
+        if (accessor == null) {
+            return false;
+        }
+        for (EntityMetadata current = meta; current != null; current = current.getInheritanceMetadata().getParent()) {
+            if (accessor.getDeclaringClass() == current.getEntityClass()) {
+                return true;
+            }
+            EntityMetadata parent = current.getInheritanceMetadata().getParent();
+            if (!abstractParentsMerged || parent == null || !parent.isAbstract()) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Proxied to-one associations of {@code meta} whose foreign key is a single column of its
+     * table, with that column.
+     */
+    public static Map<AssociationMetadata, PropertyMetadata> references(EntityMetadata meta) {
+        Map<AssociationMetadata, PropertyMetadata> references = new LinkedHashMap<>();
+        for (AssociationMetadata am : meta.getAssociationMetadata().values()) {
+            if (!am.isProxied() || am.getCollectionType() != AssociationMetadata.CollectionType.NONE
+                    || !Boolean.TRUE.equals(am.getHasForeignKey()) || !meta.getFkColumns().containsKey(am.getField())
+                    || am.getJoinColumns() == null || am.getJoinColumns().size() != 1) {
+                continue;
+            }
+            PropertyMetadata fk = am.getJoinColumns().get(0);
+            if (fk.getReferences() != null && Objects.equals(am.getField(), fk.getName())
+                    && !fk.getColumnName().contains(",")) {
+                references.put(am, fk);
+            }
+        }
+        return references;
+    }
+
+    private static String buildUnionSelect(EntityMetadata sub, Map<String, PropertyMetadata> union, Dialect dialect) {
+        List<String> columns = new ArrayList<>();
+        for (Map.Entry<String, PropertyMetadata> entry : union.entrySet()) {
+            String columnName = entry.getValue().getColumnName();
+            PropertyMetadata pm = sub.getProperties().get(entry.getKey());
+            if (pm != null) {
+                columns.add(sub.getTableName() + "." + pm.getColumnName() + " AS " + columnName);
+            } else {
+                columns.add(dialect.castNull(entry.getValue().getSqlType()) + " AS " + columnName);
+            }
+        }
+        return "SELECT " + String.join(", ", columns)
+                + ", '" + sub.getEntityClass().getName() + "' AS DTYPE FROM " + sub.getTableName();
+    }
+
+    /**
+     * {@code col = ? AND ...} over the id columns, qualified with the table when given.
+     */
+    static String idWhere(String tableName, Collection<PropertyMetadata> idColumns) {
+        return idColumns.stream()
+                .map(pm -> (tableName != null ? tableName + "." : "") + pm.getColumnName() + " = ?")
+                .collect(Collectors.joining(" AND "));
+    }
+
+    private static List<EntityMetadata> breadthFirst(EntityMetadata start) {
+        List<EntityMetadata> result = new ArrayList<>();
+        Deque<EntityMetadata> queue = new ArrayDeque<>();
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            EntityMetadata current = queue.poll();
+            result.add(current);
+            queue.addAll(current.getInheritanceMetadata().getChildren());
+        }
+        return List.copyOf(result);
+    }
+
+    private static List<EntityMetadata> withoutAbstract(List<EntityMetadata> metas) {
+        return metas.stream().filter(meta -> !meta.isAbstract()).toList();
+    }
+
+    /**
+     * Column of the hydrated state: a property of the entity, or a foreign key read from the
+     * entity referenced by a to-one association.
+     */
+    public record StateColumn(int table, String column, PropertyMetadata property, AssociationMetadata association) {
+
+        public Object read(Object instance) {
+            if (association == null) {
+                return property.getValue(instance);
+            }
+            Object target = association.getValue(instance);
+            return target != null ? ReflectionUtils.getFieldValue(target, property.getReferencedName()) : null;
+        }
+
+        /**
+         * Foreign keys are only written when the association is set, as in a full UPDATE.
+         */
+        public boolean isWritten(Object value) {
+            return association == null || value != null;
+        }
+    }
+
+    /**
+     * Columns and statements of one table of the entity.
+     */
+    @Getter
+    public static final class TableSql {
+        // INSERTs / UPDATEs differ only in the null and foreign key columns, so few shapes per table
+        private static final int MAX_SHAPES = 64;
+
+        private final EntityMetadata meta;
+        private final String tableName;
+        // written when not null
+        private final List<PropertyMetadata> insertable;
+        // written as null (SINGLE_TABLE columns of other classes)
+        private final List<PropertyMetadata> alwaysNull;
+        // SET columns, in order
+        private final List<PropertyMetadata> updatable;
+        // bound to the WHERE clause, in order
+        private final List<PropertyMetadata> idColumns;
+        private final String whereClause;
+        private final String deleteSql;
+        private final Map<List<String>, String> insertSqls = new ConcurrentHashMap<>();
+        private final Map<List<String>, String> updateSqls = new ConcurrentHashMap<>();
+
+        TableSql(EntityMetadata meta, EntityMetadata idOwner, List<PropertyMetadata> insertable,
+                 List<PropertyMetadata> updatable, List<PropertyMetadata> alwaysNull) {
+            this.meta = meta;
+            this.tableName = meta.getTableName();
+            this.insertable = List.copyOf(insertable);
+            this.updatable = List.copyOf(updatable);
+            this.alwaysNull = List.copyOf(alwaysNull);
+            this.idColumns = List.copyOf(idOwner.getIdColumns().values());
+            this.whereClause = idWhere(null, idColumns);
+            this.deleteSql = "DELETE FROM " + tableName + " WHERE " + whereClause;
+        }
+
+        public String insertSql(List<String> columns) {
+            String sql = insertSqls.get(columns);
+            if (sql == null) {
+                sql = "INSERT INTO " + tableName + " (" + String.join(", ", columns) + ") VALUES ("
+                        + String.join(",", Collections.nCopies(columns.size(), "?")) + ")";
+                if (insertSqls.size() < MAX_SHAPES) {
+                    insertSqls.put(List.copyOf(columns), sql);
+                }
+            }
+            return sql;
+        }
+
+        /**
+         * UPDATE of the columns followed by the id columns in the WHERE clause.
+         */
+        public String updateSql(List<String> columns) {
+            String sql = updateSqls.get(columns);
+            if (sql == null) {
+                sql = "UPDATE " + tableName + " SET " + String.join(" = ?, ", columns) + (columns.isEmpty() ? "" : " = ?")
+                        + " WHERE " + whereClause;
+                if (updateSqls.size() < MAX_SHAPES) {
+                    updateSqls.put(List.copyOf(columns), sql);
+                }
+            }
+            return sql;
+        }
+    }
+}
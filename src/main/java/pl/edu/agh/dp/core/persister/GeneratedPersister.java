@@ -0,0 +1,57 @@
+package pl.edu.agh.dp.core.persister;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Base class of the persisters generated by {@link PersisterGenerator}, one hidden class per entity.
+ * The subclass contains the SQL as constants and reads / writes the entity fields directly,
+ * without metadata maps or reflection.
+ */
+public abstract class GeneratedPersister {
+
+    // set by the generator: readers of the columns the generated code does not read inline
+    // (dates, lists, ...), the column labels in the order of hydrate, the columns of bindInsert
+    RowPlan.ColumnReader[] readers;
+    List<String> hydrateColumns;
+    List<String> insertColumns;
+
+    public abstract Object newInstance();
+
+    /**
+     * INSERT of all the columns of {@link #bindInsert}, DTYPE first.
+     */
+    public abstract String getInsertSql();
+
+    public abstract Object[] bindInsert(Object entity);
+
+    public List<String> getInsertColumns() {
+        return insertColumns;
+    }
+
+    /**
+     * UPDATE of all the non-id columns, followed by the id columns in the WHERE clause;
+     * null when the entity has no column to update.
+     */
+    public abstract String getUpdateSql();
+
+    public abstract Object[] bindUpdate(Object entity);
+
+    /**
+     * Labels of the columns read by {@link #hydrate}, in the order of its {@code columns} argument.
+     */
+    public List<String> getHydrateColumns() {
+        return hydrateColumns;
+    }
+
+    /**
+     * Creates the entity from the current row; {@code columns[i]} is the result set index of the
+     * i-th label of {@link #getHydrateColumns()}, resolved once per SQL shape.
+     */
+    public abstract Object hydrate(ResultSet rs, int[] columns) throws SQLException;
+
+    protected final Object read(int property, ResultSet rs, int column) throws SQLException {
+        return readers[property].read(rs, column);
+    }
+}
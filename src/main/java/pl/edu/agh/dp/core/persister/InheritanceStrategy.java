@@ -1,19 +1,108 @@
 package pl.edu.agh.dp.core.persister;
 
 import javafx.util.Pair;
-import pl.edu.agh.dp.core.api.Session;
 import pl.edu.agh.dp.core.finder.QuerySpec;
 import pl.edu.agh.dp.core.mapping.PairTargetStatements;
 
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public interface InheritanceStrategy {
     Pair<String, String> create();
-    Object insert(Object entity, Session session);
-    void update(Object entity, Session session);
-    void delete(Object entity, Session session);
-    Object findById(Object id, Session session);
-    <T> List<T> findAll(Class<T> type, Session session, PairTargetStatements pairTargetStatements);
-    <T> List<T> findBy(Class<T> type, Session session, QuerySpec<T> querySpec);
+    Object insert(Object entity, PersisterSession session);
+    void update(Object entity, PersisterSession session);
+    void delete(Object entity, PersisterSession session);
+
+    /**
+     * Bulk variants used by flush. Entities are all of the same class; implementations
+     * may batch statements with the same SQL. The defaults fall back to one statement per entity.
+     */
+    default void insertAll(List<Object> entities, PersisterSession session) {
+        for (Object entity : entities) {
+            insert(entity, session);
+        }
+    }
+
+    default void updateAll(List<Object> entities, PersisterSession session) {
+        for (Object entity : entities) {
+            update(entity, session);
+        }
+    }
+
+    default void deleteAll(List<Object> entities, PersisterSession session) {
+        for (Object entity : entities) {
+            delete(entity, session);
+        }
+    }
+
+    /**
+     * Dirty check of managed entities of one class against their snapshots (see
+     * {@link EntitySqlPlan#snapshot}): only the changed columns of the changed tables are updated,
+     * and the snapshots follow. Returns the number of entities updated.
+     */
+    int updateDirty(List<Object> entities, List<Object[]> snapshots, PersisterSession session);
+
+    /**
+     * Rewrites the many to many association tables of the entities.
+     */
+    void updateAssociations(List<Object> entities, PersisterSession session);
+
+    /**
+     * Set-based UPDATE / DELETE of every row of the entity (and its subclasses) matching the
+     * conditions of the spec; sorting and paging are ignored. Returns the number of entities.
+     * Nothing is loaded, cascaded or checked against the session. When {@code matched} is not
+     * null the ids of the matched rows (values of the id columns) are added to it, selected
+     * before the statement when it does not select them anyway.
+     */
+    int updateWhere(QuerySpec<?> querySpec, Map<String, Object> assignments, PersisterSession session,
+                    List<Object[]> matched);
+    int deleteWhere(QuerySpec<?> querySpec, PersisterSession session, List<Object[]> matched);
+
+    Object findById(Object id, PersisterSession session);
+    <T> List<T> findAll(Class<T> type, PersisterSession session, PairTargetStatements pairTargetStatements);
+    <T> List<T> findBy(Class<T> type, PersisterSession session, QuerySpec<T> querySpec);
+
+    /**
+     * Same query as findBy, mapped lazily from an open result set. The stream must be closed.
+     */
+    <T> Stream<T> streamBy(Class<T> type, PersisterSession session, QuerySpec<T> querySpec);
     PairTargetStatements getPairStatement(Object entity, String relationshipName);
+
+    /**
+     * Like getPairStatement, for the owners whose ids are bound to the {@code size} parameters.
+     */
+    PairTargetStatements getBatchPairStatement(String relationshipName, int size);
+
+    /**
+     * Entities of the relationship of several owners in one query. Every row holds the entity
+     * followed by the values of the owner columns, to tell the owners apart.
+     */
+    List<Object[]> findAllByOwners(Class<?> type, PersisterSession session, PairTargetStatements pairTargetStatements,
+                                   List<String> ownerColumns, Object[] params);
+
+    /**
+     * Number of entities findAll with the statements would return, counted by the database.
+     * The params are bound to the statements like for findAllByOwners.
+     */
+    long count(PersisterSession session, PairTargetStatements pairTargetStatements, Object[] params);
+
+    /**
+     * Whether findAll with the statements would return any entity, with an EXISTS probe.
+     */
+    boolean exists(PersisterSession session, PairTargetStatements pairTargetStatements, Object[] params);
+
+    /**
+     * The entity at the index of what findAll with the statements returns, or null past the end;
+     * only that row is read.
+     */
+    <T> T findAt(Class<T> type, PersisterSession session, PairTargetStatements pairTargetStatements, int index);
+
+    /**
+     * Switches bind / hydrate to a class generated for the entity ({@code orm.persister.generate}).
+     * Returns false when the strategy or entity does not support it, the reflective code stays in use.
+     */
+    default boolean generatePersister() {
+        return false;
+    }
 }
@@ -1,19 +1,18 @@
 package pl.edu.agh.dp.core.persister;
 
 import pl.edu.agh.dp.core.jdbc.Dialect;
-import pl.edu.agh.dp.core.jdbc.JdbcExecutor;
 import pl.edu.agh.dp.core.mapping.EntityMetadata;
 import pl.edu.agh.dp.core.mapping.InheritanceType;
-import pl.edu.agh.dp.core.mapping.MetadataRegistry;
 
 public class InheritanceStrategyFactory {
 
-    public static InheritanceStrategy build(InheritanceType type, EntityMetadata metadata) {
+    public static InheritanceStrategy build(InheritanceType type, EntityMetadata metadata, Dialect dialect,
+                                            EntitySqlPlan sqlPlan) {
         return switch (type){
-            case SINGLE_TABLE -> new SingleTableInheritanceStrategy(metadata);
-            case JOINED -> new JoinedTableInheritanceStrategy(metadata);
-            case TABLE_PER_CLASS -> new TablePerClassInheritanceStrategy(metadata);
-            case CONCRETE_CLASS ->  new ConcreteClassInheritanceStrategy(metadata);
+            case SINGLE_TABLE -> new SingleTableInheritanceStrategy(metadata, dialect, sqlPlan);
+            case JOINED -> new JoinedTableInheritanceStrategy(metadata, dialect, sqlPlan);
+            case TABLE_PER_CLASS -> new TablePerClassInheritanceStrategy(metadata, dialect, sqlPlan);
+            case CONCRETE_CLASS ->  new ConcreteClassInheritanceStrategy(metadata, dialect, sqlPlan);
         };
 
     }
@@ -1,22 +1,22 @@
 package pl.edu.agh.dp.core.persister;
 
 import javafx.util.Pair;
-import pl.edu.agh.dp.core.api.Session;
 import pl.edu.agh.dp.core.finder.Condition;
 import pl.edu.agh.dp.core.finder.QuerySpec;
 import pl.edu.agh.dp.core.finder.Sort;
+import pl.edu.agh.dp.core.jdbc.Dialect;
 import pl.edu.agh.dp.core.jdbc.JdbcExecutor;
 import pl.edu.agh.dp.core.mapping.*;
 import pl.edu.agh.dp.core.util.ReflectionUtils;
 
-import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.*;
 
 public class JoinedTableInheritanceStrategy extends AbstractInheritanceStrategy {
 
-    public JoinedTableInheritanceStrategy(EntityMetadata entityMetadata) {
-        super(entityMetadata);
+    public JoinedTableInheritanceStrategy(EntityMetadata entityMetadata, Dialect dialect, EntitySqlPlan sqlPlan) {
+        super(entityMetadata, dialect, sqlPlan);
     }
 
     @Override
@@ -44,110 +44,28 @@ public class JoinedTableInheritanceStrategy extends AbstractInheritanceStrategy
         return new Pair<>(sb.toString(), entityMetadata.getSqlConstraints());
     }
 
-    private List<EntityMetadata> buildInheritanceChain() {
-        List<EntityMetadata> visitingChain =  new ArrayList<>();
-        visitingChain.add(entityMetadata);
-
-        EntityMetadata current = entityMetadata;
-        while(true) {
-            assert current != null;
-            if (current.getInheritanceMetadata().getParent() == null) break;
-            visitingChain.add(current.getInheritanceMetadata().getParent());
-            current = current.getInheritanceMetadata().getParent();
-        }
-        Collections.reverse(visitingChain);
-
-        return visitingChain;
-    }
-
     @Override
-    public Object insert(Object entity, Session session) {
+    public Object insert(Object entity, PersisterSession session) {
         try {
             JdbcExecutor jdbc = session.getJdbcExecutor();
 
             Long generatedId = null;
-            // Sorted visiting chain from root to leaf
-            List<EntityMetadata> visitingChain = buildInheritanceChain();
-
-            assert entityMetadata != null;
-            EntityMetadata root = entityMetadata.getInheritanceMetadata().getRootClass();
-
-            List<PropertyMetadata> idColumns = new ArrayList<>(root.getIdColumns().values());
-            // get provided ids
-            Set<String> idProvided = getProvidedIds(entity);
-            // composite keys error handling
-            String idProp = getIdNameAndCheckCompositeKey(idProvided, idColumns);
-
-            for (EntityMetadata meta : visitingChain) {
-                List<String> columns = new ArrayList<>();
-                List<Object> values = new ArrayList<>();
+            String idProp = getRootIdProp(entity);
 
+            // tables from root to leaf
+            for (EntitySqlPlan.TableSql table : sqlPlan.getTables()) {
+                EntityMetadata meta = table.getMeta();
                 boolean isRoot = meta.getInheritanceMetadata().isRoot();
+                PendingStatement insert = buildLevelInsert(entity, table, generatedId, idProp);
 
-                for (PropertyMetadata prop : meta.getProperties().values()) {
-
-                    if (!fieldBelongsToClass(prop, meta.getEntityClass())) {
-                        continue;
-                    }
-
-                    //ID support in ROOT table (AutoIncrement)
-                    if (isRoot && prop.isId() && prop.isAutoIncrement()) {
-                        continue;
-                    }
-
-                    Object value = ReflectionUtils.getFieldValue(entity, prop.getName());
-                    if (value != null) {
-                        columns.add(prop.getColumnName());
-                        values.add(value);
-                    }
-                }
-
-                if (isRoot) {
-                    columns.add("DTYPE");
-                    values.add(root.getInheritanceMetadata().getClassToDiscriminator().get(entityMetadata.getEntityClass()));
-                }
-
-                // ID not in root
-                if (!isRoot) {
-                    if (generatedId == null) {
-                        throw new RuntimeException("Generated ID is null but trying to insert into child table! Root insert failed?");
-                    }
-
-                    String childIdColumnName = root.getIdColumns().keySet().iterator().next();
-                    columns.add(childIdColumnName);
-                    values.add(generatedId);
-                }
-
-                // relationships
-                fillRelationshipData(entity, meta, columns, values);
-
-                StringBuilder sql = new StringBuilder();
-                sql.append("INSERT INTO ")
-                        .append(meta.getTableName())
-                        .append(" (")
-                        .append(String.join(", ", columns))
-                        .append(") VALUES (")
-                        .append("?,".repeat(values.size()));
-
-                sql.deleteCharAt(sql.length() - 1); // delete last comma
-                sql.append(")");
-
-                System.out.println("Joined Insert SQL (" + (isRoot ? "ROOT" : "CHILD") + "): " + sql);
-                System.out.println("Values: " + values);
-
-                Long currentResult = jdbc.insert(sql.toString(), isRoot ? idProp : "", values.toArray());
+                Long currentResult = jdbc.insert(insert.sql, insert.keyColumn, insert.params);
 
                 if (isRoot) {
                     // set generated ID
-                    int numOfIds = meta.getIdColumns().size();
-                    if (numOfIds == 1) {        // we have one key if there's more then for sure it's not autoincrement
+                    if (meta.getIdColumns().size() == 1) {
                         generatedId = currentResult;
-                        PropertyMetadata idPropName = meta.getIdColumns().values().iterator().next();
-                        if (idPropName.isAutoIncrement()) {
-                            System.out.println("seting id in " + entity.toString()+ " value: " + generatedId);
-                            ReflectionUtils.setFieldValue(entity, idPropName.getName(), generatedId);
-                        }
                     }
+                    assignGeneratedId(entity, meta, currentResult);
                 }
             }
 
@@ -162,54 +80,104 @@ public class JoinedTableInheritanceStrategy extends AbstractInheritanceStrategy
     }
 
     @Override
-    public void update(Object entity, Session session) {
+    public void insertAll(List<Object> entities, PersisterSession session) {
+        if (entities.size() == 1 || hasSelfReference()) {
+            super.insertAll(entities, session);
+            return;
+        }
         try {
             JdbcExecutor jdbc = session.getJdbcExecutor();
-            List<EntityMetadata> chain = buildInheritanceChain();
+            List<EntitySqlPlan.TableSql> tables = sqlPlan.getTables();
+            EntitySqlPlan.TableSql rootTable = tables.get(0);
+            EntityMetadata rootMeta = rootTable.getMeta();
+
+            // root rows first, their ids are needed by every child table
+            List<PendingStatement> rootInserts = new ArrayList<>();
+            for (Object entity : entities) {
+                rootInserts.add(buildLevelInsert(entity, rootTable, null, getRootIdProp(entity)));
+            }
+            List<Long> results = insertGrouped(jdbc, rootInserts);
 
-            for (EntityMetadata meta : chain) {
-                List<String> setColumns = new ArrayList<>();
-                List<Object> values = new ArrayList<>();
+            List<Long> generatedIds = new ArrayList<>();
+            for (int i = 0; i < entities.size(); i++) {
+                generatedIds.add(rootMeta.getIdColumns().size() == 1 ? results.get(i) : null);
+                assignGeneratedId(entities.get(i), rootMeta, results.get(i));
+            }
 
-                // Only fields defined in this particular class
-                for (PropertyMetadata prop : meta.getProperties().values()) {
-                    if (!fieldBelongsToClass(prop, meta.getEntityClass())) {
-                        continue;
-                    }
+            // then table by table, so rows of one table end up in one batch
+            List<PendingStatement> childInserts = new ArrayList<>();
+            for (EntitySqlPlan.TableSql table : tables.subList(1, tables.size())) {
+                for (int i = 0; i < entities.size(); i++) {
+                    childInserts.add(buildLevelInsert(entities.get(i), table, generatedIds.get(i), ""));
+                }
+            }
+            insertGrouped(jdbc, childInserts);
 
-                    if (prop.isId()) {
-                        continue;
-                    }
+            List<PendingStatement> associationInserts = new ArrayList<>();
+            for (Object entity : entities) {
+                collectAssociationInserts(entity, associationInserts);
+            }
+            insertGrouped(jdbc, associationInserts);
+        } catch (Exception e) {
+            throw new RuntimeException("Error inserting entities with joined table strategy: " + entities, e);
+        }
+    }
 
-                    setColumns.add(prop.getColumnName());
-                    Object value = ReflectionUtils.getFieldValue(entity, prop.getName());
-                    values.add(value);
-                }
+    private String getRootIdProp(Object entity) {
+        assert entityMetadata != null;
+        EntityMetadata root = entityMetadata.getInheritanceMetadata().getRootClass();
 
-                fillRelationshipData(entity, meta, setColumns, values);
+        List<PropertyMetadata> idColumns = new ArrayList<>(root.getIdColumns().values());
+        // get provided ids
+        Set<String> idProvided = getProvidedIds(entity);
+        // composite keys error handling
+        return getIdNameAndCheckCompositeKey(idProvided, idColumns);
+    }
 
-                if (setColumns.isEmpty()) {
-                    continue;
-                }
+    private PendingStatement buildLevelInsert(Object entity, EntitySqlPlan.TableSql table, Long generatedId, String idProp) {
+        EntityMetadata root = sqlPlan.getRoot();
+        EntityMetadata meta = table.getMeta();
 
-                assert entityMetadata != null;
-                EntityMetadata root = entityMetadata.getInheritanceMetadata().getRootClass();
-                Object idValue = getIdValue(entity);
-                String whereClause = buildWhereClause(root);
-                Object[] idParams = prepareIdParams(idValue);
+        List<String> columns = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
 
-                List<Object> allParams = new ArrayList<>(values);
-                allParams.addAll(Arrays.asList(idParams));
+        boolean isRoot = meta.getInheritanceMetadata().isRoot();
 
-                StringBuilder sql = new StringBuilder();
-                sql.append("UPDATE ").append(meta.getTableName())
-                        .append(" SET ").append(String.join(" = ?, ", setColumns)).append(setColumns.isEmpty() ? "" : " = ?")
-                        .append(" WHERE ").append(whereClause);
+        // own fields only, without the auto increment id of the root table
+        collectInsertValues(table, entity, columns, values);
 
-                System.out.println("Joined UPDATE SQL (" + meta.getTableName() + "): " + sql);
-                System.out.println("Values: " + allParams);
+        if (isRoot) {
+            columns.add("DTYPE");
+            values.add(root.getInheritanceMetadata().getClassToDiscriminator().get(entityMetadata.getEntityClass()));
+        }
 
-                jdbc.update(sql.toString(), allParams.toArray());
+        // ID not in root
+        if (!isRoot) {
+            if (generatedId == null) {
+                throw new RuntimeException("Generated ID is null but trying to insert into child table! Root insert failed?");
+            }
+
+            String childIdColumnName = root.getIdColumns().keySet().iterator().next();
+            columns.add(childIdColumnName);
+            values.add(generatedId);
+        }
+
+        // relationships
+        fillRelationshipData(entity, meta, columns, values);
+
+        return new PendingStatement(table.insertSql(columns), values.toArray(), isRoot ? idProp : "");
+    }
+
+    @Override
+    public void update(Object entity, PersisterSession session) {
+        try {
+            JdbcExecutor jdbc = session.getJdbcExecutor();
+
+            for (EntitySqlPlan.TableSql table : sqlPlan.getTables()) {
+                PendingStatement update = buildLevelUpdate(entity, table);
+                if (update != null) {
+                    jdbc.update(update.sql, update.params);
+                }
             }
 
             // association tables
@@ -220,48 +188,92 @@ public class JoinedTableInheritanceStrategy extends AbstractInheritanceStrategy
     }
 
     @Override
-    public void delete(Object entity, Session session) {
+    public void updateAll(List<Object> entities, PersisterSession session) {
         try {
             JdbcExecutor jdbc = session.getJdbcExecutor();
-            List<EntityMetadata> chain = buildInheritanceChain();
 
-            // DELETE from the farthest child to the root (to avoid affecting foreign keys)
-            Collections.reverse(chain);
+            List<PendingStatement> updates = new ArrayList<>();
+            for (EntitySqlPlan.TableSql table : sqlPlan.getTables()) {
+                for (Object entity : entities) {
+                    PendingStatement update = buildLevelUpdate(entity, table);
+                    if (update != null) {
+                        updates.add(update);
+                    }
+                }
+            }
+            executeGrouped(jdbc, updates);
 
-            assert entityMetadata != null;
-            EntityMetadata root = entityMetadata.getInheritanceMetadata().getRootClass();
-            Object idValue = getIdValue(entity);
-            Object[] idParams = prepareIdParams(idValue);
+            List<PendingStatement> associationUpdates = new ArrayList<>();
+            for (Object entity : entities) {
+                collectAssociationUpdates(entity, associationUpdates);
+            }
+            executeGrouped(jdbc, associationUpdates);
+        } catch (Exception e) {
+            throw new RuntimeException("Error updating entities with joined table strategy: " + entities, e);
+        }
+    }
+
+    /**
+     * Update of a single table in the chain, null when the table has nothing to update.
+     */
+    private PendingStatement buildLevelUpdate(Object entity, EntitySqlPlan.TableSql table) {
+        List<String> setColumns = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+
+        // Only fields defined in this particular class
+        collectUpdateValues(table, entity, setColumns, values);
+
+        fillRelationshipData(entity, table.getMeta(), setColumns, values);
+
+        if (setColumns.isEmpty()) {
+            return null;
+        }
 
-            for (EntityMetadata meta : chain) {
-                String whereClause = buildWhereClause(root);
+        List<Object> allParams = new ArrayList<>(values);
+        allParams.addAll(Arrays.asList(prepareIdParams(getIdValue(entity))));
 
-                StringBuilder sql = new StringBuilder();
-                sql.append("DELETE FROM ").append(meta.getTableName())
-                        .append(" WHERE ").append(whereClause);
+        return new PendingStatement(table.updateSql(setColumns), allParams.toArray());
+    }
 
-                System.out.println("Joined DELETE SQL (" + meta.getTableName() + "): " + sql);
-                System.out.println("ID: " + idValue);
+    @Override
+    public void delete(Object entity, PersisterSession session) {
+        deleteAll(List.of(entity), session);
+    }
 
-                jdbc.update(sql.toString(), idParams);
+    @Override
+    public void deleteAll(List<Object> entities, PersisterSession session) {
+        try {
+            JdbcExecutor jdbc = session.getJdbcExecutor();
+            List<EntitySqlPlan.TableSql> tables = sqlPlan.getTables();
+
+            // DELETE from the farthest child to the root (to avoid affecting foreign keys)
+            List<PendingStatement> deletes = new ArrayList<>();
+            for (int i = tables.size() - 1; i >= 0; i--) {
+                String sql = tables.get(i).getDeleteSql();
+
+                for (Object entity : entities) {
+                    Object idValue = getIdValue(entity);
+                    deletes.add(new PendingStatement(sql, prepareIdParams(idValue)));
+                }
             }
+            executeGrouped(jdbc, deletes);
 
         } catch (Exception e) {
-            throw new RuntimeException("Error deleting entity with joined table strategy: " + entity, e);
+            throw new RuntimeException("Error deleting entity with joined table strategy: "
+                    + (entities.size() == 1 ? entities.get(0) : entities), e);
         }
     }
 
     @Override
-    public Object findById(Object id, Session session) {
+    public Object findById(Object id, PersisterSession session) {
         try {
             assert entityMetadata != null;
             // query with LEFT JOINS
             SqlAndParams query = buildPolymorphicQuery(id); // id != null -> generuje WHERE
 
-            System.out.println("Joined findById SQL: " + query.sql);
 
             JdbcExecutor jdbc = session.getJdbcExecutor();
-            return jdbc.queryOne(query.sql, this::mapRow, query.params.toArray()).orElse(null);
+            return jdbc.queryOne(query.sql, planned(query.sql, this::buildRowPlan), query.params.toArray()).orElse(null);
 
         } catch (Exception e) {
             throw new RuntimeException("Error finding entity with id = " + id, e);
@@ -269,95 +281,82 @@ public class JoinedTableInheritanceStrategy extends AbstractInheritanceStrategy
     }
 
     @Override
-    public <T> List<T> findAll(Class<T> type, Session session, PairTargetStatements pairTargetStatements) {
+    protected SelectQuery buildFindAllQuery(PairTargetStatements pairTargetStatements, List<String> ownerColumns,
+                                            Object[] params) {
         TargetStatement joinStmt = pairTargetStatements.getJoinStatements().get(0);
         TargetStatement whereStmt = pairTargetStatements.getWhereStatements().get(0);
         assert entityMetadata != null;
-        try {
-            // without where id = ?
-            SqlAndParams query = buildPolymorphicQuery(null);
+        // without where id = ?
+        SqlAndParams query = buildPolymorphicQuery(null);
 
-            query.sql += " " + joinStmt.getStatement();
+        query.sql = withOwnerColumns(query.sql, ownerColumns) + " " + joinStmt.getStatement();
 
-            // additional where
-            if (!whereStmt.isBlank()) {
-
-                query.sql += " WHERE " + whereStmt.getStatement();
-            }
-
-            System.out.println("Joined findAll SQL: " + query.sql);
-
-            JdbcExecutor jdbc = session.getJdbcExecutor();
+        // additional where
+        if (!whereStmt.isBlank()) {
 
-            List<Object> results = jdbc.query(query.sql, this::mapRow);
+            query.sql += " WHERE " + whereStmt.getStatement();
+        }
 
-            List<T> filtered = new ArrayList<>();
-            for (Object obj : results) {
-                if (type.isInstance(obj)) {
-                    filtered.add(type.cast(obj));
-                }
-            }
-            return filtered;
+        return new SelectQuery(query.sql, params, planned(query.sql, this::buildRowPlan));
+    }
 
-        } catch (Exception e) {
-            throw new RuntimeException("Error finding entities in Joined Strategy", e);
-        }
+    @Override
+    protected String idOrder() {
+        assert entityMetadata != null;
+        return idOrder(sqlPlan.getRoot().getTableName(), entityMetadata.getIdColumns().values());
     }
 
     @Override
-    public <T> List<T> findBy(Class<T> type, Session session, QuerySpec<T> querySpec) {
+    protected <T> SelectQuery buildFindByQuery(Class<T> type, QuerySpec<T> querySpec) {
         assert entityMetadata != null;
-        try {
-            // Build the polymorphic query
-            SqlAndParams query = buildPolymorphicQuery(null);
-            
-            List<Object> params = new ArrayList<>(query.params);
-            EntityMetadata root = entityMetadata.getInheritanceMetadata().getRootClass();
-
-            // QuerySpec conditions - need to resolve field to proper table in inheritance hierarchy
-            String querySpecWhere = buildJoinedQuerySpecWhereClause(querySpec, params);
-            if (!querySpecWhere.isEmpty()) {
-                if (query.sql.contains(" WHERE ")) {
-                    query.sql += " AND " + querySpecWhere;
-                } else {
-                    query.sql += " WHERE " + querySpecWhere;
-                }
-            }
+        // Build the polymorphic query
+        SqlAndParams query = buildPolymorphicQuery(null);
+        
+        List<Object> params = new ArrayList<>(query.params);
+        EntityMetadata root = entityMetadata.getInheritanceMetadata().getRootClass();
 
-            // ORDER BY - need to resolve field to proper table
-            String orderBy = buildJoinedQuerySpecOrderByClause(querySpec);
-            if (!orderBy.isEmpty()) {
-                query.sql += " ORDER BY " + orderBy;
+        // QuerySpec conditions - need to resolve field to proper table in inheritance hierarchy
+        String querySpecWhere = buildJoinedQuerySpecWhereClause(querySpec, params);
+        if (!querySpecWhere.isEmpty()) {
+            if (query.sql.contains(" WHERE ")) {
+                query.sql += " AND " + querySpecWhere;
+            } else {
+                query.sql += " WHERE " + querySpecWhere;
             }
+        }
 
-            // LIMIT/OFFSET
-            query.sql += buildQuerySpecLimitOffsetClause(querySpec);
+        // ORDER BY - need to resolve field to proper table
+        String orderBy = buildJoinedQuerySpecOrderByClause(querySpec);
+        if (!orderBy.isEmpty()) {
+            query.sql += " ORDER BY " + orderBy;
+        }
 
-            System.out.println("Joined Finder SQL: " + query.sql);
-            System.out.println("Joined Finder params: " + params);
+        // LIMIT/OFFSET
+        query.sql += buildQuerySpecLimitOffsetClause(querySpec);
 
-            JdbcExecutor jdbc = session.getJdbcExecutor();
-            List<Object> results = jdbc.query(query.sql, this::mapRow, params.toArray());
 
-            // Filter by type
-            List<T> filtered = new ArrayList<>();
-            for (Object obj : results) {
-                if (type.isInstance(obj)) {
-                    filtered.add(type.cast(obj));
-                }
-            }
-            return filtered;
+        return new SelectQuery(query.sql, params.toArray(), planned(query.sql, this::buildRowPlan));
+    }
 
-        } catch (Exception e) {
-            throw new RuntimeException("Error finding entities with QuerySpec in Joined Strategy", e);
-        }
+    @Override
+    protected List<BulkFilter> bulkFilters(QuerySpec<?> querySpec) {
+        assert entityMetadata != null;
+        List<Object> params = new ArrayList<>();
+        String where = buildJoinedQuerySpecWhereClause(querySpec, params);
+        // subclass rows have a part in the table of the entity
+        List<EntityMetadata> rowTables = entityMetadata == sqlPlan.getRoot() ? List.of() : List.of(entityMetadata);
+        return List.of(joinedBulkFilter(sqlPlan.getRoot().getTableName(), rowTables, where, params));
+    }
+
+    @Override
+    protected List<String> bulkDeleteTables() {
+        return childFirstTables(sqlPlan.getSubclasses());
     }
 
     private String findTableForField(String fieldName) {
-        EntityMetadata root = entityMetadata.getInheritanceMetadata().getRootClass();
-        List<EntityMetadata> allSubclasses = getAllSubclassesIncludingRoot(root);
-        
-        for (EntityMetadata meta : allSubclasses) {
+        EntityMetadata root = sqlPlan.getRoot();
+
+        for (EntityMetadata meta : sqlPlan.getHierarchy()) {
             if (meta.getProperties().containsKey(fieldName)) {
                 return meta.getTableName();
             }
@@ -370,10 +369,9 @@ public class JoinedTableInheritanceStrategy extends AbstractInheritanceStrategy
     }
 
     private String resolveJoinedColumnName(String fieldName) {
-        EntityMetadata root = entityMetadata.getInheritanceMetadata().getRootClass();
-        List<EntityMetadata> allSubclasses = getAllSubclassesIncludingRoot(root);
-        
-        for (EntityMetadata meta : allSubclasses) {
+        EntityMetadata root = sqlPlan.getRoot();
+
+        for (EntityMetadata meta : sqlPlan.getHierarchy()) {
             PropertyMetadata pm = meta.getProperties().get(fieldName);
             if (pm != null) {
                 return pm.getColumnName();
@@ -434,172 +432,47 @@ public class JoinedTableInheritanceStrategy extends AbstractInheritanceStrategy
         }
     }
 
+    /**
+     * The LEFT JOINed select of the plan, restricted to the id when given.
+     */
     private SqlAndParams buildPolymorphicQuery(Object id) {
-        EntityMetadata root = entityMetadata.getInheritanceMetadata().getRootClass();
-        List<EntityMetadata> allSubclasses = getAllSubclassesIncludingRoot(root);
-
-        StringBuilder selectPart = new StringBuilder("SELECT ");
-        StringBuilder joinPart = new StringBuilder(" FROM " + root.getTableName());
-
-        List<String> columns = new ArrayList<>();
-
-        // column list with aliases
-        for (EntityMetadata meta : allSubclasses) {
-            for (PropertyMetadata prop : meta.getProperties().values()) {
-                if (prop.getSqlType() != null) {
-                    columns.add(meta.getTableName() + "." + prop.getColumnName() +
-                            " AS " + meta.getTableName() + "_" + prop.getColumnName());
-                }
-            }
-        }
-
-        selectPart.append(String.join(", ", columns));
-
-        // LEFT JOINs
-        for (EntityMetadata sub : allSubclasses) {
-            if (sub == root) continue;
-
-            EntityMetadata parent = sub.getInheritanceMetadata().getParent();
-            // JOIN po ID
-            String pkName = root.getIdColumns().values().iterator().next().getColumnName();
-
-            joinPart.append(" LEFT JOIN ").append(sub.getTableName())
-                    .append(" ON ")
-                    .append(parent.getTableName()).append(".").append(pkName)
-                    .append(" = ")
-                    .append(sub.getTableName()).append(".").append(pkName);
-        }
-
-        // WHERE
-        List<Object> params = new ArrayList<>();
-        if (id != null) {
-            List<PropertyMetadata> idColumns = entityMetadata.getIdColumns().values().stream().toList();
-            joinPart.append(" WHERE ");
-
-            if (idColumns.size() == 1) {
-                PropertyMetadata pm = idColumns.iterator().next();
-                joinPart.append(root.getTableName()).append(".").append(pm.getColumnName()).append(" = ?");
-                params.add(((Class<?>) pm.getType()).cast(id));
-            } else {
-                // composite key
-                int count = 0;
-                for(PropertyMetadata pm : idColumns) {
-                    if(count > 0) joinPart.append(" AND ");
-                    joinPart.append(root.getTableName()).append(".").append(pm.getColumnName()).append(" = ?");
-                    Object val = ReflectionUtils.getFieldValue(id, pm.getName());
-                    params.add(val);
-                    count++;
-                }
-            }
-        }
-
-        return new SqlAndParams(selectPart.toString() + joinPart.toString(), params);
-    }
-
-    private Object mapRow(ResultSet rs) throws SQLException {
-        try {
-            assert entityMetadata != null;
-            EntityMetadata root = entityMetadata.getInheritanceMetadata().getRootClass();
-
-            String discriminatorCol = "DTYPE";
-            String alias = root.getTableName() + "_" + discriminatorCol;
-
-            String className;
-            try {
-                className = rs.getString(alias);
-            } catch (SQLException e) {
-                className = rs.getString(discriminatorCol);
-            }
-
-            if (className == null) {
-                className = root.getEntityClass().getName();
-            }
-
-            Class<?> realClass;
-            try {
-                realClass = root.getInheritanceMetadata().getDiscriminatorToClass().get(className);
-
-                if (realClass == null) {
-                    realClass = Class.forName(className);
-                }
-            } catch (Exception e) {
-                throw new RuntimeException("Unknown entity type: " + className);
-            }
-
-            Object instance = realClass.getDeclaredConstructor().newInstance();
-
-            populateFieldsWithAliases(instance, rs, realClass);
-
-            return instance;
-
-        } catch (Exception e) {
-            throw new RuntimeException("Error mapping row in Joined strategy", e);
+        if (id == null) {
+            return new SqlAndParams(sqlPlan.getPolymorphicSelect(), new ArrayList<>());
         }
+        Object[] params = idParams(entityMetadata.getIdColumns().values(), id);
+        return new SqlAndParams(sqlPlan.getFindByIdSql(), new ArrayList<>(Arrays.asList(params)));
     }
 
-    private void populateFieldsWithAliases(Object instance, ResultSet rs, Class<?> realClass) throws SQLException {
-        EntityMetadata currentMeta = findMetadataForClass(realClass);
-
-        // we are going upwards
-        while (currentMeta != null) {
-            for (PropertyMetadata prop : currentMeta.getProperties().values()) {
-                if (prop.getSqlType() == null) continue;
-
-                if (prop.getName() == null) {
-                    continue;
-                }
-
-                if (Objects.equals(prop.getColumnName(), "DTYPE")) continue;
-
-                String columnAlias = currentMeta.getTableName() + "_" + prop.getColumnName();
+    /**
+     * Columns are aliased {@code table_column}; every class reads the columns of its own table
+     * and of the tables of its parents.
+     */
+    private RowPlan buildRowPlan(ResultSetMetaData metaData) throws SQLException {
+        assert entityMetadata != null;
+        EntityMetadata root = entityMetadata.getInheritanceMetadata().getRootClass();
+        RowPlan.Builder plan = new RowPlan.Builder(metaData);
 
-                try {
-                    String fieldName = prop.getName();
-                    Object value = getValueFromResultSet(rs, columnAlias, prop.getType());
+        String alias = root.getTableName() + "_DTYPE";
+        plan.discriminator(plan.hasColumn(alias) ? alias : "DTYPE");
 
-                    if (value != null) {
-                        Object castedValue = castSqlValueToJava((Class<?>) prop.getType(), value);
-                        ReflectionUtils.setFieldValue(instance, fieldName, castedValue);
+        for (EntityMetadata meta : sqlPlan.getHierarchy()) {
+            RowPlan.EntityPlan entityPlan = plan.entity(meta.getEntityClass());
+            // we are going upwards
+            for (EntityMetadata current = meta; current != null; current = current.getInheritanceMetadata().getParent()) {
+                for (PropertyMetadata prop : current.getProperties().values()) {
+                    if (prop.getSqlType() == null || Objects.equals(prop.getColumnName(), "DTYPE")) {
+                        continue;
                     }
-                } catch (SQLException e) {
-                    // ignore
+                    entityPlan.column(current.getTableName() + "_" + prop.getColumnName(), prop);
                 }
             }
-
-            // go to parent
-            if (currentMeta.getInheritanceMetadata().getParent() != null) {
-                currentMeta = currentMeta.getInheritanceMetadata().getParent();
-            } else {
-                currentMeta = null;
-            }
-        }
-    }
-
-    private List<EntityMetadata> getAllSubclassesIncludingRoot(EntityMetadata root) {
-        List<EntityMetadata> list = new ArrayList<>();
-        list.add(root);
-
-        List<EntityMetadata> toProcess = new ArrayList<>(root.getInheritanceMetadata().getChildren());
-        while (!toProcess.isEmpty()) {
-            EntityMetadata current = toProcess.remove(0);
-            list.add(current);
-            toProcess.addAll(current.getInheritanceMetadata().getChildren());
-        }
-        return list;
-    }
-
-    private EntityMetadata findMetadataForClass(Class<?> clazz) {
-        EntityMetadata root = entityMetadata.getInheritanceMetadata().getRootClass();
-        if (root.getEntityClass().equals(clazz)) return root;
-
-        // BFS search
-        List<EntityMetadata> queue = new ArrayList<>(root.getInheritanceMetadata().getChildren());
-        while(!queue.isEmpty()) {
-            EntityMetadata current = queue.remove(0);
-            if (current.getEntityClass().equals(clazz)) return current;
-            queue.addAll(current.getInheritanceMetadata().getChildren());
+            references(entityPlan, meta, true);
+            // rows may hold the class name instead of the discriminator value
+            plan.when(meta.getEntityClass().getName(), meta.getEntityClass());
         }
-        return null;
+        root.getInheritanceMetadata().getDiscriminatorToClass().forEach(plan::when);
+        plan.otherwise(root.getEntityClass());
+        return plan.build();
     }
 
 }
@@ -0,0 +1,380 @@
+package pl.edu.agh.dp.core.persister;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import pl.edu.agh.dp.core.logging.OrmLogger;
+import pl.edu.agh.dp.core.mapping.EntityMetadata;
+import pl.edu.agh.dp.core.mapping.InheritanceMetadata;
+import pl.edu.agh.dp.core.mapping.InheritanceType;
+import pl.edu.agh.dp.core.mapping.PropertyMetadata;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * Generates a {@link GeneratedPersister} for a single table entity without subclasses and defines
+ * it as a hidden class nested with the entity, so it can read and write private fields directly.
+ * <p>
+ * Returns null (and the strategy keeps its reflective code) when the entity does not fit:
+ * other inheritance layouts, final or inaccessible fields, column defaults, foreign keys sharing
+ * a column with a property, or a module that does not open the entity package.
+ */
+public final class PersisterGenerator implements Opcodes {
+
+    private static final OrmLogger log = OrmLogger.getLogger(PersisterGenerator.class);
+
+    private static final String BASE = Type.getInternalName(GeneratedPersister.class);
+    private static final String RESULT_SET = "java/sql/ResultSet";
+    private static final String UNSET = "__UNSET__";
+
+    // column types read inline (through the primitive getter), others go through the column reader
+    // of RowPlan; the metadata allows wrappers only
+    private static final Map<Class<?>, Class<?>> PRIMITIVES = Map.of(
+            Integer.class, int.class,
+            Long.class, long.class,
+            Short.class, short.class,
+            Float.class, float.class,
+            Double.class, double.class,
+            Boolean.class, boolean.class
+    );
+
+    private PersisterGenerator() {
+    }
+
+    public static GeneratedPersister generate(EntityMetadata meta) {
+        Class<?> entityClass = meta.getEntityClass();
+        String reason = checkSupported(meta);
+        if (reason != null) {
+            log.debug("No generated persister for {}: {}", entityClass.getName(), reason);
+            return null;
+        }
+
+        InheritanceMetadata inheritance = meta.getInheritanceMetadata();
+        String discriminatorColumn = inheritance.getDiscriminatorColumnName();
+        List<PropertyMetadata> columns = new ArrayList<>();
+        for (PropertyMetadata pm : meta.getProperties().values()) {
+            if (!pm.getColumnName().equals(discriminatorColumn)) {
+                columns.add(pm);
+            }
+        }
+        List<PropertyMetadata> insertColumns = new ArrayList<>();
+        List<PropertyMetadata> updateColumns = new ArrayList<>();
+        for (PropertyMetadata pm : columns) {
+            if (!(pm.isId() && pm.isAutoIncrement())) {
+                insertColumns.add(pm);
+            }
+            if (!pm.isId()) {
+                updateColumns.add(pm);
+            }
+        }
+        List<PropertyMetadata> idColumns = new ArrayList<>(meta.getIdColumns().values());
+
+        List<String> insertNames = new ArrayList<>();
+        insertNames.add(discriminatorColumn);
+        insertColumns.forEach(pm -> insertNames.add(pm.getColumnName()));
+        String insertSql = "INSERT INTO " + meta.getTableName() + " (" + String.join(", ", insertNames) + ") VALUES ("
+                + String.join(",", Collections.nCopies(insertNames.size(), "?")) + ")";
+
+        String updateSql = null;
+        if (!updateColumns.isEmpty()) {
+            List<String> sets = new ArrayList<>();
+            updateColumns.forEach(pm -> sets.add(pm.getColumnName() + " = ?"));
+            List<String> conditions = new ArrayList<>();
+            idColumns.forEach(pm -> conditions.add(pm.getColumnName() + " = ?"));
+            updateSql = "UPDATE " + meta.getTableName() + " SET " + String.join(", ", sets)
+                    + " WHERE " + String.join(" AND ", conditions);
+        }
+
+        RowPlan.ColumnReader[] readers = new RowPlan.ColumnReader[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            if (!isInline(columns.get(i).getAccessor().getField().getType())) {
+                readers[i] = RowPlan.reader(columns.get(i).getType());
+            }
+        }
+
+        String discriminatorValue = inheritance.getClassToDiscriminator().get(entityClass);
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(entityClass, MethodHandles.lookup());
+            byte[] bytes = new Generator(entityClass, discriminatorValue, columns, insertColumns, updateColumns, idColumns)
+                    .generate(insertSql, updateSql);
+            MethodHandles.Lookup hidden = lookup.defineHiddenClass(bytes, true, MethodHandles.Lookup.ClassOption.NESTMATE);
+            GeneratedPersister persister = (GeneratedPersister) hidden
+                    .findConstructor(hidden.lookupClass(), MethodType.methodType(void.class))
+                    .invoke();
+            persister.readers = readers;
+            persister.hydrateColumns = columns.stream().map(PropertyMetadata::getColumnName).toList();
+            persister.insertColumns = List.copyOf(insertNames);
+            log.debug("Generated persister {} for {}", hidden.lookupClass().getName(), entityClass.getName());
+            return persister;
+        } catch (Throwable e) {
+            log.warn("Cannot generate persister for " + entityClass.getName() + ", using reflection", e);
+            return null;
+        }
+    }
+
+    private static String checkSupported(EntityMetadata meta) {
+        Class<?> entityClass = meta.getEntityClass();
+        InheritanceMetadata inheritance = meta.getInheritanceMetadata();
+        if (inheritance.getType() != InheritanceType.SINGLE_TABLE || !inheritance.isRoot()
+                || !inheritance.getChildren().isEmpty()) {
+            return "only single table entities without subclasses are supported";
+        }
+        if (Modifier.isAbstract(entityClass.getModifiers()) || entityClass.isInterface()) {
+            return "abstract class";
+        }
+        try {
+            entityClass.getDeclaredConstructor();
+        } catch (NoSuchMethodException e) {
+            return "no no-arg constructor";
+        }
+        Set<String> columnNames = new HashSet<>();
+        for (PropertyMetadata pm : meta.getProperties().values()) {
+            if (pm.getColumnName().equals(inheritance.getDiscriminatorColumnName())) {
+                continue;
+            }
+            columnNames.add(pm.getColumnName());
+            if (pm.getAccessor() == null) {
+                return "no field for column " + pm.getColumnName();
+            }
+            Field field = pm.getAccessor().getField();
+            if (Modifier.isFinal(field.getModifiers()) || !isAccessible(field, entityClass)) {
+                return "field " + field.getName() + " cannot be accessed directly";
+            }
+            // null has to leave the column out of the INSERT for the default to apply
+            if (!Objects.equals(pm.getDefaultValue(), UNSET)) {
+                return "column " + pm.getColumnName() + " has a default value";
+            }
+        }
+        for (PropertyMetadata pm : meta.getFkColumns().values()) {
+            if (columnNames.contains(pm.getColumnName())) {
+                return "foreign key column " + pm.getColumnName() + " is also a property";
+            }
+        }
+        return null;
+    }
+
+    // the hidden class lives in the entity package and nest
+    private static boolean isAccessible(Field field, Class<?> entityClass) {
+        Class<?> owner = field.getDeclaringClass();
+        if (owner.getNestHost() == entityClass.getNestHost()) {
+            return true;
+        }
+        if (Modifier.isPrivate(field.getModifiers()) || owner.getClassLoader() != entityClass.getClassLoader()) {
+            return false;
+        }
+        return owner.getPackageName().equals(entityClass.getPackageName())
+                || (Modifier.isPublic(field.getModifiers()) && Modifier.isPublic(owner.getModifiers()));
+    }
+
+    private static boolean isInline(Class<?> type) {
+        return type == String.class || PRIMITIVES.containsKey(type);
+    }
+
+    private static final class Generator {
+        private final Class<?> entityClass;
+        private final String entity;
+        private final String discriminatorValue;
+        private final List<PropertyMetadata> columns;
+        private final List<PropertyMetadata> insertColumns;
+        private final List<PropertyMetadata> updateColumns;
+        private final List<PropertyMetadata> idColumns;
+
+        Generator(Class<?> entityClass, String discriminatorValue, List<PropertyMetadata> columns,
+                  List<PropertyMetadata> insertColumns, List<PropertyMetadata> updateColumns,
+                  List<PropertyMetadata> idColumns) {
+            this.entityClass = entityClass;
+            this.entity = Type.getInternalName(entityClass);
+            this.discriminatorValue = discriminatorValue;
+            this.columns = columns;
+            this.insertColumns = insertColumns;
+            this.updateColumns = updateColumns;
+            this.idColumns = idColumns;
+        }
+
+        byte[] generate(String insertSql, String updateSql) {
+            ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+                @Override
+                protected ClassLoader getClassLoader() {
+                    return entityClass.getClassLoader();
+                }
+            };
+            cw.visit(V17, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, entity + "$$OrmPersister", null, BASE, null);
+
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitMethodInsn(INVOKESPECIAL, BASE, "<init>", "()V", false);
+            mv.visitInsn(RETURN);
+            end(mv);
+
+            mv = cw.visitMethod(ACC_PUBLIC, "newInstance", "()Ljava/lang/Object;", null, null);
+            mv.visitCode();
+            newEntity(mv);
+            mv.visitInsn(ARETURN);
+            end(mv);
+
+            constant(cw, "getInsertSql", insertSql);
+            constant(cw, "getUpdateSql", updateSql);
+            bind(cw, "bindInsert", insertColumns, List.of(), true);
+            bind(cw, "bindUpdate", updateColumns, idColumns, false);
+            hydrate(cw);
+
+            cw.visitEnd();
+            return cw.toByteArray();
+        }
+
+        private void newEntity(MethodVisitor mv) {
+            mv.visitTypeInsn(NEW, entity);
+            mv.visitInsn(DUP);
+            mv.visitMethodInsn(INVOKESPECIAL, entity, "<init>", "()V", false);
+        }
+
+        private void constant(ClassWriter cw, String name, String value) {
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, name, "()Ljava/lang/String;", null, null);
+            mv.visitCode();
+            if (value == null) {
+                mv.visitInsn(ACONST_NULL);
+            } else {
+                mv.visitLdcInsn(value);
+            }
+            mv.visitInsn(ARETURN);
+            end(mv);
+        }
+
+        // Object[] { [DTYPE,] field1, field2, ..., [id1, ...] }
+        private void bind(ClassWriter cw, String name, List<PropertyMetadata> values, List<PropertyMetadata> ids,
+                          boolean withDiscriminator) {
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, name, "(Ljava/lang/Object;)[Ljava/lang/Object;", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitTypeInsn(CHECKCAST, entity);
+            mv.visitVarInsn(ASTORE, 2);
+
+            int size = values.size() + ids.size() + (withDiscriminator ? 1 : 0);
+            push(mv, size);
+            mv.visitTypeInsn(ANEWARRAY, "java/lang/Object");
+            int index = 0;
+            if (withDiscriminator) {
+                mv.visitInsn(DUP);
+                push(mv, index++);
+                if (discriminatorValue == null) {
+                    mv.visitInsn(ACONST_NULL);
+                } else {
+                    mv.visitLdcInsn(discriminatorValue);
+                }
+                mv.visitInsn(AASTORE);
+            }
+            for (List<PropertyMetadata> group : List.of(values, ids)) {
+                for (PropertyMetadata pm : group) {
+                    Field field = pm.getAccessor().getField();
+                    mv.visitInsn(DUP);
+                    push(mv, index++);
+                    mv.visitVarInsn(ALOAD, 2);
+                    mv.visitFieldInsn(GETFIELD, Type.getInternalName(field.getDeclaringClass()), field.getName(),
+                            Type.getDescriptor(field.getType()));
+                    mv.visitInsn(AASTORE);
+                }
+            }
+            mv.visitInsn(ARETURN);
+            end(mv);
+        }
+
+        private void hydrate(ClassWriter cw) {
+            // locals: this, rs, columns, entity, value
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "hydrate", "(Ljava/sql/ResultSet;[I)Ljava/lang/Object;",
+                    null, new String[]{"java/sql/SQLException"});
+            mv.visitCode();
+            newEntity(mv);
+            mv.visitVarInsn(ASTORE, 3);
+
+            for (int i = 0; i < columns.size(); i++) {
+                PropertyMetadata pm = columns.get(i);
+                Field field = pm.getAccessor().getField();
+                Class<?> type = field.getType();
+                String owner = Type.getInternalName(field.getDeclaringClass());
+                String descriptor = Type.getDescriptor(type);
+                Label skip = new Label();
+
+                Class<?> primitive = PRIMITIVES.get(type);
+                if (primitive != null) {
+                    // v = rs.getXxx(columns[i]); if (!rs.wasNull()) entity.field = Xxx.valueOf(v);
+                    Type primitiveType = Type.getType(primitive);
+                    mv.visitVarInsn(ALOAD, 1);
+                    column(mv, i);
+                    mv.visitMethodInsn(INVOKEINTERFACE, RESULT_SET, getter(primitive),
+                            "(I)" + primitiveType.getDescriptor(), true);
+                    mv.visitVarInsn(primitiveType.getOpcode(ISTORE), 4);
+                    mv.visitVarInsn(ALOAD, 1);
+                    mv.visitMethodInsn(INVOKEINTERFACE, RESULT_SET, "wasNull", "()Z", true);
+                    mv.visitJumpInsn(IFNE, skip);
+                    mv.visitVarInsn(ALOAD, 3);
+                    mv.visitVarInsn(primitiveType.getOpcode(ILOAD), 4);
+                    box(mv, type, primitiveType);
+                } else {
+                    // v = rs.getString(columns[i]) / read(i, rs, columns[i]); if (v != null) entity.field = v;
+                    if (type == String.class) {
+                        mv.visitVarInsn(ALOAD, 1);
+                        column(mv, i);
+                        mv.visitMethodInsn(INVOKEINTERFACE, RESULT_SET, "getString", "(I)Ljava/lang/String;", true);
+                    } else {
+                        mv.visitVarInsn(ALOAD, 0);
+                        push(mv, i);
+                        mv.visitVarInsn(ALOAD, 1);
+                        column(mv, i);
+                        mv.visitMethodInsn(INVOKEVIRTUAL, BASE, "read", "(ILjava/sql/ResultSet;I)Ljava/lang/Object;", false);
+                    }
+                    mv.visitVarInsn(ASTORE, 4);
+                    mv.visitVarInsn(ALOAD, 4);
+                    mv.visitJumpInsn(IFNULL, skip);
+                    mv.visitVarInsn(ALOAD, 3);
+                    mv.visitVarInsn(ALOAD, 4);
+                    mv.visitTypeInsn(CHECKCAST, Type.getInternalName(type));
+                }
+                mv.visitFieldInsn(PUTFIELD, owner, field.getName(), descriptor);
+                mv.visitLabel(skip);
+            }
+            mv.visitVarInsn(ALOAD, 3);
+            mv.visitInsn(ARETURN);
+            end(mv);
+        }
+
+        // columns[i]
+        private static void column(MethodVisitor mv, int i) {
+            mv.visitVarInsn(ALOAD, 2);
+            push(mv, i);
+            mv.visitInsn(IALOAD);
+        }
+
+        private static String getter(Class<?> primitive) {
+            String name = primitive.getName();
+            return "get" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        }
+
+        private static void box(MethodVisitor mv, Class<?> wrapper, Type primitiveType) {
+            String internal = Type.getInternalName(wrapper);
+            mv.visitMethodInsn(INVOKESTATIC, internal, "valueOf",
+                    "(" + primitiveType.getDescriptor() + ")L" + internal + ";", false);
+        }
+
+        private static void push(MethodVisitor mv, int value) {
+            if (value <= 5) {
+                mv.visitInsn(ICONST_0 + value);
+            } else if (value <= Byte.MAX_VALUE) {
+                mv.visitIntInsn(BIPUSH, value);
+            } else {
+                mv.visitIntInsn(SIPUSH, value);
+            }
+        }
+
+        private static void end(MethodVisitor mv) {
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package pl.edu.agh.dp.core.persister;
+
+import pl.edu.agh.dp.core.jdbc.JdbcExecutor;
+import pl.edu.agh.dp.core.stats.Statistics;
+
+import java.util.Map;
+
+/**
+ * What the persisters and inheritance strategies see of a session: its connection, the
+ * persisters of the mapped classes and the statistics. Implemented by the stateful and the
+ * stateless session.
+ */
+public interface PersisterSession {
+
+    JdbcExecutor getJdbcExecutor();
+    Map<Class<?>, EntityPersister> getEntityPersisters();
+    Statistics getStatistics();
+}
@@ -0,0 +1,318 @@
+package pl.edu.agh.dp.core.persister;
+
+import pl.edu.agh.dp.core.mapping.AssociationMetadata;
+import pl.edu.agh.dp.core.mapping.PropertyMetadata;
+import pl.edu.agh.dp.core.proxy.ProxyFactory;
+import pl.edu.agh.dp.core.util.FieldAccessor;
+import pl.edu.agh.dp.core.util.FieldAccessors;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.*;
+import java.util.*;
+
+/**
+ * Row mapping compiled once per SQL shape from the result set metadata: the discriminator
+ * value picks the class, and every property of that class is read by column index with a reader
+ * chosen for its type. Mapping a row does no label lookups, reflection lookups or exception probing.
+ * Columns missing from the result set are left out when the plan is built. Foreign keys of
+ * to-one associations become unattached proxies of the target (see {@link ProxyFactory}).
+ */
+final class RowPlan {
+
+    @FunctionalInterface
+    interface ColumnReader {
+        Object read(ResultSet rs, int column) throws SQLException;
+    }
+
+    @FunctionalInterface
+    interface Factory {
+        RowPlan build(ResultSetMetaData metaData) throws SQLException;
+    }
+
+    private final int discriminatorColumn;
+    private final Map<String, EntityPlan> byDiscriminator;
+    private final EntityPlan defaultPlan;
+    // set instead of the entity plans when the rows are hydrated by generated code
+    private final GeneratedPersister generated;
+    private final int[] generatedColumns;
+
+    private RowPlan(int discriminatorColumn, Map<String, EntityPlan> byDiscriminator, EntityPlan defaultPlan) {
+        this.discriminatorColumn = discriminatorColumn;
+        this.byDiscriminator = byDiscriminator;
+        this.defaultPlan = defaultPlan;
+        this.generated = null;
+        this.generatedColumns = null;
+    }
+
+    private RowPlan(GeneratedPersister generated, int[] generatedColumns) {
+        this.discriminatorColumn = 0;
+        this.byDiscriminator = Map.of();
+        this.defaultPlan = null;
+        this.generated = generated;
+        this.generatedColumns = generatedColumns;
+    }
+
+    Object map(ResultSet rs) throws SQLException {
+        if (generated != null) {
+            return generated.hydrate(rs, generatedColumns);
+        }
+        EntityPlan plan = defaultPlan;
+        if (discriminatorColumn > 0) {
+            String discriminator = rs.getString(discriminatorColumn);
+            if (discriminator != null) {
+                plan = byDiscriminator.get(discriminator);
+                if (plan == null) {
+                    throw new SQLException("Unknown entity type: " + discriminator);
+                }
+            }
+        }
+        if (plan == null) {
+            throw new SQLException("No entity type for the row");
+        }
+        return plan.map(rs);
+    }
+
+    /**
+     * Properties of one class with the columns they are read from.
+     */
+    static final class EntityPlan {
+        private final Class<?> type;
+        private final Constructor<?> constructor;
+        private final Map<String, Integer> columnIndexes;
+        private final List<Integer> columns = new ArrayList<>();
+        private final List<PropertyMetadata> properties = new ArrayList<>();
+        private final List<ColumnReader> readers = new ArrayList<>();
+        private final List<Integer> referenceColumns = new ArrayList<>();
+        private final List<FieldAccessor> referenceFields = new ArrayList<>();
+        private final List<ProxyFactory> referenceFactories = new ArrayList<>();
+        private final List<ColumnReader> referenceReaders = new ArrayList<>();
+
+        private int[] columnArray;
+        private PropertyMetadata[] propertyArray;
+        private ColumnReader[] readerArray;
+        private int[] referenceColumnArray;
+        private FieldAccessor[] referenceFieldArray;
+        private ProxyFactory[] referenceFactoryArray;
+        private ColumnReader[] referenceReaderArray;
+
+        private EntityPlan(Class<?> type, Map<String, Integer> columnIndexes) {
+            this.type = type;
+            this.columnIndexes = columnIndexes;
+            try {
+                this.constructor = type.getDeclaredConstructor();
+                this.constructor.setAccessible(true);
+            } catch (NoSuchMethodException e) {
+                throw new RuntimeException("No no-arg constructor in " + type.getName(), e);
+            }
+        }
+
+        /**
+         * Reads the property from the column with the given label; skipped when the result set
+         * has no such column or the class has no such field.
+         */
+        EntityPlan column(String label, PropertyMetadata pm) {
+            Integer index = columnIndexes.get(label);
+            if (index != null && pm.getName() != null && FieldAccessors.find(type, pm.getName()) != null) {
+                columns.add(index);
+                properties.add(pm);
+                readers.add(reader(pm.getType()));
+            }
+            return this;
+        }
+
+        /**
+         * Sets the association to a proxy of the target with the id from the foreign key column;
+         * skipped when the column is missing or the target cannot be proxied.
+         */
+        EntityPlan reference(String label, AssociationMetadata am, PropertyMetadata fk) {
+            Integer index = columnIndexes.get(label);
+            FieldAccessor field = FieldAccessors.find(type, am.getField());
+            if (index == null || field == null || referenceColumns.contains(index)) {
+                return this;
+            }
+            ProxyFactory factory = ProxyFactory.forClass(am.getTargetEntity(), fk.getReferencedName());
+            if (factory != null) {
+                referenceColumns.add(index);
+                referenceFields.add(field);
+                referenceFactories.add(factory);
+                referenceReaders.add(reader(factory.getIdType()));
+            }
+            return this;
+        }
+
+        private void freeze() {
+            columnArray = columns.stream().mapToInt(Integer::intValue).toArray();
+            propertyArray = properties.toArray(new PropertyMetadata[0]);
+            readerArray = readers.toArray(new ColumnReader[0]);
+            referenceColumnArray = referenceColumns.stream().mapToInt(Integer::intValue).toArray();
+            referenceFieldArray = referenceFields.toArray(new FieldAccessor[0]);
+            referenceFactoryArray = referenceFactories.toArray(new ProxyFactory[0]);
+            referenceReaderArray = referenceReaders.toArray(new ColumnReader[0]);
+        }
+
+        private Object map(ResultSet rs) throws SQLException {
+            Object instance;
+            try {
+                instance = constructor.newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new SQLException("Cannot create " + type.getName(), e);
+            }
+            for (int i = 0; i < columnArray.length; i++) {
+                Object value = readerArray[i].read(rs, columnArray[i]);
+                if (value != null) {
+                    propertyArray[i].setValue(instance, value);
+                }
+            }
+            for (int i = 0; i < referenceColumnArray.length; i++) {
+                Object id = referenceReaderArray[i].read(rs, referenceColumnArray[i]);
+                if (id != null) {
+                    referenceFieldArray[i].set(instance, referenceFactoryArray[i].newProxy(id));
+                }
+            }
+            return instance;
+        }
+    }
+
+    static final class Builder {
+        // first column with the label wins, as with ResultSet.findColumn
+        private final Map<String, Integer> columnIndexes = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        private final Map<Class<?>, EntityPlan> plans = new HashMap<>();
+        private final Map<String, EntityPlan> byDiscriminator = new HashMap<>();
+        private int discriminatorColumn;
+        private EntityPlan defaultPlan;
+
+        Builder(ResultSetMetaData metaData) throws SQLException {
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                columnIndexes.putIfAbsent(metaData.getColumnLabel(i), i);
+            }
+        }
+
+        boolean hasColumn(String label) {
+            return columnIndexes.containsKey(label);
+        }
+
+        /**
+         * Column holding the discriminator; rows where it is null (or when the column is missing)
+         * map to the default class.
+         */
+        Builder discriminator(String label) {
+            Integer index = columnIndexes.get(label);
+            discriminatorColumn = index != null ? index : 0;
+            return this;
+        }
+
+        EntityPlan entity(Class<?> type) {
+            EntityPlan plan = new EntityPlan(type, columnIndexes);
+            plans.put(type, plan);
+            return plan;
+        }
+
+        /**
+         * Rows with the discriminator value map to the class; ignored for classes without a plan.
+         */
+        Builder when(String discriminatorValue, Class<?> type) {
+            EntityPlan plan = plans.get(type);
+            if (discriminatorValue != null && plan != null) {
+                byDiscriminator.put(discriminatorValue, plan);
+            }
+            return this;
+        }
+
+        Builder otherwise(Class<?> type) {
+            defaultPlan = plans.get(type);
+            return this;
+        }
+
+        /**
+         * Plan hydrating the rows with the generated persister, reading the columns by the indexes
+         * of its labels; null when the result set misses one of them.
+         */
+        RowPlan generated(GeneratedPersister persister) {
+            List<String> labels = persister.getHydrateColumns();
+            int[] columns = new int[labels.size()];
+            for (int i = 0; i < columns.length; i++) {
+                Integer index = columnIndexes.get(labels.get(i));
+                if (index == null) {
+                    return null;
+                }
+                columns[i] = index;
+            }
+            return new RowPlan(persister, columns);
+        }
+
+        RowPlan build() {
+            plans.values().forEach(EntityPlan::freeze);
+            return new RowPlan(discriminatorColumn, byDiscriminator, defaultPlan);
+        }
+    }
+
+    /**
+     * Reads a column of the given type by index; primitive wrappers are null for SQL NULL, other
+     * values are converted with {@code castSqlValueToJava}.
+     */
+    static ColumnReader reader(Type type) {
+        Class<?> raw = type instanceof ParameterizedType pt ? (Class<?>) pt.getRawType() : (Class<?>) type;
+        if (raw == Long.class || raw == long.class) {
+            return (rs, i) -> {
+                long value = rs.getLong(i);
+                return rs.wasNull() ? null : value;
+            };
+        } else if (raw == Integer.class || raw == int.class) {
+            return (rs, i) -> {
+                int value = rs.getInt(i);
+                return rs.wasNull() ? null : value;
+            };
+        } else if (raw == Short.class || raw == short.class) {
+            return (rs, i) -> {
+                short value = rs.getShort(i);
+                return rs.wasNull() ? null : value;
+            };
+        } else if (raw == Float.class || raw == float.class) {
+            return (rs, i) -> {
+                float value = rs.getFloat(i);
+                return rs.wasNull() ? null : value;
+            };
+        } else if (raw == Double.class || raw == double.class) {
+            return (rs, i) -> {
+                double value = rs.getDouble(i);
+                return rs.wasNull() ? null : value;
+            };
+        } else if (raw == Boolean.class || raw == boolean.class) {
+            return (rs, i) -> {
+                boolean value = rs.getBoolean(i);
+                return rs.wasNull() ? null : value;
+            };
+        } else if (raw == String.class) {
+            return ResultSet::getString;
+        } else if (raw == LocalTime.class) {
+            return (rs, i) -> {
+                java.sql.Time value = rs.getTime(i);
+                return value != null ? value.toLocalTime() : null;
+            };
+        } else if (raw == LocalDate.class) {
+            return (rs, i) -> {
+                java.sql.Date value = rs.getDate(i);
+                return value != null ? value.toLocalDate() : null;
+            };
+        } else if (raw == LocalDateTime.class) {
+            return (rs, i) -> {
+                java.sql.Timestamp value = rs.getTimestamp(i);
+                return value != null ? value.toLocalDateTime() : null;
+            };
+        } else if (raw == OffsetDateTime.class) {
+            return (rs, i) -> {
+                Object value = rs.getObject(i);
+                if (value instanceof java.sql.Timestamp ts) {
+                    return ts.toLocalDateTime().atOffset(ZoneOffset.UTC);
+                }
+                return value;
+            };
+        }
+        return (rs, i) -> AbstractInheritanceStrategy.castSqlValueToJava(raw, rs.getObject(i));
+    }
+}
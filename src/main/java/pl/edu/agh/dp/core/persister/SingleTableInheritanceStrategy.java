@@ -1,22 +1,29 @@
 package pl.edu.agh.dp.core.persister;
 
 import javafx.util.Pair;
-import pl.edu.agh.dp.core.api.Session;
 import pl.edu.agh.dp.core.finder.QuerySpec;
+import pl.edu.agh.dp.core.jdbc.Dialect;
 import pl.edu.agh.dp.core.jdbc.JdbcExecutor;
+import pl.edu.agh.dp.core.logging.OrmLogger;
 import pl.edu.agh.dp.core.mapping.*;
 import pl.edu.agh.dp.core.util.ReflectionUtils;
 
-import java.lang.reflect.Field;
-import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.*;
 
 
 public class SingleTableInheritanceStrategy extends AbstractInheritanceStrategy {
 
-    public SingleTableInheritanceStrategy(EntityMetadata metadata) {
-        super(metadata);
+    private static final OrmLogger log = OrmLogger.getLogger(SingleTableInheritanceStrategy.class);
+
+    // null unless generatePersister() succeeded
+    private GeneratedPersister generated;
+    // the generated hydrate does not read the foreign keys the proxies are created with
+    private boolean generatedHydrate;
+
+    public SingleTableInheritanceStrategy(EntityMetadata metadata, Dialect dialect, EntitySqlPlan sqlPlan) {
+        super(metadata, dialect, sqlPlan);
     }
 
     @Override
@@ -49,11 +56,70 @@ public class SingleTableInheritanceStrategy extends AbstractInheritanceStrategy
     }
 
     @Override
-    public Object insert(Object entity, Session session) {
+    public Object insert(Object entity, PersisterSession session) {
+        PendingStatement insert = buildInsert(entity);
+        try {
+            JdbcExecutor jdbc = session.getJdbcExecutor();
+            Long generatedId = jdbc.insert(insert.sql, insert.keyColumn, insert.params);
+            log.trace("Generated ID: {}", generatedId);
+
+            // set generated ID
+            assignGeneratedId(entity, entityMetadata.getInheritanceMetadata().getRootClass(), generatedId);
+
+            // association tables
+            insertAssociationTables(jdbc, entity);
+
+            return generatedId;
+        } catch (Exception e) {
+            throw new RuntimeException("Error inserting entity " + entity, e);
+        }
+    }
+
+    @Override
+    public void insertAll(List<Object> entities, PersisterSession session) {
+        if (entities.size() == 1 || hasSelfReference()) {
+            super.insertAll(entities, session);
+            return;
+        }
+        List<PendingStatement> inserts = new ArrayList<>();
+        for (Object entity : entities) {
+            inserts.add(buildInsert(entity));
+        }
+        try {
+            JdbcExecutor jdbc = session.getJdbcExecutor();
+            List<Long> generatedIds = insertGrouped(jdbc, inserts);
+
+            List<PendingStatement> associationInserts = new ArrayList<>();
+            for (int i = 0; i < entities.size(); i++) {
+                assignGeneratedId(entities.get(i), entityMetadata.getInheritanceMetadata().getRootClass(), generatedIds.get(i));
+                collectAssociationInserts(entities.get(i), associationInserts);
+            }
+            insertGrouped(jdbc, associationInserts);
+        } catch (Exception e) {
+            throw new RuntimeException("Error inserting entities " + entities, e);
+        }
+    }
+
+    @Override
+    public boolean generatePersister() {
+        assert entityMetadata != null;
+        try {
+            generated = PersisterGenerator.generate(entityMetadata);
+        } catch (LinkageError e) {
+            log.warn("Cannot generate persister for {}, ASM is not on the classpath", entityMetadata.getEntityClass().getName());
+        }
+        generatedHydrate = generated != null && EntitySqlPlan.references(entityMetadata).isEmpty();
+        return generated != null;
+    }
+
+    private PendingStatement buildInsert(Object entity) {
         assert this.entityMetadata != null;
-        EntityMetadata rootMetadata = this.entityMetadata.getInheritanceMetadata().getRootClass();
-        String tableName = rootMetadata.getTableName();
-        String discriminatorColumn = rootMetadata.getInheritanceMetadata().getDiscriminatorColumnName();
+        if (generated != null && entity.getClass() == entityMetadata.getEntityClass()) {
+            return buildGeneratedInsert(entity);
+        }
+        EntityMetadata rootMetadata = sqlPlan.getRoot();
+        // columns of the entity's class, other subclasses' columns are written as null
+        EntitySqlPlan.TableSql table = sqlPlan.singleTable(entity.getClass());
         String discriminatorValue = rootMetadata.getInheritanceMetadata()
                 .getClassToDiscriminator().get(entity.getClass());
 
@@ -61,33 +127,11 @@ public class SingleTableInheritanceStrategy extends AbstractInheritanceStrategy
         List<Object> values = new ArrayList<>();
 
         // add discriminator
-        columns.add(discriminatorColumn);
+        columns.add(sqlPlan.getDiscriminatorColumn());
         values.add(discriminatorValue);
 
-        // Collect all properties from the inheritance hierarchy
-        List<PropertyMetadata> allProperties = rootMetadata.getAllColumnsForSingleTable().values().stream().toList();
-
-        for (PropertyMetadata prop : allProperties) {
-            // skipp discriminator
-            if (prop.getColumnName().equals(discriminatorColumn)) {
-                continue;
-            }
-
-            if (prop.isId() && prop.isAutoIncrement()) {
-                continue;
-            }
+        collectInsertValues(table, entity, columns, values);
 
-            if (fieldBelongsToClass(prop, entity.getClass())) {
-                Object value = ReflectionUtils.getFieldValue(entity, prop.getName());
-                if (value != null) {
-                    columns.add(prop.getColumnName());
-                    values.add(value);
-                }
-            } else {
-                columns.add(prop.getColumnName());
-                values.add(null);
-            }
-        }
         List<PropertyMetadata> idColumns = new ArrayList<>(entityMetadata.getIdColumns().values());
         // get provided ids
         Set<String> idProvided = getProvidedIds(entity);
@@ -96,174 +140,137 @@ public class SingleTableInheritanceStrategy extends AbstractInheritanceStrategy
         // composite keys error handling
         String idProp = getIdNameAndCheckCompositeKey(idProvided, idColumns);
 
-        StringBuilder sql = new StringBuilder();
-        sql.append("INSERT INTO ")
-                .append(tableName)
-                .append(" (")
-                .append(String.join(", ", columns))
-                .append(") VALUES (")
-                .append("?,".repeat(values.size()));
-        sql.deleteCharAt(sql.length() - 1);
-        sql.append(")");
-
-        System.out.println(sql.toString());
-        System.out.println(values.toString());
+        return new PendingStatement(table.insertSql(columns), values.toArray(), idProp);
+    }
+
+    private PendingStatement buildGeneratedInsert(Object entity) {
+        Set<String> idProvided = getProvidedIds(entity);
+        String idProp = getIdNameAndCheckCompositeKey(idProvided, new ArrayList<>(entityMetadata.getIdColumns().values()));
+        Object[] values = generated.bindInsert(entity);
+        if (entityMetadata.getFkColumns().isEmpty()) {
+            return new PendingStatement(generated.getInsertSql(), values, idProp);
+        }
+
+        // foreign keys come from the associated entities
+        List<String> columns = new ArrayList<>(generated.getInsertColumns());
+        List<Object> allValues = new ArrayList<>(Arrays.asList(values));
+        fillRelationshipData(entity, entityMetadata, columns, allValues);
+        if (columns.size() == values.length) {
+            return new PendingStatement(generated.getInsertSql(), values, idProp);
+        }
+        return new PendingStatement(sqlPlan.getTables().get(0).insertSql(columns), allValues.toArray(), idProp);
+    }
+
+    @Override
+    public void update(Object entity, PersisterSession session) {
+        PendingStatement update = buildUpdate(entity);
         try {
             JdbcExecutor jdbc = session.getJdbcExecutor();
-            Long generatedId = jdbc.insert(sql.toString(), idProp, values.toArray());
-            System.out.println("Generated ID: " + generatedId);
-
-            // set generated ID
-            int numOfIds = rootMetadata.getIdColumns().size();
-            if (numOfIds == 1) {        // we have one key if there's more then for sure it's not autoincrement
-                PropertyMetadata idPropName = rootMetadata.getIdColumns().values().iterator().next();
-                if (idPropName.isAutoIncrement()) {
-                    System.out.println("seting id in " + entity.toString()+ " value: " + generatedId);
-                    ReflectionUtils.setFieldValue(entity, idPropName.getName(), generatedId);
-                }
-            }
+            jdbc.update(update.sql, update.params);
 
             // association tables
-            insertAssociationTables(jdbc, entity);
-
-            return generatedId;
+            updateAssociationTables(jdbc, entity);
         } catch (Exception e) {
-            throw new RuntimeException("Error inserting entity " + entity, e);
+            throw new RuntimeException("Error updating entity " + entity, e);
         }
     }
 
     @Override
-    public void update(Object entity, Session session) {
+    public void updateAll(List<Object> entities, PersisterSession session) {
+        List<PendingStatement> updates = new ArrayList<>();
+        List<PendingStatement> associationUpdates = new ArrayList<>();
+        for (Object entity : entities) {
+            updates.add(buildUpdate(entity));
+            collectAssociationUpdates(entity, associationUpdates);
+        }
+        try {
+            JdbcExecutor jdbc = session.getJdbcExecutor();
+            executeGrouped(jdbc, updates);
+            executeGrouped(jdbc, associationUpdates);
+        } catch (Exception e) {
+            throw new RuntimeException("Error updating entities " + entities, e);
+        }
+    }
+
+    private PendingStatement buildUpdate(Object entity) {
         assert this.entityMetadata != null;
-        EntityMetadata rootMetadata = this.entityMetadata.getInheritanceMetadata().getRootClass();
-        String tableName = rootMetadata.getTableName();
+        if (generated != null && generated.getUpdateSql() != null && entityMetadata.getFkColumns().isEmpty()
+                && entity.getClass() == entityMetadata.getEntityClass()) {
+            return new PendingStatement(generated.getUpdateSql(), generated.bindUpdate(entity));
+        }
+        EntitySqlPlan.TableSql table = sqlPlan.singleTable(entity.getClass());
 
         List<String> setColumns = new ArrayList<>();
         List<Object> values = new ArrayList<>();
 
-        List<PropertyMetadata> allProperties = rootMetadata.getAllColumnsForSingleTable().values().stream().toList();
-        String discriminatorColumn = rootMetadata.getInheritanceMetadata().getDiscriminatorColumnName();
-
-        for (PropertyMetadata prop : allProperties) {
-            if (prop.isId() || prop.getColumnName().equals(discriminatorColumn)) {
-                continue;
-            }
-
-            if (fieldBelongsToClass(prop, entity.getClass())) {
-                setColumns.add(prop.getColumnName());
-                Object value = pl.edu.agh.dp.core.util.ReflectionUtils.getFieldValue(entity, prop.getName());
-                values.add(value);
-            }
-        }
+        collectUpdateValues(table, entity, setColumns, values);
 
         fillRelationshipData(entity, entityMetadata, setColumns, values);
 
-        // WHERE clause
-        Object idValue = getIdValue(entity);
-        String whereClause = buildWhereClause(rootMetadata);
-        Object[] idParams = prepareIdParams(idValue);
-
         // Połącz wartości SET + WHERE
         List<Object> allParams = new ArrayList<>(values);
-        allParams.addAll(Arrays.asList(idParams));
-
-        StringBuilder sql = new StringBuilder();
-        sql.append("UPDATE ").append(tableName)
-                .append(" SET ").append(String.join(" = ?, ", setColumns)).append(setColumns.isEmpty() ? "" : " = ?")
-                .append(" WHERE ").append(whereClause);
+        allParams.addAll(Arrays.asList(prepareIdParams(getIdValue(entity))));
 
-        System.out.println("SingleTable UPDATE SQL: " + sql);
-        System.out.println("Values: " + allParams);
+        return new PendingStatement(table.updateSql(setColumns), allParams.toArray());
+    }
 
+    @Override
+    public void delete(Object entity, PersisterSession session) {
+        PendingStatement delete = buildDelete(entity);
         try {
             JdbcExecutor jdbc = session.getJdbcExecutor();
-            jdbc.update(sql.toString(), allParams.toArray());
-
-            // association tables
-            updateAssociationTables(jdbc, entity);
+            jdbc.update(delete.sql, delete.params);
         } catch (Exception e) {
-            throw new RuntimeException("Error updating entity " + entity, e);
+            throw new RuntimeException("Error deleting entity " + entity, e);
         }
     }
 
     @Override
-    public void delete(Object entity, Session session) {
-        assert this.entityMetadata != null;
-        EntityMetadata rootMetadata = this.entityMetadata.getInheritanceMetadata().getRootClass();
-        String tableName = rootMetadata.getTableName();
-
-        Object idValue = getIdValue(entity);
-        String whereClause = buildWhereClause(rootMetadata);
-        Object[] idParams = prepareIdParams(idValue);
-
-        String sql = "DELETE FROM " + tableName + " WHERE " + whereClause;
-
-        System.out.println("SingleTable DELETE SQL: " + sql);
-        System.out.println("ID: " + idValue);
-
+    public void deleteAll(List<Object> entities, PersisterSession session) {
+        List<PendingStatement> deletes = new ArrayList<>();
+        for (Object entity : entities) {
+            deletes.add(buildDelete(entity));
+        }
         try {
-            JdbcExecutor jdbc = session.getJdbcExecutor();
-            jdbc.update(sql, idParams);
+            executeGrouped(session.getJdbcExecutor(), deletes);
         } catch (Exception e) {
-            throw new RuntimeException("Error deleting entity " + entity, e);
+            throw new RuntimeException("Error deleting entities " + entities, e);
         }
     }
 
-    @Override
-    public Object findById(Object id, Session session) {
-        assert entityMetadata != null;
-        String tableName = entityMetadata.getTableName();
+    private PendingStatement buildDelete(Object entity) {
+        Object[] idParams = prepareIdParams(getIdValue(entity));
 
-        List<PropertyMetadata> idColumns = entityMetadata.getIdColumns().values().stream().toList();
+        return new PendingStatement(sqlPlan.getTables().get(0).getDeleteSql(), idParams);
+    }
 
-        StringBuilder sql = new StringBuilder();
-        sql.append("SELECT * FROM ").append(tableName).append(" WHERE ");
-        List<Object> params = new ArrayList<>();
-        appendIdWhereClause(sql, params, idColumns, id);
+    @Override
+    public Object findById(Object id, PersisterSession session) {
+        assert entityMetadata != null;
+        String sql = sqlPlan.getFindByIdSql();
+        Object[] params = idParams(entityMetadata.getIdColumns().values(), id);
 
         try {
             JdbcExecutor jdbc = session.getJdbcExecutor();
-            return jdbc.queryOne(sql.toString(), this::mapEntity, params.toArray()).orElse(null);
+            return jdbc.queryOne(sql, entityMapper(sql), params).orElse(null);
         } catch (Exception e) {
-            System.out.println(e.getMessage());
             throw new RuntimeException("Error finding entity with id = " + id, e);
         }
     }
 
     @Override
-    public <T> List<T> findAll(Class<T> type, Session session, PairTargetStatements pairTargetStatements) {
+    protected SelectQuery buildFindAllQuery(PairTargetStatements pairTargetStatements, List<String> ownerColumns,
+                                            Object[] params) {
         TargetStatement joinStmt = pairTargetStatements.getJoinStatements().get(0);
         TargetStatement whereStmt = pairTargetStatements.getWhereStatements().get(0);
         assert this.entityMetadata != null;
-        EntityMetadata rootMetadata = this.entityMetadata.getInheritanceMetadata().getRootClass();
-        String tableName = rootMetadata.getTableName();
-        String discriminatorColumn = rootMetadata.getInheritanceMetadata().getDiscriminatorColumnName();
-
-        String discName = rootMetadata.getInheritanceMetadata().getClassToDiscriminator().get(type);
-
-        // Polymorphic logic
-        List<String> discNames = new ArrayList<>();
-        discNames.add(discName);
-        if (!this.entityMetadata.getInheritanceMetadata().getChildren().isEmpty()) {
-            List<EntityMetadata> childrenToVisit = new ArrayList<>(this.entityMetadata.getInheritanceMetadata().getChildren());
-            while (!childrenToVisit.isEmpty()) {
-                var child =  childrenToVisit.get(0);
-                var childType = child.getEntityClass();
-                discNames.add(rootMetadata.getInheritanceMetadata().getClassToDiscriminator().get(childType));
-                if (!child.getInheritanceMetadata().getChildren().isEmpty()) {
-                    childrenToVisit.addAll(child.getInheritanceMetadata().getChildren());
-                }
-                childrenToVisit.remove(child);
-            }
-        }
-        StringBuilder discIn = new StringBuilder();
-        for (String name : discNames) {
-            discIn.append("'").append(name).append("',");
-        }
-        discIn = new StringBuilder(discIn.substring(0, discIn.length() - 1));
+        String tableName = sqlPlan.getRoot().getTableName();
+        String discriminatorColumn = sqlPlan.getDiscriminatorColumn();
+        // the entity and its subclasses
+        String discIn = sqlPlan.getDiscriminatorInList();
 
         StringBuilder sqlBuilder = new StringBuilder();
-        sqlBuilder.append("SELECT * FROM ").append(tableName);
+        sqlBuilder.append(withOwnerColumns("SELECT * FROM " + tableName, ownerColumns));
 
         // join statement
         sqlBuilder.append(" ").append(joinStmt.getStatement());
@@ -275,54 +282,23 @@ public class SingleTableInheritanceStrategy extends AbstractInheritanceStrategy
             sqlBuilder.append(" AND ").append(whereStmt.getStatement());
         }
 
-        System.out.println("SQL: " + sqlBuilder.toString());
-
-        try {
-            JdbcExecutor jdbc = session.getJdbcExecutor();
-            List<Object> results = jdbc.query(sqlBuilder.toString(), this::mapEntity);
+        String sql = sqlBuilder.toString();
+        return new SelectQuery(sql, params, entityMapper(sql));
+    }
 
-            List<T> filtered = new ArrayList<>();
-            for (Object obj : results) {
-                if (type.isInstance(obj)) {
-                    filtered.add(type.cast(obj));
-                }
-            }
-            return filtered;
-        } catch (Exception e) {
-            throw new RuntimeException("Error finding all entities", e);
-        }
+    @Override
+    protected String idOrder() {
+        assert entityMetadata != null;
+        return idOrder(sqlPlan.getRoot().getTableName(), entityMetadata.getIdColumns().values());
     }
 
     @Override
-    public <T> List<T> findBy(Class<T> type, Session session, QuerySpec<T> querySpec) {
+    protected <T> SelectQuery buildFindByQuery(Class<T> type, QuerySpec<T> querySpec) {
         assert this.entityMetadata != null;
-        EntityMetadata rootMetadata = this.entityMetadata.getInheritanceMetadata().getRootClass();
-        String tableName = rootMetadata.getTableName();
-        String discriminatorColumn = rootMetadata.getInheritanceMetadata().getDiscriminatorColumnName();
-
-        String discName = rootMetadata.getInheritanceMetadata().getClassToDiscriminator().get(type);
-
-        // Polymorphic logic - include subclasses
-        List<String> discNames = new ArrayList<>();
-        discNames.add(discName);
-        if (!this.entityMetadata.getInheritanceMetadata().getChildren().isEmpty()) {
-            List<EntityMetadata> childrenToVisit = new ArrayList<>(this.entityMetadata.getInheritanceMetadata().getChildren());
-            while (!childrenToVisit.isEmpty()) {
-                var child = childrenToVisit.get(0);
-                var childType = child.getEntityClass();
-                discNames.add(rootMetadata.getInheritanceMetadata().getClassToDiscriminator().get(childType));
-                if (!child.getInheritanceMetadata().getChildren().isEmpty()) {
-                    childrenToVisit.addAll(child.getInheritanceMetadata().getChildren());
-                }
-                childrenToVisit.remove(child);
-            }
-        }
-        
-        StringBuilder discIn = new StringBuilder();
-        for (String name : discNames) {
-            discIn.append("'").append(name).append("',");
-        }
-        discIn = new StringBuilder(discIn.substring(0, discIn.length() - 1));
+        String tableName = sqlPlan.getRoot().getTableName();
+        String discriminatorColumn = sqlPlan.getDiscriminatorColumn();
+        // the entity and its subclasses
+        String discIn = sqlPlan.getDiscriminatorInList();
 
         List<Object> params = new ArrayList<>();
         StringBuilder sqlBuilder = new StringBuilder();
@@ -347,91 +323,65 @@ public class SingleTableInheritanceStrategy extends AbstractInheritanceStrategy
         // LIMIT/OFFSET
         sqlBuilder.append(buildQuerySpecLimitOffsetClause(querySpec));
 
-        System.out.println("Finder SQL: " + sqlBuilder.toString());
-        System.out.println("Finder params: " + params);
 
-        try {
-            JdbcExecutor jdbc = session.getJdbcExecutor();
-            List<Object> results = jdbc.query(sqlBuilder.toString(), this::mapEntity, params.toArray());
+        String sql = sqlBuilder.toString();
+        return new SelectQuery(sql, params.toArray(), entityMapper(sql));
+    }
 
-            List<T> filtered = new ArrayList<>();
-            for (Object obj : results) {
-                if (type.isInstance(obj)) {
-                    filtered.add(type.cast(obj));
-                }
-            }
-            return filtered;
-        } catch (Exception e) {
-            throw new RuntimeException("Error finding entities with QuerySpec", e);
+    @Override
+    protected List<BulkFilter> bulkFilters(QuerySpec<?> querySpec) {
+        String tableName = sqlPlan.getRoot().getTableName();
+        List<Object> params = new ArrayList<>();
+        // rows of the entity and its subclasses only
+        String where = tableName + "." + sqlPlan.getDiscriminatorColumn() + " IN (" + sqlPlan.getDiscriminatorInList() + ")";
+        String querySpecWhere = buildQuerySpecWhereClause(querySpec, tableName, params);
+        if (!querySpecWhere.isEmpty()) {
+            where += " AND " + querySpecWhere;
         }
+        return List.of(new BulkFilter(tableName, tableName, where, params));
     }
 
-    private Object mapEntity(ResultSet rs) throws SQLException {
-        try {
-            assert this.entityMetadata != null;
-            EntityMetadata rootMetadata = this.entityMetadata.getInheritanceMetadata().getRootClass();
-            String discriminatorColumn = rootMetadata.getInheritanceMetadata().getDiscriminatorColumnName();
-            if (discriminatorColumn==null){
-                System.out.println("discriminatorColumn is null");
-            }
-
-            String discriminatorValue = rs.getString(discriminatorColumn);
-
-            Class<?> actualClass = rootMetadata.getInheritanceMetadata()
-                    .getDiscriminatorToClass()
-                    .getOrDefault(discriminatorValue, rootMetadata.getEntityClass());
-
-            Object entity = actualClass.getDeclaredConstructor().newInstance();
-
-            List<PropertyMetadata> allColumns = rootMetadata.getAllColumnsForSingleTable().values().stream().toList();
-
-            for (PropertyMetadata pm : allColumns) {
-                if (pm.getColumnName().equals(discriminatorColumn)) {
-                    continue;
-                }
-
-                try {
-                    String fieldName = pm.getName();
-                    Object value = getValueFromResultSet(rs, pm);
-
-                    if (value != null) {
-                        Object castedValue = castSqlValueToJava((Class<?>) pm.getType(), value);
-                        ReflectionUtils.setFieldValue(entity, fieldName, castedValue);
-                    }
-                } catch (SQLException e) {
-                    // Ignore missing columns
-                }
-            }
-
-            return entity;
-
-        } catch (Exception e) {
-            throw new SQLException("Failed to map entity: " + entityMetadata.getEntityClass().getName(), e);
-        }
+    private RowMapper<Object> entityMapper(String sql) {
+        return planned(sql, generatedHydrate ? this::buildGeneratedPlan : this::buildRowPlan);
     }
 
-    private Object getValueFromResultSet(ResultSet rs, PropertyMetadata pm) throws SQLException {
-        String columnName = pm.getColumnName();
-        // Use the inherited method from AbstractInheritanceStrategy
-        return getValueFromResultSet(rs, columnName, pm.getType());
+    // column indexes of the generated hydrate, resolved once per SQL shape like the row plans
+    private RowPlan buildGeneratedPlan(ResultSetMetaData metaData) throws SQLException {
+        RowPlan plan = new RowPlan.Builder(metaData).generated(generated);
+        return plan != null ? plan : buildRowPlan(metaData);
     }
 
-    protected boolean fieldBelongsToClass(PropertyMetadata prop, Class<?> targetClass) {
-        try {
-            // Sprawdź w aktualnej klasie i wszystkich nadklasach
-            Class<?> current = targetClass;
-            while (current != null && current != Object.class) {
-                try {
-                    Field field = current.getDeclaredField(prop.getName());
-                    return true; // Pole znalezione
-                } catch (NoSuchFieldException e) {
-                    // Pole nie istnieje w tej klasie, sprawdź nadklasę
-                    current = current.getSuperclass();
+    private RowPlan buildRowPlan(ResultSetMetaData metaData) throws SQLException {
+        assert this.entityMetadata != null;
+        EntityMetadata rootMetadata = sqlPlan.getRoot();
+        InheritanceMetadata inheritance = rootMetadata.getInheritanceMetadata();
+        String discriminatorColumn = inheritance.getDiscriminatorColumnName();
+        if (discriminatorColumn == null) {
+            log.warn("discriminatorColumn is null");
+        }
+
+        RowPlan.Builder plan = new RowPlan.Builder(metaData);
+        if (discriminatorColumn != null) {
+            plan.discriminator(discriminatorColumn);
+        }
+        Set<Class<?>> classes = new LinkedHashSet<>(inheritance.getDiscriminatorToClass().values());
+        classes.add(rootMetadata.getEntityClass());
+        Map<Class<?>, EntityMetadata> metas = new HashMap<>();
+        for (EntityMetadata meta : sqlPlan.getHierarchy()) {
+            metas.put(meta.getEntityClass(), meta);
+        }
+        for (Class<?> type : classes) {
+            RowPlan.EntityPlan entityPlan = plan.entity(type);
+            for (PropertyMetadata pm : sqlPlan.getSingleTableColumns()) {
+                if (!pm.getColumnName().equals(discriminatorColumn)) {
+                    entityPlan.column(pm.getColumnName(), pm);
                 }
             }
-            return false;
-        } catch (Exception e) {
-            return false;
+            if (metas.containsKey(type)) {
+                references(entityPlan, metas.get(type), false);
+            }
         }
+        inheritance.getDiscriminatorToClass().forEach(plan::when);
+        return plan.otherwise(rootMetadata.getEntityClass()).build();
     }
 }
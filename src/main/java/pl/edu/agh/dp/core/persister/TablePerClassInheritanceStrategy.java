@@ -1,23 +1,32 @@
 package pl.edu.agh.dp.core.persister;
 
-import pl.edu.agh.dp.core.api.Session;
 import pl.edu.agh.dp.core.exceptions.IntegrityException;
 import pl.edu.agh.dp.core.finder.QuerySpec;
+import pl.edu.agh.dp.core.jdbc.Dialect;
 import pl.edu.agh.dp.core.jdbc.JdbcExecutor;
+import pl.edu.agh.dp.core.logging.OrmLogger;
 import pl.edu.agh.dp.core.mapping.*;
 import pl.edu.agh.dp.core.util.ReflectionUtils;
 import javafx.util.Pair;
 
 import java.sql.Date;
-import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.*;
 import java.util.stream.Collectors;
 
 public class TablePerClassInheritanceStrategy extends AbstractInheritanceStrategy{
 
-    public TablePerClassInheritanceStrategy(EntityMetadata metadata) {
-        super(metadata);
+    private static final OrmLogger log = OrmLogger.getLogger(TablePerClassInheritanceStrategy.class);
+
+    // concrete classes by the name the lookup query returns
+    private final Map<String, EntityMetadata> concreteByName = new HashMap<>();
+
+    public TablePerClassInheritanceStrategy(EntityMetadata metadata, Dialect dialect, EntitySqlPlan sqlPlan) {
+        super(metadata, dialect, sqlPlan);
+        for (EntityMetadata sub : sqlPlan.getConcreteSubclasses()) {
+            concreteByName.put(sub.getEntityClass().getName(), sub);
+        }
     }
 
     @Override
@@ -75,21 +84,59 @@ public class TablePerClassInheritanceStrategy extends AbstractInheritanceStrateg
     }
 
     @Override
-    public Object insert(Object entity, Session session) {
-        System.out.println("Inserting: " + entity.getClass().getName());
+    public Object insert(Object entity, PersisterSession session) {
+        PendingStatement insert = buildInsert(entity);
 
-        List<String> columns = new ArrayList<>();
-        List<Object> values = new ArrayList<>();
+        Long generatedId;
+        try {
+            JdbcExecutor jdbc = session.getJdbcExecutor();
+            generatedId = jdbc.insert(insert.sql, insert.keyColumn, insert.params);
+            log.trace("Generated ID: {}", generatedId);
 
-        assert entityMetadata != null;
+            assignGeneratedId(entity, entityMetadata.getInheritanceMetadata().getRootClass(), generatedId);
+
+            // association tables
+            insertAssociationTables(jdbc, entity);
+
+        } catch (Exception e) {
+            throw new RuntimeException("Error inserting entity " + entity, e);
+        }
+        return generatedId;
+    }
 
-        for (PropertyMetadata pm : entityMetadata.getProperties().values()) {
-            Object value = ReflectionUtils.getFieldValue(entity, pm.getName());
-            if (value != null) {
-                columns.add(pm.getColumnName());
-                values.add(value);
+    @Override
+    public void insertAll(List<Object> entities, PersisterSession session) {
+        if (entities.size() == 1 || hasSelfReference()) {
+            super.insertAll(entities, session);
+            return;
+        }
+        List<PendingStatement> inserts = new ArrayList<>();
+        for (Object entity : entities) {
+            inserts.add(buildInsert(entity));
+        }
+        try {
+            JdbcExecutor jdbc = session.getJdbcExecutor();
+            List<Long> generatedIds = insertGrouped(jdbc, inserts);
+
+            List<PendingStatement> associationInserts = new ArrayList<>();
+            for (int i = 0; i < entities.size(); i++) {
+                assignGeneratedId(entities.get(i), entityMetadata.getInheritanceMetadata().getRootClass(), generatedIds.get(i));
+                collectAssociationInserts(entities.get(i), associationInserts);
             }
+            insertGrouped(jdbc, associationInserts);
+        } catch (Exception e) {
+            throw new RuntimeException("Error inserting entities " + entities, e);
         }
+    }
+
+    private PendingStatement buildInsert(Object entity) {
+        assert entityMetadata != null;
+        EntitySqlPlan.TableSql table = sqlPlan.getTables().get(0);
+
+        List<String> columns = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        collectInsertValues(table, entity, columns, values);
+
         List<PropertyMetadata> idColumns = new ArrayList<>(entityMetadata.getIdColumns().values());
         // get provided ids
         Set<String> idProvided = getProvidedIds(entity);
@@ -98,105 +145,100 @@ public class TablePerClassInheritanceStrategy extends AbstractInheritanceStrateg
         // composite keys error handling
         String idProp = getIdNameAndCheckCompositeKey(idProvided, idColumns);
 
-        StringBuilder sql = new StringBuilder();
-        sql.append("INSERT INTO ")
-                .append(entityMetadata.getTableName())
-                .append(" (")
-                .append(String.join(", ", columns))
-                .append(") VALUES (")
-                .append("?,".repeat(values.size()));
-        if (!values.isEmpty()) sql.deleteCharAt(sql.length() - 1); // sanity check if inserting nothing
-        sql.append(")");
-
-        System.out.println(sql.toString());
-        System.out.println(values.toString());
+        return new PendingStatement(table.insertSql(columns), values.toArray(), idProp);
+    }
 
-        Long generatedId;
+    @Override
+    public void update(Object entity, PersisterSession session) {
+        PendingStatement update = buildUpdate(entity);
         try {
             JdbcExecutor jdbc = session.getJdbcExecutor();
-            generatedId = jdbc.insert(sql.toString(), idProp, values.toArray());
-            System.out.println("Generated ID: " + generatedId);
-
-            int numOfIds = entityMetadata.getInheritanceMetadata().getRootClass().getIdColumns().size();
-            if (numOfIds == 1) {        // we have one key if there's more then for sure it's not autoincrement
-                PropertyMetadata idPropName = entityMetadata.getInheritanceMetadata().getRootClass().getIdColumns().values().iterator().next();
-                if (idPropName.isAutoIncrement()) {
-                    System.out.println("seting id in " + entity.toString()+ " value: " + generatedId);
-                    ReflectionUtils.setFieldValue(entity, idPropName.getName(), generatedId);
-                }
-            }
+            jdbc.update(update.sql, update.params);
 
             // association tables
-            insertAssociationTables(jdbc, entity);
-
+            updateAssociationTables(jdbc, entity);
         } catch (Exception e) {
-            System.out.println(e.getMessage());
-            throw new RuntimeException("Error inserting entity " + entity, e);
+            throw new RuntimeException("Error updating entity " + entity, e);
         }
-        return generatedId;
     }
 
-
     @Override
-    public void update(Object entity, Session session) {
+    public void updateAll(List<Object> entities, PersisterSession session) {
+        List<PendingStatement> updates = new ArrayList<>();
+        List<PendingStatement> associationUpdates = new ArrayList<>();
+        for (Object entity : entities) {
+            updates.add(buildUpdate(entity));
+            collectAssociationUpdates(entity, associationUpdates);
+        }
+        try {
+            JdbcExecutor jdbc = session.getJdbcExecutor();
+            executeGrouped(jdbc, updates);
+            executeGrouped(jdbc, associationUpdates);
+        } catch (Exception e) {
+            throw new RuntimeException("Error updating entities " + entities, e);
+        }
+    }
+
+    private PendingStatement buildUpdate(Object entity) {
         assert entityMetadata != null;
-        String tableName = entityMetadata.getTableName();
+        EntitySqlPlan.TableSql table = sqlPlan.getTables().get(0);
 
         List<String> setColumns = new ArrayList<>();
         List<Object> values = new ArrayList<>();
 
-        // Wszystkie pola z hierarchii (pomiń ID)
-        for (PropertyMetadata prop : entityMetadata.getProperties().values()) {
-            if (prop.isId()) {
-                continue; // ID nie jest aktualizowane
-            }
-
-            setColumns.add(prop.getColumnName());
-            Object value = ReflectionUtils.getFieldValue(entity, prop.getName());
-            values.add(value);
-        }
+        // Wszystkie pola z hierarchii (bez ID)
+        collectUpdateValues(table, entity, setColumns, values);
 
         fillRelationshipData(entity, entityMetadata, setColumns, values);
+        values.addAll(getIdParams(entity));
 
-        StringBuilder sql = new StringBuilder();
-        sql.append("UPDATE ").append(tableName)
-                .append(" SET ").append(String.join(" = ?, ", setColumns)).append(setColumns.isEmpty() ? "" : " = ?")
-                .append(" WHERE ").append(entityMetadata.getSelectByIdStatement(entity).getStatement(tableName));
-
-        System.out.println("TablePerClass UPDATE SQL: " + sql);
-        System.out.println("Values: " + values);
+        return new PendingStatement(table.updateSql(setColumns), values.toArray());
+    }
 
+    @Override
+    public void delete(Object entity, PersisterSession session) {
+        PendingStatement delete = buildDelete(entity);
         try {
             JdbcExecutor jdbc = session.getJdbcExecutor();
-            jdbc.update(sql.toString(), values.toArray());
-
-            // association tables
-            updateAssociationTables(jdbc, entity);
+            jdbc.update(delete.sql, delete.params);
         } catch (Exception e) {
-            throw new RuntimeException("Error updating entity " + entity, e);
+            throw new RuntimeException("Error deleting entity " + entity, e);
         }
     }
 
     @Override
-    public void delete(Object entity, Session session) {
-        assert entityMetadata != null;
-        String tableName = entityMetadata.getTableName();
+    public void deleteAll(List<Object> entities, PersisterSession session) {
+        List<PendingStatement> deletes = new ArrayList<>();
+        for (Object entity : entities) {
+            deletes.add(buildDelete(entity));
+        }
+        try {
+            executeGrouped(session.getJdbcExecutor(), deletes);
+        } catch (Exception e) {
+            throw new RuntimeException("Error deleting entities " + entities, e);
+        }
+    }
 
-        String sql = "DELETE FROM " + tableName + " WHERE " + entityMetadata.getSelectByIdStatement(entity).getStatement(tableName);
+    private PendingStatement buildDelete(Object entity) {
+        String sql = sqlPlan.getTables().get(0).getDeleteSql();
 
-        System.out.println("TablePerClass DELETE SQL: " + sql);
-        System.out.println("ID: " + getIdValue(entity));
+        return new PendingStatement(sql, getIdParams(entity).toArray());
+    }
 
-        try {
-            JdbcExecutor jdbc = session.getJdbcExecutor();
-            jdbc.update(sql);
-        } catch (Exception e) {
-            throw new RuntimeException("Error deleting entity " + entity, e);
+    /**
+     * Id values in the order of the WHERE clause of the table.
+     */
+    private List<Object> getIdParams(Object entity) {
+        assert entityMetadata != null;
+        List<Object> params = new ArrayList<>();
+        for (PropertyMetadata pm : entityMetadata.getIdColumns().values()) {
+            params.add(pm.getValue(entity));
         }
+        return params;
     }
 
     @Override
-    public Object findById(Object id, Session session) {
+    public Object findById(Object id, PersisterSession session) {
         try {
             // PHASE 1: Find which specific class (table) has this ID
             EntityMetadata concreteMetadata = findConcreteMetadata(id, session);
@@ -214,145 +256,78 @@ public class TablePerClassInheritanceStrategy extends AbstractInheritanceStrateg
         }
     }
 
-    private EntityMetadata findConcreteMetadata(Object id, Session session) throws Exception {
+    private EntityMetadata findConcreteMetadata(Object id, PersisterSession session) throws Exception {
         JdbcExecutor jdbc = session.getJdbcExecutor();
-        EntityMetadata root = entityMetadata.getInheritanceMetadata().getRootClass();
-        Collection<PropertyMetadata> idColumns = root.getIdColumns().values();
+        List<EntityMetadata> concreteSubclasses = sqlPlan.getConcreteSubclasses();
 
-        List<EntityMetadata> concreteSubclasses = getAllConcreteSubclasses(entityMetadata);
-
-        StringBuilder sql = new StringBuilder();
+        // The query checks the presence of ID in each table
+        Object[] idParams = idParams(sqlPlan.getRoot().getIdColumns().values(), id);
         List<Object> params = new ArrayList<>();
-
-        // We build a query that checks the presence of ID in each table
         for (int i = 0; i < concreteSubclasses.size(); i++) {
-            EntityMetadata subMeta = concreteSubclasses.get(i);
-
-            sql.append("SELECT '")
-                    .append(subMeta.getEntityClass().getName())
-                    .append("' as DTYPE FROM ")
-                    .append(subMeta.getTableName())
-                    .append(" WHERE ");
-
-            appendIdWhereClause(sql, params, idColumns, id);
-
-            if (i < concreteSubclasses.size() - 1) {
-                sql.append(" UNION ALL ");
-            }
+            params.addAll(Arrays.asList(idParams));
         }
 
-        // We execute a query that will return only the class name
-        return jdbc.queryOne(sql.toString(), rs -> {
-            String className = rs.getString("DTYPE");
-            // We are looking for metadata corresponding to the class name
-            return concreteSubclasses.stream()
-                    .filter(m -> m.getEntityClass().getName().equals(className))
-                    .findFirst()
-                    .orElseThrow(() -> new RuntimeException("Metadata not found for class: " + className));
+        // We execute a query that will return only the class name, as its single column
+        return jdbc.queryOne(sqlPlan.getConcreteLookupSql(), rs -> {
+            String className = rs.getString(1);
+            EntityMetadata concrete = concreteByName.get(className);
+            if (concrete == null) {
+                throw new RuntimeException("Metadata not found for class: " + className);
+            }
+            return concrete;
         }, params.toArray()).orElse(null);
     }
 
-    private Object loadSpecificEntity(EntityMetadata specificMetadata, Object id, Session session) throws Exception {
+    private Object loadSpecificEntity(EntityMetadata specificMetadata, Object id, PersisterSession session) throws Exception {
         JdbcExecutor jdbc = session.getJdbcExecutor();
 
-        List<String> columns = specificMetadata.getColumnsForConcreteTable()
-                .stream()
-                .map(PropertyMetadata::getColumnName)
-                .collect(Collectors.toList());
-
-        StringBuilder sql = new StringBuilder();
-        sql.append("SELECT ")
-                .append(String.join(", ", columns))
-                .append(" FROM ")
-                .append(specificMetadata.getTableName())
-                .append(" WHERE ");
-
-        EntityMetadata root = entityMetadata.getInheritanceMetadata().getRootClass();
-        Collection<PropertyMetadata> idColumns = root.getIdColumns().values();
-        List<Object> params = new ArrayList<>();
-        appendIdWhereClause(sql, params, idColumns, id);
-
-        System.out.println("Loading full entity SQL: " + sql);
-
-        return jdbc.queryOne(sql.toString(), rs -> mapSpecificEntity(rs, specificMetadata), params.toArray())
-                .orElse(null);
+        String query = sqlPlan.getLoadSqls().get(specificMetadata);
+        Object[] params = idParams(sqlPlan.getRoot().getIdColumns().values(), id);
+        return jdbc.queryOne(query, planned(query, metaData -> buildSpecificRowPlan(metaData, specificMetadata)),
+                params).orElse(null);
     }
 
     /**
-     * A mapper that can map an object based on the metadata provided,
+     * A plan that maps an object based on the metadata provided,
      * not the data assigned to the strategy.
      */
-    private Object mapSpecificEntity(ResultSet rs, EntityMetadata metadata) throws SQLException {
-        try {
-            Object entity = metadata.getEntityClass().getDeclaredConstructor().newInstance();
-
-            for (PropertyMetadata prop : metadata.getColumnsForConcreteTable()) {
-                try {
-                    Object value = getValueFromResultSet(rs, prop.getColumnName(), prop.getType());
-
-                    if (value != null) {
-                        ReflectionUtils.setFieldValue(entity, prop.getName(), value);
-                    }
-                } catch (SQLException e) {
-                    // ignore
-                }
-            }
-            return entity;
-        } catch (Exception e) {
-            throw new RuntimeException("Error mapping entity " + metadata.getEntityClass().getName(), e);
+    private RowPlan buildSpecificRowPlan(ResultSetMetaData metaData, EntityMetadata metadata) throws SQLException {
+        RowPlan.Builder plan = new RowPlan.Builder(metaData);
+        RowPlan.EntityPlan entityPlan = plan.entity(metadata.getEntityClass());
+        for (PropertyMetadata prop : metadata.getColumnsForConcreteTable()) {
+            entityPlan.column(prop.getColumnName(), prop);
         }
+        return plan.otherwise(metadata.getEntityClass()).build();
     }
 
     @Override
-    public <T> List<T> findAll(Class<T> type, Session session, PairTargetStatements pairTargetStatements) {
+    protected SelectQuery buildFindAllQuery(PairTargetStatements pairTargetStatements, List<String> ownerColumns,
+                                            Object[] params) {
         TargetStatement joinStmt = pairTargetStatements.getJoinStatements().get(0);
         TargetStatement whereStmt = pairTargetStatements.getWhereStatements().get(0);
 
-        List<EntityMetadata> concreteSubclasses = getAllConcreteSubclasses(this.entityMetadata);
-
-        Map<String, PropertyMetadata> allProperties = new HashMap<>();
-        for (EntityMetadata meta : concreteSubclasses) {
-            allProperties.putAll(meta.getProperties());
-        }
+        List<EntityMetadata> concreteSubclasses = sqlPlan.getConcreteSubclasses();
+        Map<String, PropertyMetadata> allProperties = sqlPlan.getUnionProperties();
 
         // UNION ALL
         StringBuilder sqlBuilder = new StringBuilder();
+        List<Object> allParams = new ArrayList<>();
 
         for (int i = 0; i < concreteSubclasses.size(); i++) {
             EntityMetadata subMeta = concreteSubclasses.get(i);
-
-            Map<String, PropertyMetadata> subTableProperties = subMeta.getProperties();
-
             String tableName = subMeta.getTableName();
 
-            sqlBuilder.append("SELECT ");
-
-            List<String> selectionParts = new ArrayList<>();
-            for (String fieldName : allProperties.keySet()) {
-                PropertyMetadata pm = allProperties.get(fieldName);
-                String columnName = pm.getColumnName();
-                if (subTableProperties.containsKey(fieldName)) {
-                    selectionParts.add(tableName + "." + columnName);
-                } else {
-                    // aliasing and NULL
-                    selectionParts.add("NULL::" + pm.getSqlType() +" AS " + columnName);
-                }
-            }
-
-            sqlBuilder.append(String.join(", ", selectionParts));
-
-            // DTYPE
-            sqlBuilder.append(", '").append(subMeta.getEntityClass().getName()).append("' as DTYPE")
-                    .append(" FROM ")
-                    .append(tableName);
+            // columns of the other tables are NULL padded
+            sqlBuilder.append(withOwnerColumns(sqlPlan.getUnionSelects().get(subMeta), ownerColumns));
 
             // JOIN stmt
             sqlBuilder.append(" ").append(joinStmt.getStatement(tableName));
 
-            // where
+            // where, the parameters are bound again for every table
             if (!whereStmt.isBlank()) {
                 sqlBuilder.append(" WHERE ");
                 sqlBuilder.append(whereStmt.getStatement());
+                allParams.addAll(Arrays.asList(params));
             }
 
             if (i < concreteSubclasses.size() - 1) {
@@ -361,65 +336,55 @@ public class TablePerClassInheritanceStrategy extends AbstractInheritanceStrateg
         }
 
         String sql = sqlBuilder.toString();
-        System.out.println("TPC findAll SQL: " + sql);
+        return new SelectQuery(sql, allParams.toArray(), planned(sql,
+                metaData -> buildPolymorphicRowPlan(metaData, concreteSubclasses, allProperties)));
+    }
 
-        try {
-            JdbcExecutor jdbc = session.getJdbcExecutor();
-            return jdbc.query(sql, rs -> mapPolymorphicEntityFull(rs, type, allProperties));
-        } catch (Exception e) {
-            throw new RuntimeException("Error finding all entities in TPC", e);
-        }
+    // the id columns of the union, by name
+    @Override
+    protected String idOrder() {
+        assert entityMetadata != null;
+        return idOrder(null, entityMetadata.getIdColumns().values());
+    }
+
+    // a UNION ALL of the tables, each with its own select list
+    @Override
+    protected String countQuery(String select) {
+        return "SELECT COUNT(*) FROM (" + select + ") q";
+    }
+
+    @Override
+    protected String existsQuery(String select) {
+        return "SELECT EXISTS (" + select + ")";
     }
 
     @Override
-    public <T> List<T> findBy(Class<T> type, Session session, QuerySpec<T> querySpec) {
+    protected <T> SelectQuery buildFindByQuery(Class<T> type, QuerySpec<T> querySpec) {
         assert entityMetadata != null;
         
         // Get all concrete subclasses for polymorphic query
-        List<EntityMetadata> allSubclasses = getAllConcreteSubclasses(entityMetadata);
-        
-        // Collect all properties from the hierarchy
-        Map<String, PropertyMetadata> allProperties = new LinkedHashMap<>();
-        for (EntityMetadata sub : allSubclasses) {
-            allProperties.putAll(sub.getProperties());
-        }
-        
+        List<EntityMetadata> allSubclasses = sqlPlan.getConcreteSubclasses();
+        Map<String, PropertyMetadata> allProperties = sqlPlan.getUnionProperties();
+
         List<Object> allParams = new ArrayList<>();
         StringBuilder sqlBuilder = new StringBuilder();
         boolean first = true;
-        
+
         for (EntityMetadata sub : allSubclasses) {
             if (!first) {
                 sqlBuilder.append(" UNION ALL ");
             }
             first = false;
-            
-            StringBuilder selectPart = new StringBuilder("SELECT ");
-            // Add DTYPE column
-            selectPart.append("'").append(sub.getEntityClass().getName()).append("' AS DTYPE, ");
-            
-            // Add columns with NULL padding for missing columns
-            List<String> columnDefs = new ArrayList<>();
-            for (String fieldName : allProperties.keySet()) {
-                PropertyMetadata pm = sub.getProperties().get(fieldName);
-                if (pm != null) {
-                    columnDefs.add(sub.getTableName() + "." + pm.getColumnName() + " AS " + pm.getColumnName());
-                } else {
-                    columnDefs.add("NULL AS " + allProperties.get(fieldName).getColumnName());
-                }
-            }
-            selectPart.append(String.join(", ", columnDefs));
-            
-            StringBuilder fromWhere = new StringBuilder(" FROM " + sub.getTableName());
-            
+
+            // columns with NULL padding for the missing ones
+            sqlBuilder.append(sqlPlan.getUnionSelects().get(sub));
+
             List<Object> subParams = new ArrayList<>();
             String querySpecWhere = buildQuerySpecWhereClause(querySpec, sub.getTableName(), subParams);
             if (!querySpecWhere.isEmpty()) {
-                fromWhere.append(" WHERE ").append(querySpecWhere);
+                sqlBuilder.append(" WHERE ").append(querySpecWhere);
                 allParams.addAll(subParams);
             }
-            
-            sqlBuilder.append(selectPart).append(fromWhere);
         }
         
         // ORDER BY - needs special handling for UNION
@@ -439,59 +404,38 @@ public class TablePerClassInheritanceStrategy extends AbstractInheritanceStrateg
         sqlBuilder.append(buildQuerySpecLimitOffsetClause(querySpec));
         
         String sql = sqlBuilder.toString();
-        System.out.println("TPC Finder SQL: " + sql);
-        System.out.println("TPC Finder params: " + allParams);
         
-        try {
-            JdbcExecutor jdbc = session.getJdbcExecutor();
-            return jdbc.query(sql, rs -> mapPolymorphicEntityFull(rs, type, allProperties), allParams.toArray());
-        } catch (Exception e) {
-            throw new RuntimeException("Error finding entities with QuerySpec in TPC", e);
-        }
+        return new SelectQuery(sql, allParams.toArray(),
+                planned(sql, metaData -> buildPolymorphicRowPlan(metaData, allSubclasses, allProperties)));
     }
 
-    private <T> T mapPolymorphicEntityFull(ResultSet rs, Class<T> baseType, Map<String, PropertyMetadata> allProperties) throws SQLException {
-        try {
-            // DTYPE
-            String className = rs.getString("DTYPE");
-            Class<?> realClass = Class.forName(className);
-
-            Object instance = realClass.getDeclaredConstructor().newInstance();
-
-            for (String fieldName : allProperties.keySet()) {
-                PropertyMetadata pm = allProperties.get(fieldName);
-                String colName = pm.getColumnName();
-                Object value = rs.getObject(colName);
-
-                if (value != null) {
-                    Object castedValue = castSqlValueToJava((Class<?>)pm.getType(), value);
-                    ReflectionUtils.setFieldValue(instance, fieldName, castedValue);
-                }
-            }
-            return baseType.cast(instance);
-        } catch (Exception e) {
-            throw new RuntimeException("Error mapping polymorphic entity", e);
+    @Override
+    protected List<BulkFilter> bulkFilters(QuerySpec<?> querySpec) {
+        // every concrete table holds whole rows, with the same column names
+        List<BulkFilter> filters = new ArrayList<>();
+        for (EntityMetadata sub : sqlPlan.getConcreteSubclasses()) {
+            List<Object> params = new ArrayList<>();
+            String where = buildQuerySpecWhereClause(querySpec, sub.getTableName(), params);
+            filters.add(new BulkFilter(sub.getTableName(), sub.getTableName(), where, params));
         }
+        return filters;
     }
 
-    private List<EntityMetadata> getAllConcreteSubclasses(EntityMetadata parent) {
-        List<EntityMetadata> result = new ArrayList<>();
-        List<EntityMetadata> toVisit = new ArrayList<>();
-
-        toVisit.add(parent);
-        if (!parent.isAbstract()) {
-            result.add(parent);
-        }
-        while (!toVisit.isEmpty()) {
-            var current =  toVisit.remove(0);
-            for (EntityMetadata child: current.getInheritanceMetadata().getChildren()){
-                if (!child.isAbstract()) {
-                    result.add(child);
-                }
-                toVisit.add(child);
+    /**
+     * UNION ALL of the concrete tables; DTYPE holds the class name and every class reads
+     * the columns of its own fields (the others are NULL padding).
+     */
+    private RowPlan buildPolymorphicRowPlan(ResultSetMetaData metaData, List<EntityMetadata> concreteSubclasses,
+                                            Map<String, PropertyMetadata> allProperties) throws SQLException {
+        RowPlan.Builder plan = new RowPlan.Builder(metaData).discriminator("DTYPE");
+        for (EntityMetadata sub : concreteSubclasses) {
+            RowPlan.EntityPlan entityPlan = plan.entity(sub.getEntityClass());
+            for (PropertyMetadata pm : allProperties.values()) {
+                entityPlan.column(pm.getColumnName(), pm);
             }
+            plan.when(sub.getEntityClass().getName(), sub.getEntityClass());
         }
-        return result;
+        return plan.build();
     }
 
 }
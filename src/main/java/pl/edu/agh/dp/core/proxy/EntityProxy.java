@@ -0,0 +1,32 @@
+package pl.edu.agh.dp.core.proxy;
+
+import pl.edu.agh.dp.core.api.Lazy;
+
+/**
+ * Implemented by the proxy subclasses {@link ProxyFactory} generates for to-one targets.
+ * The id getter answers from the proxy itself, every other method loads the entity through
+ * the initializer and is delegated to it.
+ */
+public interface EntityProxy extends Lazy {
+
+    LazyInitializer getLazyInitializer();
+
+    void setLazyInitializer(LazyInitializer initializer);
+
+    @Override
+    default boolean isInitialized() {
+        return getLazyInitializer().isInitialized();
+    }
+
+    @Override
+    default void initialize() {
+        getLazyInitializer().getImplementation();
+    }
+
+    /**
+     * The entity behind a proxy (loaded if necessary), any other object as it is.
+     */
+    static Object unwrap(Object entity) {
+        return entity instanceof EntityProxy proxy ? proxy.getLazyInitializer().getImplementation() : entity;
+    }
+}
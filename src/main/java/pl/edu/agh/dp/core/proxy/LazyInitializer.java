@@ -0,0 +1,51 @@
+package pl.edu.agh.dp.core.proxy;
+
+import lombok.Getter;
+import lombok.Setter;
+import pl.edu.agh.dp.core.api.Session;
+import pl.edu.agh.dp.core.exceptions.IntegrityException;
+
+/**
+ * State of one proxy: the class and id of the referenced entity and, once loaded, the entity.
+ * Proxies are created unattached while the row is mapped, the session that takes the owner
+ * attaches them.
+ */
+public final class LazyInitializer {
+
+    @Getter
+    private final Class<?> entityClass;
+    @Getter
+    private final Object id;
+    @Getter
+    @Setter
+    private Session session;
+    private Object implementation;
+
+    public LazyInitializer(Class<?> entityClass, Object id) {
+        this.entityClass = entityClass;
+        this.id = id;
+    }
+
+    public boolean isInitialized() {
+        return implementation != null;
+    }
+
+    public Object getImplementation() {
+        if (implementation == null) {
+            if (session == null) {
+                throw new IllegalStateException("Proxy of " + entityClass.getName() + " with id " + id
+                        + " is not attached to a session");
+            }
+            if (!session.isOpen()) {
+                throw new IllegalStateException("Session is not open");
+            }
+            Object loaded = session.find(entityClass, id);
+            if (loaded == null) {
+                throw new IntegrityException("Referenced entity " + entityClass.getName() + " with id " + id
+                        + " does not exist");
+            }
+            implementation = loaded;
+        }
+        return implementation;
+    }
+}
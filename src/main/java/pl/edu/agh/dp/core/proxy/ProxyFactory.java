@@ -0,0 +1,120 @@
+package pl.edu.agh.dp.core.proxy;
+
+import pl.edu.agh.dp.core.logging.OrmLogger;
+import pl.edu.agh.dp.core.util.FieldAccessor;
+import pl.edu.agh.dp.core.util.FieldAccessors;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates proxies of one entity class: a subclass generated with ASM and defined as a hidden
+ * class nested with the entity, see {@link ProxyGenerator}. One factory per class, created on
+ * first use.
+ * <p>
+ * {@link #forClass} returns null (and the to-one field is left null until loaded, as without
+ * proxies) when ASM is not on the classpath or the class cannot be subclassed: final classes,
+ * no non-private no-arg constructor, or a module that does not open the entity package.
+ */
+public final class ProxyFactory {
+
+    private static final OrmLogger log = OrmLogger.getLogger(ProxyFactory.class);
+
+    // ASM is an optional dependency
+    private static final boolean AVAILABLE = isAsmAvailable();
+    private static final Map<Class<?>, Optional<ProxyFactory>> factories = new ConcurrentHashMap<>();
+
+    private final Class<?> entityClass;
+    private final MethodHandle constructor;
+    private final FieldAccessor idAccessor;
+
+    private ProxyFactory(Class<?> entityClass, MethodHandle constructor, FieldAccessor idAccessor) {
+        this.entityClass = entityClass;
+        this.constructor = constructor;
+        this.idAccessor = idAccessor;
+    }
+
+    /**
+     * Factory of proxies of the class with a single id field, null when it cannot be proxied.
+     */
+    public static ProxyFactory forClass(Class<?> entityClass, String idField) {
+        if (!AVAILABLE) {
+            return null;
+        }
+        return factories.computeIfAbsent(entityClass, type -> Optional.ofNullable(create(type, idField)))
+                .orElse(null);
+    }
+
+    private static ProxyFactory create(Class<?> entityClass, String idField) {
+        FieldAccessor idAccessor = FieldAccessors.find(entityClass, idField);
+        String reason = checkSupported(entityClass, idAccessor);
+        if (reason != null) {
+            log.debug("No proxies for {}: {}", entityClass.getName(), reason);
+            return null;
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(entityClass, MethodHandles.lookup());
+            byte[] bytes = ProxyGenerator.generate(entityClass, idAccessor.getField());
+            MethodHandles.Lookup hidden = lookup.defineHiddenClass(bytes, true, MethodHandles.Lookup.ClassOption.NESTMATE);
+            MethodHandle constructor = hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class));
+            log.debug("Generated proxy {} for {}", hidden.lookupClass().getName(), entityClass.getName());
+            return new ProxyFactory(entityClass, constructor, idAccessor);
+        } catch (Throwable e) {
+            log.warn("Cannot generate proxy for " + entityClass.getName() + ", to-one fields stay unloaded", e);
+            return null;
+        }
+    }
+
+    private static String checkSupported(Class<?> entityClass, FieldAccessor idAccessor) {
+        if (Modifier.isFinal(entityClass.getModifiers()) || entityClass.isInterface()
+                || entityClass.isPrimitive() || entityClass.isArray()) {
+            return "class cannot be subclassed";
+        }
+        if (idAccessor == null) {
+            return "no id field";
+        }
+        try {
+            Constructor<?> constructor = entityClass.getDeclaredConstructor();
+            if (Modifier.isPrivate(constructor.getModifiers())) {
+                return "private no-arg constructor";
+            }
+        } catch (NoSuchMethodException e) {
+            return "no no-arg constructor";
+        }
+        return null;
+    }
+
+    private static boolean isAsmAvailable() {
+        try {
+            Class.forName("org.objectweb.asm.ClassWriter", false, ProxyFactory.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    public Class<?> getIdType() {
+        return idAccessor.getField().getType();
+    }
+
+    /**
+     * New unattached proxy of the entity with the id.
+     */
+    public Object newProxy(Object id) {
+        Object proxy;
+        try {
+            proxy = constructor.invoke();
+        } catch (Throwable e) {
+            throw new RuntimeException("Cannot create proxy of " + entityClass.getName(), e);
+        }
+        idAccessor.set(proxy, id);
+        ((EntityProxy) proxy).setLazyInitializer(new LazyInitializer(entityClass, id));
+        return proxy;
+    }
+}
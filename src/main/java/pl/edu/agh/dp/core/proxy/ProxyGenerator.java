@@ -0,0 +1,167 @@
+package pl.edu.agh.dp.core.proxy;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bytecode of a proxy subclass: a {@link LazyInitializer} field, the {@link EntityProxy} accessors
+ * and an override of every method that can be overridden, calling the same method on the loaded
+ * entity. The getter of the id field calls the entity class on the proxy itself, which holds the id.
+ * Final methods and methods of {@link Object} are not intercepted.
+ */
+final class ProxyGenerator implements Opcodes {
+
+    private static final String INITIALIZER = Type.getInternalName(LazyInitializer.class);
+    private static final String INITIALIZER_DESCRIPTOR = Type.getDescriptor(LazyInitializer.class);
+    private static final String FIELD = "$$initializer";
+
+    private ProxyGenerator() {
+    }
+
+    static byte[] generate(Class<?> entityClass, Field idField) {
+        String entity = Type.getInternalName(entityClass);
+        String proxy = entity + "$$OrmProxy";
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+            @Override
+            protected ClassLoader getClassLoader() {
+                return entityClass.getClassLoader();
+            }
+        };
+        cw.visit(V17, ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, proxy, null, entity,
+                new String[]{Type.getInternalName(EntityProxy.class)});
+        cw.visitField(ACC_PRIVATE, FIELD, INITIALIZER_DESCRIPTOR, null, null).visitEnd();
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, entity, "<init>", "()V", false);
+        mv.visitInsn(RETURN);
+        end(mv);
+
+        mv = cw.visitMethod(ACC_PUBLIC, "getLazyInitializer", "()" + INITIALIZER_DESCRIPTOR, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, proxy, FIELD, INITIALIZER_DESCRIPTOR);
+        mv.visitInsn(ARETURN);
+        end(mv);
+
+        mv = cw.visitMethod(ACC_PUBLIC, "setLazyInitializer", "(" + INITIALIZER_DESCRIPTOR + ")V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitFieldInsn(PUTFIELD, proxy, FIELD, INITIALIZER_DESCRIPTOR);
+        mv.visitInsn(RETURN);
+        end(mv);
+
+        for (Method method : interceptedMethods(entityClass).values()) {
+            if (isIdGetter(method, idField)) {
+                idGetter(cw, entity, method);
+            } else {
+                delegate(cw, entity, proxy, method);
+            }
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * Public methods, and the protected / package private ones declared in the package of the
+     * entity, by name and descriptor; the most specific declaration wins.
+     */
+    private static Map<String, Method> interceptedMethods(Class<?> entityClass) {
+        Map<String, Method> methods = new LinkedHashMap<>();
+        for (Method method : entityClass.getMethods()) {
+            if (isIntercepted(method)) {
+                methods.putIfAbsent(method.getName() + Type.getMethodDescriptor(method), method);
+            }
+        }
+        for (Class<?> current = entityClass; current != null && current != Object.class; current = current.getSuperclass()) {
+            if (!current.getPackageName().equals(entityClass.getPackageName())
+                    || current.getClassLoader() != entityClass.getClassLoader()) {
+                continue;
+            }
+            for (Method method : current.getDeclaredMethods()) {
+                if (!Modifier.isPublic(method.getModifiers()) && !Modifier.isPrivate(method.getModifiers())
+                        && isIntercepted(method)) {
+                    methods.putIfAbsent(method.getName() + Type.getMethodDescriptor(method), method);
+                }
+            }
+        }
+        return methods;
+    }
+
+    private static boolean isIntercepted(Method method) {
+        int modifiers = method.getModifiers();
+        return method.getDeclaringClass() != Object.class
+                && !Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers)
+                && !method.isBridge() && !method.isSynthetic();
+    }
+
+    private static boolean isIdGetter(Method method, Field idField) {
+        String name = Character.toUpperCase(idField.getName().charAt(0)) + idField.getName().substring(1);
+        return method.getParameterCount() == 0
+                && method.getReturnType() == idField.getType()
+                && !Modifier.isAbstract(method.getModifiers())
+                && (method.getName().equals("get" + name) || method.getName().equals("is" + name));
+    }
+
+    // return super.getId();
+    private static void idGetter(ClassWriter cw, String entity, Method method) {
+        String descriptor = Type.getMethodDescriptor(method);
+        MethodVisitor mv = cw.visitMethod(access(method), method.getName(), descriptor, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, entity, method.getName(), descriptor, false);
+        mv.visitInsn(Type.getReturnType(method).getOpcode(IRETURN));
+        end(mv);
+    }
+
+    // return ((Entity) $$initializer.getImplementation()).method(args);
+    private static void delegate(ClassWriter cw, String entity, String proxy, Method method) {
+        String descriptor = Type.getMethodDescriptor(method);
+        MethodVisitor mv = cw.visitMethod(access(method), method.getName(), descriptor, null,
+                exceptions(method));
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, proxy, FIELD, INITIALIZER_DESCRIPTOR);
+        mv.visitMethodInsn(INVOKEVIRTUAL, INITIALIZER, "getImplementation", "()Ljava/lang/Object;", false);
+        mv.visitTypeInsn(CHECKCAST, entity);
+        int slot = 1;
+        for (Type argument : Type.getArgumentTypes(method)) {
+            mv.visitVarInsn(argument.getOpcode(ILOAD), slot);
+            slot += argument.getSize();
+        }
+        mv.visitMethodInsn(INVOKEVIRTUAL, entity, method.getName(), descriptor, false);
+        mv.visitInsn(Type.getReturnType(method).getOpcode(IRETURN));
+        end(mv);
+    }
+
+    private static int access(Method method) {
+        return method.getModifiers() & (ACC_PUBLIC | ACC_PROTECTED);
+    }
+
+    private static String[] exceptions(Method method) {
+        Class<?>[] types = method.getExceptionTypes();
+        if (types.length == 0) {
+            return null;
+        }
+        String[] names = new String[types.length];
+        for (int i = 0; i < types.length; i++) {
+            names[i] = Type.getInternalName(types[i]);
+        }
+        return names;
+    }
+
+    private static void end(MethodVisitor mv) {
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+}
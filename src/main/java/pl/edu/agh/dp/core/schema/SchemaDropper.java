@@ -1,11 +1,14 @@
 package pl.edu.agh.dp.core.schema;
 
 import pl.edu.agh.dp.core.jdbc.ConnectionProvider;
+import pl.edu.agh.dp.core.logging.OrmLogger;
 
 import java.sql.*;
 
 public class SchemaDropper {
 
+    private static final OrmLogger log = OrmLogger.getLogger(SchemaDropper.class);
+
     private final ConnectionProvider cp;
 
     public SchemaDropper(ConnectionProvider cp) {
@@ -23,7 +26,7 @@ public class SchemaDropper {
             } else if (db.contains("postgresql")) {
                 dropAllPostgres(st);
             } else if (db.contains("h2")) {
-                System.out.println("h2");
+                log.debug("h2 - nothing to drop");
             } else {
                 throw new UnsupportedOperationException("Unsupported DB: " + db);
             }
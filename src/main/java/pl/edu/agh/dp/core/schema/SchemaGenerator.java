@@ -3,17 +3,22 @@ package pl.edu.agh.dp.core.schema;
 
 import javafx.util.Pair;
 import pl.edu.agh.dp.core.jdbc.ConnectionProvider;
+import pl.edu.agh.dp.core.jdbc.Dialect;
 import pl.edu.agh.dp.core.jdbc.JdbcExecutor;
 import pl.edu.agh.dp.core.jdbc.JdbcExecutorImpl;
+import pl.edu.agh.dp.core.logging.OrmLogger;
 import pl.edu.agh.dp.core.mapping.*;
 import pl.edu.agh.dp.core.persister.EntityPersister;
 
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 public class SchemaGenerator {
 
+    private static final OrmLogger log = OrmLogger.getLogger(SchemaGenerator.class);
+
     private final MetadataRegistry registry;
     private final ConnectionProvider connectionProvider;
     private final JdbcExecutor jdbcExecutor;
@@ -21,10 +26,12 @@ public class SchemaGenerator {
 
     public SchemaGenerator(MetadataRegistry registry,
                            ConnectionProvider connectionProvider,
-                           Map<Class<?>, EntityPersister> entityPersisters) {
+                           Map<Class<?>, EntityPersister> entityPersisters,
+                           Dialect dialect) {
         this.registry = registry;
         this.connectionProvider = connectionProvider;
-        this.jdbcExecutor = new JdbcExecutorImpl(this.connectionProvider.getConnection());
+        this.jdbcExecutor = new JdbcExecutorImpl(this.connectionProvider.getConnection(),
+                JdbcExecutorImpl.DEFAULT_STATEMENT_CACHE_SIZE, JdbcExecutorImpl.DEFAULT_BATCH_SIZE, dialect);
         this.entityPersisters = entityPersisters;
     }
 
@@ -51,15 +58,21 @@ public class SchemaGenerator {
                 String sql = sqlConstraint.getKey();
                 constraints.add(sqlConstraint.getValue());
 
-                System.out.println("Executing SQL for " + metadata.getEntityClass().getSimpleName() + ": " + sql);
+                log.debug("Executing SQL for {}: {}", metadata.getEntityClass().getSimpleName(), sql);
                 jdbcExecutor.executeStatement(sql);
             }
         }
 
         for (String constraint : constraints) {
-            System.out.println("Executing SQL for " + constraint);
+            log.debug("Executing SQL for {}", constraint);
             jdbcExecutor.executeStatement(constraint);
         }
+
+        try {
+            jdbcExecutor.close();
+        } catch (SQLException e) {
+            log.warn("Error closing schema connection", e);
+        }
     }
 
     private int getInheritanceDepth(Class<?> clazz) {
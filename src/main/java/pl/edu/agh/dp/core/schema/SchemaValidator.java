@@ -2,6 +2,7 @@ package pl.edu.agh.dp.core.schema;
 
 import pl.edu.agh.dp.core.exceptions.IntegrityException;
 import pl.edu.agh.dp.core.jdbc.ConnectionProvider;
+import pl.edu.agh.dp.core.logging.OrmLogger;
 import pl.edu.agh.dp.core.mapping.EntityMetadata;
 import pl.edu.agh.dp.core.mapping.MetadataRegistry;
 import pl.edu.agh.dp.core.mapping.PropertyMetadata;
@@ -14,6 +15,8 @@ import java.util.*;
 
 public class SchemaValidator {
 
+    private static final OrmLogger log = OrmLogger.getLogger(SchemaValidator.class);
+
     private final MetadataRegistry registry;
     private final ConnectionProvider connectionProvider;
 
@@ -48,7 +51,7 @@ public class SchemaValidator {
                 }
             }
 
-            System.out.println("Schema validation successful - all tables and columns exist");
+            log.info("Schema validation successful - all tables and columns exist");
         } catch (SQLException e) {
             throw new IntegrityException("Error validating schema: " + e.getMessage());
         }
@@ -0,0 +1,83 @@
+package pl.edu.agh.dp.core.stats;
+
+import pl.edu.agh.dp.core.jdbc.StatementEvent;
+import pl.edu.agh.dp.core.jdbc.StatementListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a {@link LatencyHistogram} of total statement time per SQL shape (see {@link SqlShapes}).
+ * <p>
+ * The number of shapes is bounded - once {@code maxShapes} is reached new shapes are counted
+ * under {@link #OTHER_SHAPE}, so generated SQL cannot grow the map without limit.
+ */
+public class LatencyHistogramListener implements StatementListener {
+
+    public static final String OTHER_SHAPE = "<other>";
+    public static final int DEFAULT_MAX_SHAPES = 1000;
+
+    private final int maxShapes;
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    // raw SQL -> shape, most statements repeat so normalizing each time would dominate
+    private final Map<String, String> shapeCache = new ConcurrentHashMap<>();
+
+    public LatencyHistogramListener() {
+        this(DEFAULT_MAX_SHAPES);
+    }
+
+    public LatencyHistogramListener(int maxShapes) {
+        this.maxShapes = maxShapes;
+    }
+
+    @Override
+    public void onStatement(StatementEvent event) {
+        histogramFor(shapeOf(event.getSql())).record(event.getTotalNanos());
+    }
+
+    private String shapeOf(String sql) {
+        String shape = shapeCache.get(sql);
+        if (shape == null) {
+            shape = SqlShapes.normalize(sql);
+            if (shapeCache.size() < maxShapes * 4) {
+                shapeCache.put(sql, shape);
+            }
+        }
+        return shape;
+    }
+
+    private LatencyHistogram histogramFor(String shape) {
+        LatencyHistogram histogram = histograms.get(shape);
+        if (histogram != null) {
+            return histogram;
+        }
+        String key = histograms.size() < maxShapes ? shape : OTHER_SHAPE;
+        return histograms.computeIfAbsent(key, k -> new LatencyHistogram());
+    }
+
+    /**
+     * Histogram for the shape of the given SQL, or null when it was never executed.
+     */
+    public LatencyHistogram getHistogram(String sql) {
+        return histograms.get(SqlShapes.normalize(sql));
+    }
+
+    public Map<String, LatencyHistogram> getHistograms() {
+        return Collections.unmodifiableMap(histograms);
+    }
+
+    /**
+     * Shapes ordered by latency at the given percentile, slowest first.
+     */
+    public List<Map.Entry<String, LatencyHistogram>> getSlowest(int limit, double percentile) {
+        List<Map.Entry<String, LatencyHistogram>> entries = new ArrayList<>(histograms.entrySet());
+        Map<String, Long> values = new HashMap<>();
+        entries.forEach(e -> values.put(e.getKey(), e.getValue().getValueAtPercentile(percentile)));
+        entries.sort(Comparator.comparing((Map.Entry<String, LatencyHistogram> e) -> values.get(e.getKey())).reversed());
+        return entries.subList(0, Math.min(limit, entries.size()));
+    }
+
+    public void reset() {
+        histograms.clear();
+    }
+}
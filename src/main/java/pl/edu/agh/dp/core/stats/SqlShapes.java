@@ -0,0 +1,81 @@
+package pl.edu.agh.dp.core.stats;
+
+import java.util.regex.Pattern;
+
+/**
+ * Reduces SQL text to its shape, so statements differing only in literals or in the
+ * number of bound values are counted together.
+ * <ul>
+ *     <li>string and numeric literals become {@code ?}</li>
+ *     <li>{@code IN (?, ?, ...)} becomes {@code IN (?)}</li>
+ *     <li>multi-row {@code VALUES (...), (...)} keeps only the first tuple</li>
+ *     <li>whitespace runs become a single space</li>
+ * </ul>
+ */
+public final class SqlShapes {
+
+    private static final Pattern IN_LIST = Pattern.compile(
+            "(?i)\\bIN\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern VALUES_TUPLES = Pattern.compile(
+            "(?i)(\\bVALUES\\s*)(\\([^()]*\\))(?:\\s*,\\s*\\([^()]*\\))+");
+
+    private SqlShapes() {
+    }
+
+    public static String normalize(String sql) {
+        StringBuilder out = new StringBuilder(sql.length());
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                // string literal, '' is an escaped quote
+                i++;
+                while (i < length) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                i++;
+                out.append('?');
+            } else if (c == '"') {
+                // quoted identifier, copied as is
+                int end = sql.indexOf('"', i + 1);
+                end = end < 0 ? length : end + 1;
+                out.append(sql, i, end);
+                i = end;
+            } else if (Character.isDigit(c) && !isIdentifierPart(out)) {
+                while (i < length && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                out.append('?');
+            } else if (Character.isWhitespace(c)) {
+                while (i < length && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                if (out.length() > 0) {
+                    out.append(' ');
+                }
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        String shape = out.toString().trim();
+        shape = IN_LIST.matcher(shape).replaceAll("IN (?)");
+        return VALUES_TUPLES.matcher(shape).replaceAll("$1$2");
+    }
+
+    private static boolean isIdentifierPart(StringBuilder out) {
+        if (out.length() == 0) {
+            return false;
+        }
+        char previous = out.charAt(out.length() - 1);
+        return Character.isLetterOrDigit(previous) || previous == '_' || previous == '$';
+    }
+}
@@ -0,0 +1,368 @@
+package pl.edu.agh.dp.core.stats;
+
+import pl.edu.agh.dp.core.jdbc.StatementEvent;
+import pl.edu.agh.dp.core.jdbc.StatementListener;
+import pl.edu.agh.dp.core.logging.OrmLogger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of one SessionFactory, shared by all its sessions.
+ * <p>
+ * Everything is a {@link LongAdder} or a {@link LatencyHistogram}, so concurrent sessions
+ * never contend on a lock. When disabled ({@code orm.statistics.enabled=false}, the default)
+ * every record method returns right away. Statement counts come from the factory's
+ * {@link StatementListener} chain, which this class joins when enabled.
+ */
+public class Statistics implements StatisticsMXBean, StatementListener {
+
+    private static final OrmLogger log = OrmLogger.getLogger(Statistics.class);
+
+    public static final Statistics DISABLED = new Statistics(false);
+
+    private final boolean enabled;
+    private ObjectName objectName;
+
+    private final LongAdder sessionsOpened = new LongAdder();
+    private final LongAdder sessionsClosed = new LongAdder();
+    private final Map<StatementEvent.Kind, LongAdder> statements = new EnumMap<>(StatementEvent.Kind.class);
+    private final LongAdder failedStatements = new LongAdder();
+    private final Map<Class<?>, LongAdder> loaded = new ConcurrentHashMap<>();
+    private final Map<Class<?>, LongAdder> inserted = new ConcurrentHashMap<>();
+    private final Map<Class<?>, LongAdder> updated = new ConcurrentHashMap<>();
+    private final Map<Class<?>, LongAdder> deleted = new ConcurrentHashMap<>();
+    private final LongAdder collectionInitializations = new LongAdder();
+    private final LongAdder identityMapHits = new LongAdder();
+    private final LongAdder identityMapMisses = new LongAdder();
+    private final LatencyHistogram flushes = new LatencyHistogram();
+    private final LatencyHistogram commits = new LatencyHistogram();
+    private final LatencyHistogram rollbacks = new LatencyHistogram();
+
+    public Statistics(boolean enabled) {
+        this.enabled = enabled;
+        for (StatementEvent.Kind kind : StatementEvent.Kind.values()) {
+            statements.put(kind, new LongAdder());
+        }
+    }
+
+    // ==================== JMX ====================
+
+    /**
+     * Registers this object with the platform MBean server. A name already taken
+     * (e.g. a second factory with the same name) gets a numeric suffix.
+     */
+    public synchronized void registerMBean(String name) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName candidate = objectNameFor(name);
+            for (int i = 2; server.isRegistered(candidate); i++) {
+                candidate = objectNameFor(name + "-" + i);
+            }
+            server.registerMBean(this, candidate);
+            objectName = candidate;
+        } catch (JMException e) {
+            log.warn("Could not register statistics MBean", e);
+        }
+    }
+
+    private static ObjectName objectNameFor(String name) throws JMException {
+        return new ObjectName("pl.edu.agh.dp:type=Statistics,name=" + ObjectName.quote(name));
+    }
+
+    public synchronized void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            log.warn("Could not unregister statistics MBean", e);
+        }
+        objectName = null;
+    }
+
+    public synchronized ObjectName getObjectName() {
+        return objectName;
+    }
+
+    // ==================== Recording ====================
+
+    @Override
+    public void onStatement(StatementEvent event) {
+        if (!enabled) {
+            return;
+        }
+        statements.get(event.getKind()).increment();
+        if (event.isFailed()) {
+            failedStatements.increment();
+        }
+    }
+
+    public void sessionOpened() {
+        if (enabled) sessionsOpened.increment();
+    }
+
+    public void sessionClosed() {
+        if (enabled) sessionsClosed.increment();
+    }
+
+    public void entitiesLoaded(Class<?> type, int count) {
+        if (enabled) counter(loaded, type).add(count);
+    }
+
+    public void entitiesInserted(Class<?> type, int count) {
+        if (enabled) counter(inserted, type).add(count);
+    }
+
+    public void entitiesUpdated(Class<?> type, int count) {
+        if (enabled) counter(updated, type).add(count);
+    }
+
+    public void entitiesDeleted(Class<?> type, int count) {
+        if (enabled) counter(deleted, type).add(count);
+    }
+
+    public void collectionInitialized() {
+        if (enabled) collectionInitializations.increment();
+    }
+
+    public void identityMapLookup(boolean hit) {
+        if (enabled) {
+            (hit ? identityMapHits : identityMapMisses).increment();
+        }
+    }
+
+    public void flushed(long nanos) {
+        if (enabled) flushes.record(nanos);
+    }
+
+    public void committed(long nanos) {
+        if (enabled) commits.record(nanos);
+    }
+
+    public void rolledBack(long nanos) {
+        if (enabled) rollbacks.record(nanos);
+    }
+
+    private static LongAdder counter(Map<Class<?>, LongAdder> counters, Class<?> type) {
+        LongAdder counter = counters.get(type);
+        return counter != null ? counter : counters.computeIfAbsent(type, k -> new LongAdder());
+    }
+
+    // ==================== Reading ====================
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public long getSessionsOpened() {
+        return sessionsOpened.sum();
+    }
+
+    @Override
+    public long getSessionsClosed() {
+        return sessionsClosed.sum();
+    }
+
+    public long getStatementCount(StatementEvent.Kind kind) {
+        return statements.get(kind).sum();
+    }
+
+    @Override
+    public long getStatementCount() {
+        return statements.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    @Override
+    public long getFailedStatementCount() {
+        return failedStatements.sum();
+    }
+
+    @Override
+    public Map<String, Long> getStatementCountsByKind() {
+        Map<String, Long> counts = new TreeMap<>();
+        statements.forEach((kind, counter) -> counts.put(kind.name(), counter.sum()));
+        return counts;
+    }
+
+    public long getEntityLoadCount(Class<?> type) {
+        return sum(loaded, type);
+    }
+
+    public long getEntityInsertCount(Class<?> type) {
+        return sum(inserted, type);
+    }
+
+    public long getEntityUpdateCount(Class<?> type) {
+        return sum(updated, type);
+    }
+
+    public long getEntityDeleteCount(Class<?> type) {
+        return sum(deleted, type);
+    }
+
+    @Override
+    public long getEntityLoadCount() {
+        return total(loaded);
+    }
+
+    @Override
+    public long getEntityInsertCount() {
+        return total(inserted);
+    }
+
+    @Override
+    public long getEntityUpdateCount() {
+        return total(updated);
+    }
+
+    @Override
+    public long getEntityDeleteCount() {
+        return total(deleted);
+    }
+
+    @Override
+    public Map<String, Long> getEntityLoadCounts() {
+        return byClassName(loaded);
+    }
+
+    @Override
+    public Map<String, Long> getEntityInsertCounts() {
+        return byClassName(inserted);
+    }
+
+    @Override
+    public Map<String, Long> getEntityUpdateCounts() {
+        return byClassName(updated);
+    }
+
+    @Override
+    public Map<String, Long> getEntityDeleteCounts() {
+        return byClassName(deleted);
+    }
+
+    @Override
+    public long getCollectionInitializationCount() {
+        return collectionInitializations.sum();
+    }
+
+    @Override
+    public long getIdentityMapHitCount() {
+        return identityMapHits.sum();
+    }
+
+    @Override
+    public long getIdentityMapMissCount() {
+        return identityMapMisses.sum();
+    }
+
+    @Override
+    public long getFlushCount() {
+        return flushes.getCount();
+    }
+
+    @Override
+    public double getFlushMeanMicros() {
+        return flushes.getMeanNanos() / 1000.0;
+    }
+
+    @Override
+    public long getFlushMaxMicros() {
+        return flushes.getMaxNanos() / 1000;
+    }
+
+    @Override
+    public long getCommitCount() {
+        return commits.getCount();
+    }
+
+    @Override
+    public double getCommitMeanMicros() {
+        return commits.getMeanNanos() / 1000.0;
+    }
+
+    @Override
+    public long getCommitP99Micros() {
+        return commits.getValueAtPercentile(99) / 1000;
+    }
+
+    @Override
+    public long getCommitMaxMicros() {
+        return commits.getMaxNanos() / 1000;
+    }
+
+    @Override
+    public long getRollbackCount() {
+        return rollbacks.getCount();
+    }
+
+    @Override
+    public double getRollbackMeanMicros() {
+        return rollbacks.getMeanNanos() / 1000.0;
+    }
+
+    @Override
+    public long getRollbackP99Micros() {
+        return rollbacks.getValueAtPercentile(99) / 1000;
+    }
+
+    @Override
+    public long getRollbackMaxMicros() {
+        return rollbacks.getMaxNanos() / 1000;
+    }
+
+    public LatencyHistogram getFlushHistogram() {
+        return flushes;
+    }
+
+    public LatencyHistogram getCommitHistogram() {
+        return commits;
+    }
+
+    public LatencyHistogram getRollbackHistogram() {
+        return rollbacks;
+    }
+
+    @Override
+    public void clear() {
+        sessionsOpened.reset();
+        sessionsClosed.reset();
+        statements.values().forEach(LongAdder::reset);
+        failedStatements.reset();
+        loaded.clear();
+        inserted.clear();
+        updated.clear();
+        deleted.clear();
+        collectionInitializations.reset();
+        identityMapHits.reset();
+        identityMapMisses.reset();
+        flushes.reset();
+        commits.reset();
+        rollbacks.reset();
+    }
+
+    private static long sum(Map<Class<?>, LongAdder> counters, Class<?> type) {
+        LongAdder counter = counters.get(type);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    private static long total(Map<Class<?>, LongAdder> counters) {
+        return counters.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    private static Map<String, Long> byClassName(Map<Class<?>, LongAdder> counters) {
+        Map<String, Long> counts = new TreeMap<>();
+        counters.forEach((type, counter) -> counts.put(type.getName(), counter.sum()));
+        return counts;
+    }
+}
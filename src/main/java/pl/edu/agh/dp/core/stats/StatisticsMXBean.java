@@ -0,0 +1,68 @@
+package pl.edu.agh.dp.core.stats;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link Statistics}. Registered as {@code pl.edu.agh.dp:type=Statistics,name=<orm.statistics.name>}.
+ * Per class maps are keyed by the entity class name, times are in microseconds.
+ */
+public interface StatisticsMXBean {
+
+    boolean isEnabled();
+
+    long getSessionsOpened();
+
+    long getSessionsClosed();
+
+    long getStatementCount();
+
+    long getFailedStatementCount();
+
+    Map<String, Long> getStatementCountsByKind();
+
+    long getEntityLoadCount();
+
+    long getEntityInsertCount();
+
+    long getEntityUpdateCount();
+
+    long getEntityDeleteCount();
+
+    Map<String, Long> getEntityLoadCounts();
+
+    Map<String, Long> getEntityInsertCounts();
+
+    Map<String, Long> getEntityUpdateCounts();
+
+    Map<String, Long> getEntityDeleteCounts();
+
+    long getCollectionInitializationCount();
+
+    long getIdentityMapHitCount();
+
+    long getIdentityMapMissCount();
+
+    long getFlushCount();
+
+    double getFlushMeanMicros();
+
+    long getFlushMaxMicros();
+
+    long getCommitCount();
+
+    double getCommitMeanMicros();
+
+    long getCommitP99Micros();
+
+    long getCommitMaxMicros();
+
+    long getRollbackCount();
+
+    double getRollbackMeanMicros();
+
+    long getRollbackP99Micros();
+
+    long getRollbackMaxMicros();
+
+    void clear();
+}
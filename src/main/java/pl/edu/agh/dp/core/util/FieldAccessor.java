@@ -0,0 +1,67 @@
+package pl.edu.agh.dp.core.util;
+
+import lombok.Getter;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * Reads and writes one instance field through a {@link VarHandle} created once.
+ * Final fields cannot be written through a VarHandle, those keep using the accessible {@link Field}.
+ */
+public final class FieldAccessor {
+
+    @Getter
+    private final Field field;
+    @Getter
+    private final Class<?> declaringClass;
+    private final VarHandle handle;
+
+    FieldAccessor(Field field) {
+        this.field = field;
+        this.declaringClass = field.getDeclaringClass();
+        try {
+            field.setAccessible(true);
+            this.handle = Modifier.isFinal(field.getModifiers())
+                    ? null
+                    : MethodHandles.privateLookupIn(declaringClass, MethodHandles.lookup()).unreflectVarHandle(field);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Cannot access field " + field.getName() + " of " + declaringClass, e);
+        }
+    }
+
+    public String getName() {
+        return field.getName();
+    }
+
+    /**
+     * True when the field exists on the target, i.e. the target is an instance of the declaring class.
+     */
+    public boolean appliesTo(Object target) {
+        return declaringClass.isInstance(target);
+    }
+
+    public Object get(Object target) {
+        try {
+            return handle != null ? handle.get(target) : field.get(target);
+        } catch (RuntimeException | IllegalAccessException e) {
+            throw new RuntimeException("Cannot read field " + field.getName() +
+                    " from " + target.getClass(), e);
+        }
+    }
+
+    public void set(Object target, Object value) {
+        try {
+            if (handle != null) {
+                handle.set(target, value);
+            } else {
+                field.set(target, value);
+            }
+        } catch (RuntimeException | IllegalAccessException e) {
+            throw new RuntimeException("Cannot write field " + field.getName() +
+                    " in " + target.getClass(), e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package pl.edu.agh.dp.core.util;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per class table of {@link FieldAccessor}s, built on first use and kept in a {@link ClassValue}
+ * so it goes away together with the class. Covers the whole hierarchy up to Object; a field
+ * redeclared in a subclass hides the one of the superclass, like {@code getDeclaredField} lookups did.
+ */
+public final class FieldAccessors {
+
+    private static final ClassValue<Map<String, FieldAccessor>> ACCESSORS = new ClassValue<>() {
+        @Override
+        protected Map<String, FieldAccessor> computeValue(Class<?> type) {
+            Map<String, FieldAccessor> accessors = new HashMap<>();
+            for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                        continue;
+                    }
+                    if (!accessors.containsKey(field.getName())) {
+                        accessors.put(field.getName(), new FieldAccessor(field));
+                    }
+                }
+            }
+            return Collections.unmodifiableMap(accessors);
+        }
+    };
+
+    private FieldAccessors() {
+    }
+
+    /**
+     * Accessor for the field, or null when neither the class nor its superclasses declare it.
+     */
+    public static FieldAccessor find(Class<?> type, String fieldName) {
+        return ACCESSORS.get(type).get(fieldName);
+    }
+
+    public static FieldAccessor get(Class<?> type, String fieldName) {
+        FieldAccessor accessor = find(type, fieldName);
+        if (accessor == null) {
+            throw new RuntimeException("Field " + fieldName + " not found in " + type);
+        }
+        return accessor;
+    }
+}
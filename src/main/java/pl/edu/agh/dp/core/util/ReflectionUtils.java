@@ -20,41 +20,29 @@ public final class ReflectionUtils {
     }
 
     public static boolean doesClassContainField(Class<?> clazz, String fieldName) {
-        Class<?> current = clazz;
-
-        while (current != null && current != Object.class) {
-            if (Arrays.stream(current.getDeclaredFields())
-                    .anyMatch(f -> f.getName().equals(fieldName))) {
-                return true;
-            }
-            current = current.getSuperclass();
-        }
-
-        return false;
+        return FieldAccessors.find(clazz, fieldName) != null;
     }
 
-
-
+    /**
+     * Reads a field by name. The accessor comes from the per class cache in {@link FieldAccessors};
+     * hot paths should use the accessor kept in the property / association metadata instead.
+     */
     public static Object getFieldValue(Object target, String fieldName) {
-        try {
-            Field f = findField(target.getClass(), fieldName);
-            f.setAccessible(true);
-            return f.get(target);
-        } catch (Exception e) {
-            throw new RuntimeException("Cannot read field " + fieldName +
-                    " from " + target.getClass(), e);
+        FieldAccessor accessor = FieldAccessors.find(target.getClass(), fieldName);
+        if (accessor == null) {
+            throw new RuntimeException("Cannot read field " + fieldName + " from " + target.getClass(),
+                    new NoSuchFieldException("Field " + fieldName + " not found in " + target.getClass()));
         }
+        return accessor.get(target);
     }
 
     public static void setFieldValue(Object target, String fieldName, Object value) {
-        try {
-            Field f = findField(target.getClass(), fieldName);
-            f.setAccessible(true);
-            f.set(target, value);
-        } catch (Exception e) {
-            throw new RuntimeException("Cannot write field " + fieldName +
-                    " in " + target.getClass(), e);
+        FieldAccessor accessor = FieldAccessors.find(target.getClass(), fieldName);
+        if (accessor == null) {
+            throw new RuntimeException("Cannot write field " + fieldName + " in " + target.getClass(),
+                    new NoSuchFieldException("Field " + fieldName + " not found in " + target.getClass()));
         }
+        accessor.set(target, value);
     }
 
     public static Field findField(Class<?> type, String fieldName) throws NoSuchFieldException {
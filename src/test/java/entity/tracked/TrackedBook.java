@@ -0,0 +1,25 @@
+package entity.tracked;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import pl.edu.agh.dp.core.mapping.InheritanceType;
+import pl.edu.agh.dp.core.mapping.annotations.Column;
+import pl.edu.agh.dp.core.mapping.annotations.Id;
+import pl.edu.agh.dp.core.mapping.annotations.Inheritance;
+
+/**
+ * Encja wzbogacana przez EntityEnhancer (EnhancementTest).
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+// wzbogacana przez pakiet (EntityEnhancer), bez @Entity - nie trafia do skanowania classpath
+@Inheritance(strategy = InheritanceType.JOINED)
+public class TrackedBook {
+    @Id(autoIncrement = true)
+    private Long id;
+    private String title;
+    @Column(nullable = true)
+    private Double price;
+}
@@ -0,0 +1,16 @@
+package entity.tracked;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Podklasa TrackedBook (JOINED) - dziedziczy bity pól rodzica.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+// wzbogacana przez pakiet (EntityEnhancer), bez @Entity - nie trafia do skanowania classpath
+public class TrackedEbook extends TrackedBook {
+    private String format;
+}
@@ -0,0 +1,200 @@
+package pl.edu.agh.dp;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.dp.core.api.Orm;
+import pl.edu.agh.dp.core.api.Session;
+import pl.edu.agh.dp.core.api.SessionFactory;
+import pl.edu.agh.dp.core.jdbc.StatementEvent;
+import pl.edu.agh.dp.core.mapping.annotations.Id;
+import pl.edu.agh.dp.core.mapping.annotations.ManyToMany;
+import pl.edu.agh.dp.core.mapping.annotations.ManyToOne;
+import pl.edu.agh.dp.core.mapping.annotations.OneToMany;
+import pl.edu.agh.dp.core.stats.Statistics;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Lazy collections with a batch size are loaded for several owners with one query.
+ */
+public class BatchFetchTest {
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Department {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+        @OneToMany(batchSize = 4)
+        List<Worker> workers = new ArrayList<>();
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Worker {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+        @ManyToOne
+        Department department;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Author {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+        @ManyToMany(batchSize = 8)
+        Set<Paper> papers;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Paper {
+        @Id(autoIncrement = true)
+        Long id;
+        String title;
+        @ManyToMany
+        List<Author> authors = new ArrayList<>();
+    }
+
+    String url = System.getenv("DB_URL") != null
+            ? System.getenv("DB_URL")
+            : "jdbc:h2:./testdb_batchfetch;AUTO_SERVER=TRUE;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH";
+
+    String user = System.getenv("DB_USER") != null ? System.getenv("DB_USER") : "sa";
+    String password = System.getenv("DB_PASSWORD") != null ? System.getenv("DB_PASSWORD") : "";
+
+    List<StatementEvent> events = new CopyOnWriteArrayList<>();
+    SessionFactory sessionFactory;
+    Session session;
+
+    @BeforeEach
+    public void setUp() {
+        try (Connection conn = DriverManager.getConnection(url, user, password);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        sessionFactory = Orm.configure()
+                .setProperty("db.url", url)
+                .setProperty("db.user", user)
+                .setProperty("db.password", password)
+                .setProperty("orm.schema.auto", "create")
+                .setProperty("orm.statistics.enabled", "true")
+                .addStatementListener(events::add)
+                .register(Department.class, Worker.class, Author.class, Paper.class)
+                .buildSessionFactory();
+        session = sessionFactory.openSession();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (session != null && session.isOpen()) {
+            session.close();
+        }
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    private List<String> selects(String table) {
+        return events.stream().map(StatementEvent::getSql)
+                .filter(sql -> sql.startsWith("SELECT") && sql.contains(" FROM " + table)).toList();
+    }
+
+    @Test
+    void testCollectionsAreLoadedInBatches() {
+        for (int d = 0; d < 10; d++) {
+            Department department = new Department();
+            department.setName("d" + d);
+            for (int w = 0; w < d % 3; w++) {
+                Worker worker = new Worker();
+                worker.setName("d" + d + "w" + w);
+                worker.setDepartment(department);
+                department.getWorkers().add(worker);
+            }
+            session.save(department);
+        }
+        session.commit();
+        session.close();
+
+        session = sessionFactory.openSession();
+        Statistics statistics = sessionFactory.getStatistics();
+        long initialized = statistics.getCollectionInitializationCount();
+        List<Department> departments = session.findAll(Department.class);
+        departments.sort(Comparator.comparing(Department::getId));
+        events.clear();
+
+        for (Department department : departments) {
+            int index = Integer.parseInt(department.getName().substring(1));
+            assertEquals(index % 3, department.getWorkers().size(), department.getName());
+            for (Worker worker : department.getWorkers()) {
+                assertTrue(worker.getName().startsWith(department.getName() + "w"), worker.getName());
+                assertSame(department, worker.getDepartment());
+            }
+        }
+
+        // 10 departments, 4 at a time; the owner ids are bound, so every batch has the same SQL
+        List<String> selects = selects("workers");
+        assertEquals(3, selects.size(), selects.toString());
+        assertEquals(1, selects.stream().distinct().count());
+        assertEquals(10, statistics.getCollectionInitializationCount() - initialized);
+    }
+
+    @Test
+    void testManyToManyRowsGoToEveryOwner() {
+        Paper shared = new Paper();
+        shared.setTitle("shared");
+        List<Author> authors = new ArrayList<>();
+        for (int a = 0; a < 3; a++) {
+            Author author = new Author();
+            author.setName("a" + a);
+            Paper own = new Paper();
+            own.setTitle("own" + a);
+            author.setPapers(new java.util.HashSet<>(List.of(shared, own)));
+            authors.add(author);
+            session.save(author);
+        }
+        session.commit();
+        session.close();
+
+        session = sessionFactory.openSession();
+        List<Author> loaded = session.findAll(Author.class);
+        events.clear();
+
+        for (Author author : loaded) {
+            Set<String> titles = author.getPapers().stream().map(Paper::getTitle).collect(Collectors.toSet());
+            assertEquals(Set.of("shared", "own" + author.getName().substring(1)), titles);
+        }
+        assertEquals(1, selects("papers").size(), events.toString());
+        // the shared paper is one instance in the session
+        Set<Paper> shareds = loaded.stream()
+                .flatMap(author -> author.getPapers().stream())
+                .filter(paper -> paper.getTitle().equals("shared"))
+                .collect(Collectors.toSet());
+        assertEquals(1, shareds.size());
+    }
+}
@@ -0,0 +1,296 @@
+package pl.edu.agh.dp;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.dp.core.api.Configuration;
+import pl.edu.agh.dp.core.api.Orm;
+import pl.edu.agh.dp.core.api.Session;
+import pl.edu.agh.dp.core.api.SessionFactory;
+import pl.edu.agh.dp.core.jdbc.StatementEvent;
+import pl.edu.agh.dp.core.mapping.InheritanceType;
+import pl.edu.agh.dp.core.mapping.annotations.*;
+
+import java.sql.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchFlushTest {
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Warehouse {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+
+        @OneToMany
+        List<Parcel> parcels;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Parcel {
+        @Id(autoIncrement = true)
+        Long id;
+        String label;
+        Integer weight;
+
+        @ManyToOne
+        Warehouse warehouse;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @Inheritance(strategy = InheritanceType.JOINED)
+    public static class Vehicle {
+        @Id(autoIncrement = true)
+        Long id;
+        String brand;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Truck extends Vehicle {
+        Integer capacity;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Manager {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+
+        @OneToMany(mappedBy = "boss")
+        @JoinColumn(joinColumns = { "reports" })
+        List<Manager> reports;
+
+        @ManyToOne(mappedBy = "reports")
+        @JoinColumn(joinColumns = { "boss" }, nullable = true)
+        Manager boss;
+    }
+
+    String url = System.getenv("DB_URL") != null
+            ? System.getenv("DB_URL")
+            : "jdbc:h2:./testdb_batch;AUTO_SERVER=TRUE;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH";
+
+    String user = System.getenv("DB_USER") != null ? System.getenv("DB_USER") : "sa";
+    String password = System.getenv("DB_PASSWORD") != null ? System.getenv("DB_PASSWORD") : "";
+
+    Configuration config;
+    SessionFactory sessionFactory;
+    Session session;
+
+    Connection conn;
+    Statement stmt;
+
+    @BeforeEach
+    public void setUp() {
+        // Reset database
+        try {
+            conn = DriverManager.getConnection(url, user, password);
+            stmt = conn.createStatement();
+            stmt.execute("DROP ALL OBJECTS");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        config = Orm.configure()
+                .setProperty("db.url", url)
+                .setProperty("db.user", user)
+                .setProperty("db.password", password)
+                .setProperty("orm.schema.auto", "create")
+                .setProperty("orm.jdbc.batchSize", "16");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (session != null) {
+            session.close();
+        }
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    private long count(String table) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    @Test
+    void testBatchedInsertAssignsIdsInOrder() throws SQLException {
+        config.register(Warehouse.class, Parcel.class);
+        sessionFactory = config.buildSessionFactory();
+        session = sessionFactory.openSession();
+
+        Warehouse warehouse = new Warehouse();
+        warehouse.setName("main");
+        List<Parcel> parcels = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Parcel parcel = new Parcel();
+            parcel.setLabel("parcel" + i);
+            parcel.setWeight(i);
+            parcels.add(parcel);
+        }
+        warehouse.setParcels(parcels);
+        session.save(warehouse);
+        session.commit();
+
+        assertEquals(100, count("parcels"));
+        Set<Long> ids = new HashSet<>();
+        for (Parcel parcel : parcels) {
+            assertNotNull(parcel.getId());
+            ids.add(parcel.getId());
+        }
+        assertEquals(100, ids.size());
+
+        // every generated id belongs to the entity it was assigned to
+        session.close();
+        session = sessionFactory.openSession();
+        for (Parcel parcel : parcels) {
+            Parcel found = session.find(Parcel.class, parcel.getId());
+            assertEquals(parcel.getLabel(), found.getLabel());
+            assertEquals(parcel.getWeight(), found.getWeight());
+        }
+    }
+
+    @Test
+    void testBatchedUpdateAndDelete() throws SQLException {
+        config.register(Warehouse.class, Parcel.class);
+        sessionFactory = config.buildSessionFactory();
+        session = sessionFactory.openSession();
+
+        Warehouse warehouse = new Warehouse();
+        warehouse.setName("main");
+        List<Parcel> parcels = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Parcel parcel = new Parcel();
+            parcel.setLabel("parcel" + i);
+            parcel.setWeight(i);
+            parcels.add(parcel);
+        }
+        warehouse.setParcels(parcels);
+        session.save(warehouse);
+        session.commit();
+
+        for (int i = 0; i < 40; i += 2) {
+            Parcel parcel = parcels.get(i);
+            parcel.setWeight(parcel.getWeight() + 1000);
+            session.update(parcel);
+        }
+        session.commit();
+
+        for (int i = 1; i < 40; i += 2) {
+            session.delete(parcels.get(i));
+        }
+        session.commit();
+
+        assertEquals(20, count("parcels"));
+        try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM parcels WHERE weight >= 1000")) {
+            rs.next();
+            assertEquals(20, rs.getLong(1));
+        }
+    }
+
+    @Test
+    void testBatchedJoinedInsert() throws SQLException {
+        config.register(Vehicle.class, Truck.class);
+        sessionFactory = config.buildSessionFactory();
+        session = sessionFactory.openSession();
+
+        List<Truck> trucks = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Truck truck = new Truck();
+            truck.setBrand("brand" + i);
+            truck.setCapacity(i);
+            trucks.add(truck);
+            session.save(truck);
+        }
+        session.commit();
+
+        assertEquals(50, count("vehicles"));
+        assertEquals(50, count("trucks"));
+
+        session.close();
+        session = sessionFactory.openSession();
+        for (Truck truck : trucks) {
+            Truck found = session.find(Truck.class, truck.getId());
+            assertEquals(truck.getBrand(), found.getBrand());
+            assertEquals(truck.getCapacity(), found.getCapacity());
+        }
+
+        for (Truck truck : trucks) {
+            session.delete(truck);
+        }
+        session.commit();
+        assertEquals(0, count("trucks"));
+        assertEquals(0, count("vehicles"));
+    }
+
+    @Test
+    void testJoinedChildRowsUseMultiRowInsertWithTheRootIds() throws SQLException {
+        List<StatementEvent> events = new ArrayList<>();
+        config.addStatementListener(events::add).register(Vehicle.class, Truck.class);
+        sessionFactory = config.buildSessionFactory();
+        session = sessionFactory.openSession();
+
+        for (int i = 0; i < 20; i++) {
+            Truck truck = new Truck();
+            truck.setBrand("brand" + i);
+            truck.setCapacity(i);
+            session.save(truck);
+        }
+        session.commit();
+
+        // batch size 16: a full chunk and a tail of 4 rows, each row carrying the id of its root row
+        List<String> inserts = events.stream().map(StatementEvent::getSql)
+                .filter(sql -> sql.startsWith("INSERT INTO trucks")).toList();
+        assertEquals(2, inserts.size(), inserts.toString());
+        List<String> values = inserts.stream().map(sql -> sql.substring(sql.indexOf(" VALUES ") + " VALUES ".length())).toList();
+        String tuple = values.get(0).substring(0, values.get(0).indexOf(')') + 1);
+        assertEquals(String.join(", ", Collections.nCopies(16, tuple)), values.get(0));
+        assertEquals(String.join(", ", Collections.nCopies(4, tuple)), values.get(1));
+
+        assertEquals(20, count("trucks"));
+        try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM vehicles v JOIN trucks t ON v.id = t.id "
+                + "WHERE v.brand = CONCAT('brand', t.capacity)")) {
+            rs.next();
+            assertEquals(20, rs.getLong(1));
+        }
+    }
+
+    @Test
+    void testSelfReferenceFallsBackToSingleInserts() throws SQLException {
+        config.register(Manager.class);
+        sessionFactory = config.buildSessionFactory();
+        session = sessionFactory.openSession();
+
+        Manager ceo = new Manager();
+        ceo.setName("ceo");
+        Manager cto = new Manager();
+        cto.setName("cto");
+        cto.setBoss(ceo);
+        Manager dev = new Manager();
+        dev.setName("dev");
+        dev.setBoss(cto);
+
+        session.save(dev);
+        session.commit();
+
+        assertEquals(3, count("managers"));
+        assertEquals(3, Set.of(ceo.getId(), cto.getId(), dev.getId()).size());
+    }
+}
@@ -0,0 +1,315 @@
+package pl.edu.agh.dp;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.dp.core.api.Orm;
+import pl.edu.agh.dp.core.api.Session;
+import pl.edu.agh.dp.core.api.SessionFactory;
+import pl.edu.agh.dp.core.exceptions.IntegrityException;
+import pl.edu.agh.dp.core.finder.Eq;
+import pl.edu.agh.dp.core.finder.Gt;
+import pl.edu.agh.dp.core.finder.QuerySpec;
+import pl.edu.agh.dp.core.jdbc.StatementEvent;
+import pl.edu.agh.dp.core.mapping.annotations.Column;
+import pl.edu.agh.dp.core.mapping.annotations.Id;
+import pl.edu.agh.dp.core.mapping.annotations.Inheritance;
+import pl.edu.agh.dp.core.mapping.annotations.ManyToMany;
+import pl.edu.agh.dp.core.mapping.InheritanceType;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Session.updateWhere / deleteWhere: one statement per table, no entities loaded.
+ */
+public class BulkOperationsTest {
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
+    public static class Vehicle {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+        Integer price;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Car extends Vehicle {
+        @Column(nullable = true)
+        Integer doors;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Truck extends Vehicle {
+        @Column(nullable = true)
+        Integer capacity;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @Inheritance(strategy = InheritanceType.JOINED)
+    public static class Employee {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+        Integer salary;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Manager extends Employee {
+        @Column(nullable = true)
+        Integer bonus;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Member {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+        @ManyToMany
+        List<Club> clubs = new ArrayList<>();
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Club {
+        @Id(autoIncrement = true)
+        Long id;
+        String title;
+        @ManyToMany
+        List<Member> members = new ArrayList<>();
+    }
+
+    String url = System.getenv("DB_URL") != null
+            ? System.getenv("DB_URL")
+            : "jdbc:h2:./testdb_bulk;AUTO_SERVER=TRUE;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH";
+
+    String user = System.getenv("DB_USER") != null ? System.getenv("DB_USER") : "sa";
+    String password = System.getenv("DB_PASSWORD") != null ? System.getenv("DB_PASSWORD") : "";
+
+    List<StatementEvent> events = new CopyOnWriteArrayList<>();
+    SessionFactory sessionFactory;
+    Session session;
+
+    Connection conn;
+    Statement stmt;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection(url, user, password);
+        stmt = conn.createStatement();
+        stmt.execute("DROP ALL OBJECTS");
+
+        sessionFactory = Orm.configure()
+                .setProperty("db.url", url)
+                .setProperty("db.user", user)
+                .setProperty("db.password", password)
+                .setProperty("orm.schema.auto", "create")
+                .addStatementListener(events::add)
+                .register(Vehicle.class, Car.class, Truck.class, Employee.class, Manager.class, Member.class, Club.class)
+                .buildSessionFactory();
+        session = sessionFactory.openSession();
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        if (session != null) {
+            session.close();
+        }
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+        conn.close();
+    }
+
+    private long count(String sql) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private List<String> statements(String prefix) {
+        return events.stream().map(StatementEvent::getSql).filter(sql -> sql.startsWith(prefix)).toList();
+    }
+
+    private <T extends Vehicle> T vehicle(T vehicle, String name, int price) {
+        vehicle.setName(name);
+        vehicle.setPrice(price);
+        session.save(vehicle);
+        return vehicle;
+    }
+
+    private <T extends Employee> T employee(T employee, String name, int salary) {
+        employee.setName(name);
+        employee.setSalary(salary);
+        session.save(employee);
+        return employee;
+    }
+
+    @Test
+    void testSingleTableUpdateIsRestrictedToTheSubclass() throws SQLException {
+        vehicle(new Car(), "a", 100);
+        vehicle(new Car(), "b", 300);
+        vehicle(new Truck(), "c", 300);
+        session.commit();
+
+        events.clear();
+        int updated = session.updateWhere(QuerySpec.of(Car.class).where(new Gt("price", 200)), Map.of("doors", 5));
+        session.commit();
+
+        assertEquals(1, updated);
+        List<String> updates = statements("UPDATE ");
+        assertEquals(1, updates.size(), updates.toString());
+        assertTrue(updates.get(0).contains(" IN ("), updates.get(0));
+        assertEquals(1, count("SELECT COUNT(*) FROM vehicles WHERE doors = 5"));
+        // the truck priced the same stays as it was
+        assertEquals(1, count("SELECT COUNT(*) FROM vehicles WHERE price = 300 AND doors IS NULL"));
+
+        assertEquals(1, session.finder(Vehicle.class).eq("name", "a").delete());
+        session.commit();
+        assertEquals(2, count("SELECT COUNT(*) FROM vehicles"));
+        assertEquals(1, session.deleteWhere(QuerySpec.of(Truck.class)));
+        session.commit();
+        assertEquals(1, count("SELECT COUNT(*) FROM vehicles"));
+    }
+
+    @Test
+    void testJoinedUpdateAndDeleteCoverEveryTable() throws SQLException {
+        Employee e1 = employee(new Employee(), "e1", 1000);
+        employee(new Manager(), "m1", 2000);
+        employee(new Manager(), "m2", 5000);
+        session.commit();
+
+        events.clear();
+        // columns of both tables: the ids are selected once, then each table is updated
+        int updated = session.updateWhere(QuerySpec.of(Manager.class).where(new Gt("salary", 3000)),
+                Map.of("salary", 6000, "bonus", 700));
+        session.commit();
+        assertEquals(1, updated);
+        assertEquals(1, count("SELECT COUNT(*) FROM employees WHERE salary = 6000"));
+        assertEquals(1, count("SELECT COUNT(*) FROM managers WHERE bonus = 700"));
+
+        // one table: a single statement with the condition as a subquery
+        events.clear();
+        assertEquals(2, session.updateWhere(QuerySpec.of(Manager.class).where(new Gt("salary", 1500)),
+                Map.of("name", "boss")));
+        session.commit();
+        assertEquals(1, statements("UPDATE ").size());
+        assertEquals(2, count("SELECT COUNT(*) FROM employees WHERE name = 'boss'"));
+        assertEquals("e1", session.find(Employee.class, e1.getId()).getName());
+
+        // rows of the subclass table go first
+        events.clear();
+        assertEquals(2, session.deleteWhere(QuerySpec.of(Employee.class).where(new Gt("salary", 1500))));
+        session.commit();
+        List<String> deletes = statements("DELETE ");
+        assertTrue(deletes.get(0).startsWith("DELETE FROM managers"), deletes.toString());
+        assertEquals(0, count("SELECT COUNT(*) FROM managers"));
+        assertEquals(1, count("SELECT COUNT(*) FROM employees"));
+    }
+
+    @Test
+    void testDeleteRemovesManyToManyRows() throws SQLException {
+        Club chess = new Club();
+        chess.setTitle("chess");
+        Member first = new Member();
+        first.setName("first");
+        Member second = new Member();
+        second.setName("second");
+        chess.getMembers().add(first);
+        chess.getMembers().add(second);
+        session.save(chess);
+        session.commit();
+
+        String joinTable;
+        try (ResultSet rs = stmt.executeQuery("SELECT table_name FROM information_schema.tables "
+                + "WHERE table_name IN ('members_clubs', 'clubs_members')")) {
+            assertTrue(rs.next());
+            joinTable = rs.getString(1);
+        }
+        assertEquals(2, count("SELECT COUNT(*) FROM " + joinTable));
+
+        assertEquals(1, session.deleteWhere(QuerySpec.of(Member.class).where(new Eq("name", "first"))));
+        session.commit();
+        assertEquals(1, count("SELECT COUNT(*) FROM " + joinTable));
+        assertEquals(1, count("SELECT COUNT(*) FROM members"));
+        assertEquals(1, count("SELECT COUNT(*) FROM clubs"));
+    }
+
+    @Test
+    void testCachedEntitiesAreEvictedAndPendingChangesFlushed() throws SQLException {
+        Car car = vehicle(new Car(), "a", 100);
+        session.commit();
+        assertSame(car, session.find(Car.class, car.getId()));
+
+        // not committed yet, written before the bulk statement
+        Truck truck = vehicle(new Truck(), "t", 100);
+        assertEquals(2, session.updateWhere(QuerySpec.of(Vehicle.class), Map.of("price", 150)));
+        session.commit();
+        assertEquals(2, count("SELECT COUNT(*) FROM vehicles"));
+        assertNotNull(truck.getId());
+
+        Car reloaded = session.find(Car.class, car.getId());
+        assertNotSame(car, reloaded);
+        assertEquals(150, reloaded.getPrice());
+        // the stale instance is no longer managed, its changes are not flushed
+        car.setPrice(1);
+        session.commit();
+        assertEquals(0, count("SELECT COUNT(*) FROM vehicles WHERE price = 1"));
+
+        assertThrows(IntegrityException.class, () -> session.updateWhere(QuerySpec.of(Car.class), Map.of("id", 5L)));
+        assertThrows(IntegrityException.class, () -> session.updateWhere(QuerySpec.of(Car.class), Map.of("capacity", 5)));
+    }
+
+    @Test
+    void testEntitiesNotMatchedStayManaged() throws SQLException {
+        Car cheap = vehicle(new Car(), "cheap", 100);
+        Car expensive = vehicle(new Car(), "expensive", 300);
+        Employee junior = employee(new Employee(), "junior", 1000);
+        Manager senior = employee(new Manager(), "senior", 5000);
+        session.commit();
+
+        assertEquals(1, session.updateWhere(QuerySpec.of(Car.class).where(new Gt("price", 200)), Map.of("doors", 5)));
+        assertEquals(1, session.updateWhere(QuerySpec.of(Employee.class).where(new Gt("salary", 3000)),
+                Map.of("salary", 6000)));
+        // the instances of the other rows are still managed and flushed on commit
+        assertSame(cheap, session.find(Car.class, cheap.getId()));
+        assertSame(junior, session.find(Employee.class, junior.getId()));
+        assertNotSame(expensive, session.find(Car.class, expensive.getId()));
+        assertNotSame(senior, session.find(Manager.class, senior.getId()));
+        cheap.setPrice(120);
+        junior.setName("promoted");
+        session.commit();
+
+        assertEquals(1, count("SELECT COUNT(*) FROM vehicles WHERE name = 'cheap' AND price = 120"));
+        assertEquals(1, count("SELECT COUNT(*) FROM vehicles WHERE name = 'expensive' AND doors = 5"));
+        assertEquals(1, count("SELECT COUNT(*) FROM employees WHERE name = 'promoted'"));
+
+        assertEquals(1, session.deleteWhere(QuerySpec.of(Car.class).where(new Eq("name", "expensive"))));
+        cheap.setName("kept");
+        session.commit();
+        assertEquals(1, count("SELECT COUNT(*) FROM vehicles WHERE name = 'kept'"));
+    }
+}
@@ -0,0 +1,159 @@
+package pl.edu.agh.dp;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.dp.core.api.Configuration;
+import pl.edu.agh.dp.core.api.Orm;
+import pl.edu.agh.dp.core.api.Session;
+import pl.edu.agh.dp.core.api.SessionFactory;
+import pl.edu.agh.dp.core.jdbc.JdbcConnectionProvider;
+import pl.edu.agh.dp.core.jdbc.PooledConnectionProvider;
+import pl.edu.agh.dp.core.mapping.annotations.Id;
+
+import java.sql.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionPoolTest {
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class PooledItem {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+    }
+
+    String url = System.getenv("DB_URL") != null
+            ? System.getenv("DB_URL")
+            : "jdbc:h2:./testdb_pool;AUTO_SERVER=TRUE;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH";
+
+    String user = System.getenv("DB_USER") != null ? System.getenv("DB_USER") : "sa";
+    String password = System.getenv("DB_PASSWORD") != null ? System.getenv("DB_PASSWORD") : "";
+
+    Configuration config;
+    SessionFactory sessionFactory;
+    PooledConnectionProvider pool;
+
+    @BeforeEach
+    public void setUp() {
+        // Reset database
+        try (Connection conn = DriverManager.getConnection(url, user, password);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        config = Orm.configure()
+                .setProperty("db.url", url)
+                .setProperty("db.user", user)
+                .setProperty("db.password", password)
+                .setProperty("orm.schema.auto", "create");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    private PooledConnectionProvider createPool(int maxSize, long acquireTimeoutMs) {
+        return new PooledConnectionProvider(
+                new JdbcConnectionProvider(url, user, password),
+                0, maxSize, acquireTimeoutMs, 600_000, true, 2, 0, 30_000);
+    }
+
+    @Test
+    void testPhysicalConnectionIsReused() throws SQLException {
+        pool = createPool(2, 1000);
+
+        Connection first = pool.getConnection();
+        Connection physical = first.unwrap(Connection.class);
+        first.close();
+        assertTrue(first.isClosed());
+
+        Connection second = pool.getConnection();
+        assertSame(physical, second.unwrap(Connection.class));
+        assertEquals(1, pool.getTotalCount());
+        assertEquals(1, pool.getActiveCount());
+        second.close();
+
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    void testAcquireTimesOutWhenExhausted() throws SQLException {
+        pool = createPool(1, 100);
+
+        Connection held = pool.getConnection();
+        assertThrows(RuntimeException.class, () -> pool.getConnection());
+
+        held.close();
+        Connection next = pool.getConnection();
+        assertNotNull(next);
+        next.close();
+    }
+
+    @Test
+    void testStateIsResetOnReturn() throws SQLException {
+        pool = createPool(1, 1000);
+
+        Connection first = pool.getConnection();
+        first.setAutoCommit(false);
+        first.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        first.close();
+
+        Connection second = pool.getConnection();
+        assertTrue(second.getAutoCommit());
+        assertEquals(Connection.TRANSACTION_READ_COMMITTED, second.getTransactionIsolation());
+        second.close();
+    }
+
+    @Test
+    void testReturnedHandleCannotBeUsed() throws SQLException {
+        pool = createPool(1, 1000);
+
+        Connection first = pool.getConnection();
+        first.close();
+        // closing twice must not return the connection twice
+        first.close();
+        assertThrows(SQLException.class, first::createStatement);
+
+        Connection second = pool.getConnection();
+        assertEquals(1, pool.getActiveCount());
+        second.close();
+    }
+
+    @Test
+    void testSessionsShareConnectionsThroughPool() {
+        config.setProperty("orm.pool.maxSize", "1")
+                .setProperty("orm.pool.acquireTimeoutMs", "1000");
+        config.register(PooledItem.class);
+        sessionFactory = config.buildSessionFactory();
+
+        for (int i = 0; i < 5; i++) {
+            // with a single connection every session must hand it back on close
+            Session session = sessionFactory.openSession();
+            PooledItem item = new PooledItem();
+            item.setName("item" + i);
+            session.save(item);
+            session.commit();
+            session.close();
+        }
+
+        Session session = sessionFactory.openSession();
+        assertEquals(5, session.findAll(PooledItem.class).size());
+        session.close();
+    }
+}
@@ -0,0 +1,178 @@
+package pl.edu.agh.dp;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.dp.core.jdbc.*;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DialectTest {
+
+    String url = "jdbc:h2:mem:dialect;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    Connection conn;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection(url, "sa", "");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+            stmt.execute("CREATE TABLE item (id SERIAL PRIMARY KEY, code TEXT UNIQUE, qty INTEGER)");
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        if (!conn.isClosed()) {
+            conn.close();
+        }
+    }
+
+    @Test
+    void testDialectIsResolvedFromConnectionOrProperty() {
+        assertInstanceOf(H2Dialect.class, DialectResolver.resolve(conn));
+        assertInstanceOf(PostgresDialect.class, DialectResolver.fromName("PostgreSQL"));
+        assertInstanceOf(SQLiteDialect.class, DialectResolver.fromName("sqlite"));
+        assertInstanceOf(H2Dialect.class, DialectResolver.fromName(H2Dialect.class.getName()));
+        // other databases fall back to standard SQL, only a configured class must exist
+        assertInstanceOf(GenericDialect.class, DialectResolver.fromName("Oracle"));
+        assertInstanceOf(GenericDialect.class, DialectResolver.fromName("MySQL"));
+        assertThrows(RuntimeException.class, () -> DialectResolver.fromName("com.example.MissingDialect"));
+
+        // configured dialect wins, no connection is opened
+        ConnectionProvider failing = () -> {
+            throw new IllegalStateException("should not connect");
+        };
+        assertInstanceOf(PostgresDialect.class, DialectResolver.resolve("postgresql", failing));
+    }
+
+    @Test
+    void testLimitClauses() {
+        assertEquals(" LIMIT 10 OFFSET 5", new PostgresDialect().getLimitClause(10, 5));
+        assertEquals(" OFFSET 5", new PostgresDialect().getLimitClause(null, 5));
+        assertEquals("", new H2Dialect().getLimitClause(null, null));
+        // SQLite needs LIMIT in front of OFFSET
+        assertEquals(" LIMIT -1 OFFSET 5", new SQLiteDialect().getLimitClause(null, 5));
+    }
+
+    @Test
+    void testH2SqlIsExecutable() throws SQLException {
+        Dialect dialect = new H2Dialect();
+        JdbcExecutorImpl executor = new JdbcExecutorImpl(conn, 8, 16, dialect);
+
+        String upsert = dialect.getUpsertSql("item", List.of("code", "qty"), List.of("code"));
+        executor.update(upsert, "a", 1);
+        executor.update(upsert, "a", 2);
+        assertEquals(List.of(2), executor.query("SELECT qty FROM item WHERE code = ?", rs -> rs.getInt(1), "a"));
+
+        List<Object> padded = executor.query(
+                "SELECT code FROM item UNION ALL SELECT " + dialect.castNull("TEXT") + " AS code",
+                rs -> rs.getObject(1));
+        assertEquals(2, padded.size());
+        executor.close();
+    }
+
+    @Test
+    void testKeylessBatchUsesMultiRowValues() throws SQLException {
+        JdbcExecutorImpl executor = new JdbcExecutorImpl(conn, 8, 16, new H2Dialect());
+
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            rows.add(new Object[]{"code" + i, i});
+        }
+        executor.insertBatch("INSERT INTO item (code, qty) VALUES (?, ?)", "", rows);
+
+        // 40 rows in chunks of 16 -> the 16 row statement is cached, the 8 row tail is not
+        assertEquals(1, executor.getStatementCache().size());
+        assertEquals(List.of(40L), executor.query("SELECT COUNT(*) FROM item", rs -> rs.getLong(1)));
+
+        // keyed inserts stay on JDBC batching, H2 cannot return ids in VALUES order
+        List<Long> ids = executor.insertBatch("INSERT INTO item (code, qty) VALUES (?, ?)", "id",
+                List.of(new Object[]{"x", 1}, new Object[]{"y", 2}));
+        assertEquals(2, ids.size());
+        executor.close();
+    }
+
+    @Test
+    void testGenericDialectUsesGeneratedKeys() throws SQLException {
+        Dialect dialect = new GenericDialect();
+        JdbcExecutorImpl executor = new JdbcExecutorImpl(conn, 8, 16, dialect);
+
+        List<Long> ids = executor.insertBatch("INSERT INTO item (code, qty) VALUES (?, ?)", "id",
+                List.of(new Object[]{"x", 1}, new Object[]{"y", 2}));
+        assertEquals(2, ids.size());
+        assertNotEquals(ids.get(0), ids.get(1));
+
+        String upsert = dialect.getUpsertSql("item", List.of("code", "qty"), List.of("code"));
+        executor.update(upsert, "x", 5);
+        executor.update(upsert, "z", 6);
+        assertEquals(List.of(5, 6), executor.query("SELECT qty FROM item WHERE code IN ('x', 'z') ORDER BY code",
+                rs -> rs.getInt(1)));
+        executor.close();
+    }
+
+    /**
+     * H2 with the PostgreSQL multi-row {@code INSERT ... RETURNING} path switched on.
+     */
+    public static class ReturningDialect extends H2Dialect {
+        @Override
+        public boolean supportsReturning() {
+            return true;
+        }
+    }
+
+    // H2 has no RETURNING: runs INSERT ... RETURNING id as SELECT id FROM FINAL TABLE (INSERT ...)
+    private Connection returningConnection() {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("prepareStatement") && args.length == 1) {
+                        String sql = (String) args[0];
+                        int returning = sql.lastIndexOf(" RETURNING ");
+                        if (returning >= 0) {
+                            args = new Object[]{"SELECT " + sql.substring(returning + " RETURNING ".length())
+                                    + " FROM FINAL TABLE (" + sql.substring(0, returning) + ")"};
+                        }
+                    }
+                    try {
+                        return method.invoke(conn, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    @Test
+    void testMultiRowReturningMapsIdsToRows() throws SQLException {
+        JdbcExecutorImpl executor = new JdbcExecutorImpl(returningConnection(), 8, 16, new ReturningDialect());
+        List<StatementEvent> events = new ArrayList<>();
+        executor.setStatementListener(events::add);
+
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            rows.add(new Object[]{"code" + i, i});
+        }
+        List<Long> ids = executor.insertBatch("INSERT INTO item (code, qty) VALUES (?, ?)", "id", rows);
+
+        assertEquals(2, events.size());
+        assertEquals("INSERT INTO item (code, qty) VALUES "
+                + String.join(", ", Collections.nCopies(16, "(?, ?)")) + " RETURNING id", events.get(0).getSql());
+        assertEquals("INSERT INTO item (code, qty) VALUES "
+                + String.join(", ", Collections.nCopies(4, "(?, ?)")) + " RETURNING id", events.get(1).getSql());
+        assertEquals(1, executor.getStatementCache().size());
+
+        assertEquals(20, ids.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(List.of("code" + i), executor.query("SELECT code FROM item WHERE id = ?",
+                    rs -> rs.getString(1), ids.get(i)));
+        }
+        executor.close();
+    }
+}
@@ -0,0 +1,263 @@
+package pl.edu.agh.dp;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.dp.core.api.Configuration;
+import pl.edu.agh.dp.core.api.Orm;
+import pl.edu.agh.dp.core.api.Session;
+import pl.edu.agh.dp.core.api.SessionFactory;
+import pl.edu.agh.dp.core.jdbc.StatementEvent;
+import pl.edu.agh.dp.core.mapping.InheritanceType;
+import pl.edu.agh.dp.core.mapping.annotations.Column;
+import pl.edu.agh.dp.core.mapping.annotations.Id;
+import pl.edu.agh.dp.core.mapping.annotations.Inheritance;
+import pl.edu.agh.dp.core.mapping.annotations.ManyToOne;
+import pl.edu.agh.dp.core.mapping.annotations.OneToMany;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Changes of managed entities are found by comparing them with the snapshot taken on load,
+ * and only the changed columns are written.
+ */
+public class DirtyCheckingTest {
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @Inheritance(strategy = InheritanceType.JOINED)
+    public static class Account {
+        @Id(autoIncrement = true)
+        Long id;
+        String owner;
+        Double balance;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class SavingsAccount extends Account {
+        Double rate;
+        @Column(nullable = true)
+        String note;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Club {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+
+        @OneToMany
+        List<Member> members;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Member {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+
+        @ManyToOne
+        Club club;
+    }
+
+    String url = System.getenv("DB_URL") != null
+            ? System.getenv("DB_URL")
+            : "jdbc:h2:./testdb_dirty;AUTO_SERVER=TRUE;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH";
+
+    String user = System.getenv("DB_USER") != null ? System.getenv("DB_USER") : "sa";
+    String password = System.getenv("DB_PASSWORD") != null ? System.getenv("DB_PASSWORD") : "";
+
+    List<StatementEvent> events = new CopyOnWriteArrayList<>();
+    SessionFactory sessionFactory;
+    Session session;
+
+    @BeforeEach
+    public void setUp() {
+        try (Connection conn = DriverManager.getConnection(url, user, password);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        Configuration config = Orm.configure()
+                .setProperty("db.url", url)
+                .setProperty("db.user", user)
+                .setProperty("db.password", password)
+                .setProperty("orm.schema.auto", "create")
+                .addStatementListener(events::add)
+                .register(Account.class, SavingsAccount.class, Club.class, Member.class);
+        sessionFactory = config.buildSessionFactory();
+        session = sessionFactory.openSession();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (session != null) {
+            session.close();
+        }
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    private void reopen() {
+        session.close();
+        session = sessionFactory.openSession();
+        events.clear();
+    }
+
+    private List<String> updates() {
+        return events.stream().map(StatementEvent::getSql).filter(sql -> sql.startsWith("UPDATE")).toList();
+    }
+
+    private SavingsAccount savings() {
+        SavingsAccount account = new SavingsAccount();
+        account.setOwner("Ala");
+        account.setBalance(100.0);
+        account.setRate(0.05);
+        session.save(account);
+        session.commit();
+        return account;
+    }
+
+    @Test
+    void testUnchangedEntitiesAreNotUpdated() {
+        SavingsAccount account = savings();
+        reopen();
+
+        session.find(SavingsAccount.class, account.getId());
+        session.findAll(Account.class);
+        session.commit();
+        assertEquals(List.of(), updates());
+    }
+
+    @Test
+    void testChangedColumnIsWrittenWithoutUpdateCall() {
+        SavingsAccount account = savings();
+        reopen();
+
+        SavingsAccount loaded = session.find(SavingsAccount.class, account.getId());
+        loaded.setBalance(250.0);
+        session.commit();
+        // only the root table holds the balance
+        assertEquals(List.of("UPDATE accounts SET balance = ? WHERE id = ?"), updates());
+
+        // the snapshot follows, a second flush has nothing to write
+        events.clear();
+        session.commit();
+        assertEquals(List.of(), updates());
+
+        reopen();
+        SavingsAccount reloaded = session.find(SavingsAccount.class, account.getId());
+        assertEquals(250.0, reloaded.getBalance());
+        assertEquals(0.05, reloaded.getRate());
+        assertEquals("Ala", reloaded.getOwner());
+    }
+
+    @Test
+    void testOnlyChangedTablesOfTheChainAreUpdated() {
+        SavingsAccount account = savings();
+        reopen();
+
+        SavingsAccount loaded = session.find(SavingsAccount.class, account.getId());
+        loaded.setRate(0.07);
+        loaded.setNote("promo");
+        session.update(loaded);
+        session.commit();
+        List<String> updates = updates();
+        assertEquals(1, updates.size(), updates.toString());
+        assertTrue(updates.get(0).startsWith("UPDATE savings_accounts SET "), updates.get(0));
+        assertTrue(updates.get(0).contains("rate = ?") && updates.get(0).contains("note = ?"), updates.get(0));
+        assertFalse(updates.get(0).contains("owner"), updates.get(0));
+
+        reopen();
+        SavingsAccount reloaded = session.find(SavingsAccount.class, account.getId());
+        assertEquals(0.07, reloaded.getRate());
+        assertEquals("promo", reloaded.getNote());
+        assertEquals(100.0, reloaded.getBalance());
+    }
+
+    @Test
+    void testForeignKeyChangeIsDetected() {
+        Club chess = new Club();
+        chess.setName("chess");
+        chess.setMembers(new ArrayList<>());
+        Member member = new Member();
+        member.setName("Ola");
+        chess.getMembers().add(member);
+        session.save(chess);
+        Club go = new Club();
+        go.setName("go");
+        session.save(go);
+        session.commit();
+        reopen();
+
+        Member loaded = session.find(Member.class, member.getId());
+        // loading the association is not a change
+        session.load(loaded, "club");
+        assertEquals("chess", loaded.getClub().getName());
+        session.commit();
+        assertEquals(List.of(), updates());
+
+        loaded.setClub(session.find(Club.class, go.getId()));
+        session.commit();
+        assertEquals(List.of("UPDATE members SET club_fkey = ? WHERE id = ?"), updates());
+
+        reopen();
+        Member reloaded = session.find(Member.class, member.getId());
+        session.load(reloaded, "club");
+        assertEquals("go", reloaded.getClub().getName());
+    }
+
+    @Test
+    void testDetachedEntityIsUpdatedWhole() {
+        SavingsAccount account = savings();
+        reopen();
+
+        SavingsAccount detached = new SavingsAccount();
+        detached.setId(account.getId());
+        detached.setOwner("Ola");
+        detached.setBalance(1.0);
+        detached.setRate(0.01);
+        session.update(detached);
+        session.commit();
+        assertEquals(2, updates().size(), updates().toString());
+
+        reopen();
+        SavingsAccount reloaded = session.find(SavingsAccount.class, account.getId());
+        assertEquals("Ola", reloaded.getOwner());
+        assertEquals(0.01, reloaded.getRate());
+    }
+
+    @Test
+    void testReadOnlySessionTracksNothing() {
+        SavingsAccount account = savings();
+        session.close();
+        session = sessionFactory.openReadOnlySession();
+        events.clear();
+
+        SavingsAccount loaded = session.find(SavingsAccount.class, account.getId());
+        loaded.setBalance(0.0);
+        session.commit();
+        assertEquals(List.of(), updates());
+    }
+}
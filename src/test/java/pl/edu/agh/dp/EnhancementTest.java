@@ -0,0 +1,259 @@
+package pl.edu.agh.dp;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.dp.core.api.Configuration;
+import pl.edu.agh.dp.core.api.Orm;
+import pl.edu.agh.dp.core.api.Session;
+import pl.edu.agh.dp.core.api.SessionFactory;
+import pl.edu.agh.dp.core.enhance.DirtyTrackable;
+import pl.edu.agh.dp.core.enhance.DirtyTracking;
+import pl.edu.agh.dp.core.enhance.EntityEnhancer;
+import pl.edu.agh.dp.core.jdbc.StatementEvent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Entities enhanced by {@link EntityEnhancer} report their written fields, flush only looks at those.
+ */
+public class EnhancementTest {
+
+    private static final Set<String> ENHANCED = Set.of("entity.tracked.TrackedBook", "entity.tracked.TrackedEbook");
+
+    /**
+     * Loads the tracked entities child first, through the enhancer - what the agent does at class load.
+     */
+    static class EnhancingClassLoader extends ClassLoader {
+        final EntityEnhancer enhancer = new EntityEnhancer(List.of("entity.tracked"));
+
+        EnhancingClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!ENHANCED.contains(name)) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loaded = findLoadedClass(name);
+                if (loaded == null) {
+                    byte[] bytes = read(name);
+                    byte[] enhanced = enhancer.enhance(bytes, this);
+                    bytes = enhanced != null ? enhanced : bytes;
+                    loaded = defineClass(name, bytes, 0, bytes.length);
+                }
+                return loaded;
+            }
+        }
+
+        byte[] read(String name) throws ClassNotFoundException {
+            try (InputStream in = getResourceAsStream(name.replace('.', '/') + ".class")) {
+                if (in == null) {
+                    throw new ClassNotFoundException(name);
+                }
+                return in.readAllBytes();
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+    }
+
+    String url = System.getenv("DB_URL") != null
+            ? System.getenv("DB_URL")
+            : "jdbc:h2:./testdb_enhance;AUTO_SERVER=TRUE;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH";
+
+    String user = System.getenv("DB_USER") != null ? System.getenv("DB_USER") : "sa";
+    String password = System.getenv("DB_PASSWORD") != null ? System.getenv("DB_PASSWORD") : "";
+
+    List<StatementEvent> events = new CopyOnWriteArrayList<>();
+    EnhancingClassLoader loader;
+    Class<?> bookClass;
+    Class<?> ebookClass;
+    SessionFactory sessionFactory;
+    Session session;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        try (Connection conn = DriverManager.getConnection(url, user, password);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        loader = new EnhancingClassLoader(getClass().getClassLoader());
+        bookClass = loader.loadClass("entity.tracked.TrackedBook");
+        ebookClass = loader.loadClass("entity.tracked.TrackedEbook");
+
+        Configuration config = Orm.configure()
+                .setProperty("db.url", url)
+                .setProperty("db.user", user)
+                .setProperty("db.password", password)
+                .setProperty("orm.schema.auto", "create")
+                .addStatementListener(events::add)
+                .register(bookClass, ebookClass);
+        sessionFactory = config.buildSessionFactory();
+        session = sessionFactory.openSession();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (session != null) {
+            session.close();
+        }
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    private List<String> statements(String prefix) {
+        return events.stream().map(StatementEvent::getSql).filter(sql -> sql.startsWith(prefix)).toList();
+    }
+
+    private static Object call(Object target, String method, Object... args) throws Exception {
+        for (var m : target.getClass().getMethods()) {
+            if (m.getName().equals(method) && m.getParameterCount() == args.length) {
+                return m.invoke(target, args);
+            }
+        }
+        throw new NoSuchMethodException(method);
+    }
+
+    private Object saved(Class<?> type, String title) throws Exception {
+        Object book = type.getConstructor().newInstance();
+        call(book, "setTitle", title);
+        call(book, "setPrice", 10.0);
+        if (type == ebookClass) {
+            call(book, "setFormat", "epub");
+        }
+        session.save(book);
+        session.commit();
+        session.close();
+        session = sessionFactory.openSession();
+        return session.find(type, call(book, "getId"));
+    }
+
+    @Test
+    void testEntitiesAreEnhanced() throws Exception {
+        assertTrue(DirtyTrackable.class.isAssignableFrom(bookClass));
+        assertTrue(DirtyTrackable.class.isAssignableFrom(ebookClass));
+
+        // the subclass continues the numbering of the inherited fields
+        Map<String, Integer> bookBits = DirtyTracking.fieldBits(bookClass);
+        Map<String, Integer> ebookBits = DirtyTracking.fieldBits(ebookClass);
+        assertEquals(Set.of("id", "title", "price"), bookBits.keySet());
+        assertEquals(Set.of("id", "title", "price", "format"), ebookBits.keySet());
+        assertEquals(bookBits.get("title"), ebookBits.get("title"));
+        assertEquals(3, ebookBits.get("format"));
+
+        // classes neither annotated nor in a listed package are left alone
+        byte[] plain = loader.read("entity.Client");
+        assertNull(loader.enhancer.enhance(plain, loader));
+        // already enhanced classes as well
+        byte[] book = loader.enhancer.enhance(loader.read("entity.tracked.TrackedBook"), loader);
+        assertNotNull(book);
+        assertNull(loader.enhancer.enhance(book, loader));
+    }
+
+    @Test
+    void testWrittenFieldsAreReportedUntilFlush() throws Exception {
+        Object book = saved(bookClass, "Dune");
+        DirtyTrackable tracked = (DirtyTrackable) book;
+        assertNull(tracked.$$orm_getDirty(), "clean after load");
+
+        events.clear();
+        session.commit();
+        assertTrue(statements("UPDATE ").isEmpty());
+
+        call(book, "setPrice", 12.5);
+        assertNotNull(tracked.$$orm_getDirty());
+        session.commit();
+
+        assertEquals(List.of("UPDATE tracked_books SET price = ? WHERE id = ?"), statements("UPDATE "));
+        assertNull(tracked.$$orm_getDirty(), "clean after flush");
+    }
+
+    @Test
+    void testInheritedFieldsMarkTheSubclassTables() throws Exception {
+        Object ebook = saved(ebookClass, "Dune");
+
+        events.clear();
+        call(ebook, "setTitle", "Dune Messiah");
+        call(ebook, "setFormat", "pdf");
+        session.commit();
+
+        List<String> updates = statements("UPDATE ");
+        assertEquals(2, updates.size(), updates.toString());
+        assertTrue(updates.contains("UPDATE tracked_books SET title = ? WHERE id = ?"), updates.toString());
+        assertTrue(updates.contains("UPDATE tracked_ebooks SET format = ? WHERE id = ?"), updates.toString());
+
+        session.close();
+        session = sessionFactory.openSession();
+        Object loaded = session.find(ebookClass, call(ebook, "getId"));
+        assertEquals("Dune Messiah", call(loaded, "getTitle"));
+        assertEquals("pdf", call(loaded, "getFormat"));
+    }
+
+    @Test
+    void testOnlyWrittenFieldsAreCompared() throws Exception {
+        Object book = saved(bookClass, "Dune");
+
+        // a write past the enhanced code (reflection) is not seen by flush
+        Field title = bookClass.getDeclaredField("title");
+        title.setAccessible(true);
+        title.set(book, "Children of Dune");
+        events.clear();
+        session.commit();
+        assertTrue(statements("UPDATE ").isEmpty(), statements("UPDATE ").toString());
+
+        // an explicit update still writes the whole entity
+        session.update(book);
+        session.commit();
+        assertEquals(1, statements("UPDATE tracked_books ").size());
+    }
+
+    @Test
+    void testFlushVisitsOnlyTheReportedEntities() throws Exception {
+        Object duneId = call(saved(bookClass, "Dune"), "getId");
+        Object messiah = saved(bookClass, "Dune Messiah");
+        Object dune = session.find(bookClass, duneId);
+        DirtyTrackable first = (DirtyTrackable) dune;
+        DirtyTrackable second = (DirtyTrackable) messiah;
+        assertNotNull(first.$$orm_getOwner(), "the session listens to the managed entities");
+        assertSame(first.$$orm_getOwner(), second.$$orm_getOwner());
+
+        Field written = session.getClass().getDeclaredField("writtenEntities");
+        written.setAccessible(true);
+        List<?> reported = (List<?>) written.get(session);
+        assertTrue(reported.isEmpty(), "loading is not a write");
+
+        call(messiah, "setPrice", 12.5);
+        call(messiah, "setTitle", "Children of Dune");
+        assertEquals(1, reported.size(), "only the first write of an entity is reported");
+        assertSame(messiah, reported.get(0));
+
+        events.clear();
+        session.commit();
+        assertEquals(List.of("UPDATE tracked_books SET price = ?, title = ? WHERE id = ?"), statements("UPDATE "));
+        assertTrue(reported.isEmpty());
+
+        session.close();
+        assertNull(first.$$orm_getOwner(), "a closed session stops listening");
+        call(dune, "setPrice", 1.0);
+        assertTrue(reported.isEmpty());
+    }
+}
@@ -0,0 +1,232 @@
+package pl.edu.agh.dp;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.dp.core.api.Configuration;
+import pl.edu.agh.dp.core.api.Orm;
+import pl.edu.agh.dp.core.api.Session;
+import pl.edu.agh.dp.core.api.SessionFactory;
+import pl.edu.agh.dp.core.exceptions.IntegrityException;
+import pl.edu.agh.dp.core.jdbc.StatementEvent;
+import pl.edu.agh.dp.core.mapping.annotations.Id;
+import pl.edu.agh.dp.core.mapping.annotations.JoinColumn;
+import pl.edu.agh.dp.core.mapping.annotations.ManyToOne;
+import pl.edu.agh.dp.core.mapping.annotations.OneToMany;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * New entities are inserted in the foreign key order computed with the session factory, removed
+ * ones are deleted in the reverse order.
+ */
+public class EntityOrderTest {
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Region {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+        @OneToMany
+        List<Store> stores = new ArrayList<>();
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Store {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+        @ManyToOne
+        Region region;
+        @OneToMany
+        List<Shelf> shelves = new ArrayList<>();
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Shelf {
+        @Id(autoIncrement = true)
+        Long id;
+        String label;
+        @ManyToOne
+        Store store;
+    }
+
+    // Rock -> Paper -> Scissors -> Rock, join columns only to get past the ambiguity check
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Rock {
+        @Id(autoIncrement = true)
+        Long id;
+        @ManyToOne
+        @JoinColumn(joinColumns = { "paper" }, nullable = true)
+        Paper paper;
+        @OneToMany
+        @JoinColumn(joinColumns = { "scissors" })
+        List<Scissors> scissors = new ArrayList<>();
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Paper {
+        @Id(autoIncrement = true)
+        Long id;
+        @ManyToOne
+        @JoinColumn(joinColumns = { "scissors" }, nullable = true)
+        Scissors scissors;
+        @OneToMany
+        @JoinColumn(joinColumns = { "rocks" })
+        List<Rock> rocks = new ArrayList<>();
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Scissors {
+        @Id(autoIncrement = true)
+        Long id;
+        @ManyToOne
+        @JoinColumn(joinColumns = { "rock" }, nullable = true)
+        Rock rock;
+        @OneToMany
+        @JoinColumn(joinColumns = { "papers" })
+        List<Paper> papers = new ArrayList<>();
+    }
+
+    String url = System.getenv("DB_URL") != null
+            ? System.getenv("DB_URL")
+            : "jdbc:h2:./testdb_order;AUTO_SERVER=TRUE;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH";
+
+    String user = System.getenv("DB_USER") != null ? System.getenv("DB_USER") : "sa";
+    String password = System.getenv("DB_PASSWORD") != null ? System.getenv("DB_PASSWORD") : "";
+
+    List<StatementEvent> events = new CopyOnWriteArrayList<>();
+    SessionFactory sessionFactory;
+    Session session;
+
+    @BeforeEach
+    public void setUp() {
+        try (Connection conn = DriverManager.getConnection(url, user, password);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (session != null) {
+            session.close();
+        }
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    private Configuration configure(Class<?>... entities) {
+        return Orm.configure()
+                .setProperty("db.url", url)
+                .setProperty("db.user", user)
+                .setProperty("db.password", password)
+                .setProperty("orm.schema.auto", "create")
+                .addStatementListener(events::add)
+                .register(entities);
+    }
+
+    @Test
+    void testReferencedTablesAreInsertedFirst() {
+        // registered in reverse
+        sessionFactory = configure(Shelf.class, Store.class, Region.class).buildSessionFactory();
+        session = sessionFactory.openSession();
+
+        Region region = new Region();
+        region.setName("north");
+        Store store = new Store();
+        store.setName("main");
+        store.setRegion(region);
+        region.getStores().add(store);
+        Shelf shelf = new Shelf();
+        shelf.setLabel("A1");
+        shelf.setStore(store);
+        store.getShelves().add(shelf);
+        session.save(shelf);
+        session.commit();
+
+        List<String> inserts = events.stream().map(StatementEvent::getSql)
+                .filter(sql -> sql.startsWith("INSERT INTO ")).toList();
+        assertEquals(3, inserts.size(), inserts.toString());
+        assertTrue(inserts.get(0).startsWith("INSERT INTO regions "), inserts.toString());
+        assertTrue(inserts.get(1).startsWith("INSERT INTO stores "), inserts.toString());
+        assertTrue(inserts.get(2).startsWith("INSERT INTO shelfs "), inserts.toString());
+
+        // every session shares the order of the factory
+        session.close();
+        session = sessionFactory.openSession();
+        Shelf loaded = session.find(Shelf.class, shelf.getId());
+        session.load(loaded, "store");
+        session.load(loaded.getStore(), "region");
+        assertEquals("main", loaded.getStore().getName());
+        assertEquals("north", loaded.getStore().getRegion().getName());
+    }
+
+    @Test
+    void testReferencingTablesAreDeletedFirst() {
+        sessionFactory = configure(Region.class, Store.class, Shelf.class).buildSessionFactory();
+        session = sessionFactory.openSession();
+
+        Region region = new Region();
+        region.setName("north");
+        Store store = new Store();
+        store.setName("main");
+        store.setRegion(region);
+        region.getStores().add(store);
+        Shelf shelf = new Shelf();
+        shelf.setLabel("A1");
+        shelf.setStore(store);
+        store.getShelves().add(shelf);
+        session.save(shelf);
+        session.commit();
+
+        events.clear();
+        // removed parent first, flush still deletes against the insert order
+        session.delete(region);
+        session.delete(store);
+        session.delete(shelf);
+        session.commit();
+
+        List<String> deletes = events.stream().map(StatementEvent::getSql)
+                .filter(sql -> sql.startsWith("DELETE FROM ")).toList();
+        assertEquals(3, deletes.size(), deletes.toString());
+        assertTrue(deletes.get(0).startsWith("DELETE FROM shelfs "), deletes.toString());
+        assertTrue(deletes.get(1).startsWith("DELETE FROM stores "), deletes.toString());
+        assertTrue(deletes.get(2).startsWith("DELETE FROM regions "), deletes.toString());
+        assertTrue(session.findAll(Region.class).isEmpty());
+    }
+
+    @Test
+    void testCyclicForeignKeysAreRejected() {
+        IntegrityException e = assertThrows(IntegrityException.class,
+                () -> sessionFactory = configure(Rock.class, Paper.class, Scissors.class).buildSessionFactory());
+        assertTrue(e.getMessage().contains("Cyclic"), e.getMessage());
+        assertTrue(e.getMessage().contains("Rock") && e.getMessage().contains("Scissors"), e.getMessage());
+    }
+}
@@ -0,0 +1,172 @@
+package pl.edu.agh.dp;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.dp.core.api.Configuration;
+import pl.edu.agh.dp.core.api.Orm;
+import pl.edu.agh.dp.core.api.Session;
+import pl.edu.agh.dp.core.api.SessionFactory;
+import pl.edu.agh.dp.core.jdbc.StatementEvent;
+import pl.edu.agh.dp.core.mapping.InheritanceType;
+import pl.edu.agh.dp.core.mapping.annotations.Column;
+import pl.edu.agh.dp.core.mapping.annotations.Id;
+import pl.edu.agh.dp.core.mapping.annotations.Inheritance;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Statements come from the per entity SQL plan built with the session factory.
+ */
+public class EntitySqlPlanTest {
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @Inheritance(strategy = InheritanceType.JOINED)
+    public static class Asset {
+        @Id(autoIncrement = true)
+        Long id;
+        String tag;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Device extends Asset {
+        String vendor;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Phone extends Device {
+        @Column(nullable = true)
+        String number;
+    }
+
+    String url = System.getenv("DB_URL") != null
+            ? System.getenv("DB_URL")
+            : "jdbc:h2:./testdb_sqlplan;AUTO_SERVER=TRUE;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH";
+
+    String user = System.getenv("DB_USER") != null ? System.getenv("DB_USER") : "sa";
+    String password = System.getenv("DB_PASSWORD") != null ? System.getenv("DB_PASSWORD") : "";
+
+    List<StatementEvent> events = new CopyOnWriteArrayList<>();
+    SessionFactory sessionFactory;
+    Session session;
+
+    @BeforeEach
+    public void setUp() {
+        try (Connection conn = DriverManager.getConnection(url, user, password);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        Configuration config = Orm.configure()
+                .setProperty("db.url", url)
+                .setProperty("db.user", user)
+                .setProperty("db.password", password)
+                .setProperty("orm.schema.auto", "create")
+                .addStatementListener(events::add)
+                .register(Asset.class, Device.class, Phone.class);
+        sessionFactory = config.buildSessionFactory();
+        session = sessionFactory.openSession();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (session != null) {
+            session.close();
+        }
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    private List<String> statements(String prefix) {
+        return events.stream().map(StatementEvent::getSql).filter(sql -> sql.startsWith(prefix)).toList();
+    }
+
+    private Phone phone(String tag, String number) {
+        Phone phone = new Phone();
+        phone.setTag(tag);
+        phone.setVendor("acme");
+        phone.setNumber(number);
+        return phone;
+    }
+
+    @Test
+    void testChainIsWrittenRootFirstAndDeletedLeafFirst() {
+        Phone phone = phone("P-1", "123");
+        session.save(phone);
+        session.commit();
+
+        List<String> inserts = statements("INSERT INTO ");
+        assertEquals(3, inserts.size(), inserts.toString());
+        assertTrue(inserts.get(0).startsWith("INSERT INTO assets "), inserts.toString());
+        assertTrue(inserts.get(1).startsWith("INSERT INTO devices "), inserts.toString());
+        assertTrue(inserts.get(2).startsWith("INSERT INTO phones "), inserts.toString());
+
+        session.close();
+        session = sessionFactory.openSession();
+        Asset loaded = session.find(Asset.class, phone.getId());
+        Phone loadedPhone = assertInstanceOf(Phone.class, loaded);
+        assertEquals("P-1", loadedPhone.getTag());
+        assertEquals("acme", loadedPhone.getVendor());
+        assertEquals("123", loadedPhone.getNumber());
+
+        events.clear();
+        session.delete(loaded);
+        session.commit();
+
+        List<String> deletes = statements("DELETE FROM ");
+        assertEquals(List.of(
+                "DELETE FROM phones WHERE id = ?",
+                "DELETE FROM devices WHERE id = ?",
+                "DELETE FROM assets WHERE id = ?"), deletes);
+    }
+
+    @Test
+    void testStatementsAreSharedBetweenEntities() {
+        Phone first = phone("P-1", "123");
+        Phone second = phone("P-2", null);
+        Phone third = phone("P-3", "789");
+        session.save(first);
+        session.commit();
+        session.save(second);
+        session.commit();
+        session.save(third);
+        session.commit();
+
+        // the null number is left out, the other two rows share the statement
+        List<String> phoneInserts = statements("INSERT INTO phones ");
+        assertEquals(3, phoneInserts.size());
+        assertEquals(phoneInserts.get(0), phoneInserts.get(2));
+        assertFalse(phoneInserts.get(1).contains("number"), phoneInserts.get(1));
+
+        events.clear();
+        first.setNumber("111");
+        session.update(first);
+        session.commit();
+        third.setNumber("000");
+        session.update(third);
+        session.commit();
+
+        List<String> updates = statements("UPDATE phones ");
+        assertEquals(2, updates.size(), updates.toString());
+        assertSame(updates.get(0), updates.get(1));
+    }
+}
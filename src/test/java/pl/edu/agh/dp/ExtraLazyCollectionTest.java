@@ -0,0 +1,268 @@
+package pl.edu.agh.dp;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.dp.core.api.Lazy;
+import pl.edu.agh.dp.core.api.Orm;
+import pl.edu.agh.dp.core.api.Session;
+import pl.edu.agh.dp.core.api.SessionFactory;
+import pl.edu.agh.dp.core.jdbc.StatementEvent;
+import pl.edu.agh.dp.core.mapping.InheritanceType;
+import pl.edu.agh.dp.core.mapping.annotations.Id;
+import pl.edu.agh.dp.core.mapping.annotations.Inheritance;
+import pl.edu.agh.dp.core.mapping.annotations.ManyToMany;
+import pl.edu.agh.dp.core.mapping.annotations.ManyToOne;
+import pl.edu.agh.dp.core.mapping.annotations.OneToMany;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Extra-lazy collections answer size, isEmpty, contains and get with a query and stay unloaded.
+ */
+public class ExtraLazyCollectionTest {
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Shop {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+        @OneToMany(extraLazy = true)
+        List<Order> orders = new ArrayList<>();
+        @ManyToMany(extraLazy = true)
+        Set<Tag> tags = new HashSet<>();
+        @OneToMany(extraLazy = true)
+        List<Courier> couriers = new ArrayList<>();
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Order {
+        @Id(autoIncrement = true)
+        Long id;
+        String number;
+        @ManyToOne
+        Shop shop;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Tag {
+        @Id(autoIncrement = true)
+        Long id;
+        String label;
+        @ManyToMany
+        List<Shop> shops = new ArrayList<>();
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @Inheritance(strategy = InheritanceType.JOINED)
+    public static class Employee {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Courier extends Employee {
+        @ManyToOne
+        Shop shop;
+    }
+
+    String url = System.getenv("DB_URL") != null
+            ? System.getenv("DB_URL")
+            : "jdbc:h2:./testdb_extralazy;AUTO_SERVER=TRUE;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH";
+
+    String user = System.getenv("DB_USER") != null ? System.getenv("DB_USER") : "sa";
+    String password = System.getenv("DB_PASSWORD") != null ? System.getenv("DB_PASSWORD") : "";
+
+    List<StatementEvent> events = new CopyOnWriteArrayList<>();
+    SessionFactory sessionFactory;
+    Session session;
+    Shop shop;
+    Shop empty;
+    Tag other;
+
+    @BeforeEach
+    public void setUp() {
+        try (Connection conn = DriverManager.getConnection(url, user, password);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        sessionFactory = Orm.configure()
+                .setProperty("db.url", url)
+                .setProperty("db.user", user)
+                .setProperty("db.password", password)
+                .setProperty("orm.schema.auto", "create")
+                .addStatementListener(events::add)
+                .register(Shop.class, Order.class, Tag.class, Employee.class, Courier.class)
+                .buildSessionFactory();
+        session = sessionFactory.openSession();
+
+        shop = new Shop();
+        shop.setName("main");
+        for (int i = 0; i < 12; i++) {
+            Order order = new Order();
+            order.setNumber("o" + i);
+            order.setShop(shop);
+            shop.getOrders().add(order);
+        }
+        for (String label : List.of("food", "drinks")) {
+            Tag tag = new Tag();
+            tag.setLabel(label);
+            tag.getShops().add(shop);
+            shop.getTags().add(tag);
+        }
+        Courier courier = new Courier();
+        courier.setName("c");
+        courier.setShop(shop);
+        shop.getCouriers().add(courier);
+        session.save(shop);
+
+        empty = new Shop();
+        empty.setName("empty");
+        other = new Tag();
+        other.setLabel("other");
+        other.getShops().add(empty);
+        empty.getTags().add(other);
+        session.save(empty);
+        session.commit();
+        session.close();
+        session = sessionFactory.openSession();
+        events.clear();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (session != null && session.isOpen()) {
+            session.close();
+        }
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    private List<String> selects() {
+        return events.stream().map(StatementEvent::getSql).filter(sql -> sql.startsWith("SELECT")).toList();
+    }
+
+    @Test
+    void testSizeAndIsEmptyDoNotLoadTheCollection() {
+        Shop loaded = session.find(Shop.class, shop.getId());
+        Shop loadedEmpty = session.find(Shop.class, empty.getId());
+        events.clear();
+
+        assertEquals(12, loaded.getOrders().size());
+        assertFalse(loaded.getOrders().isEmpty());
+        assertTrue(loadedEmpty.getOrders().isEmpty());
+        assertEquals(0, loadedEmpty.getOrders().size());
+        assertEquals(2, loaded.getTags().size());
+        assertEquals(1, loaded.getCouriers().size());
+
+        List<String> selects = selects();
+        assertEquals(6, selects.size(), selects.toString());
+        assertTrue(selects.get(0).startsWith("SELECT COUNT(*)"), selects.get(0));
+        assertTrue(selects.get(1).startsWith("SELECT EXISTS"), selects.get(1));
+        assertFalse(((Lazy) loaded.getOrders()).isInitialized());
+        assertFalse(((Lazy) loaded.getTags()).isInitialized());
+    }
+
+    @Test
+    void testContainsProbesTheElement() {
+        Shop loaded = session.find(Shop.class, shop.getId());
+        List<Order> orders = session.findAll(Order.class);
+        List<Tag> tags = session.findAll(Tag.class);
+        Tag otherTag = tags.stream().filter(tag -> tag.getLabel().equals("other")).findFirst().orElseThrow();
+        events.clear();
+
+        assertTrue(loaded.getOrders().contains(orders.get(3)));
+        assertTrue(loaded.getTags().contains(tags.get(0)));
+        assertFalse(loaded.getTags().contains(otherTag));
+        assertTrue(loaded.getCouriers().contains(session.findAll(Courier.class).get(0)));
+        events.clear();
+        // not saved or not an entity of the relationship: no query
+        assertFalse(loaded.getOrders().contains(new Order()));
+        assertFalse(loaded.getOrders().contains("o3"));
+        assertEquals(0, selects().size());
+        assertFalse(((Lazy) loaded.getOrders()).isInitialized());
+    }
+
+    @Test
+    void testGetReadsOneRow() {
+        Shop loaded = session.find(Shop.class, shop.getId());
+        events.clear();
+
+        Order fifth = loaded.getOrders().get(5);
+        assertEquals(1, selects().size(), selects().toString());
+        assertTrue(selects().get(0).endsWith("LIMIT 1 OFFSET 5"), selects().get(0));
+        assertSame(fifth, session.find(Order.class, fifth.getId()));
+        assertSame(loaded, fifth.getShop());
+        assertThrows(IndexOutOfBoundsException.class, () -> loaded.getOrders().get(12));
+        assertFalse(((Lazy) loaded.getOrders()).isInitialized());
+
+        // iteration loads the collection, with the same instances
+        List<Order> orders = loaded.getOrders();
+        List<String> numbers = new ArrayList<>();
+        for (Order order : orders) {
+            numbers.add(order.getNumber());
+        }
+        assertEquals(12, numbers.size());
+        assertTrue(((Lazy) orders).isInitialized());
+        assertSame(fifth, orders.get(5));
+    }
+
+    @Test
+    void testGetMatchesTheLoadedList() {
+        Shop loaded = session.find(Shop.class, shop.getId());
+        List<Order> orders = loaded.getOrders();
+        List<Order> read = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            read.add(orders.get(i));
+        }
+        assertFalse(((Lazy) orders).isInitialized());
+        assertEquals(12, read.stream().distinct().count());
+
+        orders.iterator();
+        assertTrue(((Lazy) orders).isInitialized());
+        for (int i = 0; i < 12; i++) {
+            assertSame(read.get(i), orders.get(i), "element " + i);
+        }
+        assertTrue(selects().stream().filter(sql -> sql.contains("JOIN shops AS a1"))
+                .allMatch(sql -> sql.contains(" ORDER BY ")), selects().toString());
+    }
+
+    @Test
+    void testLoadedCollectionAnswersFromMemory() {
+        Shop loaded = session.find(Shop.class, shop.getId());
+        loaded.getOrders().iterator();
+        events.clear();
+
+        assertEquals(12, loaded.getOrders().size());
+        assertTrue(loaded.getOrders().contains(loaded.getOrders().get(0)));
+        assertEquals(0, selects().size());
+    }
+}
@@ -0,0 +1,198 @@
+package pl.edu.agh.dp;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.dp.core.api.Lazy;
+import pl.edu.agh.dp.core.api.Orm;
+import pl.edu.agh.dp.core.api.Session;
+import pl.edu.agh.dp.core.api.SessionFactory;
+import pl.edu.agh.dp.core.exceptions.IntegrityException;
+import pl.edu.agh.dp.core.jdbc.StatementEvent;
+import pl.edu.agh.dp.core.mapping.annotations.Id;
+import pl.edu.agh.dp.core.mapping.annotations.ManyToOne;
+import pl.edu.agh.dp.core.mapping.annotations.OneToMany;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Finder.fetch loads the relationships of the whole result up front, one query per level.
+ */
+public class FetchPathTest {
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Company {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+        @OneToMany
+        List<Division> divisions = new ArrayList<>();
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Division {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+        @ManyToOne
+        Company company;
+        @OneToMany
+        List<Clerk> clerks = new ArrayList<>();
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Clerk {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+        @ManyToOne
+        Division division;
+    }
+
+    String url = System.getenv("DB_URL") != null
+            ? System.getenv("DB_URL")
+            : "jdbc:h2:./testdb_fetch;AUTO_SERVER=TRUE;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH";
+
+    String user = System.getenv("DB_USER") != null ? System.getenv("DB_USER") : "sa";
+    String password = System.getenv("DB_PASSWORD") != null ? System.getenv("DB_PASSWORD") : "";
+
+    List<StatementEvent> events = new CopyOnWriteArrayList<>();
+    SessionFactory sessionFactory;
+    Session session;
+
+    @BeforeEach
+    public void setUp() {
+        try (Connection conn = DriverManager.getConnection(url, user, password);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        sessionFactory = Orm.configure()
+                .setProperty("db.url", url)
+                .setProperty("db.user", user)
+                .setProperty("db.password", password)
+                .setProperty("orm.schema.auto", "create")
+                .addStatementListener(events::add)
+                .register(Company.class, Division.class, Clerk.class)
+                .buildSessionFactory();
+        session = sessionFactory.openSession();
+
+        // 3 companies, 2 divisions each, 3 clerks per division
+        for (int c = 0; c < 3; c++) {
+            Company company = new Company();
+            company.setName("c" + c);
+            for (int d = 0; d < 2; d++) {
+                Division division = new Division();
+                division.setName(company.getName() + "d" + d);
+                division.setCompany(company);
+                company.getDivisions().add(division);
+                for (int k = 0; k < 3; k++) {
+                    Clerk clerk = new Clerk();
+                    clerk.setName(division.getName() + "k" + k);
+                    clerk.setDivision(division);
+                    division.getClerks().add(clerk);
+                }
+            }
+            session.save(company);
+        }
+        session.commit();
+        session.close();
+        session = sessionFactory.openSession();
+        events.clear();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (session != null && session.isOpen()) {
+            session.close();
+        }
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    private long selects() {
+        return events.stream().filter(e -> e.getSql().startsWith("SELECT")).count();
+    }
+
+    @Test
+    void testNestedToOnePathIsLoadedWithTheQuery() {
+        List<Clerk> clerks = session.finder(Clerk.class).fetch("division.company").list();
+        assertEquals(18, clerks.size());
+        // clerks, their divisions, the companies of the divisions
+        assertEquals(3, selects(), events.toString());
+
+        for (Clerk clerk : clerks) {
+            assertTrue(clerk.getName().startsWith(clerk.getDivision().getName()), clerk.getName());
+            assertTrue(clerk.getDivision().getName().startsWith(clerk.getDivision().getCompany().getName()));
+        }
+        // one instance per row
+        List<Division> divisions = clerks.stream().map(Clerk::getDivision).distinct().toList();
+        assertEquals(6, divisions.size());
+        assertSame(divisions.get(0), session.find(Division.class, divisions.get(0).getId()));
+        assertEquals(3, selects(), events.toString());
+    }
+
+    @Test
+    void testCollectionPathsFollowThePage() {
+        List<Company> companies = session.finder(Company.class)
+                .orderDesc("name")
+                .limit(2)
+                .fetch("divisions.clerks")
+                .list();
+        assertEquals(List.of("c2", "c1"), companies.stream().map(Company::getName).toList());
+        assertEquals(3, selects(), events.toString());
+
+        for (Company company : companies) {
+            assertFalse(company.getDivisions() instanceof Lazy);
+            assertEquals(2, company.getDivisions().size());
+            for (Division division : company.getDivisions()) {
+                assertSame(company, division.getCompany());
+                assertEquals(3, division.getClerks().size());
+                for (Clerk clerk : division.getClerks()) {
+                    assertSame(division, clerk.getDivision());
+                }
+            }
+        }
+        assertEquals(3, selects(), events.toString());
+    }
+
+    @Test
+    void testSmallResultBindsASmallBatch() {
+        List<Company> companies = session.finder(Company.class).eq("name", "c0").fetch("divisions.clerks").list();
+        assertEquals(1, companies.size());
+        assertEquals(6, companies.get(0).getDivisions().stream().mapToInt(d -> d.getClerks().size()).sum());
+
+        List<StatementEvent> selects = events.stream().filter(e -> e.getSql().startsWith("SELECT")).toList();
+        assertEquals(3, selects.size(), events.toString());
+        // one company binds one id, its two divisions are padded to a batch of 4
+        assertEquals(1, selects.get(1).getParameters().get(0).length, selects.get(1).getSql());
+        assertEquals(4, selects.get(2).getParameters().get(0).length, selects.get(2).getSql());
+    }
+
+    @Test
+    void testUnknownPathIsRejected() {
+        IntegrityException e = assertThrows(IntegrityException.class,
+                () -> session.finder(Clerk.class).fetch("division.owner").list());
+        assertTrue(e.getMessage().contains("owner"), e.getMessage());
+    }
+}
@@ -0,0 +1,80 @@
+package pl.edu.agh.dp;
+
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.dp.core.mapping.PropertyMetadata;
+import pl.edu.agh.dp.core.util.FieldAccessor;
+import pl.edu.agh.dp.core.util.FieldAccessors;
+import pl.edu.agh.dp.core.util.ReflectionUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FieldAccessorTest {
+
+    static class Base {
+        private Long id;
+        private String name = "base";
+    }
+
+    static class Derived extends Base {
+        private String name = "derived";
+        private final int version = 1;
+        private int count;
+    }
+
+    @Test
+    void testInheritedAndHiddenFields() {
+        Derived derived = new Derived();
+
+        FieldAccessor id = FieldAccessors.get(Derived.class, "id");
+        assertEquals(Base.class, id.getDeclaringClass());
+        id.set(derived, 7L);
+        assertEquals(7L, ReflectionUtils.getFieldValue(derived, "id"));
+
+        // the subclass field hides the one declared in Base
+        assertEquals("derived", ReflectionUtils.getFieldValue(derived, "name"));
+        assertEquals("base", FieldAccessors.get(Base.class, "name").get(derived));
+
+        // accessors are created once per class
+        assertSame(id, FieldAccessors.find(Derived.class, "id"));
+    }
+
+    @Test
+    void testPrimitiveAndFinalFields() {
+        Derived derived = new Derived();
+
+        ReflectionUtils.setFieldValue(derived, "count", 5);
+        assertEquals(5, ReflectionUtils.getFieldValue(derived, "count"));
+
+        ReflectionUtils.setFieldValue(derived, "version", 2);
+        assertEquals(2, ReflectionUtils.getFieldValue(derived, "version"));
+    }
+
+    @Test
+    void testMissingField() {
+        assertNull(FieldAccessors.find(Derived.class, "missing"));
+        assertFalse(ReflectionUtils.doesClassContainField(Derived.class, "missing"));
+
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> ReflectionUtils.getFieldValue(new Derived(), "missing"));
+        assertInstanceOf(NoSuchFieldException.class, e.getCause());
+    }
+
+    @Test
+    void testPropertyMetadataUsesResolvedAccessor() {
+        PropertyMetadata pm = new PropertyMetadata();
+        pm.setName("id");
+        pm.resolveAccessor(Derived.class);
+        assertNotNull(pm.getAccessor());
+
+        Derived derived = new Derived();
+        pm.setValue(derived, 3L);
+        assertEquals(3L, pm.getValue(derived));
+
+        // copies share the accessor, other classes fall back to the per class cache
+        PropertyMetadata copy = new PropertyMetadata(pm);
+        assertSame(pm.getAccessor(), copy.getAccessor());
+        Base base = new Base();
+        copy.setValue(base, 4L);
+        assertEquals(4L, copy.getValue(base));
+    }
+}
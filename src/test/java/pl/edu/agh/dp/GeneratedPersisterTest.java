@@ -0,0 +1,207 @@
+package pl.edu.agh.dp;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.dp.core.api.Configuration;
+import pl.edu.agh.dp.core.api.Orm;
+import pl.edu.agh.dp.core.api.Session;
+import pl.edu.agh.dp.core.api.SessionFactory;
+import pl.edu.agh.dp.core.jdbc.StatementEvent;
+import pl.edu.agh.dp.core.mapping.annotations.Column;
+import pl.edu.agh.dp.core.mapping.annotations.Id;
+import pl.edu.agh.dp.core.mapping.annotations.ManyToOne;
+import pl.edu.agh.dp.core.mapping.annotations.OneToMany;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GeneratedPersisterTest {
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Account {
+        @Id(autoIncrement = true)
+        private Long id;
+        private String owner;
+        private Long visits;
+        @Column(nullable = true)
+        private Integer score;
+        private Boolean active;
+        private Double balance;
+        @Column(nullable = true)
+        private LocalDate opened;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Branch {
+        @Id(autoIncrement = true)
+        Long id;
+        String city;
+
+        @OneToMany
+        List<Clerk> clerks;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Clerk {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+
+        @ManyToOne
+        Branch branch;
+    }
+
+    // column default - a null has to be left out of the INSERT, so no generated persister
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Ticket {
+        @Id(autoIncrement = true)
+        Long id;
+        String title;
+        @Column(defaultValue = "3")
+        Integer priority;
+    }
+
+    String url = System.getenv("DB_URL") != null
+            ? System.getenv("DB_URL")
+            : "jdbc:h2:./testdb_generated;AUTO_SERVER=TRUE;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH";
+
+    String user = System.getenv("DB_USER") != null ? System.getenv("DB_USER") : "sa";
+    String password = System.getenv("DB_PASSWORD") != null ? System.getenv("DB_PASSWORD") : "";
+
+    List<StatementEvent> events = new CopyOnWriteArrayList<>();
+    SessionFactory sessionFactory;
+    Session session;
+
+    @BeforeEach
+    public void setUp() {
+        try (Connection conn = DriverManager.getConnection(url, user, password);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        Configuration config = Orm.configure()
+                .setProperty("db.url", url)
+                .setProperty("db.user", user)
+                .setProperty("db.password", password)
+                .setProperty("orm.schema.auto", "create")
+                .setProperty("orm.persister.generate", "true")
+                .addStatementListener(events::add)
+                .register(Account.class, Branch.class, Clerk.class, Ticket.class);
+        sessionFactory = config.buildSessionFactory();
+        session = sessionFactory.openSession();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (session != null) {
+            session.close();
+        }
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    private String insertInto(String table) {
+        return events.stream()
+                .map(StatementEvent::getSql)
+                .filter(sql -> sql.startsWith("INSERT INTO " + table + " "))
+                .findFirst().orElseThrow();
+    }
+
+    private void reopen() {
+        session.close();
+        session = sessionFactory.openSession();
+    }
+
+    @Test
+    void testRoundTripThroughGeneratedPersister() {
+        Account account = new Account();
+        account.setOwner("alice");
+        account.setVisits(3L);
+        account.setActive(true);
+        account.setBalance(12.5);
+        account.setOpened(LocalDate.of(2024, 2, 29));
+        session.save(account);
+        session.commit();
+        assertNotNull(account.getId());
+
+        // constant SQL - the null score is bound instead of leaving the column out
+        assertTrue(insertInto("accounts").contains("score"), insertInto("accounts"));
+
+        reopen();
+        Account loaded = session.find(Account.class, account.getId());
+        assertNotSame(account, loaded);
+        assertEquals("alice", loaded.getOwner());
+        assertEquals(3L, loaded.getVisits());
+        assertNull(loaded.getScore());
+        assertTrue(loaded.getActive());
+        assertEquals(12.5, loaded.getBalance());
+        assertEquals(LocalDate.of(2024, 2, 29), loaded.getOpened());
+
+        loaded.setScore(7);
+        loaded.setOpened(null);
+        session.update(loaded);
+        session.commit();
+
+        reopen();
+        Account updated = session.finder(Account.class).eq("owner", "alice").list().get(0);
+        assertEquals(7, updated.getScore());
+        assertNull(updated.getOpened());
+    }
+
+    @Test
+    void testForeignKeysAreAddedToGeneratedInsert() throws SQLException {
+        Branch branch = new Branch();
+        branch.setCity("Krakow");
+        session.save(branch);
+        Clerk clerk = new Clerk();
+        clerk.setName("bob");
+        clerk.setBranch(branch);
+        session.save(clerk);
+        session.commit();
+
+        try (Connection conn = DriverManager.getConnection(url, user, password);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT * FROM clerks")) {
+            assertTrue(rs.next());
+            assertEquals("bob", rs.getString("name"));
+            assertEquals(branch.getId(), rs.getLong("branch_fkey"));
+        }
+
+        reopen();
+        assertEquals(List.of("bob"), session.findAll(Clerk.class).stream().map(Clerk::getName).toList());
+    }
+
+    @Test
+    void testUnsupportedEntityKeepsReflectivePath() {
+        Ticket ticket = new Ticket();
+        ticket.setTitle("broken build");
+        session.save(ticket);
+        session.commit();
+
+        assertFalse(insertInto("tickets").contains("priority"), insertInto("tickets"));
+
+        reopen();
+        Ticket loaded = session.find(Ticket.class, ticket.getId());
+        assertEquals("broken build", loaded.getTitle());
+        assertEquals(3, loaded.getPriority());
+    }
+}
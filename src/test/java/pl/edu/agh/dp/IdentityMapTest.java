@@ -0,0 +1,162 @@
+package pl.edu.agh.dp;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.dp.core.api.Configuration;
+import pl.edu.agh.dp.core.api.EntityKey;
+import pl.edu.agh.dp.core.api.Orm;
+import pl.edu.agh.dp.core.api.Session;
+import pl.edu.agh.dp.core.api.SessionFactory;
+import pl.edu.agh.dp.core.jdbc.StatementEvent;
+import pl.edu.agh.dp.core.mapping.InheritanceType;
+import pl.edu.agh.dp.core.mapping.annotations.Id;
+import pl.edu.agh.dp.core.mapping.annotations.Inheritance;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The session identity map is keyed by the hierarchy root and the id.
+ */
+public class IdentityMapTest {
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Seat {
+        @Id(autoIncrement = false)
+        Long section;
+        @Id(autoIncrement = false)
+        Long place;
+        String label;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @Inheritance(strategy = InheritanceType.JOINED)
+    public static class Animal {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Dog extends Animal {
+        String breed;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Cat extends Animal {
+        Integer lives;
+    }
+
+    String url = System.getenv("DB_URL") != null
+            ? System.getenv("DB_URL")
+            : "jdbc:h2:./testdb_identity;AUTO_SERVER=TRUE;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH";
+
+    String user = System.getenv("DB_USER") != null ? System.getenv("DB_USER") : "sa";
+    String password = System.getenv("DB_PASSWORD") != null ? System.getenv("DB_PASSWORD") : "";
+
+    List<StatementEvent> events = new CopyOnWriteArrayList<>();
+    SessionFactory sessionFactory;
+    Session session;
+
+    @BeforeEach
+    public void setUp() {
+        try (Connection conn = DriverManager.getConnection(url, user, password);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        Configuration config = Orm.configure()
+                .setProperty("db.url", url)
+                .setProperty("db.user", user)
+                .setProperty("db.password", password)
+                .setProperty("orm.schema.auto", "create")
+                .addStatementListener(events::add)
+                .register(Seat.class, Animal.class, Dog.class, Cat.class);
+        sessionFactory = config.buildSessionFactory();
+        session = sessionFactory.openSession();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (session != null) {
+            session.close();
+        }
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    private long selects() {
+        return events.stream().filter(e -> e.getSql().startsWith("SELECT")).count();
+    }
+
+    private Seat seat(long section, long place, String label) {
+        Seat seat = new Seat();
+        seat.setSection(section);
+        seat.setPlace(place);
+        seat.setLabel(label);
+        return seat;
+    }
+
+    @Test
+    void testKeys() {
+        assertEquals(EntityKey.of(Animal.class, 7L), EntityKey.of(Animal.class, 7));
+        assertEquals(EntityKey.of(Animal.class, 7L).hashCode(), EntityKey.of(Animal.class, (Object) 7L).hashCode());
+        assertNotEquals(EntityKey.of(Animal.class, 7L), EntityKey.of(Seat.class, 7L));
+        assertNotEquals(EntityKey.ofTuple(Seat.class, 1L, 23L), EntityKey.ofTuple(Seat.class, 12L, 3L));
+        assertEquals(EntityKey.ofTuple(Seat.class, 1L, 23L), EntityKey.ofTuple(Seat.class, 1L, 23L));
+    }
+
+    @Test
+    void testCompositeIdsDoNotCollide() {
+        session.save(seat(1, 23, "A"));
+        session.save(seat(12, 3, "B"));
+        session.commit();
+
+        session.close();
+        session = sessionFactory.openSession();
+        Seat first = session.find(Seat.class, seat(1, 23, null));
+        Seat second = session.find(Seat.class, seat(12, 3, null));
+        assertEquals("A", first.getLabel());
+        assertEquals("B", second.getLabel());
+        assertNotSame(first, second);
+        assertSame(first, session.find(Seat.class, seat(1, 23, null)));
+    }
+
+    @Test
+    void testSubclassIsFoundThroughTheRoot() {
+        Dog dog = new Dog();
+        dog.setName("Rex");
+        dog.setBreed("beagle");
+        session.save(dog);
+        session.commit();
+
+        session.close();
+        session = sessionFactory.openSession();
+        Dog loaded = session.find(Dog.class, dog.getId());
+        events.clear();
+        assertSame(loaded, session.find(Animal.class, dog.getId()));
+        assertSame(loaded, session.find(Dog.class, dog.getId()));
+        assertEquals(0, selects());
+    }
+}
@@ -0,0 +1,262 @@
+package pl.edu.agh.dp;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.dp.core.api.Orm;
+import pl.edu.agh.dp.core.api.Session;
+import pl.edu.agh.dp.core.api.SessionFactory;
+import pl.edu.agh.dp.core.jdbc.StatementEvent;
+import pl.edu.agh.dp.core.mapping.InheritanceType;
+import pl.edu.agh.dp.core.mapping.annotations.Id;
+import pl.edu.agh.dp.core.mapping.annotations.Inheritance;
+import pl.edu.agh.dp.core.mapping.annotations.ManyToOne;
+import pl.edu.agh.dp.core.mapping.annotations.OneToMany;
+import pl.edu.agh.dp.core.proxy.EntityProxy;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * To-one targets are proxies carrying the foreign key, loaded on first access.
+ */
+public class LazyToOneTest {
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Department {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+        @OneToMany
+        List<Clerk> clerks = new ArrayList<>();
+        @OneToMany
+        List<Visitor> visitors = new ArrayList<>();
+        @OneToMany
+        List<Contractor> contractors = new ArrayList<>();
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Clerk {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+        @ManyToOne
+        Department department;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Visitor {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+        @ManyToOne(proxy = false)
+        Department department;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @Inheritance(strategy = InheritanceType.JOINED)
+    public static class Person {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Contractor extends Person {
+        @ManyToOne
+        Department department;
+    }
+
+    String url = System.getenv("DB_URL") != null
+            ? System.getenv("DB_URL")
+            : "jdbc:h2:./testdb_proxy;AUTO_SERVER=TRUE;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH";
+
+    String user = System.getenv("DB_USER") != null ? System.getenv("DB_USER") : "sa";
+    String password = System.getenv("DB_PASSWORD") != null ? System.getenv("DB_PASSWORD") : "";
+
+    List<StatementEvent> events = new CopyOnWriteArrayList<>();
+    SessionFactory sessionFactory;
+    Session session;
+    Department department;
+
+    @BeforeEach
+    public void setUp() {
+        try (Connection conn = DriverManager.getConnection(url, user, password);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        sessionFactory = Orm.configure()
+                .setProperty("db.url", url)
+                .setProperty("db.user", user)
+                .setProperty("db.password", password)
+                .setProperty("orm.schema.auto", "create")
+                .addStatementListener(events::add)
+                .register(Department.class, Clerk.class, Visitor.class, Person.class, Contractor.class)
+                .buildSessionFactory();
+        session = sessionFactory.openSession();
+
+        department = new Department();
+        department.setName("sales");
+        for (String name : List.of("a", "b")) {
+            Clerk clerk = new Clerk();
+            clerk.setName(name);
+            clerk.setDepartment(department);
+            department.getClerks().add(clerk);
+        }
+        Visitor visitor = new Visitor();
+        visitor.setName("v");
+        visitor.setDepartment(department);
+        department.getVisitors().add(visitor);
+        Contractor contractor = new Contractor();
+        contractor.setName("c");
+        contractor.setDepartment(department);
+        department.getContractors().add(contractor);
+        session.save(department);
+        session.commit();
+        session.close();
+        session = sessionFactory.openSession();
+        events.clear();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (session != null && session.isOpen()) {
+            session.close();
+        }
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    private long selects() {
+        return events.stream().filter(e -> e.getSql().startsWith("SELECT")).count();
+    }
+
+    @Test
+    void testProxyCarriesTheIdAndLoadsOnFirstAccess() {
+        List<Clerk> clerks = session.findAll(Clerk.class);
+        assertEquals(2, clerks.size());
+        assertEquals(1, selects());
+
+        Department first = clerks.get(0).getDepartment();
+        EntityProxy proxy = assertInstanceOf(EntityProxy.class, first);
+        assertFalse(proxy.isInitialized());
+        assertEquals(department.getId(), first.getId());
+        // clerks of one department share the proxy
+        assertSame(first, clerks.get(1).getDepartment());
+        assertEquals(1, selects(), events.toString());
+
+        assertEquals("sales", first.getName());
+        assertTrue(proxy.isInitialized());
+        assertEquals(2, selects(), events.toString());
+        assertSame(session.find(Department.class, department.getId()), EntityProxy.unwrap(first));
+        assertEquals(2, selects(), events.toString());
+    }
+
+    @Test
+    void testChangesGoToTheEntityBehindTheProxy() throws SQLException {
+        // a new entity referencing the proxy gets its foreign key without loading the department
+        Clerk clerk = session.finder(Clerk.class).eq("name", "b").list().get(0);
+        Clerk added = new Clerk();
+        added.setName("c");
+        added.setDepartment(clerk.getDepartment());
+        events.clear();
+        session.save(added);
+        session.commit();
+        assertEquals(0, selects(), events.stream().map(StatementEvent::getSql).toList().toString());
+
+        clerk.getDepartment().setName("marketing");
+        session.commit();
+
+        try (Connection conn = DriverManager.getConnection(url, user, password);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT d.name, COUNT(*) FROM clerks c "
+                     + "JOIN departments d ON d.id = c.department_fkey GROUP BY d.name")) {
+            assertTrue(rs.next());
+            assertEquals("marketing", rs.getString(1));
+            assertEquals(3, rs.getInt(2));
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    void testLoadedEntitiesAreNotDirty() {
+        session.findAll(Clerk.class);
+        session.findAll(Contractor.class);
+        events.clear();
+        session.commit();
+        assertTrue(events.stream().noneMatch(e -> e.getSql().startsWith("UPDATE")), events.toString());
+    }
+
+    @Test
+    void testJoinedRowsCarryTheForeignKey() {
+        Contractor contractor = session.findAll(Contractor.class).get(0);
+        assertInstanceOf(EntityProxy.class, contractor.getDepartment());
+        assertEquals(department.getId(), contractor.getDepartment().getId());
+        assertEquals("sales", contractor.getDepartment().getName());
+    }
+
+    @Test
+    void testTargetInTheSessionIsUsedDirectly() {
+        Department loaded = session.find(Department.class, department.getId());
+        List<Clerk> clerks = session.findAll(Clerk.class);
+        assertEquals(2, selects());
+        assertSame(loaded, clerks.get(0).getDepartment());
+        assertSame(loaded, clerks.get(1).getDepartment());
+    }
+
+    @Test
+    void testLoadResolvesTheForeignKeyFromTheIdentityMap() {
+        List<Clerk> clerks = session.findAll(Clerk.class);
+        Department loaded = session.find(Department.class, department.getId());
+        events.clear();
+
+        session.load(clerks.get(0), "department");
+        session.finder(Clerk.class).fetch("department").list();
+        assertSame(loaded, clerks.get(0).getDepartment());
+        assertSame(loaded, clerks.get(1).getDepartment());
+        // only the clerks of the finder
+        assertEquals(1, selects(), events.toString());
+    }
+
+    @Test
+    void testLoadSelectsTheTargetByPrimaryKeyOnMiss() {
+        Clerk clerk = session.findAll(Clerk.class).get(0);
+        events.clear();
+        session.load(clerk, "department");
+        assertFalse(clerk.getDepartment() instanceof EntityProxy);
+        assertEquals("sales", clerk.getDepartment().getName());
+        assertEquals(1, selects(), events.toString());
+        assertFalse(events.get(0).getSql().contains("clerks"), events.get(0).getSql());
+        assertSame(clerk.getDepartment(), session.find(Department.class, department.getId()));
+    }
+
+    @Test
+    void testWithoutProxyTheFieldWaitsForLoad() {
+        Visitor visitor = session.findAll(Visitor.class).get(0);
+        assertNull(visitor.getDepartment());
+        session.load(visitor, "department");
+        assertFalse(visitor.getDepartment() instanceof EntityProxy);
+        assertEquals("sales", visitor.getDepartment().getName());
+    }
+}
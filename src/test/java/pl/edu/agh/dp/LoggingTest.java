@@ -0,0 +1,147 @@
+package pl.edu.agh.dp;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.dp.core.api.Orm;
+import pl.edu.agh.dp.core.api.Session;
+import pl.edu.agh.dp.core.api.SessionFactory;
+import pl.edu.agh.dp.core.logging.*;
+import pl.edu.agh.dp.core.mapping.annotations.Id;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoggingTest {
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Note {
+        @Id(autoIncrement = true)
+        Long id;
+        String text;
+    }
+
+    static class CapturingAppender implements LogAppender {
+        final List<String> lines = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void append(LogLevel level, String category, String message, Throwable error) {
+            lines.add(level + " " + category + " " + message);
+        }
+    }
+
+    CapturingAppender captured;
+    LogAppender previous;
+
+    @BeforeEach
+    public void setUp() {
+        captured = new CapturingAppender();
+        previous = OrmLogger.setAppender(captured);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        OrmLogger.setAppender(previous);
+        OrmLogger.setRootLevel(LogLevel.INFO);
+        OrmLogger.setLevel("test", null);
+        OrmLogger.setLevel("test.verbose", null);
+        OrmLogger.setLevel(OrmLogger.SQL_CATEGORY, null);
+    }
+
+    @Test
+    void testDisabledLevelSkipsMessageConstruction() {
+        OrmLogger log = OrmLogger.getLogger("test.quiet");
+        AtomicInteger built = new AtomicInteger();
+
+        log.debug(() -> "expensive " + built.incrementAndGet());
+        log.trace("{} and {}", built, built);
+        assertEquals(0, built.get());
+        assertTrue(captured.lines.isEmpty());
+
+        log.info("count {}", 3);
+        assertEquals(List.of("INFO test.quiet count 3"), captured.lines);
+    }
+
+    @Test
+    void testLongestCategoryPrefixWins() {
+        OrmLogger.setLevel("test", LogLevel.WARN);
+        OrmLogger.setLevel("test.verbose", LogLevel.TRACE);
+        OrmLogger quiet = OrmLogger.getLogger("test.other");
+        OrmLogger verbose = OrmLogger.getLogger("test.verbose.child");
+
+        quiet.info("hidden");
+        verbose.trace("{} + {} = {}", 1, 2, 3);
+        verbose.debug("missing {} {}", "one");
+
+        assertFalse(quiet.isInfoEnabled());
+        assertEquals(List.of("TRACE test.verbose.child 1 + 2 = 3", "DEBUG test.verbose.child missing one {}"),
+                captured.lines);
+
+        // levels are re-resolved for loggers created earlier
+        OrmLogger.setLevel("test.verbose", null);
+        assertFalse(verbose.isDebugEnabled());
+    }
+
+    @Test
+    void testSqlCategoryIsEnabledFromConfiguration() {
+        SessionFactory sessionFactory = Orm.configure()
+                .setProperty("db.url", "jdbc:h2:mem:logging;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1")
+                .setProperty("db.user", "sa")
+                .setProperty("db.password", "")
+                .setProperty("orm.schema.auto", "create")
+                .setProperty("orm.log.level.orm.sql", "DEBUG")
+                .register(Note.class)
+                .buildSessionFactory();
+        Session session = sessionFactory.openSession();
+        Note note = new Note();
+        note.setText("hello");
+        session.save(note);
+        session.commit();
+        session.close();
+        sessionFactory.close();
+
+        assertTrue(captured.lines.stream().anyMatch(l -> l.startsWith("DEBUG orm.sql INSERT INTO notes")),
+                () -> String.join("\n", captured.lines));
+        // nothing below INFO from other categories
+        assertTrue(captured.lines.stream()
+                .noneMatch(l -> l.startsWith("DEBUG") && !l.startsWith("DEBUG orm.sql")));
+    }
+
+    @Test
+    void testAsyncAppenderDeliversAndDropsWhenFull() throws InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        LogAppender slow = (level, category, message, error) -> {
+            writing.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            captured.append(level, category, message, error);
+        };
+
+        AsyncAppender async = new AsyncAppender(slow, 2);
+        async.append(LogLevel.INFO, "test", "first", null);
+        // writer thread is now stuck on the first event, the buffer holds two more
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        async.append(LogLevel.INFO, "test", "second", null);
+        async.append(LogLevel.INFO, "test", "third", null);
+        async.append(LogLevel.INFO, "test", "fourth", null);
+        assertEquals(1, async.getDroppedCount());
+
+        release.countDown();
+        async.close();
+        assertEquals(List.of("INFO test first", "INFO test second", "INFO test third"), captured.lines);
+    }
+}
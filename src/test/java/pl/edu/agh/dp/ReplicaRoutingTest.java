@@ -0,0 +1,191 @@
+package pl.edu.agh.dp;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.dp.core.api.Configuration;
+import pl.edu.agh.dp.core.api.Orm;
+import pl.edu.agh.dp.core.api.Session;
+import pl.edu.agh.dp.core.api.SessionFactory;
+import pl.edu.agh.dp.core.exceptions.IntegrityException;
+import pl.edu.agh.dp.core.jdbc.ConnectionProvider;
+import pl.edu.agh.dp.core.jdbc.JdbcConnectionProvider;
+import pl.edu.agh.dp.core.jdbc.RoutingConnectionProvider;
+import pl.edu.agh.dp.core.mapping.annotations.Id;
+
+import java.sql.*;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplicaRoutingTest {
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Book {
+        @Id(autoIncrement = true)
+        Long id;
+        String title;
+    }
+
+    static final String OPTIONS = ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    static final String PRIMARY = "jdbc:h2:mem:routing_primary" + OPTIONS;
+    static final String REPLICA_1 = "jdbc:h2:mem:routing_replica1" + OPTIONS;
+    static final String REPLICA_2 = "jdbc:h2:mem:routing_replica2" + OPTIONS;
+
+    SessionFactory sessionFactory;
+
+    private Configuration configure(String url) {
+        return Orm.configure()
+                .setProperty("db.url", url)
+                .setProperty("db.user", "sa")
+                .setProperty("db.password", "")
+                .setProperty("orm.schema.auto", "create")
+                .register(Book.class);
+    }
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        // every database gets one book named after it, so a read shows where it was served from
+        for (String[] db : new String[][]{{PRIMARY, "primary"}, {REPLICA_1, "replica1"}, {REPLICA_2, "replica2"}}) {
+            try (Connection conn = DriverManager.getConnection(db[0], "sa", "");
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("DROP ALL OBJECTS");
+            }
+            SessionFactory seeding = configure(db[0]).buildSessionFactory();
+            Session session = seeding.openSession();
+            Book book = new Book();
+            book.setTitle(db[1]);
+            session.save(book);
+            session.commit();
+            session.close();
+            seeding.close();
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    private SessionFactory routingFactory(String balancing) {
+        return configure(PRIMARY)
+                .setProperty("db.replicas", REPLICA_1 + "," + REPLICA_2)
+                .setProperty("orm.replica.balancing", balancing)
+                .buildSessionFactory();
+    }
+
+    private static String servedBy(Session session) {
+        List<Book> books = session.findAll(Book.class);
+        assertEquals(1, books.size());
+        return books.get(0).getTitle();
+    }
+
+    @Test
+    void testReadOnlySessionsAreBalancedRoundRobin() {
+        sessionFactory = routingFactory("round-robin");
+
+        String[] served = new String[4];
+        for (int i = 0; i < served.length; i++) {
+            try (Session session = sessionFactory.openReadOnlySession()) {
+                assertTrue(session.isReadOnly());
+                served[i] = servedBy(session);
+            } catch (Exception e) {
+                fail(e);
+            }
+        }
+        assertNotEquals(served[0], served[1]);
+        assertEquals(served[0], served[2]);
+        assertEquals(served[1], served[3]);
+        assertTrue(List.of("replica1", "replica2").contains(served[0]));
+    }
+
+    @Test
+    void testWritesAndPlainReadsUsePrimary() throws SQLException {
+        sessionFactory = routingFactory("round-robin");
+        Session session = sessionFactory.openSession();
+
+        assertEquals("primary", servedBy(session));
+        Book book = new Book();
+        book.setTitle("new");
+        session.save(book);
+        session.commit();
+
+        // marked query goes to a replica, which does not have the new book
+        assertEquals(1, session.finder(Book.class).readOnly().list().size());
+        // the session itself is still on the primary
+        assertEquals(2, session.finder(Book.class).list().size());
+        session.close();
+
+        // with nothing in the identity map the replica's own row comes back
+        session = sessionFactory.openSession();
+        assertTrue(session.finder(Book.class).readOnly().single().getTitle().startsWith("replica"));
+        session.close();
+
+        try (Connection conn = DriverManager.getConnection(PRIMARY, "sa", "");
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM books")) {
+            rs.next();
+            assertEquals(2, rs.getInt(1));
+        }
+    }
+
+    @Test
+    void testReadOnlySessionRejectsFlush() {
+        sessionFactory = routingFactory("round-robin");
+        Session session = sessionFactory.openReadOnlySession();
+
+        Book book = new Book();
+        book.setTitle("rejected");
+        session.save(book);
+        assertThrows(IntegrityException.class, session::commit);
+        session.rollback();
+        session.close();
+    }
+
+    @Test
+    void testLeastInFlightPrefersIdleReplica() {
+        sessionFactory = routingFactory("least-in-flight");
+
+        Session first = sessionFactory.openReadOnlySession();
+        Session second = sessionFactory.openReadOnlySession();
+        assertNotEquals(servedBy(first), servedBy(second));
+
+        String freed = servedBy(first);
+        first.close();
+        Session third = sessionFactory.openReadOnlySession();
+        assertEquals(freed, servedBy(third));
+        second.close();
+        third.close();
+    }
+
+    @Test
+    void testUnavailableReplicaIsSkipped() throws SQLException {
+        ConnectionProvider broken = () -> {
+            throw new RuntimeException("replica down");
+        };
+        RoutingConnectionProvider routing = new RoutingConnectionProvider(
+                new JdbcConnectionProvider(PRIMARY, "sa", ""),
+                List.of(broken, new JdbcConnectionProvider(REPLICA_2, "sa", "")),
+                RoutingConnectionProvider.Balancing.ROUND_ROBIN);
+
+        for (int i = 0; i < 2; i++) {
+            try (Connection conn = routing.getReadConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT title FROM books")) {
+                rs.next();
+                assertEquals("replica2", rs.getString(1));
+                assertEquals(1, routing.getInFlight(1));
+            }
+        }
+        assertEquals(0, routing.getInFlight(0));
+        assertEquals(0, routing.getInFlight(1));
+        routing.close();
+    }
+}
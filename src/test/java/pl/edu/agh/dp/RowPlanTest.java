@@ -0,0 +1,219 @@
+package pl.edu.agh.dp;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.dp.core.api.Configuration;
+import pl.edu.agh.dp.core.api.Orm;
+import pl.edu.agh.dp.core.api.Session;
+import pl.edu.agh.dp.core.api.SessionFactory;
+import pl.edu.agh.dp.core.mapping.InheritanceType;
+import pl.edu.agh.dp.core.mapping.annotations.Column;
+import pl.edu.agh.dp.core.mapping.annotations.Id;
+import pl.edu.agh.dp.core.mapping.annotations.Inheritance;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Rows are mapped through plans built once per SQL shape - the same query run again
+ * and polymorphic queries have to hydrate the same objects as before.
+ */
+public class RowPlanTest {
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
+    public static class Vehicle {
+        @Id(autoIncrement = true)
+        Long id;
+        String model;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Truck extends Vehicle {
+        Double payload;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @Inheritance(strategy = InheritanceType.JOINED)
+    public static class Document {
+        @Id(autoIncrement = true)
+        Long id;
+        String title;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Invoice extends Document {
+        @Column(nullable = true)
+        LocalDate due;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @Inheritance(strategy = InheritanceType.TABLE_PER_CLASS)
+    public static class Shape {
+        @Id(autoIncrement = true)
+        Long id;
+        String label;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Circle extends Shape {
+        Double radius;
+    }
+
+    String url = System.getenv("DB_URL") != null
+            ? System.getenv("DB_URL")
+            : "jdbc:h2:./testdb_rowplan;AUTO_SERVER=TRUE;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH";
+
+    String user = System.getenv("DB_USER") != null ? System.getenv("DB_USER") : "sa";
+    String password = System.getenv("DB_PASSWORD") != null ? System.getenv("DB_PASSWORD") : "";
+
+    SessionFactory sessionFactory;
+    Session session;
+
+    @BeforeEach
+    public void setUp() {
+        try (Connection conn = DriverManager.getConnection(url, user, password);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        Configuration config = Orm.configure()
+                .setProperty("db.url", url)
+                .setProperty("db.user", user)
+                .setProperty("db.password", password)
+                .setProperty("orm.schema.auto", "create")
+                .register(Vehicle.class, Truck.class, Document.class, Invoice.class, Shape.class, Circle.class);
+        sessionFactory = config.buildSessionFactory();
+        session = sessionFactory.openSession();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (session != null) {
+            session.close();
+        }
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    private void reopen() {
+        session.close();
+        session = sessionFactory.openSession();
+    }
+
+    @Test
+    void testSingleTablePolymorphicRows() {
+        Vehicle car = new Vehicle();
+        car.setModel("hatchback");
+        session.save(car);
+        Truck truck = new Truck();
+        truck.setModel("tipper");
+        truck.setPayload(12.5);
+        session.save(truck);
+        session.commit();
+
+        for (int i = 0; i < 2; i++) {
+            reopen();
+            List<Vehicle> vehicles = session.findAll(Vehicle.class).stream()
+                    .sorted(Comparator.comparing(Vehicle::getModel)).toList();
+            assertEquals(2, vehicles.size());
+            assertEquals(Vehicle.class, vehicles.get(0).getClass());
+            assertEquals("hatchback", vehicles.get(0).getModel());
+            Truck loaded = assertInstanceOf(Truck.class, vehicles.get(1));
+            assertEquals("tipper", loaded.getModel());
+            assertEquals(12.5, loaded.getPayload());
+        }
+
+        reopen();
+        assertEquals("tipper", session.find(Truck.class, truck.getId()).getModel());
+        assertEquals(List.of("tipper"),
+                session.finder(Vehicle.class).eq("model", "tipper").list().stream().map(Vehicle::getModel).toList());
+    }
+
+    @Test
+    void testJoinedPolymorphicRows() {
+        Document memo = new Document();
+        memo.setTitle("memo");
+        session.save(memo);
+        Invoice invoice = new Invoice();
+        invoice.setTitle("FV/1");
+        invoice.setDue(LocalDate.of(2025, 1, 31));
+        session.save(invoice);
+        Invoice open = new Invoice();
+        open.setTitle("FV/2");
+        session.save(open);
+        session.commit();
+
+        for (int i = 0; i < 2; i++) {
+            reopen();
+            List<Document> documents = session.findAll(Document.class).stream()
+                    .sorted(Comparator.comparing(Document::getTitle)).toList();
+            assertEquals(3, documents.size());
+            Invoice loaded = assertInstanceOf(Invoice.class, documents.get(0));
+            assertEquals("FV/1", loaded.getTitle());
+            assertEquals(LocalDate.of(2025, 1, 31), loaded.getDue());
+            assertNull(assertInstanceOf(Invoice.class, documents.get(1)).getDue());
+            assertEquals(Document.class, documents.get(2).getClass());
+            assertEquals("memo", documents.get(2).getTitle());
+        }
+
+        reopen();
+        Invoice found = session.find(Invoice.class, invoice.getId());
+        assertEquals(LocalDate.of(2025, 1, 31), found.getDue());
+    }
+
+    @Test
+    void testTablePerClassPolymorphicRows() {
+        Shape shape = new Shape();
+        shape.setLabel("blob");
+        session.save(shape);
+        Circle circle = new Circle();
+        circle.setLabel("wheel");
+        circle.setRadius(0.5);
+        session.save(circle);
+        session.commit();
+
+        for (int i = 0; i < 2; i++) {
+            reopen();
+            List<Shape> shapes = session.findAll(Shape.class).stream()
+                    .sorted(Comparator.comparing(Shape::getLabel)).toList();
+            assertEquals(2, shapes.size());
+            assertEquals(Shape.class, shapes.get(0).getClass());
+            assertEquals("blob", shapes.get(0).getLabel());
+            Circle loaded = assertInstanceOf(Circle.class, shapes.get(1));
+            assertEquals("wheel", loaded.getLabel());
+            assertEquals(0.5, loaded.getRadius());
+        }
+
+        reopen();
+        assertEquals(0.5, session.find(Circle.class, circle.getId()).getRadius());
+        assertEquals(List.of("wheel"),
+                session.finder(Shape.class).eq("label", "wheel").list().stream().map(Shape::getLabel).toList());
+    }
+}
@@ -0,0 +1,199 @@
+package pl.edu.agh.dp;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.dp.core.api.Orm;
+import pl.edu.agh.dp.core.api.SessionFactory;
+import pl.edu.agh.dp.core.api.StatelessSession;
+import pl.edu.agh.dp.core.finder.QuerySpec;
+import pl.edu.agh.dp.core.jdbc.StatementEvent;
+import pl.edu.agh.dp.core.mapping.annotations.Id;
+import pl.edu.agh.dp.core.mapping.annotations.ManyToOne;
+import pl.edu.agh.dp.core.mapping.annotations.OneToMany;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatelessSessionTest {
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Sensor {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+
+        @OneToMany
+        List<Reading> readings;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Reading {
+        @Id(autoIncrement = true)
+        Long id;
+        Integer val;
+
+        @ManyToOne
+        Sensor sensor;
+    }
+
+    String url = System.getenv("DB_URL") != null
+            ? System.getenv("DB_URL")
+            : "jdbc:h2:./testdb_stateless;AUTO_SERVER=TRUE;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH";
+
+    String user = System.getenv("DB_USER") != null ? System.getenv("DB_USER") : "sa";
+    String password = System.getenv("DB_PASSWORD") != null ? System.getenv("DB_PASSWORD") : "";
+
+    List<StatementEvent> events = new CopyOnWriteArrayList<>();
+    SessionFactory sessionFactory;
+    StatelessSession session;
+
+    Connection conn;
+    Statement stmt;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection(url, user, password);
+        stmt = conn.createStatement();
+        stmt.execute("DROP ALL OBJECTS");
+
+        sessionFactory = Orm.configure()
+                .setProperty("db.url", url)
+                .setProperty("db.user", user)
+                .setProperty("db.password", password)
+                .setProperty("orm.schema.auto", "create")
+                .setProperty("orm.jdbc.batchSize", "16")
+                .addStatementListener(events::add)
+                .register(Sensor.class, Reading.class)
+                .buildSessionFactory();
+        session = sessionFactory.openStatelessSession();
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        if (session != null) {
+            session.close();
+        }
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+        conn.close();
+    }
+
+    private long count(String table) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private Sensor sensor(String name) {
+        Sensor sensor = new Sensor();
+        sensor.setName(name);
+        session.insert(sensor);
+        session.flush();
+        return sensor;
+    }
+
+    private List<Reading> readings(Sensor sensor, int count) {
+        List<Reading> readings = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Reading reading = new Reading();
+            reading.setVal(i);
+            reading.setSensor(sensor);
+            session.insert(reading);
+            readings.add(reading);
+        }
+        return readings;
+    }
+
+    @Test
+    void testInsertsAreWrittenInBatches() throws SQLException {
+        Sensor sensor = sensor("s1");
+        assertNotNull(sensor.getId());
+
+        events.clear();
+        List<Reading> readings = readings(sensor, 40);
+        // two full batches went out, the rest waits for flush
+        assertNotNull(readings.get(31).getId());
+        assertNull(readings.get(32).getId());
+        session.commit();
+        assertNotNull(readings.get(39).getId());
+
+        long insertStatements = events.stream().filter(e -> e.getSql().startsWith("INSERT INTO readings")).count();
+        assertEquals(3, insertStatements);
+        assertEquals(40, count("readings"));
+        try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM readings WHERE sensor_fkey = " + sensor.getId())) {
+            rs.next();
+            assertEquals(40, rs.getLong(1));
+        }
+    }
+
+    @Test
+    void testNothingIsCachedOrWrapped() {
+        Sensor sensor = sensor("s1");
+        readings(sensor, 3);
+        session.commit();
+
+        Sensor first = session.get(Sensor.class, sensor.getId());
+        Sensor second = session.get(Sensor.class, sensor.getId());
+        assertNotSame(first, second);
+        assertEquals("s1", first.getName());
+        // no lazy collection, no cascade
+        assertNull(first.getReadings());
+        assertNull(session.get(Sensor.class, -1L));
+    }
+
+    @Test
+    void testUpdateAndDeleteWriteOnlyTheGivenEntities() throws SQLException {
+        Sensor sensor = sensor("s1");
+        List<Reading> readings = readings(sensor, 20);
+        session.commit();
+
+        for (Reading reading : readings) {
+            reading.setVal(reading.getVal() * 10);
+            session.update(reading);
+        }
+        session.delete(readings.get(0));
+        session.commit();
+
+        assertEquals(19, count("readings"));
+        try (ResultSet rs = stmt.executeQuery("SELECT SUM(val) FROM readings")) {
+            rs.next();
+            // 10 * (1 + ... + 19)
+            assertEquals(1900, rs.getLong(1));
+        }
+        assertEquals(1, count("sensors"));
+    }
+
+    @Test
+    void testReadsSeePendingWritesAndRollbackDropsThem() throws SQLException {
+        Sensor sensor = sensor("s1");
+        readings(sensor, 5);
+
+        // the pending batch is written before the query
+        try (Stream<Reading> stream = session.stream(Reading.class)) {
+            assertEquals(5, stream.count());
+        }
+        try (Stream<Reading> stream = session.stream(QuerySpec.of(Reading.class))) {
+            assertEquals(10, stream.mapToInt(Reading::getVal).sum());
+        }
+
+        readings(sensor, 5);
+        session.rollback();
+        assertEquals(0, count("readings"));
+        assertEquals(0, count("sensors"));
+    }
+}
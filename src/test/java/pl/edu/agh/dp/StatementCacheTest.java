@@ -0,0 +1,105 @@
+package pl.edu.agh.dp;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.dp.core.jdbc.JdbcExecutorImpl;
+import pl.edu.agh.dp.core.jdbc.StatementCache;
+
+import java.sql.*;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatementCacheTest {
+
+    String url = "jdbc:h2:mem:statement_cache;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    Connection conn;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection(url, "sa", "");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+            stmt.execute("CREATE TABLE item (id SERIAL PRIMARY KEY, name TEXT)");
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        if (!conn.isClosed()) {
+            conn.close();
+        }
+    }
+
+    @Test
+    void testRepeatedStatementsAreReused() throws SQLException {
+        JdbcExecutorImpl executor = new JdbcExecutorImpl(conn, 8);
+        StatementCache cache = executor.getStatementCache();
+
+        for (int i = 0; i < 3; i++) {
+            executor.insert("INSERT INTO item (name) VALUES (?)", "id", "item" + i);
+        }
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+
+        for (int i = 0; i < 3; i++) {
+            List<String> names = executor.query("SELECT name FROM item WHERE id = ?", rs -> rs.getString(1), (long) i + 1);
+            assertEquals(List.of("item" + i), names);
+        }
+        assertEquals(2, cache.getMisses());
+        assertEquals(4, cache.getHits());
+        assertEquals(2, cache.size());
+
+        executor.close();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testKeyModeIsPartOfCacheKey() throws SQLException {
+        JdbcExecutorImpl executor = new JdbcExecutorImpl(conn, 8);
+        StatementCache cache = executor.getStatementCache();
+
+        String sql = "INSERT INTO item (name) VALUES (?)";
+        assertNotNull(executor.insert(sql, "id", "a"));
+        assertNull(executor.insert(sql, "", "b"));
+        executor.update(sql, "c");
+
+        // generated-keys statement and the plain one are separate entries
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        executor.close();
+    }
+
+    @Test
+    void testLeastRecentlyUsedStatementIsEvicted() throws SQLException {
+        JdbcExecutorImpl executor = new JdbcExecutorImpl(conn, 2);
+        StatementCache cache = executor.getStatementCache();
+
+        executor.query("SELECT 1", rs -> rs.getInt(1));
+        executor.query("SELECT 2", rs -> rs.getInt(1));
+        executor.query("SELECT 1", rs -> rs.getInt(1));
+        executor.query("SELECT 3", rs -> rs.getInt(1));
+        assertEquals(2, cache.size());
+
+        // "SELECT 2" was the eldest and has been dropped
+        executor.query("SELECT 2", rs -> rs.getInt(1));
+        assertEquals(4, cache.getMisses());
+        executor.query("SELECT 3", rs -> rs.getInt(1));
+        assertEquals(2, cache.getHits());
+        executor.close();
+    }
+
+    @Test
+    void testDisabledCacheClosesStatements() throws SQLException {
+        JdbcExecutorImpl executor = new JdbcExecutorImpl(conn, 0);
+        StatementCache cache = executor.getStatementCache();
+
+        executor.query("SELECT 1", rs -> rs.getInt(1));
+        executor.query("SELECT 1", rs -> rs.getInt(1));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHits());
+        executor.close();
+    }
+}
@@ -0,0 +1,197 @@
+package pl.edu.agh.dp;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.dp.core.api.Configuration;
+import pl.edu.agh.dp.core.api.Orm;
+import pl.edu.agh.dp.core.api.Session;
+import pl.edu.agh.dp.core.api.SessionFactory;
+import pl.edu.agh.dp.core.jdbc.StatementEvent;
+import pl.edu.agh.dp.core.jdbc.StatementListener;
+import pl.edu.agh.dp.core.mapping.annotations.Id;
+import pl.edu.agh.dp.core.stats.LatencyHistogram;
+import pl.edu.agh.dp.core.stats.LatencyHistogramListener;
+import pl.edu.agh.dp.core.stats.SqlShapes;
+
+import java.sql.*;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatementListenerTest {
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Order {
+        @Id(autoIncrement = true)
+        Long id;
+        String customer;
+        Integer total;
+    }
+
+    public static class RecordingListener implements StatementListener {
+        static final List<StatementEvent> EVENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onStatement(StatementEvent event) {
+            EVENTS.add(event);
+        }
+    }
+
+    String url = System.getenv("DB_URL") != null
+            ? System.getenv("DB_URL")
+            : "jdbc:h2:./testdb_listener;AUTO_SERVER=TRUE;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH";
+
+    String user = System.getenv("DB_USER") != null ? System.getenv("DB_USER") : "sa";
+    String password = System.getenv("DB_PASSWORD") != null ? System.getenv("DB_PASSWORD") : "";
+
+    Configuration config;
+    SessionFactory sessionFactory;
+    Session session;
+
+    @BeforeEach
+    public void setUp() {
+        try (Connection conn = DriverManager.getConnection(url, user, password);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        RecordingListener.EVENTS.clear();
+
+        config = Orm.configure()
+                .setProperty("db.url", url)
+                .setProperty("db.user", user)
+                .setProperty("db.password", password)
+                .setProperty("orm.schema.auto", "create")
+                .register(Order.class);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (session != null) {
+            session.close();
+        }
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    private void saveOrders(int count) {
+        for (int i = 0; i < count; i++) {
+            Order order = new Order();
+            order.setCustomer("c" + i);
+            order.setTotal(i);
+            session.save(order);
+        }
+        session.commit();
+    }
+
+    @Test
+    void testListenerSeesEveryStatementWithTimings() {
+        sessionFactory = config.setProperty("orm.jdbc.statementListeners", RecordingListener.class.getName())
+                .buildSessionFactory();
+        session = sessionFactory.openSession();
+        saveOrders(3);
+
+        List<Order> orders = session.findAll(Order.class);
+        assertEquals(3, orders.size());
+        try (Stream<Order> stream = session.stream(Order.class)) {
+            assertEquals(3, stream.count());
+        }
+
+        List<StatementEvent> events = RecordingListener.EVENTS;
+        assertFalse(events.isEmpty());
+        for (StatementEvent event : events) {
+            assertTrue(event.getPrepareNanos() >= 0 && event.getExecuteNanos() >= 0 && event.getFetchNanos() >= 0);
+            assertFalse(event.isFailed());
+        }
+        assertTrue(events.stream().anyMatch(e -> e.getSql().toUpperCase().startsWith("INSERT")
+                && e.getParameters().stream().anyMatch(p -> List.of(p).contains("c1"))));
+        assertTrue(events.stream().anyMatch(e -> e.getKind() == StatementEvent.Kind.QUERY && e.getRowCount() == 3));
+        // the stream reports once it is closed
+        assertTrue(events.stream().anyMatch(e -> e.getKind() == StatementEvent.Kind.STREAM && e.getRowCount() == 3));
+    }
+
+    @Test
+    void testFailedStatementIsReported() {
+        sessionFactory = config.addStatementListener(RecordingListener.EVENTS::add).buildSessionFactory();
+        session = sessionFactory.openSession();
+
+        Order order = new Order();
+        order.setTotal(1);
+        // customer is NOT NULL
+        assertThrows(RuntimeException.class, () -> {
+            session.save(order);
+            session.commit();
+        });
+
+        StatementEvent failed = RecordingListener.EVENTS.stream()
+                .filter(StatementEvent::isFailed)
+                .findFirst().orElseThrow();
+        assertEquals(-1, failed.getRowCount());
+        assertInstanceOf(SQLException.class, failed.getError());
+    }
+
+    @Test
+    void testHistogramsGroupStatementsByShape() {
+        LatencyHistogramListener histograms = new LatencyHistogramListener();
+        sessionFactory = config.addStatementListener(histograms).buildSessionFactory();
+        session = sessionFactory.openSession();
+        saveOrders(20);
+
+        for (int i = 0; i < 20; i++) {
+            session.finder(Order.class).eq("total", i).list();
+        }
+
+        Map.Entry<String, LatencyHistogram> select = histograms.getHistograms().entrySet().stream()
+                .filter(e -> e.getKey().toUpperCase().startsWith("SELECT"))
+                .findFirst().orElseThrow();
+        assertEquals(20, select.getValue().getCount());
+        assertTrue(select.getValue().getValueAtPercentile(99) <= select.getValue().getMaxNanos());
+        assertTrue(select.getValue().getValueAtPercentile(50) > 0);
+
+        List<Map.Entry<String, LatencyHistogram>> slowest = histograms.getSlowest(1, 99);
+        assertEquals(1, slowest.size());
+        long top = slowest.get(0).getValue().getValueAtPercentile(99);
+        histograms.getHistograms().values().forEach(h -> assertTrue(h.getValueAtPercentile(99) <= top));
+    }
+
+    @Test
+    void testSqlShapes() {
+        assertEquals("SELECT * FROM orders WHERE id = ? AND customer = ?",
+                SqlShapes.normalize("SELECT *  FROM orders\n WHERE id = 42 AND customer = 'O''Brien'"));
+        assertEquals("SELECT * FROM t2 WHERE id IN (?)",
+                SqlShapes.normalize("SELECT * FROM t2 WHERE id IN (?, ?, ?)"));
+        assertEquals("INSERT INTO orders (a, b) VALUES (?, ?) RETURNING id",
+                SqlShapes.normalize("INSERT INTO orders (a, b) VALUES (?, ?), (?, ?), (?, ?) RETURNING id"));
+    }
+
+    @Test
+    void testHistogramPercentilesStayWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1; v <= 10_000; v++) {
+            histogram.record(v * 1000);
+        }
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(10_000_000, histogram.getMaxNanos());
+
+        long p50 = histogram.getValueAtPercentile(50);
+        long p99 = histogram.getValueAtPercentile(99);
+        assertEquals(5_000_000, p50, 5_000_000 * 0.04);
+        assertEquals(9_900_000, p99, 9_900_000 * 0.04);
+        assertEquals(10_000_000, histogram.getValueAtPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+}
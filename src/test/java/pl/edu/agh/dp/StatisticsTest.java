@@ -0,0 +1,189 @@
+package pl.edu.agh.dp;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.dp.core.api.Configuration;
+import pl.edu.agh.dp.core.api.Orm;
+import pl.edu.agh.dp.core.api.Session;
+import pl.edu.agh.dp.core.api.SessionFactory;
+import pl.edu.agh.dp.core.jdbc.StatementEvent;
+import pl.edu.agh.dp.core.mapping.annotations.Id;
+import pl.edu.agh.dp.core.mapping.annotations.ManyToOne;
+import pl.edu.agh.dp.core.mapping.annotations.OneToMany;
+import pl.edu.agh.dp.core.stats.Statistics;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatisticsTest {
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Team {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+
+        @OneToMany
+        List<Player> players;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Player {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+
+        @ManyToOne
+        Team team;
+    }
+
+    String url = System.getenv("DB_URL") != null
+            ? System.getenv("DB_URL")
+            : "jdbc:h2:./testdb_statistics;AUTO_SERVER=TRUE;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH";
+
+    String user = System.getenv("DB_USER") != null ? System.getenv("DB_USER") : "sa";
+    String password = System.getenv("DB_PASSWORD") != null ? System.getenv("DB_PASSWORD") : "";
+
+    Configuration config;
+    SessionFactory sessionFactory;
+    Session session;
+
+    @BeforeEach
+    public void setUp() {
+        try (Connection conn = DriverManager.getConnection(url, user, password);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        config = Orm.configure()
+                .setProperty("db.url", url)
+                .setProperty("db.user", user)
+                .setProperty("db.password", password)
+                .setProperty("orm.schema.auto", "create")
+                .register(Team.class, Player.class);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (session != null && session.isOpen()) {
+            session.close();
+        }
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    private Long saveTeam(int players) {
+        Team team = new Team();
+        team.setName("team");
+        team.setPlayers(new ArrayList<>());
+        for (int i = 0; i < players; i++) {
+            Player player = new Player();
+            player.setName("p" + i);
+            team.getPlayers().add(player);
+        }
+        session.save(team);
+        session.commit();
+        return team.getId();
+    }
+
+    @Test
+    void testStatisticsAreDisabledByDefault() {
+        sessionFactory = config.buildSessionFactory();
+        session = sessionFactory.openSession();
+        saveTeam(2);
+
+        Statistics statistics = sessionFactory.getStatistics();
+        assertFalse(statistics.isEnabled());
+        assertEquals(0, statistics.getSessionsOpened());
+        assertEquals(0, statistics.getStatementCount());
+    }
+
+    @Test
+    void testCountersFollowSessionWork() {
+        sessionFactory = config.setProperty("orm.statistics.enabled", "true").buildSessionFactory();
+        Statistics statistics = sessionFactory.getStatistics();
+        session = sessionFactory.openSession();
+        Long teamId = saveTeam(3);
+        session.close();
+
+        assertEquals(1, statistics.getEntityInsertCount(Team.class));
+        assertEquals(3, statistics.getEntityInsertCount(Player.class));
+        assertEquals(1, statistics.getCommitCount());
+        assertTrue(statistics.getFlushCount() >= 1);
+        assertTrue(statistics.getStatementCount(StatementEvent.Kind.INSERT)
+                + statistics.getStatementCount(StatementEvent.Kind.BATCH) > 0);
+
+        session = sessionFactory.openSession();
+        Team team = session.find(Team.class, teamId);
+        // second lookup is served by the identity map
+        assertSame(team, session.find(Team.class, teamId));
+        assertEquals(1, statistics.getIdentityMapHitCount());
+        assertEquals(1, statistics.getIdentityMapMissCount());
+        assertEquals(1, statistics.getEntityLoadCount(Team.class));
+
+        assertEquals(3, team.getPlayers().size());
+        assertEquals(1, statistics.getCollectionInitializationCount());
+        assertEquals(3, statistics.getEntityLoadCount(Player.class));
+
+        Player player = team.getPlayers().get(0);
+        player.setName("renamed");
+        session.update(player);
+        session.commit();
+        session.delete(player);
+        session.rollback();
+        session.close();
+
+        // update cascades through the team, but only the renamed player has changed
+        assertEquals(1, statistics.getEntityUpdateCount(Player.class));
+        assertEquals(0, statistics.getEntityUpdateCount(Team.class));
+        assertEquals(0, statistics.getEntityDeleteCount(Player.class));
+        assertEquals(2, statistics.getCommitCount());
+        assertEquals(1, statistics.getRollbackCount());
+        assertEquals(2, statistics.getSessionsOpened());
+        assertEquals(2, statistics.getSessionsClosed());
+        assertEquals(0, statistics.getFailedStatementCount());
+
+        statistics.clear();
+        assertEquals(0, statistics.getStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void testStatisticsAreRegisteredAsMBean() throws Exception {
+        sessionFactory = config
+                .setProperty("orm.statistics.enabled", "true")
+                .setProperty("orm.statistics.name", "statistics-test")
+                .buildSessionFactory();
+        session = sessionFactory.openSession();
+        saveTeam(1);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = sessionFactory.getStatistics().getObjectName();
+        assertEquals(new ObjectName("pl.edu.agh.dp:type=Statistics,name=\"statistics-test\""), name);
+        assertEquals(1L, server.getAttribute(name, "SessionsOpened"));
+        assertEquals(2L, server.getAttribute(name, "EntityInsertCount"));
+        assertTrue((Long) server.getAttribute(name, "StatementCount") > 0);
+
+        session.close();
+        sessionFactory.close();
+        assertFalse(server.isRegistered(name));
+        sessionFactory = null;
+    }
+}
@@ -0,0 +1,291 @@
+package pl.edu.agh.dp;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.dp.core.api.Configuration;
+import pl.edu.agh.dp.core.api.Orm;
+import pl.edu.agh.dp.core.api.Session;
+import pl.edu.agh.dp.core.api.SessionFactory;
+import pl.edu.agh.dp.core.finder.QuerySpec;
+import pl.edu.agh.dp.core.mapping.InheritanceType;
+import pl.edu.agh.dp.core.mapping.annotations.Id;
+import pl.edu.agh.dp.core.mapping.annotations.Inheritance;
+import pl.edu.agh.dp.core.mapping.annotations.ManyToOne;
+import pl.edu.agh.dp.core.mapping.annotations.OneToMany;
+import pl.edu.agh.dp.core.proxy.EntityProxy;
+
+import java.lang.reflect.Field;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamingTest {
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Reading {
+        @Id(autoIncrement = true)
+        Long id;
+        String sensor;
+        Integer amount;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @Inheritance(strategy = InheritanceType.JOINED)
+    public static class Device {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Thermometer extends Device {
+        Integer precision;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Site {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+        @OneToMany
+        List<Probe> probes = new ArrayList<>();
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Probe {
+        @Id(autoIncrement = true)
+        Long id;
+        String name;
+        @ManyToOne
+        Site site;
+    }
+
+    String url = System.getenv("DB_URL") != null
+            ? System.getenv("DB_URL")
+            : "jdbc:h2:./testdb_stream;AUTO_SERVER=TRUE;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH";
+
+    String user = System.getenv("DB_USER") != null ? System.getenv("DB_USER") : "sa";
+    String password = System.getenv("DB_PASSWORD") != null ? System.getenv("DB_PASSWORD") : "";
+
+    Configuration config;
+    SessionFactory sessionFactory;
+    Session session;
+
+    Connection conn;
+    Statement stmt;
+
+    @BeforeEach
+    public void setUp() {
+        // Reset database
+        try {
+            conn = DriverManager.getConnection(url, user, password);
+            stmt = conn.createStatement();
+            stmt.execute("DROP ALL OBJECTS");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        config = Orm.configure()
+                .setProperty("db.url", url)
+                .setProperty("db.user", user)
+                .setProperty("db.password", password)
+                .setProperty("orm.schema.auto", "create")
+                .setProperty("orm.jdbc.fetchSize", "100");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (session != null) {
+            session.close();
+        }
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    private void insertReadings(int count) {
+        for (int i = 0; i < count; i++) {
+            Reading reading = new Reading();
+            reading.setSensor("s" + (i % 10));
+            reading.setAmount(i);
+            session.save(reading);
+        }
+        session.commit();
+        // start over with an empty session cache
+        session.close();
+        session = sessionFactory.openSession();
+    }
+
+    @Test
+    void testStreamMapsEveryRow() {
+        config.register(Reading.class);
+        sessionFactory = config.buildSessionFactory();
+        session = sessionFactory.openSession();
+        insertReadings(2000);
+
+        long sum;
+        long count;
+        try (Stream<Reading> readings = session.stream(Reading.class)) {
+            List<Integer> values = readings.map(Reading::getAmount).collect(Collectors.toList());
+            count = values.size();
+            sum = values.stream().mapToLong(Integer::longValue).sum();
+        }
+        assertEquals(2000, count);
+        assertEquals(1999L * 2000 / 2, sum);
+    }
+
+    @Test
+    void testFinderStreamAppliesConditionsAndOrder() {
+        config.register(Reading.class);
+        sessionFactory = config.buildSessionFactory();
+        session = sessionFactory.openSession();
+        insertReadings(300);
+
+        try (Stream<Reading> readings = session.finder(Reading.class)
+                .eq("sensor", "s3")
+                .orderDesc("amount")
+                .stream()) {
+            List<Integer> values = readings.map(Reading::getAmount).collect(Collectors.toList());
+            assertEquals(30, values.size());
+            assertEquals(293, values.get(0));
+            assertEquals(3, values.get(29));
+        }
+    }
+
+    @Test
+    void testDetachedStreamKeepsSessionCacheEmpty() {
+        config.register(Reading.class);
+        sessionFactory = config.buildSessionFactory();
+        session = sessionFactory.openSession();
+        insertReadings(10);
+
+        Reading attached;
+        try (Stream<Reading> readings = session.stream(Reading.class)) {
+            attached = readings.findFirst().orElseThrow();
+        }
+        assertSame(attached, session.find(Reading.class, attached.getId()));
+
+        Reading detached;
+        try (Stream<Reading> readings = session.stream(QuerySpec.of(Reading.class), true)) {
+            detached = readings.filter(r -> r.getAmount() == 5).findFirst().orElseThrow();
+        }
+        assertNotSame(detached, session.find(Reading.class, detached.getId()));
+
+        // entities already cached are handed out as is, also in detached mode
+        try (Stream<Reading> readings = session.finder(Reading.class).eq("id", attached.getId()).stream(true)) {
+            assertSame(attached, readings.findFirst().orElseThrow());
+        }
+    }
+
+    @Test
+    void testDetachedStreamLeavesNoStateInSession() throws Exception {
+        config.register(Site.class, Probe.class);
+        sessionFactory = config.buildSessionFactory();
+        session = sessionFactory.openSession();
+        Site site = new Site();
+        site.setName("north");
+        session.save(site);
+        for (int i = 0; i < 50; i++) {
+            Probe probe = new Probe();
+            probe.setName("p" + i);
+            probe.setSite(site);
+            session.save(probe);
+        }
+        session.commit();
+        session.close();
+        session = sessionFactory.openSession();
+
+        List<Probe> probes;
+        try (Stream<Probe> stream = session.stream(QuerySpec.of(Probe.class), true)) {
+            probes = stream.toList();
+        }
+        try (Stream<Site> stream = session.stream(QuerySpec.of(Site.class), true)) {
+            assertEquals(1, stream.count());
+        }
+        assertEquals(50, probes.size());
+
+        // no instance, proxy or snapshot of the streamed rows stays behind
+        assertTrue(((Map<?, ?>) sessionField("proxies")).isEmpty());
+        assertTrue(((Collection<?>) sessionField("cachedEntities")).isEmpty());
+        // the to-one targets are left unattached
+        for (Probe probe : probes) {
+            assertNull(((EntityProxy) probe.getSite()).getLazyInitializer().getSession());
+        }
+    }
+
+    private Object sessionField(String name) throws ReflectiveOperationException {
+        Field field = session.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(session);
+    }
+
+    @Test
+    void testClosingStreamEarlyReleasesCursor() {
+        config.register(Reading.class);
+        sessionFactory = config.buildSessionFactory();
+        session = sessionFactory.openSession();
+        insertReadings(500);
+
+        try (Stream<Reading> readings = session.stream(QuerySpec.of(Reading.class), true)) {
+            assertEquals(5, readings.limit(5).count());
+        }
+
+        // session keeps working on the same connection
+        Reading reading = new Reading();
+        reading.setSensor("late");
+        reading.setAmount(-1);
+        session.save(reading);
+        session.commit();
+        assertEquals(501, session.findAll(Reading.class).size());
+    }
+
+    @Test
+    void testStreamIsPolymorphic() {
+        config.register(Device.class, Thermometer.class);
+        sessionFactory = config.buildSessionFactory();
+        session = sessionFactory.openSession();
+
+        for (int i = 0; i < 20; i++) {
+            Device device;
+            if (i % 2 == 0) {
+                Thermometer thermometer = new Thermometer();
+                thermometer.setPrecision(i);
+                device = thermometer;
+            } else {
+                device = new Device();
+            }
+            device.setName("device" + i);
+            session.save(device);
+        }
+        session.commit();
+        session.close();
+        session = sessionFactory.openSession();
+
+        try (Stream<Device> devices = session.stream(Device.class)) {
+            assertEquals(20, devices.count());
+        }
+        try (Stream<Thermometer> thermometers = session.stream(Thermometer.class)) {
+            assertEquals(10, thermometers.count());
+        }
+    }
+}